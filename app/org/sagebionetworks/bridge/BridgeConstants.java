@@ -77,9 +77,6 @@ public class BridgeConstants {
     
     public static final String JSON_MIME_TYPE = "application/json; charset=UTF-8";
 
-    /** Per-request metrics expires in the cache after 120 seconds. */
-    public static final int METRICS_EXPIRE_SECONDS = 2 * 60;
-    
     public static final int API_MINIMUM_PAGE_SIZE = 5;
     
     public static final int API_DEFAULT_PAGE_SIZE = 50;
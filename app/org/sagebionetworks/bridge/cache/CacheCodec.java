@@ -0,0 +1,98 @@
+package org.sagebionetworks.bridge.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * <p>
+ * Converts the serialized JSON of cached objects (sessions, studies, and anything in the {@link Cache}) to and from
+ * the form stored in Redis. Large values are GZIP-compressed and stored as Base64 text, prefixed with a version
+ * character. JSON never starts with a control character, so values without a version are plain JSON.
+ * </p>
+ * <p>
+ * Plain JSON is always readable, so compression can be turned on after every server is running this code, and
+ * turned off again at any time. Cached values expire, so old formats drain out of Redis on their own.
+ * </p>
+ */
+@Component
+public class CacheCodec {
+
+    static final String CONFIG_KEY_COMPRESSION_ENABLED = "cache.compression.enabled";
+    static final String CONFIG_KEY_COMPRESSION_MIN_LENGTH = "cache.compression.min.length";
+
+    /** Version character of GZIP-compressed, Base64-encoded JSON. */
+    static final char GZIP_JSON_VERSION = '\u0001';
+
+    private boolean compressionEnabled;
+    private int compressionMinLength;
+
+    /** Gets the compression settings from Config. Without config, values are stored as plain JSON. */
+    @Autowired
+    final void setConfig(Config config) {
+        this.compressionEnabled = Boolean.valueOf(config.get(CONFIG_KEY_COMPRESSION_ENABLED));
+        this.compressionMinLength = config.getInt(CONFIG_KEY_COMPRESSION_MIN_LENGTH);
+    }
+
+    /**
+     * Returns the value to store in Redis for this JSON. Values shorter than the configured minimum length are stored
+     * as is, as are values that don't get any smaller when compressed.
+     */
+    public String encode(String json) {
+        if (!compressionEnabled || json == null || json.length() < compressionMinLength) {
+            return json;
+        }
+        String encoded = GZIP_JSON_VERSION + Base64.getEncoder().encodeToString(gzip(json.getBytes(UTF_8)));
+        return (encoded.length() < json.length()) ? encoded : json;
+    }
+
+    /**
+     * Returns the JSON of a value read from Redis, in any format written by this or an earlier version of the codec.
+     */
+    public String decode(String value) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        char version = value.charAt(0);
+        if (version == GZIP_JSON_VERSION) {
+            return new String(gunzip(Base64.getDecoder().decode(value.substring(1))), UTF_8);
+        }
+        if (Character.isISOControl(version) && !Character.isWhitespace(version)) {
+            // Written by a newer version of the codec, during a deploy.
+            throw new BridgeServiceException("Cached value has unknown format version " + (int)version);
+        }
+        return value;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length / 4);
+        try (OutputStream out = new GZIPOutputStream(baos)) {
+            out.write(bytes);
+        } catch(IOException e) {
+            throw new BridgeServiceException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return ByteStreams.toByteArray(in);
+        } catch(IOException e) {
+            throw new BridgeServiceException(e);
+        }
+    }
+}
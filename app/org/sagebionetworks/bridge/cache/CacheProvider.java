@@ -2,11 +2,18 @@ package org.sagebionetworks.bridge.cache;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import javax.annotation.Resource;
 
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
 import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
@@ -18,19 +25,54 @@ import org.sagebionetworks.bridge.redis.JedisOps;
 import org.sagebionetworks.bridge.redis.JedisTransaction;
 import org.sagebionetworks.bridge.redis.RedisKey;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 
 /**
+ * <p>
  * A wrapper around whatever cache provider we ultimately decide to go with (probably Redis). 
  * Assuming for the moment that we can store objects, by serialization if we have to.
+ * </p>
+ * <p>
+ * Copies of the studies and views that pass through this server are kept in a small local store, and are served
+ * from it when Redis can't be reached. Other data, such as sessions, can't be served from one server's memory, so
+ * requests for it fail while Redis is down.
+ * </p>
  */
 @Component
 public class CacheProvider {
+    private static final Logger LOG = LoggerFactory.getLogger(CacheProvider.class);
+    
+    static final int ACTIVITY_EVENTS_EXPIRE_IN_SECONDS = 60*60;
+    static final int PARTICIPANT_OPTIONS_EXPIRE_IN_SECONDS = 60*60;
+    static final int GENERATION_EXPIRE_IN_SECONDS = 24*60*60;
+    /**
+     * The summary list is invalidated whenever a study changes, so this only bounds how long an entry can outlive a
+     * change made outside of StudyService (e.g. directly in DynamoDB).
+     */
+    static final int STUDY_SUMMARIES_EXPIRE_IN_SECONDS = 24*60*60;
+    static final String STUDY_SUMMARIES_KEY = RedisKey.STUDY_SUMMARIES.getRedisKey("active");
+    static final int FALLBACK_MAX_SIZE = 1000;
+    static final int FALLBACK_EXPIRE_IN_SECONDS = 10*60;
+    private static final TypeReference<Map<String,Long>> EVENT_MAP_TYPE = new TypeReference<Map<String,Long>>() {};
+    private static final TypeReference<Map<String,String>> OPTIONS_MAP_TYPE =
+            new TypeReference<Map<String,String>>() {};
     
+    // Last known values of studies and views, by Redis key. Stale values are only served while Redis is down.
+    private final ConcurrentMap<String,String> fallbackValues = CacheBuilder.newBuilder()
+            .maximumSize(FALLBACK_MAX_SIZE).expireAfterWrite(FALLBACK_EXPIRE_IN_SECONDS, TimeUnit.SECONDS)
+            .<String,String>build().asMap();
     private ObjectMapper bridgeObjectMapper;
+    private CacheCodec cacheCodec;
+    private CacheScripts cacheScripts;
     private JedisOps jedisOps;
     private int sessionExpireInSeconds;
 
@@ -39,6 +81,16 @@ public class CacheProvider {
         this.bridgeObjectMapper = bridgeObjectMapper;
     }
 
+    @Autowired
+    final void setCacheCodec(CacheCodec cacheCodec) {
+        this.cacheCodec = cacheCodec;
+    }
+
+    @Autowired
+    final void setCacheScripts(CacheScripts cacheScripts) {
+        this.cacheScripts = cacheScripts;
+    }
+
     @Autowired
     final void setJedisOps(JedisOps jedisOps) {
         this.jedisOps = jedisOps;
@@ -118,28 +170,10 @@ public class CacheProvider {
         final String userKey = RedisKey.USER_SESSION.getRedisKey(userId);
         
         final String sessionKey = RedisKey.SESSION.getRedisKey(sessionToken);
-        try (JedisTransaction transaction = jedisOps.getTransaction()) {
-            
-            // If the key exists, get the remaining time to expiration. If it doesn't exist
-            // then save with the full expiration period.
-            final Long ttl = jedisOps.ttl(userKey);
-            final int expiration = (ttl != null && ttl > 0L) ? 
-                    ttl.intValue() : sessionExpireInSeconds;
-                   
-            String ser = StudyParticipant.CACHE_WRITER.writeValueAsString(session);
-            
-            List<Object> results = transaction
-                .setex(userKey, expiration, sessionToken)
-                .setex(sessionKey, expiration, ser)
-                .exec();
-            if (results == null) {
-                throw new BridgeServiceException("Session storage error.");
-            }
-            for (Object result : results) {
-                if (!"OK".equals(result)) {
-                    throw new BridgeServiceException("Session storage error.");
-                }
-            }
+        try {
+            // Keeps the remaining time to expiration of an existing session. New sessions get the full period.
+            String ser = cacheCodec.encode(StudyParticipant.CACHE_WRITER.writeValueAsString(session));
+            cacheScripts.setSession(userKey, sessionToken, sessionKey, ser, sessionExpireInSeconds);
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -154,7 +188,7 @@ public class CacheProvider {
             if (ser == null) {
                 return null;
             }
-            return bridgeObjectMapper.readValue(ser, UserSession.class);
+            return bridgeObjectMapper.readValue(cacheCodec.decode(ser), UserSession.class);
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -209,26 +243,93 @@ public class CacheProvider {
     }
 
     public void setStudy(Study study) {
+        String ser = null;
+        try {
+            ser = cacheCodec.encode(bridgeObjectMapper.writeValueAsString(study));
+        } catch (Throwable e) {
+            throw new BridgeServiceException(e);
+        }
+        String redisKey = RedisKey.STUDY.getRedisKey(study.getIdentifier());
+        fallbackValues.put(redisKey, ser);
         try {
-            String ser = bridgeObjectMapper.writeValueAsString(study);
-            String redisKey = RedisKey.STUDY.getRedisKey(study.getIdentifier());
             String result = jedisOps.setex(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS, ser);
             if (!"OK".equals(result)) {
                 throw new BridgeServiceException("Study storage error");
             }
         } catch (Throwable e) {
-            promptToStartRedisIfLocal(e);
-            throw new BridgeServiceException(e);
+            // Redis may still hold an older copy of the study, which reads would keep renewing. If it can't be 
+            // removed either, fail as we would have before there was a local copy.
+            try {
+                jedisOps.del(redisKey);
+            } catch(Throwable deleteError) {
+                promptToStartRedisIfLocal(e);
+                throw new BridgeServiceException(e);
+            }
+            LOG.warn("Could not cache study " + study.getIdentifier() + " in Redis: " + e.getMessage());
         }
     }
 
     public Study getStudy(String identifier) {
+        String redisKey = RedisKey.STUDY.getRedisKey(identifier);
+        String ser = getWithFallback(redisKey,
+                () -> cacheScripts.getAndExpire(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS));
+        if (ser != null) {
+            try {
+                return bridgeObjectMapper.readValue(cacheCodec.decode(ser), Study.class);
+            } catch (Throwable e) {
+                throw new BridgeServiceException(e);
+            }
+        }
+        return null;
+    }
+
+    public void removeStudy(String identifier) {
         try {
             String redisKey = RedisKey.STUDY.getRedisKey(identifier);
+            fallbackValues.remove(redisKey);
+            jedisOps.del(redisKey);
+        } catch(Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    /**
+     * Cache a participant's activity event map. Timestamps are stored as epoch milliseconds, and are returned in UTC, 
+     * which is how ActivityEventDao returns them. The generation is the one returned by 
+     * getActivityEventMapGeneration() before the map was loaded. If the map has been invalidated since, it is not 
+     * cached, as it may be missing the event that invalidated it.
+     */
+    public void setActivityEventMap(String healthCode, Map<String,DateTime> eventMap, String generation) {
+        try {
+            Map<String,Long> millisMap = Maps.transformValues(eventMap, DateTime::getMillis);
+            String ser = bridgeObjectMapper.writeValueAsString(millisMap);
+            String redisKey = RedisKey.ACTIVITY_EVENTS.getRedisKey(healthCode);
+            cacheScripts.setIfGeneration(redisKey, RedisKey.GENERATION.getRedisKey(redisKey), generation, ser,
+                    ACTIVITY_EVENTS_EXPIRE_IN_SECONDS);
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    /** Get the generation of a participant's activity event map. Read this before loading the map to cache it. */
+    public String getActivityEventMapGeneration(String healthCode) {
+        return getGeneration(RedisKey.ACTIVITY_EVENTS.getRedisKey(healthCode));
+    }
+
+    /** Get a participant's cached activity event map, or null if it isn't cached. */
+    public Map<String,DateTime> getActivityEventMap(String healthCode) {
+        try {
+            String redisKey = RedisKey.ACTIVITY_EVENTS.getRedisKey(healthCode);
             String ser = jedisOps.get(redisKey);
             if (ser != null) {
-                jedisOps.expire(redisKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
-                return bridgeObjectMapper.readValue(ser, Study.class);
+                Map<String,Long> millisMap = bridgeObjectMapper.readValue(ser, EVENT_MAP_TYPE);
+                ImmutableMap.Builder<String,DateTime> builder = ImmutableMap.builder();
+                for (Map.Entry<String,Long> entry : millisMap.entrySet()) {
+                    builder.put(entry.getKey(), new DateTime(entry.getValue(), DateTimeZone.UTC));
+                }
+                return builder.build();
             }
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
@@ -237,14 +338,77 @@ public class CacheProvider {
         return null;
     }
 
-    public void removeStudy(String identifier) {
+    public void removeActivityEventMap(String healthCode) {
+        invalidate(RedisKey.ACTIVITY_EVENTS.getRedisKey(healthCode));
+    }
+
+    /**
+     * Cache a participant's options, as the map of option names to values stored by ParticipantOptionsDao. The 
+     * generation is the one returned by getParticipantOptionsGeneration() before the options were loaded. If the 
+     * options have been changed since, they are not cached.
+     */
+    public void setParticipantOptions(String healthCode, Map<String,String> options, String generation) {
         try {
-            String redisKey = RedisKey.STUDY.getRedisKey(identifier);
-            jedisOps.del(redisKey);
-        } catch(Throwable e) {
+            String ser = bridgeObjectMapper.writeValueAsString(options);
+            String redisKey = RedisKey.PARTICIPANT_OPTIONS.getRedisKey(healthCode);
+            cacheScripts.setIfGeneration(redisKey, RedisKey.GENERATION.getRedisKey(redisKey), generation, ser,
+                    PARTICIPANT_OPTIONS_EXPIRE_IN_SECONDS);
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    /** Get the generation of a participant's options. Read this before loading the options to cache them. */
+    public String getParticipantOptionsGeneration(String healthCode) {
+        return getGeneration(RedisKey.PARTICIPANT_OPTIONS.getRedisKey(healthCode));
+    }
+
+    /** Get a participant's cached options, or null if they aren't cached. */
+    public Map<String,String> getParticipantOptions(String healthCode) {
+        try {
+            String redisKey = RedisKey.PARTICIPANT_OPTIONS.getRedisKey(healthCode);
+            String ser = jedisOps.get(redisKey);
+            if (ser != null) {
+                return bridgeObjectMapper.readValue(ser, OPTIONS_MAP_TYPE);
+            }
+        } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
         }
+        return null;
+    }
+
+    public void removeParticipantOptions(String healthCode) {
+        invalidate(RedisKey.PARTICIPANT_OPTIONS.getRedisKey(healthCode));
+    }
+
+    /**
+     * Cache the JSON of the summaries of all active studies. The generation is the one returned by 
+     * getStudySummariesGeneration() before the studies were loaded. If a study has changed since, it is not cached.
+     */
+    public void setStudySummaries(String json, String generation) {
+        try {
+            cacheScripts.setIfGeneration(STUDY_SUMMARIES_KEY, RedisKey.GENERATION.getRedisKey(STUDY_SUMMARIES_KEY),
+                    generation, json, STUDY_SUMMARIES_EXPIRE_IN_SECONDS);
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    /** Get the generation of the study summaries. Read this before loading the studies to cache the summaries. */
+    public String getStudySummariesGeneration() {
+        return getGeneration(STUDY_SUMMARIES_KEY);
+    }
+
+    /** Get the cached JSON of the study summaries, or null if they aren't cached. */
+    public String getStudySummaries() {
+        return getString(STUDY_SUMMARIES_KEY);
+    }
+
+    public void removeStudySummaries() {
+        invalidate(STUDY_SUMMARIES_KEY);
     }
 
     public String getString(String cacheKey) {
@@ -268,8 +432,33 @@ public class CacheProvider {
         }
     }
     
+    /**
+     * Get a cached view. If Redis can't be reached, the last copy of the view this server read or cached is returned 
+     * instead.
+     */
+    public String getView(String cacheKey) {
+        return getWithFallback(cacheKey, () -> jedisOps.get(cacheKey));
+    }
+    
+    /**
+     * Cache a view that was just built because it wasn't in the cache. Since nothing was cached, nothing can be left 
+     * stale if Redis can't be reached, so the failure is logged and the view is only kept locally.
+     */
+    public void setView(String cacheKey, String value, int expireInSeconds) {
+        fallbackValues.put(cacheKey, value);
+        try {
+            String result = jedisOps.setex(cacheKey, expireInSeconds, value);
+            if (!"OK".equals(result)) {
+                throw new BridgeServiceException("View storage error");
+            }
+        } catch (Throwable e) {
+            LOG.warn("Could not cache " + cacheKey + " in Redis: " + e.getMessage());
+        }
+    }
+    
     public void removeString(String cacheKey) {
         try {
+            fallbackValues.remove(cacheKey);
             jedisOps.del(cacheKey);
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
@@ -277,6 +466,51 @@ public class CacheProvider {
         }
     }
     
+    private String getGeneration(String redisKey) {
+        try {
+            String generation = jedisOps.get(RedisKey.GENERATION.getRedisKey(redisKey));
+            return (generation != null) ? generation : "";
+        } catch(Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    /** Deletes a cached value and moves it to a new generation, so values loaded before now can't be cached. */
+    private void invalidate(String redisKey) {
+        try {
+            cacheScripts.invalidate(redisKey, RedisKey.GENERATION.getRedisKey(redisKey), BridgeUtils.generateGuid(),
+                    GENERATION_EXPIRE_IN_SECONDS);
+        } catch(Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    /**
+     * Reads a value from Redis, keeping a local copy of it. If Redis can't be reached, returns the local copy, or
+     * throws if there isn't one.
+     */
+    private String getWithFallback(String redisKey, Supplier<String> redisGet) {
+        try {
+            String value = redisGet.get();
+            if (value != null) {
+                fallbackValues.put(redisKey, value);
+            } else {
+                fallbackValues.remove(redisKey);
+            }
+            return value;
+        } catch (Throwable e) {
+            String value = fallbackValues.get(redisKey);
+            if (value == null) {
+                promptToStartRedisIfLocal(e);
+                throw new BridgeServiceException(e);
+            }
+            LOG.warn("Could not read " + redisKey + " from Redis, using local copy: " + e.getMessage());
+            return value;
+        }
+    }
+    
     private void promptToStartRedisIfLocal(Throwable e) {
         if (BridgeConfigFactory.getConfig().isLocal()) {
             throw new BridgeServiceException(
@@ -0,0 +1,99 @@
+package org.sagebionetworks.bridge.cache;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache operations that take more than one Redis command, or that JedisOps doesn't have. Each is done atomically,
+ * in one round trip to Redis.
+ */
+public interface CacheScripts {
+
+    /**
+     * Gets the value of a key and, if the key exists, resets its expiration. Returns null if the key doesn't exist.
+     */
+    String getAndExpire(String key, int expireInSeconds);
+
+    /**
+     * Sets the session token under the user key, and the serialized session under the session key. Both keys expire
+     * when the user key was going to expire. If the user key doesn't exist or has no expiration, they expire in
+     * expireInSeconds.
+     */
+    void setSession(String userKey, String sessionToken, String sessionKey, String session, int expireInSeconds);
+
+    /**
+     * Deletes the key and sets its generation key to a new generation, which expires in generationExpireInSeconds.
+     * Values read before this can no longer be cached with setIfGeneration().
+     */
+    void invalidate(String key, String generationKey, String newGeneration, int generationExpireInSeconds);
+
+    /**
+     * Sets the key to the value, expiring in expireInSeconds, only if the generation key still holds the generation
+     * read before the value was loaded (a missing generation key is the empty string). Returns false if the key was
+     * invalidated in the meantime, in which case the value is not cached.
+     */
+    boolean setIfGeneration(String key, String generationKey, String generation, String value, int expireInSeconds);
+
+    /**
+     * Resets the expiration of the key to expireInMillis, only if the key still holds the value. Returns false if the
+     * key has expired or holds some other value, in which case its expiration is left alone.
+     */
+    boolean expireIfValue(String key, String value, long expireInMillis);
+
+    /** Gets the values of the fields of a hash, in the same order, with null for each field that isn't set. */
+    List<String> getFields(String key, List<String> fields);
+
+    /**
+     * Sets the fields of a hash that aren't already set, only if the generation key still holds the generation read
+     * before the values were loaded. If this creates the hash, it expires in expireInSeconds; otherwise its
+     * expiration is left alone. Returns false if the hash was invalidated in the meantime, in which case nothing is
+     * set.
+     */
+    boolean setFieldsIfGeneration(String key, String generationKey, String generation, Map<String, String> values,
+            int expireInSeconds);
+
+    /**
+     * Sets the generation key of each hash to a new generation, which expires in generationExpireInSeconds, and
+     * replaces the values of those fields that are already set. Fields that aren't set are left unset. The maps are
+     * keyed by hash key.
+     */
+    void setExistingFields(Map<String, String> generationKeys, Map<String, Map<String, String>> values,
+            String newGeneration, int generationExpireInSeconds);
+
+    /**
+     * Deletes a field of a hash and sets the hash's generation key to a new generation, which expires in
+     * generationExpireInSeconds.
+     */
+    void invalidateField(String key, String field, String generationKey, String newGeneration,
+            int generationExpireInSeconds);
+
+    /** Sets the key to the value, expiring in expireInSeconds, only if the key doesn't exist. Returns true if set. */
+    boolean setIfAbsent(String key, String value, int expireInSeconds);
+
+    /** Removes the first element of a list, and counts the elements left. */
+    PopResult pop(String key);
+
+    /** Replaces a list with the values, expiring in expireInSeconds. If there are no values, the list is deleted. */
+    void replaceList(String key, List<String> values, int expireInSeconds);
+
+    /** The element removed from a list by pop(), and the number of elements left in the list. */
+    final class PopResult {
+        private final String element;
+        private final long remaining;
+
+        public PopResult(String element, long remaining) {
+            this.element = element;
+            this.remaining = remaining;
+        }
+
+        /** The removed element, or null if the list was empty. */
+        public String getElement() {
+            return element;
+        }
+
+        public long getRemaining() {
+            return remaining;
+        }
+    }
+
+}
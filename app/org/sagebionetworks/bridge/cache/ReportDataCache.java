@@ -0,0 +1,237 @@
+package org.sagebionetworks.bridge.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.reports.ReportData;
+import org.sagebionetworks.bridge.models.reports.ReportDataKey;
+import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.RedisKey;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * Caches report data by day. Each report is a Redis hash from the date to the JSON of that day's record, so a request
+ * for a date range only loads the days that aren't cached yet, which is most of the benefit when dashboards request
+ * overlapping windows. Days without a record are cached as an empty value, so they aren't looked up again either.
+ * </p>
+ * <p>
+ * Each report has a generation, which changes every time a record is saved or deleted. Days loaded for a range are
+ * only cached if the generation hasn't changed since before they were loaded, so a range loaded before a save or a
+ * delete can't put the old record back. Saved records are written through to days that are already cached; other
+ * days are loaded when they are requested. The hash expires an hour after it was created, and writes don't extend
+ * that, so it only ever holds days that were requested in the last hour.
+ * </p>
+ * <p>
+ * The cache is an optimization. If Redis is unavailable, reports are loaded from DynamoDB and saves skip the cache.
+ * </p>
+ */
+@Component
+public class ReportDataCache {
+    private static final Logger logger = LoggerFactory.getLogger(ReportDataCache.class);
+
+    static final int REPORT_DATA_EXPIRE_IN_SECONDS = 60*60;
+
+    /** Cached value for a day that has no record. */
+    static final String NO_RECORD = "";
+
+    private JedisOps jedisOps;
+    private CacheScripts cacheScripts;
+    private ObjectMapper bridgeObjectMapper = BridgeObjectMapper.get();
+
+    @Autowired
+    final void setJedisOps(JedisOps jedisOps) {
+        this.jedisOps = jedisOps;
+    }
+
+    @Autowired
+    final void setCacheScripts(CacheScripts cacheScripts) {
+        this.cacheScripts = cacheScripts;
+    }
+
+    /**
+     * Returns the report's records from startDate to endDate (inclusive), in date order. Days that aren't cached are
+     * loaded with a single call to the loader, for the range from the first to the last missing day, and cached.
+     */
+    public List<ReportData> getReportData(ReportDataKey key, LocalDate startDate, LocalDate endDate,
+            BiFunction<LocalDate, LocalDate, List<? extends ReportData>> loader) {
+        checkNotNull(key);
+        checkNotNull(startDate);
+        checkNotNull(endDate);
+        checkNotNull(loader);
+
+        List<String> dates = Lists.newArrayList();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            dates.add(date.toString());
+        }
+        if (dates.isEmpty()) {
+            return Lists.newArrayList();
+        }
+        String redisKey = getRedisKey(key);
+        String generationKey = RedisKey.GENERATION.getRedisKey(redisKey);
+        List<String> values;
+        String generation = null;
+        try {
+            values = Lists.newArrayList(cacheScripts.getFields(redisKey, dates));
+            if (values.contains(null)) {
+                // Read before loading, so a save or delete while we load stops us from caching what we loaded.
+                generation = jedisOps.get(generationKey);
+                if (generation == null) {
+                    generation = "";
+                }
+            }
+        } catch(RuntimeException e) {
+            logger.warn("Could not read report from the cache, loading it from DynamoDB", e);
+            return Lists.newArrayList(loader.apply(startDate, endDate));
+        }
+
+        int firstMissing = values.indexOf(null);
+        if (firstMissing >= 0) {
+            int lastMissing = values.lastIndexOf(null);
+            Map<String, ReportData> loaded = Maps.newHashMap();
+            for (ReportData reportData : loader.apply(LocalDate.parse(dates.get(firstMissing)),
+                    LocalDate.parse(dates.get(lastMissing)))) {
+                loaded.put(reportData.getDate().toString(), reportData);
+            }
+            Map<String, String> missingValues = Maps.newLinkedHashMap();
+            for (int i = firstMissing; i <= lastMissing; i++) {
+                ReportData reportData = loaded.get(dates.get(i));
+                String value = (reportData == null) ? NO_RECORD : serialize(reportData);
+                if (values.get(i) == null) {
+                    missingValues.put(dates.get(i), value);
+                }
+                values.set(i, value);
+            }
+            try {
+                cacheScripts.setFieldsIfGeneration(redisKey, generationKey, generation, missingValues,
+                        REPORT_DATA_EXPIRE_IN_SECONDS);
+            } catch(RuntimeException e) {
+                logger.warn("Could not cache report data", e);
+            }
+        }
+
+        List<ReportData> results = Lists.newArrayListWithCapacity(values.size());
+        try {
+            for (String value : values) {
+                if (!NO_RECORD.equals(value)) {
+                    ReportData reportData = bridgeObjectMapper.readValue(value, ReportData.class);
+                    reportData.setKey(key.getKeyString());
+                    results.add(reportData);
+                }
+            }
+        } catch(IOException e) {
+            throw new BridgeServiceException(e);
+        }
+        return results;
+    }
+
+    /** Writes a record that has just been saved through to the cache, if its day is cached. */
+    public void setReportData(ReportDataKey key, ReportData reportData) {
+        checkNotNull(key);
+        checkNotNull(reportData);
+
+        writeThrough(ImmutableList.of(getRedisKey(key)), ImmutableList.of(reportData));
+    }
+
+    /**
+     * Writes records that have just been saved through to the cache, in one round trip. The records can belong to
+     * different reports; each is cached under the report named by its key.
+     */
+    public void setReportData(List<? extends ReportData> reportDataList) {
+        checkNotNull(reportDataList);
+
+        if (reportDataList.isEmpty()) {
+            return;
+        }
+        List<String> redisKeys = Lists.newArrayListWithCapacity(reportDataList.size());
+        for (ReportData reportData : reportDataList) {
+            redisKeys.add(getRedisKey(reportData.getKey()));
+        }
+        writeThrough(redisKeys, reportDataList);
+    }
+
+    /** Removes one day of a report from the cache. It is loaded again the next time it's requested. */
+    public void removeReportData(ReportDataKey key, LocalDate date) {
+        checkNotNull(key);
+        checkNotNull(date);
+
+        String redisKey = getRedisKey(key);
+        try {
+            cacheScripts.invalidateField(redisKey, date.toString(), RedisKey.GENERATION.getRedisKey(redisKey),
+                    BridgeUtils.generateGuid(), CacheProvider.GENERATION_EXPIRE_IN_SECONDS);
+        } catch(RuntimeException e) {
+            logger.error("Could not remove report record for " + date + " from the cache", e);
+        }
+    }
+
+    /** Removes every day of a report from the cache. */
+    public void removeReportData(ReportDataKey key) {
+        checkNotNull(key);
+
+        String redisKey = getRedisKey(key);
+        try {
+            cacheScripts.invalidate(redisKey, RedisKey.GENERATION.getRedisKey(redisKey), BridgeUtils.generateGuid(),
+                    CacheProvider.GENERATION_EXPIRE_IN_SECONDS);
+        } catch(RuntimeException e) {
+            logger.error("Could not remove report from the cache", e);
+        }
+    }
+
+    // Changes the generation of each report, and replaces the days of the records that are already cached. The
+    // redisKeys are the reports' hashes, in the same order as the records.
+    private void writeThrough(List<String> redisKeys, List<? extends ReportData> reportDataList) {
+        Map<String, String> generationKeys = Maps.newHashMap();
+        Map<String, Map<String, String>> values = Maps.newLinkedHashMap();
+        for (int i = 0; i < reportDataList.size(); i++) {
+            String redisKey = redisKeys.get(i);
+            Map<String, String> reportValues = values.get(redisKey);
+            if (reportValues == null) {
+                generationKeys.put(redisKey, RedisKey.GENERATION.getRedisKey(redisKey));
+                reportValues = Maps.newLinkedHashMap();
+                values.put(redisKey, reportValues);
+            }
+            ReportData reportData = reportDataList.get(i);
+            reportValues.put(reportData.getDate().toString(), serialize(reportData));
+        }
+        try {
+            cacheScripts.setExistingFields(generationKeys, values, BridgeUtils.generateGuid(),
+                    CacheProvider.GENERATION_EXPIRE_IN_SECONDS);
+        } catch(RuntimeException e) {
+            logger.error("Could not write " + reportDataList.size() + " report records through to the cache", e);
+        }
+    }
+
+    private String serialize(ReportData reportData) {
+        try {
+            return bridgeObjectMapper.writeValueAsString(reportData);
+        } catch(JsonProcessingException e) {
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    private static String getRedisKey(ReportDataKey key) {
+        return getRedisKey(key.getKeyString());
+    }
+
+    private static String getRedisKey(String keyString) {
+        return RedisKey.REPORT_DATA.getRedisKey(keyString);
+    }
+}
@@ -1,7 +1,14 @@
 package org.sagebionetworks.bridge.cache;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
 import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.redis.RedisKey;
 import org.slf4j.Logger;
@@ -13,6 +20,19 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.base.Joiner;
 import com.google.common.base.Supplier;
 
+/**
+ * <p>
+ * Caches the JSON of views in Redis.
+ * </p>
+ * <p>
+ * Cache misses are coalesced, so a popular view that expires or is removed isn't rebuilt by every caller at once.
+ * Within this server, only one caller per key runs the supplier, and the others wait for its result. Across servers,
+ * the server that rebuilds the view holds a short Redis lease. Other servers poll the cache briefly while the lease is
+ * held, and run the supplier themselves if the view still hasn't appeared. Callers are request threads, so they never
+ * wait out the whole lease, and if the lease can't be taken at all (e.g. Redis is unreachable), the view is built
+ * without one.
+ * </p>
+ */
 @Component
 public class ViewCache {
     
@@ -20,6 +40,18 @@ public class ViewCache {
     
     private static final Joiner COLON_JOINER = Joiner.on(":");
     
+    /** How long a server can hold the lease to rebuild a view. */
+    static final int VIEW_LEASE_EXPIRE_IN_SECONDS = 10;
+    
+    /** How often servers without the lease check whether the view has been rebuilt. */
+    static final long VIEW_LEASE_POLL_INTERVAL_MILLIS = 100;
+    
+    /**
+     * How long servers without the lease wait for the view before building it themselves. Most views build in well
+     * under this, and it's much shorter than the lease, so a slow or failed rebuild doesn't hold up request threads.
+     */
+    static final long VIEW_LEASE_MAX_WAIT_MILLIS = 1000;
+    
     public final class ViewCacheKey<T> {
         private final String key;
         public ViewCacheKey(String key) {
@@ -30,34 +62,57 @@ public class ViewCache {
         }
     };
     
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlightViews = new ConcurrentHashMap<>();
     private CacheProvider cache;
+    private DistributedLockDao lockDao;
     
     @Autowired
     public void setCacheProvider(CacheProvider cacheProvider) {
         this.cache = cacheProvider;
     }
     
+    @Autowired
+    public void setDistributedLockDao(DistributedLockDao lockDao) {
+        this.lockDao = lockDao;
+    }
+    
     /**
-     * Get the JSON for the viewCacheKey, or if nothing has been cached, call the supplier, 
-     * cache the JSON representation of the object returned, and return that JSON.
+     * Get the JSON for the viewCacheKey, or if nothing has been cached, call the supplier,
+     * cache the JSON representation of the object returned, and return that JSON. Concurrent
+     * misses for the same key share a single call to the supplier.
      * @param key
      * @param supplier
      * @return
      */
     public <T> String getView(ViewCacheKey<T> key, Supplier<T> supplier) {
+        String value = cache.getView(key.getKey());
+        if (value != null) {
+            logger.debug("Retrieving " +key.getKey()+"' JSON from cache");
+            return value;
+        }
+    
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = inFlightViews.putIfAbsent(key.getKey(), future);
+        if (inFlight != null) {
+            logger.debug("Waiting for JSON for '" +key.getKey()+"' to be cached by another request");
+            return waitForView(inFlight);
+        }
         try {
-            String value = cache.getString(key.getKey());
+            // Another request may have cached the view between our read and our claim on the key.
+            value = cache.getView(key.getKey());
             if (value == null) {
-                value = cacheView(key, supplier);
-            } else {
-                logger.debug("Retrieving " +key.getKey()+"' JSON from cache");
+                value = loadView(key, supplier);
             }
+            future.complete(value);
             return value;
-        } catch(JsonProcessingException e) {
-            throw new BridgeServiceException(e);
+        } catch(RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightViews.remove(key.getKey(), future);
         }
     }
-
+    
     /**
      * Remove the JSON for the view represented by the viewCacheKey.
      * @param key
@@ -68,7 +123,7 @@ public class ViewCache {
     }
     
     /**
-     * Create a viewCacheKey for a particular type of entity, and the set of identifiers 
+     * Create a viewCacheKey for a particular type of entity, and the set of identifiers
      * that will identify that entity.
      * @param clazz
      * @param identifiers
@@ -79,11 +134,85 @@ public class ViewCache {
         return new ViewCacheKey<T>(RedisKey.VIEW.getRedisKey(id + ":" + clazz.getName()));
     }
     
+    // Builds the view under the Redis lease. If another server holds the lease, wait briefly for it to cache the view
+    // instead.
+    private <T> String loadView(ViewCacheKey<T> key, Supplier<T> supplier) {
+        String lock = null;
+        try {
+            lock = lockDao.acquireLock(ViewCache.class, key.getKey(), VIEW_LEASE_EXPIRE_IN_SECONDS);
+        } catch(ConcurrentModificationException e) {
+            String value = pollForView(key);
+            if (value != null) {
+                return value;
+            }
+            // The other server didn't finish in time. Build it ourselves rather than hold up the request.
+            logger.info("View '" +key.getKey()+"' wasn't cached by the server holding the lease, building it");
+        } catch(RuntimeException e) {
+            // The lease only coalesces rebuilds across servers. Without it, the view is still correct.
+            logger.warn("Could not acquire lease for '" +key.getKey()+"', building the view without it", e);
+        }
+        try {
+            return cacheView(key, supplier);
+        } catch(JsonProcessingException e) {
+            throw new BridgeServiceException(e);
+        } finally {
+            if (lock != null) {
+                releaseLease(key, lock);
+            }
+        }
+    }
+    
+    private <T> String pollForView(ViewCacheKey<T> key) {
+        long deadline = System.currentTimeMillis() + VIEW_LEASE_MAX_WAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(VIEW_LEASE_POLL_INTERVAL_MILLIS);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            try {
+                String value = cache.getView(key.getKey());
+                if (value != null) {
+                    return value;
+                }
+            } catch(RuntimeException e) {
+                logger.warn("Could not read view '" +key.getKey()+"' while waiting for it, building it", e);
+                return null;
+            }
+        }
+        return null;
+    }
+    
+    private <T> void releaseLease(ViewCacheKey<T> key, String lock) {
+        try {
+            lockDao.releaseLock(ViewCache.class, key.getKey(), lock);
+        } catch(RuntimeException e) {
+            // The lease expires on its own.
+            logger.warn("Could not release lease for '" +key.getKey()+"'", e);
+        }
+    }
+    
+    private static String waitForView(CompletableFuture<String> inFlight) {
+        try {
+            return inFlight.get();
+        } catch(ExecutionException e) {
+            // Callers see the same exception the supplier threw, as if they had called it themselves.
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new BridgeServiceException(e.getCause());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(e);
+        }
+    }
+    
     private <T> String cacheView(ViewCacheKey<T> key, Supplier<T> supplier) throws JsonProcessingException {
         logger.debug("Caching JSON for " +key.getKey()+"'");
         T object = supplier.get();
         String value = BridgeObjectMapper.get().writeValueAsString(object);
-        cache.setString(key.getKey(), value, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        cache.setView(key.getKey(), value, BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
         return value;
     }
     
@@ -14,7 +14,11 @@ import org.springframework.context.annotation.Configuration;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
+import org.sagebionetworks.bridge.cache.CacheScripts;
+import org.sagebionetworks.bridge.redis.InstrumentedJedisPool;
 import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.LuaCacheScripts;
+import org.sagebionetworks.bridge.redis.RedisCircuitBreaker;
 
 /**
  * Production-only Spring config. This includes things that we don't want in our unit tests for
@@ -36,6 +40,12 @@ public class BridgeProductionSpringConfig {
         return new JedisOps(jedisPool);
     }
 
+    @Bean(name = "cacheScripts")
+    @Resource(name = "jedisPool")
+    public CacheScripts cacheScripts(final JedisPool jedisPool) {
+        return new LuaCacheScripts(jedisPool);
+    }
+
     @Bean(name = "jedisPool")
     public JedisPool jedisPool() throws Exception {
         // Configure pool
@@ -79,12 +89,13 @@ public class BridgeProductionSpringConfig {
         URI redisURI = new URI(url);
         String password = redisURI.getUserInfo().split(":",2)[1];
 
+        RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker(
+                bridgeConfig.getPropertyAsInt("redis.circuit.failure.threshold"),
+                bridgeConfig.getPropertyAsInt("redis.circuit.open.millis"));
         if (bridgeConfig.isLocal() || password.equals("AWS")) {
-            return new JedisPool(poolConfig, redisURI.getHost(), redisURI.getPort(),
-                    bridgeConfig.getPropertyAsInt("redis.timeout"));
-        } else {
-            return new JedisPool(poolConfig, redisURI.getHost(), redisURI.getPort(),
-                    bridgeConfig.getPropertyAsInt("redis.timeout"), password);
+            password = null;
         }
+        return new InstrumentedJedisPool(poolConfig, redisURI.getHost(), redisURI.getPort(),
+                bridgeConfig.getPropertyAsInt("redis.timeout"), password, circuitBreaker);
     }
 }
@@ -6,8 +6,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
 
@@ -29,6 +32,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 import org.sagebionetworks.bridge.dynamodb.AnnotationBasedTableCreator;
+import org.sagebionetworks.bridge.dynamodb.DynamoCapacityGovernor;
 import org.sagebionetworks.bridge.dynamodb.DynamoCompoundActivityDefinition;
 import org.sagebionetworks.bridge.dynamodb.DynamoNamingHelper;
 import org.sagebionetworks.bridge.dynamodb.DynamoNotificationRegistration;
@@ -77,9 +81,14 @@ import org.sagebionetworks.bridge.hibernate.HibernateAccount;
 import org.sagebionetworks.bridge.hibernate.HibernateSharedModuleMetadata;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.s3.S3Helper;
+import org.sagebionetworks.bridge.services.UserDataDownloadService;
+import org.sagebionetworks.bridge.services.UserDataDownloadViaSqsService;
+import org.sagebionetworks.bridge.services.export.ExportStore;
+import org.sagebionetworks.bridge.services.export.LocalExportStore;
+import org.sagebionetworks.bridge.services.export.S3ExportStore;
+import org.sagebionetworks.bridge.services.export.UserDataExportService;
 import org.sagebionetworks.bridge.upload.DecryptHandler;
 import org.sagebionetworks.bridge.upload.IosSchemaValidationHandler2;
-import org.sagebionetworks.bridge.upload.ParseJsonHandler;
 import org.sagebionetworks.bridge.upload.S3DownloadHandler;
 import org.sagebionetworks.bridge.upload.StrictValidationHandler;
 import org.sagebionetworks.bridge.upload.TranscribeConsentHandler;
@@ -155,7 +164,14 @@ public class BridgeSpringConfig {
         int maxRetries = bridgeConfig().getPropertyAsInt("ddb.max.retries");
         ClientConfiguration awsClientConfig = PredefinedClientConfigurations.dynamoDefault()
                 .withMaxErrorRetry(maxRetries);
-        return new AmazonDynamoDBClient(awsCredentials(), awsClientConfig);
+        AmazonDynamoDBClient client = new AmazonDynamoDBClient(awsCredentials(), awsClientConfig);
+        client.addRequestHandler(dynamoCapacityGovernor());
+        return client;
+    }
+
+    @Bean(name = "dynamoCapacityGovernor")
+    public DynamoCapacityGovernor dynamoCapacityGovernor() {
+        return new DynamoCapacityGovernor(bridgeConfig().getPropertyAsInt("ddb.governor.background.capacity"));
     }
     
     @Bean(name = "snsClient")
@@ -249,6 +265,80 @@ public class BridgeSpringConfig {
         return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("async.worker.thread.count"));
     }
 
+    @Bean(name = "backfillExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService backfillExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("backfill.worker.thread.count"));
+    }
+
+    // Publishes retry with backoff on the worker threads, so the queue is bounded. Publishes beyond that are rejected.
+    @Bean(name = "notificationExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService notificationExecutorService(BridgeConfig bridgeConfig) {
+        int threadCount = bridgeConfig.getPropertyAsInt("notification.worker.thread.count");
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bridgeConfig.getPropertyAsInt("notification.queue.size")),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Bulk report saves wait for their batch writes on the request thread, so they get their own small pool rather
+    // than sharing one with other async work. Batches beyond the queue are written on the request thread itself.
+    @Bean(name = "reportDataExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService reportDataExecutorService(BridgeConfig bridgeConfig) {
+        int threadCount = bridgeConfig.getPropertyAsInt("report.batch.thread.count");
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bridgeConfig.getPropertyAsInt("report.batch.queue.size")),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Refills of the external ID queues, kept off the shared async pool so a burst of sign ups can't crowd out other
+    // work. Refills beyond the queue are rejected, and tried again on a later sign up.
+    @Bean(name = "externalIdPoolExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService externalIdPoolExecutorService(BridgeConfig bridgeConfig) {
+        int threadCount = bridgeConfig.getPropertyAsInt("external.id.pool.refill.thread.count");
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bridgeConfig.getPropertyAsInt("external.id.pool.refill.queue.size")));
+    }
+
+    @Bean(name = "parallelScanExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService parallelScanExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("ddb.parallel.scan.thread.count"));
+    }
+
+    // Exports are large and long-running, so there are only a few workers, and a bounded queue. Requests beyond that
+    // are rejected.
+    @Bean(name = "userDataExportExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService userDataExportExecutorService(BridgeConfig bridgeConfig) {
+        int threadCount = bridgeConfig.getPropertyAsInt("udd.export.thread.count");
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bridgeConfig.getPropertyAsInt("udd.export.queue.size")));
+    }
+
+    @Bean(name = "userDataExportStore")
+    @Autowired
+    public ExportStore userDataExportStore(BridgeConfig bridgeConfig, AmazonS3Client s3Client) {
+        if ("local".equals(bridgeConfig.getProperty("udd.export.store"))) {
+            return new LocalExportStore(Paths.get(bridgeConfig.getProperty("udd.export.local.dir")));
+        }
+        return new S3ExportStore(s3Client, bridgeConfig.getPropertyAsInt("udd.export.part.size"));
+    }
+
+    // User data downloads are handed off to the User Data Download Service by default. Self-hosted deployments can
+    // export on this server instead.
+    @Bean(name = "userDataDownloadService")
+    @Autowired
+    public UserDataDownloadService userDataDownloadService(BridgeConfig bridgeConfig,
+            UserDataDownloadViaSqsService userDataDownloadViaSqsService, UserDataExportService userDataExportService) {
+        if (Boolean.valueOf(bridgeConfig.getProperty("udd.export.enabled"))) {
+            return userDataExportService;
+        }
+        return userDataDownloadViaSqsService;
+    }
+
     @Bean(name = "supportEmail")
     @Resource(name = "bridgeConfig")
     public String supportEmail(BridgeConfig bridgeConfig) {
@@ -449,13 +539,12 @@ public class BridgeSpringConfig {
     @Bean(name = "uploadValidationHandlerList")
     @Autowired
     public List<UploadValidationHandler> uploadValidationHandlerList(S3DownloadHandler s3DownloadHandler,
-            DecryptHandler decryptHandler, UnzipHandler unzipHandler, ParseJsonHandler parseJsonHandler,
+            DecryptHandler decryptHandler, UnzipHandler unzipHandler,
             IosSchemaValidationHandler2 iosSchemaValidationHandler2,
             StrictValidationHandler strictValidationHandler, TranscribeConsentHandler transcribeConsentHandler,
             UploadArtifactsHandler uploadArtifactsHandler) {
-        return ImmutableList.of(s3DownloadHandler, decryptHandler, unzipHandler, parseJsonHandler,
-                iosSchemaValidationHandler2, strictValidationHandler, transcribeConsentHandler,
-                uploadArtifactsHandler);
+        return ImmutableList.of(s3DownloadHandler, decryptHandler, unzipHandler, iosSchemaValidationHandler2,
+                strictValidationHandler, transcribeConsentHandler, uploadArtifactsHandler);
     }
 
     @Bean(name = "uploadSchemaDdbMapper")
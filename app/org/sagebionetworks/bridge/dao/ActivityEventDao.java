@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
@@ -13,6 +14,13 @@ public interface ActivityEventDao {
      */
     void publishEvent(ActivityEvent event);
     
+    /**
+     * Publish several events at once, with the same rules as publishEvent(). Existing events are read in one batch 
+     * and the events that need to be written are saved in one batch. Events must not share a health code and event 
+     * ID; callers should coalesce those to the latest event first.
+     */
+    void publishEvents(List<ActivityEvent> events);
+    
     /**
      * Get a map of events, where the string key is an event identifier, and the value 
      * is the timestamp of the event. This map will include calculated events like 
@@ -2,6 +2,7 @@ package org.sagebionetworks.bridge.dao;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.sagebionetworks.bridge.models.backfill.BackfillRecord;
 import org.sagebionetworks.bridge.models.backfill.BackfillStatus;
@@ -45,4 +46,16 @@ public interface BackfillDao {
      * Gets the number of records of a particular task.
      */
     int getRecordCount(String taskId);
+
+    /**
+     * Creates a checkpoint record for the specified task. A checkpoint marks a unit of work (for example, an upload
+     * ID or a partition key) as done, so that a later run of the same backfill can skip it. This is safe to call
+     * concurrently for the same task.
+     */
+    BackfillRecord createCheckpoint(String taskId, String checkpoint);
+
+    /**
+     * Gets the set of checkpoints recorded for a particular task.
+     */
+    Set<String> getCheckpoints(String taskId);
 }
@@ -1,5 +1,8 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Collection;
+import java.util.Map;
+
 import org.sagebionetworks.bridge.models.Criteria;
 
 public interface CriteriaDao {
@@ -16,6 +19,12 @@ public interface CriteriaDao {
      */
     Criteria getCriteria(String key);
 
+    /**
+     * Get the criteria objects with any of these keys, in a batch rather than one at a time. The returned map is 
+     * keyed by criteria key; keys that have no criteria are not in the map.
+     */
+    Map<String,Criteria> getCriteriaMap(Collection<String> keys);
+
     /**
      * Delete the criteria if it exists (if criteria does not exist, does not throw
      * EntityNotFoundException).
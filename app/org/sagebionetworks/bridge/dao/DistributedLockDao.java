@@ -12,4 +12,11 @@ public interface DistributedLockDao {
     String acquireLock(Class<?> clazz, String identifier, int expireInSeconds);
 
     boolean releaseLock(Class<?> clazz, String identifier, String lock);
+
+    /**
+     * Pushes the expiration of a lock we hold out to expireInSeconds from now. Long-running holders call this
+     * periodically instead of guessing up front how long they need the lock. Returns false if the lock is no longer
+     * held by the caller (for example, because it already expired).
+     */
+    boolean renewLock(Class<?> clazz, String identifier, String lock, int expireInSeconds);
 }
@@ -16,6 +16,7 @@ public interface ExternalIdDao {
     String EXTERNAL_ID_GET_RATE = "external.id.get.rate";
     String CONFIG_KEY_ADD_LIMIT = "external.id.add.limit";
     String CONFIG_KEY_LOCK_DURATION = "external.id.lock.duration";
+    String CONFIG_KEY_UNASSIGNED_INDEX_ENABLED = "external.id.unassigned.index.enabled";
 
     /**
      * Retrieve external IDs that match the ID and/or assignment filters. These records are returned in pages of pageSize 
@@ -70,4 +71,9 @@ public interface ExternalIdDao {
      */
     void deleteExternalIds(StudyIdentifier studyId, List<String> externalIdentifiers);
     
+    /**
+     * Adds any of the study's unassigned external IDs that were created before the unassigned ID index to that index. 
+     * This is used by the backfill that populates the index. Returns the number of IDs that were added.
+     */
+    int backfillUnassignedIndex(StudyIdentifier studyId);
 }
@@ -1,5 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.List;
+
 import javax.annotation.Nonnull;
 
 import org.sagebionetworks.bridge.models.healthdata.HealthDataAttachment;
@@ -20,4 +22,14 @@ public interface HealthDataAttachmentDao {
 
     /** Gets a builder instance, used for building prototype health data records for create or update. */
     HealthDataAttachmentBuilder getRecordBuilder();
+
+    /**
+     * DAO method used by the user data export to find the attachments of a health data record. The returned
+     * attachments' IDs are also their keys in the attachment bucket.
+     *
+     * @param recordId
+     *         ID of the health data record
+     * @return the record's attachments, or an empty list if it has none
+     */
+    List<HealthDataAttachment> getAttachmentsForRecord(@Nonnull String recordId);
 }
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
 import javax.annotation.Nonnull;
+import java.util.Iterator;
 import java.util.List;
 
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
@@ -37,6 +38,16 @@ public interface HealthDataDao {
      */
     HealthDataRecord getRecordById(@Nonnull String id);
 
+    /**
+     * DAO method used to fetch what we know about a health data record (schema, createdOn, exporter status, and so on)
+     * without reading its data and metadata. The returned record has no data or metadata, and must not be saved.
+     *
+     * @param id
+     *         record ID
+     * @return health data record without its data and metadata, or null if there is no such record
+     */
+    HealthDataRecord getRecordInfoById(@Nonnull String id);
+
     /**
      * DAO method used by worker apps to query all health data records uploaded for a specific date, generally used for
      * export.
@@ -63,7 +74,23 @@ public interface HealthDataDao {
      *      createdOn in Long format -- same as in ddb
      * @param schemaId
      *      schemaId in String format
-     * @return list of all health records matching criterion
+     * @return list of all health records matching criterion, without their data and metadata
      */
     List<HealthDataRecord> getRecordsByHealthCodeCreatedOnSchemaId(@Nonnull String healthCode, @Nonnull Long createdOn, @Nonnull String schemaId);
+
+    /**
+     * DAO method used by the user data export to read all of a participant's records created in the given range, in
+     * order of creation. Records are loaded a page at a time as the iterator advances, so an export never holds all of
+     * a participant's records in memory.
+     *
+     * @param healthCode
+     *         health code of the participant
+     * @param createdOnStart
+     *         start of the createdOn range (inclusive), in epoch milliseconds
+     * @param createdOnEnd
+     *         end of the createdOn range (inclusive), in epoch milliseconds
+     * @return iterator over the matching records
+     */
+    Iterator<HealthDataRecord> getRecordsForHealthCode(@Nonnull String healthCode, long createdOnStart,
+            long createdOnEnd);
 }
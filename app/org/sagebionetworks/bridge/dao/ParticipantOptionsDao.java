@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Collection;
 import java.util.Map;
 
 import org.sagebionetworks.bridge.models.accounts.AllParticipantOptionsLookup;
@@ -24,6 +25,12 @@ public interface ParticipantOptionsDao {
      */
     ParticipantOptionsLookup getOptions(String healthCode);
     
+    /**
+     * Get all the options for a number of participants, in as few calls to the database as possible. Health codes 
+     * without options are returned with empty lookups.
+     */
+    AllParticipantOptionsLookup getOptions(Collection<String> healthCodes);
+    
     /**
      * Get all the options for all participants in a study. 
      */
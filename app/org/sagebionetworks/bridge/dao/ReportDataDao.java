@@ -1,5 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.List;
+
 import org.joda.time.LocalDate;
 
 import org.sagebionetworks.bridge.models.DateRangeResourceList;
@@ -27,6 +29,16 @@ public interface ReportDataDao {
      *         report data object
      */
     void saveReportData(ReportData reportData);
+
+    /**
+     * Writes many report data records to the backing store, in batches that are written in parallel. Records the
+     * store doesn't accept after retrying are returned, so the caller can report them; the rest have been saved.
+     *
+     * @param reportDataList
+     *         report data objects, which must already have their keys
+     * @return the records that could not be saved
+     */
+    List<ReportData> batchSaveReportData(List<ReportData> reportDataList);
     
     /***
      * Delete all records regardless of date for a report. This can be used as part of testing, 
@@ -1,5 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 import org.joda.time.DateTime;
@@ -21,6 +23,12 @@ public interface ScheduledActivityDao {
      * Load an individual activity.
      */
     ScheduledActivity getActivity(String healthCode, String guid);
+    
+    /**
+     * Load a set of activities for a user in one batch. Activities that don't exist are not in the returned 
+     * list, and the list is in no particular order.
+     */
+    List<ScheduledActivity> getActivitiesByGuid(String healthCode, Collection<String> guids);
    
     /**
      * Get a list of activities for a user. The list is derived from the scheduler.
@@ -46,4 +54,10 @@ public interface ScheduledActivityDao {
      */
     void deleteActivitiesForUser(String healthCode);
     
+    /**
+     * Get all the activity records for this user, for the user data export. Records are loaded a page at a time as 
+     * the iterator advances. The activities have no time zone.
+     */
+    Iterator<? extends ScheduledActivity> getActivitiesForUser(String healthCode);
+    
 }
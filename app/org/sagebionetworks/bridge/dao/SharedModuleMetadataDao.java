@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
 import java.util.List;
+import java.util.Set;
 
 import org.sagebionetworks.bridge.models.sharedmodules.SharedModuleMetadata;
 
@@ -20,13 +21,19 @@ public interface SharedModuleMetadataDao {
 
     /**
      * <p>
-     * Queries module metadata using the given SQL-like WHERE clause.
-     * </p>
-     * <p>
-     * Example: "published = true AND os = 'iOS'"
+     * Queries module metadata. All filters are applied by the database. Each filter is optional.
      * </p>
+     * <ul>
+     * <li>id - only module versions with this module ID</li>
+     * <li>mostRecent - only the most recent version of each module. If published is also true, this is the most
+     * recent published version.</li>
+     * <li>published - only published module versions</li>
+     * <li>whereClause - an SQL-like WHERE clause, example: "published = true AND os = 'iOS'"</li>
+     * <li>tags - only module versions that have at least one of these tags. This is applied after mostRecent.</li>
+     * </ul>
      */
-    List<SharedModuleMetadata> queryMetadata(String whereClause);
+    List<SharedModuleMetadata> queryMetadata(String id, boolean mostRecent, boolean published, String whereClause,
+            Set<String> tags);
 
     /** Updates the specified metadata object. */
     SharedModuleMetadata updateMetadata(SharedModuleMetadata metadata);
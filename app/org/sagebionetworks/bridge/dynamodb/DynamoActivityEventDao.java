@@ -7,6 +7,7 @@ import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectTy
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
 
@@ -26,6 +27,7 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 @Component
 public class DynamoActivityEventDao implements ActivityEventDao {
@@ -55,6 +57,38 @@ public class DynamoActivityEventDao implements ActivityEventDao {
         }
     }
 
+    @Override
+    public void publishEvents(List<ActivityEvent> events) {
+        checkNotNull(events);
+        if (events.isEmpty()) {
+            return;
+        }
+        
+        List<Object> hashKeys = Lists.newArrayListWithCapacity(events.size());
+        for (ActivityEvent event : events) {
+            DynamoActivityEvent hashKey = new DynamoActivityEvent();
+            hashKey.setHealthCode(event.getHealthCode());
+            hashKey.setEventId(event.getEventId());
+            hashKeys.add(hashKey);
+        }
+        
+        Map<String,ActivityEvent> savedEvents = Maps.newHashMap();
+        for (List<Object> tableResults : mapper.batchLoad(hashKeys).values()) {
+            for (Object object : tableResults) {
+                ActivityEvent savedEvent = (ActivityEvent)object;
+                savedEvents.put(getBatchKey(savedEvent), savedEvent);
+            }
+        }
+        
+        List<ActivityEvent> eventsToSave = events.stream()
+                .filter(event -> isLaterNonEnrollmentEvent(savedEvents.get(getBatchKey(event)), event))
+                .collect(Collectors.toList());
+        if (!eventsToSave.isEmpty()) {
+            List<FailedBatch> failures = mapper.batchSave(eventsToSave);
+            BridgeUtils.ifFailuresThrowException(failures);
+        }
+    }
+
     @Override
     public Map<String, DateTime> getActivityEventMap(String healthCode) {
         checkNotNull(healthCode);
@@ -97,6 +131,10 @@ public class DynamoActivityEventDao implements ActivityEventDao {
         }
     }
     
+    private static String getBatchKey(ActivityEvent event) {
+        return event.getHealthCode() + ":" + event.getEventId();
+    }
+    
     private boolean isEnrollment(ActivityEvent event) {
         return ENROLLMENT.name().toLowerCase().equals(event.getEventId());
     }
@@ -4,8 +4,10 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
@@ -17,6 +19,7 @@ import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import org.sagebionetworks.bridge.dao.BackfillDao;
 import org.sagebionetworks.bridge.models.backfill.BackfillRecord;
 import org.sagebionetworks.bridge.models.backfill.BackfillStatus;
@@ -27,6 +30,10 @@ import org.springframework.stereotype.Component;
 @Component
 public class DynamoBackfillDao implements BackfillDao {
 
+    // Records are keyed by millisecond timestamp. Concurrent backfill workers can collide on the same millisecond, so
+    // we retry with the next timestamp a few times.
+    private static final int MAX_CHECKPOINT_TRIES = 10;
+
     private DynamoDBMapper taskMapper;
     private DynamoDBMapper recordMapper;
 
@@ -107,6 +114,37 @@ public class DynamoBackfillDao implements BackfillDao {
         return count;
     }
 
+    @Override
+    public BackfillRecord createCheckpoint(String taskId, String checkpoint) {
+        checkArgument(isNotBlank(taskId));
+        checkArgument(isNotBlank(checkpoint));
+        DynamoBackfillRecord record = new DynamoBackfillRecord(taskId, checkpoint);
+        for (int numTries = 1; ; numTries++) {
+            try {
+                recordMapper.save(record);
+                return record;
+            } catch (ConditionalCheckFailedException ex) {
+                if (numTries >= MAX_CHECKPOINT_TRIES) {
+                    throw ex;
+                }
+                record.setTimestamp(record.getTimestamp() + 1);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getCheckpoints(String taskId) {
+        checkArgument(isNotBlank(taskId));
+        DynamoDBQueryExpression<DynamoBackfillRecord> queryExpression = getRecordQueryExpression(taskId, 0);
+        Set<String> checkpointSet = new HashSet<>();
+        for (DynamoBackfillRecord record : recordMapper.query(DynamoBackfillRecord.class, queryExpression)) {
+            if (record.getCheckpoint() != null) {
+                checkpointSet.add(record.getCheckpoint());
+            }
+        }
+        return checkpointSet;
+    }
+
     private DynamoDBQueryExpression<DynamoBackfillRecord> getRecordQueryExpression(String taskId, long since) {
         final DynamoBackfillRecord hashKey = new DynamoBackfillRecord();
         hashKey.setTaskId(taskId);
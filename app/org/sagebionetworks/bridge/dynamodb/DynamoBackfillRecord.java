@@ -25,6 +25,7 @@ public class DynamoBackfillRecord implements BackfillRecord {
     private String studyId;
     private String accountId;
     private String operation;
+    private String checkpoint;
 
     /**
      * Needed by the DynamoDB mapper.
@@ -40,6 +41,12 @@ public class DynamoBackfillRecord implements BackfillRecord {
         this.operation = operation;
     }
 
+    DynamoBackfillRecord(String taskId, String checkpoint) {
+        this.taskId = taskId;
+        this.timestamp = DateTime.now(DateTimeZone.UTC).getMillis();
+        this.checkpoint = checkpoint;
+    }
+
     @DynamoDBHashKey
     @Override
     public String getTaskId() {
@@ -93,6 +100,16 @@ public class DynamoBackfillRecord implements BackfillRecord {
         this.operation = operation;
     }
 
+    /**
+     * Unit of work marked as done by this record, for resuming failed backfills. Null for regular records.
+     */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
     @Override
     @DynamoDBIgnore
     public JsonNode toJsonNode() {
@@ -100,6 +117,9 @@ public class DynamoBackfillRecord implements BackfillRecord {
         node.put("study", studyId);
         node.put("account", accountId);
         node.put("operation", operation);
+        if (checkpoint != null) {
+            node.put("checkpoint", checkpoint);
+        }
         return node;
     }
 }
@@ -0,0 +1,343 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.RateLimiter;
+import org.joda.time.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Keeps background work (backfills, exports) from browning out the DynamoDB tables that participant traffic depends on.
+ * This is installed as a request handler on the DynamoDB client, so it sees every request from every DynamoDBMapper.
+ * </p>
+ * <p>
+ * Each request runs with the {@link Priority} of the calling thread. Interactive requests (the default) are never
+ * delayed. Background requests acquire capacity from a per-table token bucket before they're sent, using the capacity
+ * the previous request of the same priority on that table consumed as the estimate (the same approach as
+ * DynamoExternalIdDao.getExternalIds()). To make that possible, background requests ask DynamoDB to return consumed
+ * capacity. Interactive requests don't, since they're never delayed and their capacity isn't used.
+ * </p>
+ * <p>
+ * All background priorities on a table share the same token bucket, so together they stay within the table's
+ * background budget. Lower priorities pay more tokens per capacity unit, so they get a smaller share of the budget.
+ * </p>
+ * <p>
+ * Each table's background budget starts at ddb.governor.background.capacity units per second. When any request on a
+ * table is throttled, the table's background budget is halved. It then grows back to the configured budget a step at a
+ * time while background requests succeed.
+ * </p>
+ */
+public class DynamoCapacityGovernor extends RequestHandler2 {
+    private static final Logger LOG = LoggerFactory.getLogger(DynamoCapacityGovernor.class);
+
+    /** Budgets never drop below this many units per second, so background work always makes some progress. */
+    static final double MIN_CAPACITY = 1.0;
+
+    /** A throttled table's budget grows back by this fraction of the configured budget... */
+    static final double INCREASE_FRACTION = 0.1;
+
+    /** ...at most this often. */
+    static final long INCREASE_INTERVAL_MILLIS = 10 * 1000;
+
+    /** Priority classes, highest first. */
+    public enum Priority {
+        /** Participant and researcher API calls. Never delayed. */
+        INTERACTIVE(0.0),
+        /** Backfills can use the whole background budget. */
+        BACKFILL(1.0),
+        /** Exports can use at most half of the background budget, and pay twice as much as backfills for it. */
+        EXPORT(0.5);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+
+        /**
+         * Fraction of a table's background budget that this priority may use on its own. Requests at this priority
+         * acquire 1/share tokens per capacity unit from the table's shared token bucket.
+         */
+        double getShare() {
+            return share;
+        }
+    }
+
+    private static final ThreadLocal<Priority> PRIORITY = ThreadLocal.withInitial(() -> Priority.INTERACTIVE);
+
+    /** Priority of DynamoDB requests made on the current thread. */
+    public static Priority getPriority() {
+        return PRIORITY.get();
+    }
+
+    /** Runs the given code with the given priority on the current thread. */
+    public static void runWithPriority(Priority priority, Runnable runnable) {
+        callWithPriority(priority, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /** Calls the given code with the given priority on the current thread and returns its result. */
+    public static <T> T callWithPriority(Priority priority, Supplier<T> supplier) {
+        checkNotNull(priority);
+        Priority previousPriority = PRIORITY.get();
+        PRIORITY.set(priority);
+        try {
+            return supplier.get();
+        } finally {
+            PRIORITY.set(previousPriority);
+        }
+    }
+
+    private final double maxBackgroundCapacity;
+    private final ConcurrentMap<String, TableBudget> tableBudgetMap = new ConcurrentHashMap<>();
+
+    /** Creates a governor that allows background work up to the given capacity units per second per table. */
+    public DynamoCapacityGovernor(double maxBackgroundCapacity) {
+        checkArgument(maxBackgroundCapacity >= MIN_CAPACITY);
+        this.maxBackgroundCapacity = maxBackgroundCapacity;
+    }
+
+    @Override
+    public AmazonWebServiceRequest beforeMarshalling(AmazonWebServiceRequest request) {
+        Priority priority = PRIORITY.get();
+        if (priority != Priority.INTERACTIVE) {
+            requestConsumedCapacity(request);
+            for (String oneTableName : getTableNames(request)) {
+                getTableBudget(oneTableName).acquire(priority);
+            }
+        }
+        return request;
+    }
+
+    @Override
+    public void beforeRequest(Request<?> request) {
+        // no-op
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        Priority priority = PRIORITY.get();
+        for (ConsumedCapacity oneCapacity : getConsumedCapacity(response.getAwsResponse())) {
+            if (oneCapacity.getTableName() != null && oneCapacity.getCapacityUnits() != null) {
+                getTableBudget(oneCapacity.getTableName()).recordConsumed(priority,
+                        oneCapacity.getCapacityUnits());
+            }
+        }
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception ex) {
+        // The client's own retries have been exhausted by now, so this table is well over its provisioned capacity.
+        if (ex instanceof ProvisionedThroughputExceededException) {
+            for (String oneTableName : getTableNames(request.getOriginalRequest())) {
+                getTableBudget(oneTableName).throttled();
+            }
+        }
+    }
+
+    /** Current background budget for the given table, in capacity units per second. Exposed for tests and logging. */
+    double getBackgroundCapacity(String tableName) {
+        return getTableBudget(tableName).getCapacity();
+    }
+
+    TableBudget getTableBudget(String tableName) {
+        return tableBudgetMap.computeIfAbsent(tableName, key -> new TableBudget(key, maxBackgroundCapacity));
+    }
+
+    // Asks DynamoDB to return consumed capacity, unless the caller already asked for something more specific.
+    private static void requestConsumedCapacity(AmazonWebServiceRequest request) {
+        String total = ReturnConsumedCapacity.TOTAL.toString();
+        if (request instanceof GetItemRequest) {
+            GetItemRequest getRequest = (GetItemRequest) request;
+            if (getRequest.getReturnConsumedCapacity() == null) {
+                getRequest.setReturnConsumedCapacity(total);
+            }
+        } else if (request instanceof PutItemRequest) {
+            PutItemRequest putRequest = (PutItemRequest) request;
+            if (putRequest.getReturnConsumedCapacity() == null) {
+                putRequest.setReturnConsumedCapacity(total);
+            }
+        } else if (request instanceof UpdateItemRequest) {
+            UpdateItemRequest updateRequest = (UpdateItemRequest) request;
+            if (updateRequest.getReturnConsumedCapacity() == null) {
+                updateRequest.setReturnConsumedCapacity(total);
+            }
+        } else if (request instanceof DeleteItemRequest) {
+            DeleteItemRequest deleteRequest = (DeleteItemRequest) request;
+            if (deleteRequest.getReturnConsumedCapacity() == null) {
+                deleteRequest.setReturnConsumedCapacity(total);
+            }
+        } else if (request instanceof QueryRequest) {
+            QueryRequest queryRequest = (QueryRequest) request;
+            if (queryRequest.getReturnConsumedCapacity() == null) {
+                queryRequest.setReturnConsumedCapacity(total);
+            }
+        } else if (request instanceof ScanRequest) {
+            ScanRequest scanRequest = (ScanRequest) request;
+            if (scanRequest.getReturnConsumedCapacity() == null) {
+                scanRequest.setReturnConsumedCapacity(total);
+            }
+        } else if (request instanceof BatchGetItemRequest) {
+            BatchGetItemRequest batchGetRequest = (BatchGetItemRequest) request;
+            if (batchGetRequest.getReturnConsumedCapacity() == null) {
+                batchGetRequest.setReturnConsumedCapacity(total);
+            }
+        } else if (request instanceof BatchWriteItemRequest) {
+            BatchWriteItemRequest batchWriteRequest = (BatchWriteItemRequest) request;
+            if (batchWriteRequest.getReturnConsumedCapacity() == null) {
+                batchWriteRequest.setReturnConsumedCapacity(total);
+            }
+        }
+    }
+
+    // Table names that a request reads from or writes to. Table management requests (create, describe, etc) are
+    // ignored.
+    static Set<String> getTableNames(AmazonWebServiceRequest request) {
+        String tableName = null;
+        if (request instanceof GetItemRequest) {
+            tableName = ((GetItemRequest) request).getTableName();
+        } else if (request instanceof PutItemRequest) {
+            tableName = ((PutItemRequest) request).getTableName();
+        } else if (request instanceof UpdateItemRequest) {
+            tableName = ((UpdateItemRequest) request).getTableName();
+        } else if (request instanceof DeleteItemRequest) {
+            tableName = ((DeleteItemRequest) request).getTableName();
+        } else if (request instanceof QueryRequest) {
+            tableName = ((QueryRequest) request).getTableName();
+        } else if (request instanceof ScanRequest) {
+            tableName = ((ScanRequest) request).getTableName();
+        } else if (request instanceof BatchGetItemRequest) {
+            return ImmutableSet.copyOf(((BatchGetItemRequest) request).getRequestItems().keySet());
+        } else if (request instanceof BatchWriteItemRequest) {
+            return ImmutableSet.copyOf(((BatchWriteItemRequest) request).getRequestItems().keySet());
+        }
+        return tableName != null ? ImmutableSet.of(tableName) : ImmutableSet.of();
+    }
+
+    // Consumed capacity from a DynamoDB result, if any.
+    static List<ConsumedCapacity> getConsumedCapacity(Object result) {
+        ConsumedCapacity capacity = null;
+        if (result instanceof GetItemResult) {
+            capacity = ((GetItemResult) result).getConsumedCapacity();
+        } else if (result instanceof PutItemResult) {
+            capacity = ((PutItemResult) result).getConsumedCapacity();
+        } else if (result instanceof UpdateItemResult) {
+            capacity = ((UpdateItemResult) result).getConsumedCapacity();
+        } else if (result instanceof DeleteItemResult) {
+            capacity = ((DeleteItemResult) result).getConsumedCapacity();
+        } else if (result instanceof QueryResult) {
+            capacity = ((QueryResult) result).getConsumedCapacity();
+        } else if (result instanceof ScanResult) {
+            capacity = ((ScanResult) result).getConsumedCapacity();
+        } else if (result instanceof BatchGetItemResult) {
+            List<ConsumedCapacity> capacityList = ((BatchGetItemResult) result).getConsumedCapacity();
+            return capacityList != null ? capacityList : ImmutableList.of();
+        } else if (result instanceof BatchWriteItemResult) {
+            List<ConsumedCapacity> capacityList = ((BatchWriteItemResult) result).getConsumedCapacity();
+            return capacityList != null ? capacityList : ImmutableList.of();
+        }
+        return capacity != null ? ImmutableList.of(capacity) : ImmutableList.of();
+    }
+
+    /**
+     * Background budget for a single table. All background priorities share one token bucket, which fills at the
+     * table's background capacity. Each priority's requests are weighted by its share.
+     */
+    static class TableBudget {
+        private final String tableName;
+        private final double maxCapacity;
+        private final RateLimiter rateLimiter;
+        private final Map<Priority, Double> estimateMap = new ConcurrentHashMap<>();
+        private double capacity;
+        private long lastChangeMillis;
+
+        TableBudget(String tableName, double maxCapacity) {
+            this.tableName = tableName;
+            this.maxCapacity = maxCapacity;
+            this.capacity = maxCapacity;
+            this.lastChangeMillis = DateTimeUtils.currentTimeMillis();
+            this.rateLimiter = RateLimiter.create(maxCapacity);
+        }
+
+        /** Blocks until the given background priority may send its next request to this table. */
+        void acquire(Priority priority) {
+            rateLimiter.acquire(getPermits(priority));
+        }
+
+        /** Tokens the next request at the given priority acquires: its estimated capacity, weighted by priority. */
+        int getPermits(Priority priority) {
+            double estimate = estimateMap.getOrDefault(priority, 1.0);
+            return Math.max((int) Math.ceil(estimate / priority.getShare()), 1);
+        }
+
+        /**
+         * Records capacity consumed by a request. Background requests use this as the estimate for their next request,
+         * and a background request that wasn't throttled lets the budget grow back.
+         */
+        void recordConsumed(Priority priority, double capacityUnits) {
+            if (priority == Priority.INTERACTIVE) {
+                return;
+            }
+            estimateMap.put(priority, capacityUnits);
+
+            synchronized (this) {
+                long now = DateTimeUtils.currentTimeMillis();
+                if (capacity < maxCapacity && now - lastChangeMillis >= INCREASE_INTERVAL_MILLIS) {
+                    capacity = Math.min(capacity + maxCapacity * INCREASE_FRACTION, maxCapacity);
+                    lastChangeMillis = now;
+                    rateLimiter.setRate(capacity);
+                }
+            }
+        }
+
+        /** Halves the background budget after a request on this table was throttled. */
+        synchronized void throttled() {
+            capacity = Math.max(capacity / 2, MIN_CAPACITY);
+            lastChangeMillis = DateTimeUtils.currentTimeMillis();
+            rateLimiter.setRate(capacity);
+            LOG.warn("DynamoDB table " + tableName + " throttled, background capacity reduced to " + capacity +
+                    " units/sec");
+        }
+
+        synchronized double getCapacity() {
+            return capacity;
+        }
+    }
+}
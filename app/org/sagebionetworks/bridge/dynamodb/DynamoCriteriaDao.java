@@ -4,6 +4,10 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 import javax.annotation.Resource;
 
 import org.springframework.stereotype.Component;
@@ -12,6 +16,9 @@ import org.sagebionetworks.bridge.dao.CriteriaDao;
 import org.sagebionetworks.bridge.models.Criteria;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * The DAO for managing criteria, which are optionally associated with models that can be filtered by Criteria 
@@ -46,6 +53,32 @@ public class DynamoCriteriaDao implements CriteriaDao {
         return criteriaMapper.load(hashKey);
     }
 
+    @Override
+    public Map<String,Criteria> getCriteriaMap(Collection<String> keys) {
+        checkNotNull(keys);
+        
+        Map<String,Criteria> criteriaMap = Maps.newHashMap();
+        if (keys.isEmpty()) {
+            return criteriaMap;
+        }
+        // BatchGetItem rejects duplicate keys.
+        List<Object> hashKeys = Lists.newArrayListWithCapacity(keys.size());
+        for (String key : ImmutableSet.copyOf(keys)) {
+            checkArgument(isNotBlank(key));
+            
+            DynamoCriteria hashKey = new DynamoCriteria();
+            hashKey.setKey(key);
+            hashKeys.add(hashKey);
+        }
+        for (List<Object> tableResults : criteriaMapper.batchLoad(hashKeys).values()) {
+            for (Object result : tableResults) {
+                Criteria criteria = (Criteria)result;
+                criteriaMap.put(criteria.getKey(), criteria);
+            }
+        }
+        return criteriaMap;
+    }
+
     @Override
     public void deleteCriteria(String key) {
         checkArgument(isNotBlank(key));
@@ -65,19 +65,25 @@ public class DynamoExternalIdDao implements ExternalIdDao {
     private static final String HEALTH_CODE = "healthCode";
     static final String IDENTIFIER = "identifier";
     private static final String STUDY_ID = "studyId";
+    private static final String UNASSIGNED_STUDY_ID = "unassignedStudyId";
     private static final String ASSIGNMENT_FILTER = "assignmentFilter";
     private static final String ID_FILTER = "idFilter";
 
     private int addLimit;
     private int lockDuration;
+    private boolean unassignedIndexEnabled;
     private RateLimiter getExternalIdRateLimiter;
     private DynamoDBMapper mapper;
 
-    /** Gets the add limit and lock duration from Config. */
+    /**
+     * Gets the add limit, lock duration, and whether unassigned IDs are read from the unassigned index from Config. 
+     * The index should only be read once it has been backfilled.
+     */
     @Autowired
     public final void setConfig(Config config) {
         addLimit = config.getInt(CONFIG_KEY_ADD_LIMIT);
         lockDuration = config.getInt(CONFIG_KEY_LOCK_DURATION);
+        unassignedIndexEnabled = Boolean.valueOf(config.get(CONFIG_KEY_UNASSIGNED_INDEX_ENABLED));
         setGetExternalIdRateLimiter(RateLimiter.create(config.getInt(EXTERNAL_ID_GET_RATE)));
     }
 
@@ -173,6 +179,9 @@ public class DynamoExternalIdDao implements ExternalIdDao {
         }).filter(externalId -> {
             return mapper.load(externalId) == null;
         }).collect(Collectors.toList());
+        for (DynamoExternalIdentifier externalId : idsToSave) {
+            externalId.setUnassignedStudyId(studyId.getIdentifier());
+        }
         
         if (!idsToSave.isEmpty()) {
             List<FailedBatch> failures = mapper.batchSave(idsToSave);
@@ -221,6 +230,7 @@ public class DynamoExternalIdDao implements ExternalIdDao {
                 
                 identifier.setReservation(0L);
                 identifier.setHealthCode(healthCode);
+                identifier.setUnassignedStudyId(null);
                 mapper.save(identifier, getAssignmentExpression());
                 
             } catch(ConditionalCheckFailedException e) {
@@ -241,6 +251,7 @@ public class DynamoExternalIdDao implements ExternalIdDao {
         DynamoExternalIdentifier identifier = mapper.load(keyObject);
         if (identifier != null) {
             identifier.setHealthCode(null);
+            identifier.setUnassignedStudyId(studyId.getIdentifier());
             identifier.setReservation(0L);
             mapper.save(identifier);
         }
@@ -264,6 +275,42 @@ public class DynamoExternalIdDao implements ExternalIdDao {
         }
     }
 
+    @Override
+    public int backfillUnassignedIndex(StudyIdentifier studyId) {
+        checkNotNull(studyId);
+        
+        DynamoDBQueryExpression<DynamoExternalIdentifier> query = new DynamoDBQueryExpression<DynamoExternalIdentifier>()
+                .withHashKeyValues(new DynamoExternalIdentifier(studyId, null))
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .withLimit(PAGE_SCAN_LIMIT);
+        int count = 0;
+        int capacityAcquired = 1;
+        Map<String, AttributeValue> lastEvaluatedKey = null;
+        do {
+            getExternalIdRateLimiter.acquire(capacityAcquired);
+            
+            QueryResultPage<DynamoExternalIdentifier> page = mapper.queryPage(DynamoExternalIdentifier.class,
+                    query.withExclusiveStartKey(lastEvaluatedKey));
+            for (DynamoExternalIdentifier identifier : page.getResults()) {
+                if (identifier.getHealthCode() == null && identifier.getUnassignedStudyId() == null) {
+                    DynamoDBSaveExpression expression = getBackfillExpression(identifier.getReservation());
+                    identifier.setUnassignedStudyId(studyId.getIdentifier());
+                    try {
+                        mapper.save(identifier, expression);
+                        count++;
+                    } catch(ConditionalCheckFailedException e) {
+                        // The ID was assigned or reserved after we read it. Don't overwrite that, just skip it.
+                        LOG.info("Skipping external ID " + identifier.getIdentifier()
+                                + " in backfill, it changed after it was read");
+                    }
+                }
+            }
+            capacityAcquired = Math.max(page.getConsumedCapacity().getCapacityUnits().intValue(), 1);
+            lastEvaluatedKey = page.getLastEvaluatedKey();
+        } while (lastEvaluatedKey != null);
+        return count;
+    }
+
     /**
      * Get the count query (applies filters) and then sets an offset key and the limit to a page of records, 
      * plus one, to determine if there are records beyond the current page. 
@@ -278,24 +325,47 @@ public class DynamoExternalIdDao implements ExternalIdDao {
                     .withAttributeValueList(new AttributeValue().withS(idFilter))
                     .withComparisonOperator(BEGINS_WITH));
         }
-        if (assignmentFilter != null) {
-            addAssignmentFilter(query, assignmentFilter.booleanValue());
+        boolean useUnassignedIndex = unassignedIndexEnabled && Boolean.FALSE.equals(assignmentFilter);
+        if (useUnassignedIndex) {
+            // Only unassigned IDs are in the index, so the only IDs we need to filter out are the few that are 
+            // reserved right now.
+            addReservationFilter(query);
+            DynamoExternalIdentifier hashKey = new DynamoExternalIdentifier();
+            hashKey.setUnassignedStudyId(studyId.getIdentifier());
+            query.withIndexName(DynamoExternalIdentifier.UNASSIGNED_INDEX);
+            query.withHashKeyValues(hashKey);
+            // Global secondary indices don't support consistent reads.
+            query.withConsistentRead(false);
+        } else {
+            if (assignmentFilter != null) {
+                addAssignmentFilter(query, assignmentFilter.booleanValue());
+            }
+            query.withHashKeyValues(new DynamoExternalIdentifier(studyId, null)); // no healthCode.
+            query.withConsistentRead(true);
         }
-        query.withHashKeyValues(new DynamoExternalIdentifier(studyId, null)); // no healthCode.
 
         if (offsetKey != null) {
             Map<String, AttributeValue> map = new HashMap<>();
             map.put(STUDY_ID, new AttributeValue().withS(studyId.getIdentifier()));
             map.put(IDENTIFIER, new AttributeValue().withS(offsetKey));
+            if (useUnassignedIndex) {
+                map.put(UNASSIGNED_STUDY_ID, new AttributeValue().withS(studyId.getIdentifier()));
+            }
             query.withExclusiveStartKey(map);
         }
 
         query.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
-        query.withConsistentRead(true);
         query.withLimit(pageSize);
         return query;
     }
 
+    private void addReservationFilter(DynamoDBQueryExpression<DynamoExternalIdentifier> query) {
+        String reservationStartTime = Long.toString(DateTimeUtils.currentTimeMillis()-lockDuration);
+        AttributeValue attrValue = new AttributeValue().withN(reservationStartTime);
+        query.withQueryFilterEntry(RESERVATION, new Condition().withAttributeValueList(attrValue)
+                .withComparisonOperator(LT));
+    }
+
     private void addAssignmentFilter(DynamoDBQueryExpression<DynamoExternalIdentifier> query, boolean isAssigned) {
         String reservationStartTime = Long.toString(DateTimeUtils.currentTimeMillis()-lockDuration);
         
@@ -333,6 +403,24 @@ public class DynamoExternalIdDao implements ExternalIdDao {
         return saveExpression;
     }
     
+    /**
+     * Add the record to the unassigned index IF it is still unassigned, and has not been reserved, since it was 
+     * read. Otherwise saving the record would restore the old healthCode and reservation.
+     */
+    private DynamoDBSaveExpression getBackfillExpression(long reservation) {
+        AttributeValue reservationValue = new AttributeValue().withN(Long.toString(reservation));
+        
+        Map<String, ExpectedAttributeValue> map = Maps.newHashMap();
+        map.put(HEALTH_CODE, new ExpectedAttributeValue().withExists(false));
+        map.put(UNASSIGNED_STUDY_ID, new ExpectedAttributeValue().withExists(false));
+        map.put(RESERVATION, new ExpectedAttributeValue().withValue(reservationValue));
+
+        DynamoDBSaveExpression saveExpression = new DynamoDBSaveExpression();
+        saveExpression.withConditionalOperator(AND);
+        saveExpression.setExpected(map);
+        return saveExpression;
+    }
+    
     /**
      * Save the record with the user's healthCode IF the healthCode is not yet set. If calling code calls 
      * the reservation method first, this should not happen, but we do not prevent it.  
@@ -5,8 +5,11 @@ import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexRangeKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBRangeKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 
 /**
  * Implementation of external identifier.
@@ -14,7 +17,10 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
 @DynamoDBTable(tableName = "ExternalIdentifier")
 public class DynamoExternalIdentifier implements ExternalIdentifier {
 
+    static final String UNASSIGNED_INDEX = "unassignedStudyId-identifier-index";
+
     private String studyId;
+    private String unassignedStudyId;
     private String identifier;
     private String healthCode;
     private long reservation;
@@ -34,7 +40,20 @@ public class DynamoExternalIdentifier implements ExternalIdentifier {
     public void setStudyId(String studyId) {
         this.studyId = studyId;
     }
+    /**
+     * The study ID, but only while no health code is assigned to this identifier. The unassigned index is keyed on 
+     * this attribute, so it only holds unassigned identifiers, and they can be listed without reading assigned ones.
+     */
+    @DynamoDBIndexHashKey(attributeName = "unassignedStudyId", globalSecondaryIndexName = UNASSIGNED_INDEX)
+    @DynamoProjection(projectionType = ProjectionType.ALL, globalSecondaryIndexName = UNASSIGNED_INDEX)
+    public String getUnassignedStudyId() {
+        return unassignedStudyId;
+    }
+    public void setUnassignedStudyId(String unassignedStudyId) {
+        this.unassignedStudyId = unassignedStudyId;
+    }
     @DynamoDBRangeKey
+    @DynamoDBIndexRangeKey(attributeName = "identifier", globalSecondaryIndexName = UNASSIGNED_INDEX)
     @Override
     public String getIdentifier() {
         return identifier;
@@ -29,6 +29,7 @@ public class DynamoFPHSExternalIdentifierDao implements FPHSExternalIdentifierDa
 
     private int addLimit;
     private DynamoDBMapper mapper;
+    private DynamoParallelScanner parallelScanner;
 
     /** Gets the add limit from Config. */
     @Autowired
@@ -41,6 +42,12 @@ public class DynamoFPHSExternalIdentifierDao implements FPHSExternalIdentifierDa
         this.mapper = mapper;
     }
     
+    /** Scans the FPHS external ID table in parallel. */
+    @Autowired
+    public final void setParallelScanner(DynamoParallelScanner parallelScanner) {
+        this.parallelScanner = parallelScanner;
+    }
+
     @Override
     public void verifyExternalId(ExternalIdentifier externalId) {
         checkNotNull(externalId);
@@ -74,7 +81,7 @@ public class DynamoFPHSExternalIdentifierDao implements FPHSExternalIdentifierDa
     public List<FPHSExternalIdentifier> getExternalIds() {
         DynamoDBScanExpression scan = new DynamoDBScanExpression();
         
-        return mapper.scan(DynamoFPHSExternalIdentifier.class, scan).stream().map(identifier -> {
+        return parallelScanner.scan(mapper, DynamoFPHSExternalIdentifier.class, scan).stream().map(identifier -> {
             return (FPHSExternalIdentifier)identifier;
         }).collect(Collectors.toList());
     }
@@ -1,9 +1,13 @@
 package org.sagebionetworks.bridge.dynamodb;
 
+import java.util.List;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Resource;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.google.common.collect.ImmutableList;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
@@ -15,6 +19,9 @@ import org.sagebionetworks.bridge.models.healthdata.HealthDataAttachmentBuilder;
 /** DynamoDB implementation of {@link org.sagebionetworks.bridge.dao.HealthDataAttachmentDao}. */
 @Component
 public class DynamoHealthDataAttachmentDao implements HealthDataAttachmentDao {
+    /** Index of attachments by the ID of their record. Package-scoped for unit tests. */
+    static final String RECORD_ID_INDEX = "recordId-index";
+
     private DynamoDBMapper mapper;
 
     /** DynamoDB mapper for the HealthDataAttachment table. This is configured by Spring. */
@@ -44,4 +51,16 @@ public class DynamoHealthDataAttachmentDao implements HealthDataAttachmentDao {
     public HealthDataAttachmentBuilder getRecordBuilder() {
         return new DynamoHealthDataAttachment.Builder();
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<HealthDataAttachment> getAttachmentsForRecord(@Nonnull String recordId) {
+        DynamoHealthDataAttachment hashKey = new DynamoHealthDataAttachment();
+        hashKey.setRecordId(recordId);
+
+        DynamoDBQueryExpression<DynamoHealthDataAttachment> expression =
+                new DynamoDBQueryExpression<DynamoHealthDataAttachment>().withIndexName(RECORD_ID_INDEX)
+                        .withConsistentRead(false).withHashKeyValues(hashKey);
+        return ImmutableList.copyOf(mapper.query(DynamoHealthDataAttachment.class, expression));
+    }
 }
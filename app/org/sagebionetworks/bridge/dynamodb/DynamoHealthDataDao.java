@@ -2,15 +2,23 @@ package org.sagebionetworks.bridge.dynamodb;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.BridgeUtils;
@@ -27,6 +35,25 @@ import org.springframework.stereotype.Component;
 public class DynamoHealthDataDao implements HealthDataDao {
     private static final long CREATED_ON_OFFSET_MILLIS = TimeUnit.MILLISECONDS.convert(1, TimeUnit.HOURS);
 
+    /**
+     * Attributes read when we need to know about a record but not its contents. This leaves out the data and metadata
+     * JSON, which are most of the size of a record. Package-scoped for unit tests.
+     */
+    static final List<String> RECORD_INFO_ATTRIBUTES = ImmutableList.of("id", "createdOn", "healthCode", "schemaId",
+            "schemaRevision", "studyId", "uploadId", "uploadedOn", "synapseExporterStatus");
+
+    /** Index of records by health code and createdOn. Package-scoped for unit tests. */
+    static final String HEALTH_CODE_CREATED_ON_INDEX = "healthCode-createdOn-index";
+
+    /**
+     * Records are loaded this many at a time when iterating over a participant's records. Records can be up to 400KB,
+     * so this bounds the memory held by one iterator. Package-scoped for unit tests.
+     */
+    static final int RECORD_LOAD_BATCH_SIZE = 25;
+
+    private static final DynamoDBMapperConfig ITERATION_ONLY_CONFIG = new DynamoDBMapperConfig(
+            PaginationLoadingStrategy.ITERATION_ONLY);
+
     private DynamoDBMapper mapper;
     private DynamoIndexHelper healthCodeIndex;
     private DynamoIndexHelper uploadDateIndex;
@@ -91,6 +118,20 @@ public class DynamoHealthDataDao implements HealthDataDao {
         return mapper.load(DynamoHealthDataRecord.class, id);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public HealthDataRecord getRecordInfoById(@Nonnull String id) {
+        DynamoHealthDataRecord hashKey = new DynamoHealthDataRecord();
+        hashKey.setId(id);
+
+        DynamoDBQueryExpression<DynamoHealthDataRecord> expression = withRecordInfoProjection(
+                new DynamoDBQueryExpression<DynamoHealthDataRecord>().withHashKeyValues(hashKey));
+
+        List<DynamoHealthDataRecord> recordList = mapper.queryPage(DynamoHealthDataRecord.class, expression)
+                .getResults();
+        return recordList.isEmpty() ? null : recordList.get(0);
+    }
+
     /** {@inheritDoc} */
     @Override
     public List<HealthDataRecord> getRecordsForUploadDate(@Nonnull String uploadDate) {
@@ -119,6 +160,7 @@ public class DynamoHealthDataDao implements HealthDataDao {
                 .withHashKeyValues(queryRecord)
                 .withRangeKeyCondition("createdOn", rangeKeyCondition)
                 .withLimit(BridgeConstants.DUPE_RECORDS_MAX_COUNT);
+        withRecordInfoProjection(expression);
 
         QueryResultPage<DynamoHealthDataRecord> resultPage = mapper.queryPage(DynamoHealthDataRecord.class, expression);
         List<DynamoHealthDataRecord> recordList = resultPage.getResults();
@@ -127,4 +169,54 @@ public class DynamoHealthDataDao implements HealthDataDao {
         return recordList.stream().filter(record -> schemaId.equals(record.getSchemaId())).collect(
                 Collectors.toList());
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Iterator<HealthDataRecord> getRecordsForHealthCode(@Nonnull String healthCode, long createdOnStart,
+            long createdOnEnd) {
+        Condition rangeKeyCondition = new Condition()
+                .withComparisonOperator(ComparisonOperator.BETWEEN)
+                .withAttributeValueList(new AttributeValue().withN(String.valueOf(createdOnStart)),
+                        new AttributeValue().withN(String.valueOf(createdOnEnd)));
+
+        DynamoHealthDataRecord queryRecord = new DynamoHealthDataRecord();
+        queryRecord.setHealthCode(healthCode);
+
+        // The index is only used to find the records' keys. The records are then loaded from the table a batch at a
+        // time, and pages of the query are dropped once they've been iterated over.
+        DynamoDBQueryExpression<DynamoHealthDataRecord> expression = new DynamoDBQueryExpression<DynamoHealthDataRecord>()
+                .withIndexName(HEALTH_CODE_CREATED_ON_INDEX)
+                .withConsistentRead(false)
+                .withHashKeyValues(queryRecord)
+                .withRangeKeyCondition("createdOn", rangeKeyCondition)
+                .withLimit(RECORD_LOAD_BATCH_SIZE);
+        Iterator<DynamoHealthDataRecord> keyIterator = mapper.query(DynamoHealthDataRecord.class, expression,
+                ITERATION_ONLY_CONFIG).iterator();
+
+        return Iterators.concat(Iterators.transform(Iterators.partition(keyIterator, RECORD_LOAD_BATCH_SIZE),
+                this::loadRecords));
+    }
+
+    // Loads the full records for a batch of keys. Batch loads don't return records in order, so they're sorted back
+    // into createdOn order.
+    private Iterator<HealthDataRecord> loadRecords(List<DynamoHealthDataRecord> keyList) {
+        Map<String, List<Object>> resultMap = mapper.batchLoad(ImmutableList.<Object>copyOf(keyList));
+        return resultMap.values().stream().flatMap(List::stream)
+                .map(record -> (HealthDataRecord) record)
+                .sorted(Comparator.comparing(HealthDataRecord::getCreatedOn))
+                .collect(Collectors.toList()).iterator();
+    }
+
+    // Limits the query to the record info attributes. Attribute names go through placeholders, so we don't have to
+    // worry about DynamoDB reserved words.
+    private static DynamoDBQueryExpression<DynamoHealthDataRecord> withRecordInfoProjection(
+            DynamoDBQueryExpression<DynamoHealthDataRecord> expression) {
+        List<String> placeholderList = new ArrayList<>();
+        for (String attributeName : RECORD_INFO_ATTRIBUTES) {
+            String placeholder = "#" + attributeName;
+            expression.addExpressionAttributeNamesEntry(placeholder, attributeName);
+            placeholderList.add(placeholder);
+        }
+        return expression.withProjectionExpression(BridgeUtils.COMMA_JOINER.join(placeholderList));
+    }
 }
@@ -13,11 +13,14 @@ import org.sagebionetworks.bridge.json.LocalDateToStringSerializer;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 import org.sagebionetworks.bridge.models.healthdata.HealthDataRecordBuilder;
 
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexHashKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTypeConverted;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBVersionAttribute;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
@@ -28,12 +31,16 @@ import com.fasterxml.jackson.datatype.joda.deser.LocalDateDeserializer;
 @DynamoDBTable(tableName = "HealthDataRecord3")
 @JsonFilter("filter")
 public class DynamoHealthDataRecord implements HealthDataRecord {
+    private static final JsonNodeMarshaller JSON_MARSHALLER = new JsonNodeMarshaller();
+
     private Long createdOn;
     private String createdOnTimeZone;
     private JsonNode data;
+    private String dataJson;
     private String healthCode;
     private String id;
     private JsonNode metadata;
+    private String metadataJson;
     private String schemaId;
     private int schemaRevision;
     private String studyId;
@@ -72,15 +79,37 @@ public class DynamoHealthDataRecord implements HealthDataRecord {
     }
 
     /** {@inheritDoc} */
-    @DynamoDBTypeConverted(converter = JsonNodeMarshaller.class)
+    @DynamoDBIgnore
     @Override
     public JsonNode getData() {
+        if (data == null && dataJson != null) {
+            data = JSON_MARSHALLER.unconvert(dataJson);
+            dataJson = null;
+        }
         return data;
     }
 
     /** @see #getData */
     public void setData(JsonNode data) {
         this.data = data;
+        this.dataJson = null;
+    }
+
+    /**
+     * The data as stored in DynamoDB. Loaded records keep the JSON text, and only parse it when {@link #getData} is
+     * first called, so callers that never look at the data don't pay to parse it. Records that are loaded and saved
+     * again without looking at the data write the same text back.
+     */
+    @DynamoDBAttribute(attributeName = "data")
+    @JsonIgnore
+    public String getDataJson() {
+        return (data != null) ? JSON_MARSHALLER.convert(data) : dataJson;
+    }
+
+    /** @see #getDataJson */
+    public void setDataJson(String dataJson) {
+        this.data = null;
+        this.dataJson = dataJson;
     }
 
     /** {@inheritDoc} */
@@ -108,15 +137,33 @@ public class DynamoHealthDataRecord implements HealthDataRecord {
     }
 
     /** {@inheritDoc} */
-    @DynamoDBTypeConverted(converter = JsonNodeMarshaller.class)
+    @DynamoDBIgnore
     @Override
     public JsonNode getMetadata() {
+        if (metadata == null && metadataJson != null) {
+            metadata = JSON_MARSHALLER.unconvert(metadataJson);
+            metadataJson = null;
+        }
         return metadata;
     }
 
     /** @see #getMetadata */
     public void setMetadata(JsonNode metadata) {
         this.metadata = metadata;
+        this.metadataJson = null;
+    }
+
+    /** The metadata as stored in DynamoDB, parsed on first access like {@link #getDataJson}. */
+    @DynamoDBAttribute(attributeName = "metadata")
+    @JsonIgnore
+    public String getMetadataJson() {
+        return (metadata != null) ? JSON_MARSHALLER.convert(metadata) : metadataJson;
+    }
+
+    /** @see #getMetadataJson */
+    public void setMetadataJson(String metadataJson) {
+        this.metadata = null;
+        this.metadataJson = metadataJson;
     }
 
     /** {@inheritDoc} */
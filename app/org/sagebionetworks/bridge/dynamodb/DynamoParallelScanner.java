@@ -0,0 +1,178 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import javax.annotation.Resource;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+/**
+ * <p>
+ * Scans a whole DynamoDB table in parallel. The table is split into segments (ddb.parallel.scan.segments), and each
+ * segment is scanned page by page on the shared parallel scan pool. This is the same segmenting that
+ * DynamoDBMapper.parallelScan() does, except that we page through each segment ourselves so we can see the capacity
+ * each page consumed.
+ * </p>
+ * <p>
+ * Background scans (backfills, exports) are rate limited by consumed read capacity (ddb.parallel.scan.read.capacity,
+ * in units per second, shared by all segments of the scan), in the same way as DynamoExternalIdDao.getExternalIds().
+ * See https://aws.amazon.com/blogs/developer/rate-limited-scans-in-amazon-dynamodb/ Interactive scans, like the admin
+ * study list, aren't rate limited, the same as DynamoCapacityGovernor never delays interactive requests.
+ * </p>
+ * <p>
+ * Results can be streamed to a consumer instead of collected into a list. Calls to the consumer are serialized, so the
+ * consumer doesn't need to be thread-safe, but it must not start another parallel scan.
+ * </p>
+ */
+@Component
+public class DynamoParallelScanner {
+    private static final Logger LOG = LoggerFactory.getLogger(DynamoParallelScanner.class);
+
+    static final String CONFIG_KEY_READ_CAPACITY = "ddb.parallel.scan.read.capacity";
+    static final String CONFIG_KEY_SEGMENTS = "ddb.parallel.scan.segments";
+
+    private ExecutorService executorService;
+    private int readCapacityPerSecond;
+    private int totalSegments;
+
+    /** Gets the segment count and read capacity from Config. */
+    @Autowired
+    public final void setConfig(Config config) {
+        readCapacityPerSecond = config.getInt(CONFIG_KEY_READ_CAPACITY);
+        totalSegments = config.getInt(CONFIG_KEY_SEGMENTS);
+    }
+
+    /** Thread pool that segments are scanned on. This is configured by Spring. */
+    @Resource(name = "parallelScanExecutorService")
+    public final void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /** Scans the whole table and returns the results as a list. Order is not guaranteed. */
+    public <T> List<T> scan(DynamoDBMapper mapper, Class<T> clazz, DynamoDBScanExpression scanExpression) {
+        List<T> resultList = new ArrayList<>();
+        scan(mapper, clazz, scanExpression, resultList::add);
+        return resultList;
+    }
+
+    /**
+     * Scans the whole table and passes each result to the consumer. This returns when every segment has been
+     * scanned. If any segment fails, the remaining segments are cancelled and this throws.
+     */
+    public <T> void scan(DynamoDBMapper mapper, Class<T> clazz, DynamoDBScanExpression scanExpression,
+            Consumer<? super T> consumer) {
+        checkNotNull(mapper);
+        checkNotNull(clazz);
+        checkNotNull(scanExpression);
+        checkNotNull(consumer);
+
+        DynamoCapacityGovernor.Priority priority = DynamoCapacityGovernor.getPriority();
+        RateLimiter rateLimiter = priority != DynamoCapacityGovernor.Priority.INTERACTIVE ?
+                RateLimiter.create(readCapacityPerSecond) : null;
+        Consumer<T> serializedConsumer = new Consumer<T>() {
+            @Override
+            public synchronized void accept(T result) {
+                consumer.accept(result);
+            }
+        };
+
+        List<Future<?>> futureList = new ArrayList<>();
+        try {
+            for (int segment = 0; segment < totalSegments; segment++) {
+                DynamoDBScanExpression segmentScan = copyScanExpression(scanExpression).withSegment(segment)
+                        .withTotalSegments(totalSegments);
+                // Segments run with the caller's DDB priority. See DynamoCapacityGovernor.
+                futureList.add(executorService.submit(() -> DynamoCapacityGovernor.runWithPriority(priority,
+                        () -> scanSegment(mapper, clazz, segmentScan, rateLimiter, serializedConsumer))));
+            }
+
+            for (Future<?> oneFuture : futureList) {
+                oneFuture.get();
+            }
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BridgeServiceException(cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(ex);
+        } finally {
+            // No-op if every segment finished. Otherwise, stop the other segments from scanning any further.
+            for (Future<?> oneFuture : futureList) {
+                oneFuture.cancel(true);
+            }
+        }
+    }
+
+    // Scans a single segment page by page. Each page acquires as much capacity as the previous page consumed. The
+    // rate limiter is null for interactive scans.
+    private static <T> void scanSegment(DynamoDBMapper mapper, Class<T> clazz, DynamoDBScanExpression segmentScan,
+            RateLimiter rateLimiter, Consumer<T> consumer) {
+        // initial estimate: read capacity consumed will equal 1
+        int capacityAcquired = 1;
+        Map<String, AttributeValue> lastEvaluatedKey;
+        do {
+            if (rateLimiter != null) {
+                rateLimiter.acquire(capacityAcquired);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                // Another segment failed, and we've been cancelled.
+                return;
+            }
+
+            ScanResultPage<T> page = mapper.scanPage(clazz, segmentScan);
+            page.getResults().forEach(consumer);
+
+            ConsumedCapacity consumedCapacity = page.getConsumedCapacity();
+            if (consumedCapacity != null && consumedCapacity.getCapacityUnits() != null) {
+                // use capacity consumed by last request to as our estimate for the next request
+                capacityAcquired = Math.max(consumedCapacity.getCapacityUnits().intValue(), 1);
+            }
+            LOG.debug("Scanned segment " + segmentScan.getSegment() + " of " + clazz.getSimpleName() +
+                    ", capacity consumed: " + capacityAcquired);
+
+            lastEvaluatedKey = page.getLastEvaluatedKey();
+            segmentScan.setExclusiveStartKey(lastEvaluatedKey);
+        } while (lastEvaluatedKey != null);
+    }
+
+    // DynamoDBScanExpression has no copy constructor. Copy everything except the segment and paging state, and make
+    // sure we get consumed capacity back.
+    private static DynamoDBScanExpression copyScanExpression(DynamoDBScanExpression scanExpression) {
+        DynamoDBScanExpression copy = new DynamoDBScanExpression();
+        copy.setIndexName(scanExpression.getIndexName());
+        copy.setScanFilter(scanExpression.getScanFilter());
+        copy.setLimit(scanExpression.getLimit());
+        copy.setConditionalOperator(scanExpression.getConditionalOperator());
+        copy.setFilterExpression(scanExpression.getFilterExpression());
+        copy.setExpressionAttributeNames(scanExpression.getExpressionAttributeNames());
+        copy.setExpressionAttributeValues(scanExpression.getExpressionAttributeValues());
+        copy.setSelect(scanExpression.getSelect());
+        copy.setProjectionExpression(scanExpression.getProjectionExpression());
+        copy.setConsistentRead(scanExpression.isConsistentRead());
+        copy.setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        return copy;
+    }
+}
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -15,6 +16,7 @@ import org.sagebionetworks.bridge.models.accounts.AllParticipantOptionsLookup;
 import org.sagebionetworks.bridge.models.accounts.ParticipantOptionsLookup;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
@@ -23,17 +25,26 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 
 @Component
 public class DynamoParticipantOptionsDao implements ParticipantOptionsDao {
 
     private DynamoDBMapper mapper;
+    private DynamoParallelScanner parallelScanner;
     
     @Resource(name = "participantOptionsDbMapper")
     final void setDdbMapper(DynamoDBMapper mapper) {
         this.mapper = mapper;
     }
 
+    /** Scans the participant options table in parallel. */
+    @Autowired
+    final void setParallelScanner(DynamoParallelScanner parallelScanner) {
+        this.parallelScanner = parallelScanner;
+    }
+
     @Override
     public void setOption(StudyIdentifier studyIdentifier, String healthCode, ParticipantOption option, String value) {
         checkNotNull(studyIdentifier);
@@ -93,6 +104,33 @@ public class DynamoParticipantOptionsDao implements ParticipantOptionsDao {
         return new ParticipantOptionsLookup(options.getOptions());
     }
     
+    @Override
+    public AllParticipantOptionsLookup getOptions(Collection<String> healthCodes) {
+        checkNotNull(healthCodes);
+        
+        AllParticipantOptionsLookup allLookup = new AllParticipantOptionsLookup();
+        if (healthCodes.isEmpty()) {
+            return allLookup;
+        }
+        // BatchGetItem rejects duplicate keys.
+        List<Object> keyObjects = Lists.newArrayListWithCapacity(healthCodes.size());
+        for (String healthCode : ImmutableSet.copyOf(healthCodes)) {
+            checkArgument(isNotBlank(healthCode));
+            
+            DynamoParticipantOptions keyObject = new DynamoParticipantOptions();
+            keyObject.setHealthCode(healthCode);
+            keyObjects.add(keyObject);
+        }
+        // The mapper splits the keys into BatchGetItem calls of 100, and retries any unprocessed keys.
+        for (List<Object> tableResults : mapper.batchLoad(keyObjects).values()) {
+            for (Object result : tableResults) {
+                DynamoParticipantOptions options = (DynamoParticipantOptions)result;
+                allLookup.put(options.getHealthCode(), new ParticipantOptionsLookup(options.getOptions()));
+            }
+        }
+        return allLookup;
+    }
+    
     @Override
     public void deleteAllOptions(String healthCode) {
         checkArgument(isNotBlank(healthCode));
@@ -133,10 +171,9 @@ public class DynamoParticipantOptionsDao implements ParticipantOptionsDao {
         condition.withAttributeValueList(new AttributeValue().withS(studyIdentifier.getIdentifier()));
         scan.addFilterCondition("studyKey", condition);
         
-        List<DynamoParticipantOptions> mappings = mapper.scan(DynamoParticipantOptions.class, scan);
-        for (DynamoParticipantOptions mapping : mappings) {
-            allLookup.put(mapping.getHealthCode(), new ParticipantOptionsLookup(mapping.getOptions()));
-        }
+        // The table isn't indexed by study, so this scans the whole table. Stream matches straight into the lookup.
+        parallelScanner.scan(mapper, DynamoParticipantOptions.class, scan, mapping -> allLookup.put(
+                mapping.getHealthCode(), new ParticipantOptionsLookup(mapping.getOptions())));
         return allLookup;
     }
 
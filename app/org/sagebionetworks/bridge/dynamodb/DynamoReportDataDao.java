@@ -3,14 +3,23 @@ package org.sagebionetworks.bridge.dynamodb;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
 
 import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.dao.ReportDataDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.models.DateRangeResourceList;
 import org.sagebionetworks.bridge.models.reports.ReportData;
 import org.sagebionetworks.bridge.models.reports.ReportDataKey;
@@ -21,16 +30,31 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 @Component
 public class DynamoReportDataDao implements ReportDataDao {
+    private static final Logger LOG = LoggerFactory.getLogger(DynamoReportDataDao.class);
+
+    /** The most items DynamoDB accepts in one BatchWriteItem request. */
+    static final int BATCH_SIZE = 25;
 
     private DynamoDBMapper mapper;
+    private ExecutorService reportDataExecutorService;
 
     @Resource(name = "reportDataMapper")
     final void setReportDataMapper(DynamoDBMapper reportDataMapper) {
         this.mapper = reportDataMapper;
     }
+
+    /** Bounded pool for batch writes. When it's busy, batches are written on the caller's thread instead. */
+    @Resource(name = "reportDataExecutorService")
+    final void setReportDataExecutorService(ExecutorService reportDataExecutorService) {
+        this.reportDataExecutorService = reportDataExecutorService;
+    }
     
     @Override
     public DateRangeResourceList<? extends ReportData> getReportData(ReportDataKey key, LocalDate startDate, LocalDate endDate) {
@@ -61,6 +85,69 @@ public class DynamoReportDataDao implements ReportDataDao {
         mapper.save(reportData);
     }
 
+    /**
+     * Each batch is a separate BatchWriteItem call, and the batches are written in parallel. The mapper retries the
+     * unprocessed items of a batch itself; the items that are still unprocessed after that are mapped back to their
+     * records by their key and date. If a failed item can't be mapped back, the whole batch is reported as failed, so
+     * a record is never reported saved when it might not have been.
+     */
+    @Override
+    public List<ReportData> batchSaveReportData(List<ReportData> reportDataList) {
+        checkNotNull(reportDataList);
+        
+        List<List<ReportData>> batches = Lists.partition(reportDataList, BATCH_SIZE);
+        List<CompletableFuture<List<FailedBatch>>> futures = Lists.newArrayList();
+        for (List<ReportData> batch : batches) {
+            futures.add(CompletableFuture.supplyAsync(() -> mapper.batchSave(batch), reportDataExecutorService));
+        }
+        List<ReportData> failedRecords = Lists.newArrayList();
+        for (int i=0; i < batches.size(); i++) {
+            List<FailedBatch> failures = waitForBatch(futures.get(i));
+            if (!failures.isEmpty()) {
+                failedRecords.addAll(getFailedRecords(batches.get(i), failures));
+            }
+        }
+        return failedRecords;
+    }
+
+    // Maps the unprocessed items of a batch back to the batch's records. If any item doesn't match a record, we can't
+    // tell which records were saved, so they all fail.
+    private static List<ReportData> getFailedRecords(List<ReportData> batch, List<FailedBatch> failures) {
+        Map<String, ReportData> recordsById = Maps.newHashMap();
+        for (ReportData reportData : batch) {
+            recordsById.put(getRecordId(reportData.getKey(), reportData.getDate().toString()), reportData);
+        }
+        Set<ReportData> failedRecords = Sets.newIdentityHashSet();
+        for (FailedBatch failure : failures) {
+            LOG.warn("Could not save report data batch", failure.getException());
+            for (List<WriteRequest> requests : failure.getUnprocessedItems().values()) {
+                for (WriteRequest request : requests) {
+                    ReportData reportData = getRecord(recordsById, request);
+                    if (reportData == null) {
+                        LOG.warn("Could not match an unsaved report data item to its record, failing the whole batch");
+                        return batch;
+                    }
+                    failedRecords.add(reportData);
+                }
+            }
+        }
+        // Keep the batch's order.
+        return batch.stream().filter(failedRecords::contains).collect(Collectors.toList());
+    }
+
+    private static ReportData getRecord(Map<String, ReportData> recordsById, WriteRequest request) {
+        if (request.getPutRequest() == null || request.getPutRequest().getItem() == null) {
+            return null;
+        }
+        Map<String, AttributeValue> item = request.getPutRequest().getItem();
+        AttributeValue key = item.get("key");
+        AttributeValue date = item.get("date");
+        if (key == null || date == null) {
+            return null;
+        }
+        return recordsById.get(getRecordId(key.getS(), date.getS()));
+    }
+
     @Override
     public void deleteReportData(ReportDataKey key) {
         checkNotNull(key);
@@ -92,4 +179,22 @@ public class DynamoReportDataDao implements ReportDataDao {
             mapper.delete(reportDataRecord);
         }
     }
+
+    private static String getRecordId(String key, String date) {
+        return key + ":" + date;
+    }
+
+    private static List<FailedBatch> waitForBatch(CompletableFuture<List<FailedBatch>> future) {
+        try {
+            return future.get();
+        } catch(ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new BridgeServiceException(e.getCause());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BridgeServiceException(e);
+        }
+    }
 }
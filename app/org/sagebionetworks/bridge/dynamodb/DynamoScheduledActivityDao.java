@@ -5,7 +5,9 @@ import static org.sagebionetworks.bridge.BridgeConstants.API_MINIMUM_PAGE_SIZE;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +26,8 @@ import org.springframework.stereotype.Component;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
@@ -127,6 +131,31 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
         return dbActivity;
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public List<ScheduledActivity> getActivitiesByGuid(String healthCode, Collection<String> guids) {
+        if (guids.isEmpty()) {
+            return ImmutableList.of();
+        }
+        List<Object> keysToLoad = Lists.newArrayListWithCapacity(guids.size());
+        for (String guid : guids) {
+            DynamoScheduledActivity hashKey = new DynamoScheduledActivity();
+            hashKey.setHealthCode(healthCode);
+            hashKey.setGuid(guid);
+            keysToLoad.add(hashKey);
+        }
+        Map<String,List<Object>> resultMap = mapper.batchLoad(keysToLoad);
+        
+        // there's only one table of results returned.
+        List<Object> activitiesLoaded = Iterables.getFirst(resultMap.values(), ImmutableList.of());
+        
+        List<ScheduledActivity> results = Lists.newArrayListWithCapacity(activitiesLoaded.size());
+        for (Object object : activitiesLoaded) {
+            results.add((ScheduledActivity)object);
+        }
+        return results;
+    }
+    
     /** {@inheritDoc} */
     @Override
     public List<ScheduledActivity> getActivities(DateTimeZone timeZone, List<ScheduledActivity> activities) {
@@ -188,5 +217,20 @@ public class DynamoScheduledActivityDao implements ScheduledActivityDao {
             BridgeUtils.ifFailuresThrowException(failures);
         }
     }
-    
+
+    /** {@inheritDoc} */
+    @Override
+    public Iterator<DynamoScheduledActivity> getActivitiesForUser(String healthCode) {
+        checkNotNull(healthCode);
+        
+        DynamoScheduledActivity hashKey = new DynamoScheduledActivity();
+        hashKey.setHealthCode(healthCode);
+
+        DynamoDBQueryExpression<DynamoScheduledActivity> query = new DynamoDBQueryExpression<DynamoScheduledActivity>()
+                .withHashKeyValues(hashKey);
+        
+        // Pages are dropped once they've been iterated over, rather than kept in the list.
+        return mapper.query(DynamoScheduledActivity.class, query,
+                new DynamoDBMapperConfig(PaginationLoadingStrategy.ITERATION_ONLY)).iterator();
+    }
 }
@@ -53,6 +53,7 @@ public final class DynamoStudy implements Study {
     private boolean externalIdValidationEnabled;
     private boolean emailSignInEnabled;
     private boolean externalIdRequiredOnSignup;
+    private boolean externalIdAutoAssignmentEnabled;
     private Map<String, Integer> minSupportedAppVersions;
     private Map<String, String> pushNotificationARNs;
     private boolean disableExport;
@@ -406,6 +407,16 @@ public final class DynamoStudy implements Study {
         this.externalIdRequiredOnSignup = externalIdRequiredOnSignup;
     }
     
+    @Override
+    public boolean isExternalIdAutoAssignmentEnabled() {
+        return externalIdAutoAssignmentEnabled;
+    }
+
+    @Override
+    public void setExternalIdAutoAssignmentEnabled(boolean externalIdAutoAssignmentEnabled) {
+        this.externalIdAutoAssignmentEnabled = externalIdAutoAssignmentEnabled;
+    }
+    
     @Override
     public int getAccountLimit() {
         return accountLimit;
@@ -422,9 +433,9 @@ public final class DynamoStudy implements Study {
                 consentNotificationEmail, version, profileAttributes, taskIdentifiers, dataGroups,
                 passwordPolicy, verifyEmailTemplate, resetPasswordTemplate, accountExistsTemplate, active,
                 strictUploadValidationEnabled, healthCodeExportEnabled, emailVerificationEnabled,
-                externalIdValidationEnabled, externalIdRequiredOnSignup, minSupportedAppVersions,
-                synapseDataAccessTeamId, synapseProjectId, usesCustomExportSchedule, pushNotificationARNs,
-                disableExport, emailSignInTemplate, emailSignInEnabled, accountLimit);
+                externalIdValidationEnabled, externalIdRequiredOnSignup, externalIdAutoAssignmentEnabled,
+                minSupportedAppVersions, synapseDataAccessTeamId, synapseProjectId, usesCustomExportSchedule,
+                pushNotificationARNs, disableExport, emailSignInTemplate, emailSignInEnabled, accountLimit);
     }
 
     @Override
@@ -456,6 +467,7 @@ public final class DynamoStudy implements Study {
                 && Objects.equals(externalIdValidationEnabled, other.externalIdValidationEnabled)
                 && Objects.equals(emailVerificationEnabled, other.emailVerificationEnabled)
                 && Objects.equals(externalIdRequiredOnSignup, other.externalIdRequiredOnSignup)
+                && Objects.equals(externalIdAutoAssignmentEnabled, other.externalIdAutoAssignmentEnabled)
                 && Objects.equals(minSupportedAppVersions, other.minSupportedAppVersions)
                 && Objects.equals(pushNotificationARNs, other.pushNotificationARNs)
                 && Objects.equals(disableExport, other.disableExport)
@@ -472,15 +484,16 @@ public final class DynamoStudy implements Study {
                         + "consentNotificationEmail=%s, version=%s, userProfileAttributes=%s, taskIdentifiers=%s, "
                         + "dataGroups=%s, passwordPolicy=%s, verifyEmailTemplate=%s, resetPasswordTemplate=%s, "
                         + "strictUploadValidationEnabled=%s, healthCodeExportEnabled=%s, emailVerificationEnabled=%s, "
-                        + "externalIdValidationEnabled=%s, externalIdRequiredOnSignup=%s, minSupportedAppVersions=%s, "
+                        + "externalIdValidationEnabled=%s, externalIdRequiredOnSignup=%s, "
+                        + "externalIdAutoAssignmentEnabled=%s, minSupportedAppVersions=%s, "
                         + "usesCustomExportSchedule=%s, pushNotificationARNs=%s, disableExport=%s, "
                         + "emailSignInTemplate=%s, emailSignInEnabled=%s, accountLimit=%s, accountExistsTemplate=%s]",
                 name, active, sponsorName, identifier, minAgeOfConsent, supportEmail,
                 synapseDataAccessTeamId, synapseProjectId, technicalEmail, consentNotificationEmail, version,
                 profileAttributes, taskIdentifiers, dataGroups, passwordPolicy, verifyEmailTemplate,
                 resetPasswordTemplate, strictUploadValidationEnabled, healthCodeExportEnabled, emailVerificationEnabled,
-                externalIdValidationEnabled, externalIdRequiredOnSignup, minSupportedAppVersions,
-                usesCustomExportSchedule, pushNotificationARNs, disableExport, emailSignInTemplate,
+                externalIdValidationEnabled, externalIdRequiredOnSignup, externalIdAutoAssignmentEnabled,
+                minSupportedAppVersions, usesCustomExportSchedule, pushNotificationARNs, disableExport, emailSignInTemplate,
                 emailSignInEnabled, accountLimit, accountExistsTemplate);
     }
 }
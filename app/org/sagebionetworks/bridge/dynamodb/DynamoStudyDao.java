@@ -33,6 +33,7 @@ public class DynamoStudyDao implements StudyDao {
             BridgeConfigFactory.getConfig().getPropertyAsList("study.whitelist"));
 
     private DynamoDBMapper mapper;
+    private DynamoParallelScanner parallelScanner;
 
     @Autowired
     public void setDynamoDbClient(AmazonDynamoDB client, DynamoNamingHelper dynamoNamingHelper) {
@@ -42,6 +43,12 @@ public class DynamoStudyDao implements StudyDao {
         mapper = new DynamoDBMapper(client, mapperConfig);
     }
 
+    /** Scans the study table in parallel. */
+    @Autowired
+    public final void setParallelScanner(DynamoParallelScanner parallelScanner) {
+        this.parallelScanner = parallelScanner;
+    }
+
     @Override
     public boolean doesIdentifierExist(String identifier) {
         DynamoStudy study = new DynamoStudy();
@@ -67,7 +74,7 @@ public class DynamoStudyDao implements StudyDao {
         DynamoDBScanExpression scan = new DynamoDBScanExpression();
 
         // get all studies including deactivated ones
-        List<DynamoStudy> mappings = mapper.scan(DynamoStudy.class, scan);
+        List<DynamoStudy> mappings = parallelScanner.scan(mapper, DynamoStudy.class, scan);
 
         return new ArrayList<Study>(mappings);
     }
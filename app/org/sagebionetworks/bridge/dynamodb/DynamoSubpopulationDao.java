@@ -6,6 +6,7 @@ import static org.sagebionetworks.bridge.models.OperatingSystem.ANDROID;
 import static org.sagebionetworks.bridge.models.OperatingSystem.IOS;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 
@@ -116,9 +117,7 @@ public class DynamoSubpopulationDao implements SubpopulationDao {
                 .filter(subpop -> includeDeleted || !subpop.isDeleted())
                 .collect(toImmutableList());
         
-        for (Subpopulation subpop : subpopulations) {
-            loadCriteria(subpop);
-        }
+        loadCriteria(subpopulations);
         return subpopulations;
     }
     
@@ -212,7 +211,22 @@ public class DynamoSubpopulationDao implements SubpopulationDao {
     }
 
     private void loadCriteria(Subpopulation subpop) {
-        Criteria criteria = criteriaDao.getCriteria(getKey(subpop));
+        setCriteria(subpop, criteriaDao.getCriteria(getKey(subpop)));
+    }
+
+    // Loads the criteria of all the subpopulations in one batch, instead of one read per subpopulation.
+    private void loadCriteria(List<Subpopulation> subpops) {
+        if (subpops.isEmpty()) {
+            return;
+        }
+        List<String> keys = subpops.stream().map(this::getKey).collect(toImmutableList());
+        Map<String,Criteria> criteriaMap = criteriaDao.getCriteriaMap(keys);
+        for (Subpopulation subpop : subpops) {
+            setCriteria(subpop, criteriaMap.get(getKey(subpop)));
+        }
+    }
+
+    private void setCriteria(Subpopulation subpop, Criteria criteria) {
         // Not sure this is even possible at this point. But if the original save did not completely succeed, 
         // this will prevent errors and the user will be able to redo criteria (if any).
         if (criteria == null) {
@@ -9,6 +9,7 @@ import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.Table;
 
@@ -23,7 +24,9 @@ import org.sagebionetworks.bridge.models.sharedmodules.SharedModuleMetadata;
 /** Implementation of SharedModuleMetadata, using Hibernate backed by a SQL database. */
 @Entity
 @IdClass(HibernateSharedModuleMetadataKey.class)
-@Table(name = "SharedModuleMetadata")
+// Supports queries for the most recent published version of each module. Queries by ID use the primary key.
+@Table(name = "SharedModuleMetadata", indexes = @Index(name = "SharedModuleMetadata_published_id_version",
+        columnList = "published, id, version"))
 public class HibernateSharedModuleMetadata implements SharedModuleMetadata {
     private String id;
     private boolean licenseRestricted;
@@ -163,7 +166,8 @@ public class HibernateSharedModuleMetadata implements SharedModuleMetadata {
 
     /** {@inheritDoc} */
     @CollectionTable(name = "SharedModuleTags",
-            joinColumns = { @JoinColumn(name = "id"), @JoinColumn(name = "version") })
+            joinColumns = { @JoinColumn(name = "id"), @JoinColumn(name = "version") },
+            indexes = @Index(name = "SharedModuleTags_tag", columnList = "tag"))
     @Column(name = "tag")
     @ElementCollection(fetch = FetchType.EAGER)
     @Override
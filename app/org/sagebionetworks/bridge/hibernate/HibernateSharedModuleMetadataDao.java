@@ -1,6 +1,8 @@
 package org.sagebionetworks.bridge.hibernate;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Function;
 
 import javax.persistence.PersistenceException;
@@ -11,6 +13,7 @@ import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.hql.internal.ast.QuerySyntaxException;
+import org.hibernate.query.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -77,18 +80,24 @@ public class HibernateSharedModuleMetadataDao implements SharedModuleMetadataDao
 
     /** {@inheritDoc} */
     @Override
-    public List<SharedModuleMetadata> queryMetadata(String whereClause) {
+    public List<SharedModuleMetadata> queryMetadata(String id, boolean mostRecent, boolean published,
+            String whereClause, Set<String> tags) {
         // build query
-        StringBuilder queryBuilder = new StringBuilder();
-        queryBuilder.append("from HibernateSharedModuleMetadata");
-        if (StringUtils.isNotBlank(whereClause)) {
-            queryBuilder.append(" where ").append(whereClause);
-        }
+        String queryString = makeQueryString(id, mostRecent, published, whereClause, tags);
+        boolean hasTags = tags != null && !tags.isEmpty();
 
         // execute query
         try {
-            return sessionHelper(session -> session.createQuery(queryBuilder.toString(), SharedModuleMetadata.class)
-                    .list());
+            return sessionHelper(session -> {
+                Query<SharedModuleMetadata> query = session.createQuery(queryString, SharedModuleMetadata.class);
+                if (id != null) {
+                    query.setParameter("id", id);
+                }
+                if (hasTags) {
+                    query.setParameterList("tags", tags);
+                }
+                return query.list();
+            });
         } catch (IllegalArgumentException ex) {
             // Similarly, an invalid query will result in an IllegalArgumentException which wraps a
             // QuerySyntaxException.
@@ -100,6 +109,38 @@ public class HibernateSharedModuleMetadataDao implements SharedModuleMetadataDao
         }
     }
 
+    // Helper method which builds the HQL query. ID and tags are bound as parameters. The most recent version is a
+    // correlated max() subquery, which is served by the primary key (id, version). Tags are an exists subquery on the
+    // tags table, which is indexed by tag.
+    static String makeQueryString(String id, boolean mostRecent, boolean published, String whereClause,
+            Set<String> tags) {
+        List<String> clauseList = new ArrayList<>();
+        if (id != null) {
+            clauseList.add("metadata.id = :id");
+        }
+        if (published) {
+            clauseList.add("metadata.published = true");
+        }
+        if (mostRecent) {
+            clauseList.add("metadata.version = (select max(latest.version) from HibernateSharedModuleMetadata latest " +
+                    "where latest.id = metadata.id" + (published ? " and latest.published = true" : "") + ")");
+        }
+        if (StringUtils.isNotBlank(whereClause)) {
+            clauseList.add("(" + whereClause + ")");
+        }
+        if (tags != null && !tags.isEmpty()) {
+            clauseList.add("exists (select tagged.id from HibernateSharedModuleMetadata tagged join tagged.tags tag " +
+                    "where tagged.id = metadata.id and tagged.version = metadata.version and tag in (:tags))");
+        }
+
+        StringBuilder queryBuilder = new StringBuilder();
+        queryBuilder.append("from HibernateSharedModuleMetadata metadata");
+        if (!clauseList.isEmpty()) {
+            queryBuilder.append(" where ").append(String.join(" and ", clauseList));
+        }
+        return queryBuilder.toString();
+    }
+
     /** {@inheritDoc} */
     @Override
     public SharedModuleMetadata updateMetadata(SharedModuleMetadata metadata) {
@@ -0,0 +1,38 @@
+package org.sagebionetworks.bridge.models;
+
+/**
+ * Number of keys in one namespace of the cache (the suffix of the Redis key, e.g. "view" or "session"), and an
+ * estimate of the memory they use. The estimate is extrapolated from the serialized size of a sample of the keys.
+ */
+public class CacheNamespaceStats {
+
+    private final String namespace;
+    private final long keyCount;
+    private final int sampledKeyCount;
+    private final long estimatedBytes;
+
+    public CacheNamespaceStats(String namespace, long keyCount, int sampledKeyCount, long estimatedBytes) {
+        this.namespace = namespace;
+        this.keyCount = keyCount;
+        this.sampledKeyCount = sampledKeyCount;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public long getKeyCount() {
+        return keyCount;
+    }
+
+    /** Number of keys whose size was measured to make the estimate. */
+    public int getSampledKeyCount() {
+        return sampledKeyCount;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.sagebionetworks.bridge.models;
+
+/**
+ * State of the pool of connections to Redis on this server. The borrow statistics and circuit state are only known
+ * when the pool is instrumented; otherwise they are zero and null. Counts are since the server started.
+ */
+public class CachePoolStats {
+
+    private final int activeCount;
+    private final int idleCount;
+    private final int waiterCount;
+    private final String circuitState;
+    private final long borrowCount;
+    private final double meanBorrowWaitMillis;
+    private final double maxBorrowWaitMillis;
+    private final long borrowFailureCount;
+    private final long poolExhaustedCount;
+    private final long brokenConnectionCount;
+    private final long rejectedCount;
+
+    public CachePoolStats(int activeCount, int idleCount, int waiterCount, String circuitState, long borrowCount,
+            double meanBorrowWaitMillis, double maxBorrowWaitMillis, long borrowFailureCount, long poolExhaustedCount,
+            long brokenConnectionCount, long rejectedCount) {
+        this.activeCount = activeCount;
+        this.idleCount = idleCount;
+        this.waiterCount = waiterCount;
+        this.circuitState = circuitState;
+        this.borrowCount = borrowCount;
+        this.meanBorrowWaitMillis = meanBorrowWaitMillis;
+        this.maxBorrowWaitMillis = maxBorrowWaitMillis;
+        this.borrowFailureCount = borrowFailureCount;
+        this.poolExhaustedCount = poolExhaustedCount;
+        this.brokenConnectionCount = brokenConnectionCount;
+        this.rejectedCount = rejectedCount;
+    }
+
+    /** Connections in use. */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public int getIdleCount() {
+        return idleCount;
+    }
+
+    /** Threads waiting for a connection. */
+    public int getWaiterCount() {
+        return waiterCount;
+    }
+
+    /** CLOSED, OPEN or HALF_OPEN. */
+    public String getCircuitState() {
+        return circuitState;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public double getMeanBorrowWaitMillis() {
+        return meanBorrowWaitMillis;
+    }
+
+    public double getMaxBorrowWaitMillis() {
+        return maxBorrowWaitMillis;
+    }
+
+    /** Connections that couldn't be borrowed, because Redis couldn't be reached or the pool was exhausted. */
+    public long getBorrowFailureCount() {
+        return borrowFailureCount;
+    }
+
+    /** Connections that couldn't be borrowed because the pool was exhausted. Included in the borrow failure count. */
+    public long getPoolExhaustedCount() {
+        return poolExhaustedCount;
+    }
+
+    /** Connections that failed while in use. */
+    public long getBrokenConnectionCount() {
+        return brokenConnectionCount;
+    }
+
+    /** Calls that failed without trying Redis, because the circuit was open. */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+}
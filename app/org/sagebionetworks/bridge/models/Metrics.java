@@ -106,6 +106,11 @@ public class Metrics {
         json.put("upload_size", uploadSize);
     }
 
+    /** Bytes allocated by the request thread while handling the request. */
+    public void setAllocatedBytes(long allocatedBytes) {
+        json.put("allocated_bytes", allocatedBytes);
+    }
+
     public void setSharingOption(String sharingOption) {
         put("sharing_option", sharingOption);
     }
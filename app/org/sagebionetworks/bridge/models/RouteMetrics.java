@@ -0,0 +1,72 @@
+package org.sagebionetworks.bridge.models;
+
+/**
+ * Latency and memory allocation of the requests to one route (a controller method, e.g.
+ * "SurveyController.getSurvey") that ended with one class of HTTP status (e.g. "2xx"), since the server started.
+ */
+public class RouteMetrics {
+
+    private final String route;
+    private final String statusClass;
+    private final long count;
+    private final double meanMillis;
+    private final long p50Millis;
+    private final long p90Millis;
+    private final long p99Millis;
+    private final long maxMillis;
+    private final long meanAllocatedBytes;
+
+    public RouteMetrics(String route, String statusClass, long count, double meanMillis, long p50Millis,
+            long p90Millis, long p99Millis, long maxMillis, long meanAllocatedBytes) {
+        this.route = route;
+        this.statusClass = statusClass;
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+        this.meanAllocatedBytes = meanAllocatedBytes;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public String getStatusClass() {
+        return statusClass;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public long getP50Millis() {
+        return p50Millis;
+    }
+
+    public long getP90Millis() {
+        return p90Millis;
+    }
+
+    public long getP99Millis() {
+        return p99Millis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * Mean bytes allocated by the request thread while handling a request. This is zero if the JVM can't measure
+     * allocation.
+     */
+    public long getMeanAllocatedBytes() {
+        return meanAllocatedBytes;
+    }
+
+}
@@ -24,6 +24,11 @@ public class ParticipantOptionsLookup {
         this.options = options;
     }
     
+    /** The option values by option name, as stored. Options that haven't been set are absent or null. */
+    public Map<String,String> getOptions() {
+        return options;
+    }
+    
     public DateTimeZone getTimeZone(ParticipantOption option) {
         String value = options.get(option.name());
         // This method is null-safe (returns null)
@@ -0,0 +1,73 @@
+package org.sagebionetworks.bridge.models.notifications;
+
+import java.util.List;
+
+import org.sagebionetworks.bridge.models.BridgeEntity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Simple value object reporting the progress of a notification that is being sent asynchronously. The delivery ID is
+ * returned when the notification is submitted, and can be used to poll for this status until the notification has
+ * been sent to every endpoint.
+ */
+public class NotificationDeliveryStatus implements BridgeEntity {
+
+    public enum State {
+        /** Some endpoints are still being sent the notification. */
+        IN_PROGRESS,
+        /** The notification was sent to every endpoint that is still enabled. */
+        SENT,
+        /** The notification could not be sent to one or more endpoints. See errors. */
+        FAILED
+    }
+
+    private final String deliveryId;
+    private final State state;
+    private final int endpointCount;
+    private final int sentCount;
+    private final int failedCount;
+    private final int disabledCount;
+    private final List<String> errors;
+
+    public NotificationDeliveryStatus(@JsonProperty("deliveryId") String deliveryId,
+            @JsonProperty("state") State state,
+            @JsonProperty("endpointCount") int endpointCount,
+            @JsonProperty("sentCount") int sentCount,
+            @JsonProperty("failedCount") int failedCount,
+            @JsonProperty("disabledCount") int disabledCount,
+            @JsonProperty("errors") List<String> errors) {
+        this.deliveryId = deliveryId;
+        this.state = state;
+        this.endpointCount = endpointCount;
+        this.sentCount = sentCount;
+        this.failedCount = failedCount;
+        this.disabledCount = disabledCount;
+        this.errors = (errors == null) ? ImmutableList.of() : ImmutableList.copyOf(errors);
+    }
+
+    public String getDeliveryId() {
+        return deliveryId;
+    }
+    public State getState() {
+        return state;
+    }
+    /** Number of endpoints (devices or topics) the notification is being sent to. */
+    public int getEndpointCount() {
+        return endpointCount;
+    }
+    public int getSentCount() {
+        return sentCount;
+    }
+    public int getFailedCount() {
+        return failedCount;
+    }
+    /** Endpoints that SNS reported as disabled. Their registrations are deleted. */
+    public int getDisabledCount() {
+        return disabledCount;
+    }
+    public List<String> getErrors() {
+        return errors;
+    }
+}
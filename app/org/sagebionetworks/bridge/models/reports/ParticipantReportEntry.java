@@ -0,0 +1,41 @@
+package org.sagebionetworks.bridge.models.reports;
+
+import org.joda.time.LocalDate;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.datatype.joda.deser.LocalDateDeserializer;
+
+/**
+ * One day of a participant's report, as submitted to the bulk report API. Workers only know participants by their
+ * health code, so the entry carries it along with the record.
+ */
+public final class ParticipantReportEntry {
+
+    private final String healthCode;
+    private final LocalDate date;
+    private final JsonNode data;
+
+    @JsonCreator
+    public ParticipantReportEntry(@JsonProperty("healthCode") String healthCode,
+            @JsonProperty("date") @JsonDeserialize(using = LocalDateDeserializer.class) LocalDate date,
+            @JsonProperty("data") JsonNode data) {
+        this.healthCode = healthCode;
+        this.date = date;
+        this.data = data;
+    }
+
+    public String getHealthCode() {
+        return healthCode;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public JsonNode getData() {
+        return data;
+    }
+}
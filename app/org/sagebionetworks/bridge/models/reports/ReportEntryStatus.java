@@ -0,0 +1,42 @@
+package org.sagebionetworks.bridge.models.reports;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Whether one entry of a bulk report request was saved. Statuses are returned in the order of the submitted entries;
+ * the index is the entry's position in the request. The message explains why an entry wasn't saved.
+ */
+@JsonInclude(Include.NON_NULL)
+public final class ReportEntryStatus {
+
+    private final int index;
+    private final boolean saved;
+    private final String message;
+
+    public static ReportEntryStatus saved(int index) {
+        return new ReportEntryStatus(index, true, null);
+    }
+
+    public static ReportEntryStatus failed(int index, String message) {
+        return new ReportEntryStatus(index, false, message);
+    }
+
+    private ReportEntryStatus(int index, boolean saved, String message) {
+        this.index = index;
+        this.saved = saved;
+        this.message = message;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isSaved() {
+        return saved;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -240,6 +240,15 @@ public interface Study extends BridgeEntity, StudyIdentifier {
     /** @see #isExternalIdRequiredOnSignup(); */
     void setExternalIdRequiredOnSignup(boolean externalIdRequiredOnSignup);
     
+    /**
+     * True if participants who sign up without an external ID are assigned the next unassigned ID from the 
+     * study's list of external IDs. This requires external ID validation to be enabled.
+     */
+    boolean isExternalIdAutoAssignmentEnabled();
+    
+    /** @see #isExternalIdAutoAssignmentEnabled(); */
+    void setExternalIdAutoAssignmentEnabled(boolean externalIdAutoAssignmentEnabled);
+    
     /**
      * Minimum supported app version number. If set, user app clients pointing to an older version will 
      * fail with an httpResponse status code of 410.
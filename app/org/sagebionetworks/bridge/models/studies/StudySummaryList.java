@@ -0,0 +1,54 @@
+package org.sagebionetworks.bridge.models.studies;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * The JSON list of summaries of active studies, ready to send to clients, both as is and GZIP-compressed. The ETag
+ * is a digest of the JSON, so every server computes the same ETag for the same list.
+ */
+public final class StudySummaryList {
+
+    private final String json;
+    private final byte[] gzippedJson;
+    private final String etag;
+
+    public StudySummaryList(String json) {
+        this.json = checkNotNull(json);
+        this.gzippedJson = gzip(json.getBytes(UTF_8));
+        this.etag = "\"" + Hashing.sha256().hashString(json, UTF_8).toString() + "\"";
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    /** Returns the compressed JSON. This array is shared, and must not be modified. */
+    public byte[] getGzippedJson() {
+        return gzippedJson;
+    }
+
+    /** A strong entity tag, including the double quotes, for the ETag and If-None-Match headers. */
+    public String getETag() {
+        return etag;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length / 4);
+        try (OutputStream out = new GZIPOutputStream(baos)) {
+            out.write(bytes);
+        } catch(IOException e) {
+            throw new BridgeServiceException(e);
+        }
+        return baos.toByteArray();
+    }
+}
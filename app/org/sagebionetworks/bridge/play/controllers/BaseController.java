@@ -45,7 +45,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import play.cache.Cache;
 import play.libs.Json;
 import play.mvc.Controller;
 import play.mvc.Http;
@@ -324,6 +323,10 @@ public abstract class BaseController extends Controller {
         return status(202, Json.toJson(new StatusMessage(message)));
     }
     
+    Result acceptedResult(Object obj) {
+        return status(202, (JsonNode)MAPPER.valueToTree(obj));
+    }
+    
     // This is needed or tests fail. It appears to be a bug in Play Framework,
     // that the asJson() method doesn't return a node in that context, possibly
     // because the root object in the JSON is an array (which is legal). 
@@ -378,12 +381,12 @@ public abstract class BaseController extends Controller {
     }
     
     /**
-     * Retrieves the metrics object from the cache. Can be null if the metrics is not in the cache.
+     * Retrieves the metrics object from the request context. Can be null if the request isn't being metered.
      */
     Metrics getMetrics() {
         final String requestId = RequestUtils.getRequestId(request());
         final String cacheKey = Metrics.getCacheKey(requestId);
-        return (Metrics)Cache.get(cacheKey);
+        return (Metrics)Http.Context.current().args.get(cacheKey);
     }
 
     /** Writes the user's account ID, internal session ID, and study ID to the metrics. */
@@ -1,9 +1,15 @@
 package org.sagebionetworks.bridge.play.controllers;
 
+import static org.sagebionetworks.bridge.BridgeConstants.API_DEFAULT_PAGE_SIZE;
+import static org.sagebionetworks.bridge.BridgeUtils.getIntOrDefault;
 import static org.sagebionetworks.bridge.Roles.ADMIN;
 
+import java.util.List;
 import java.util.Set;
 
+import org.sagebionetworks.bridge.models.CacheNamespaceStats;
+import org.sagebionetworks.bridge.models.CachePoolStats;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.services.CacheAdminService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -27,6 +33,28 @@ public class CacheAdminController extends BaseController {
         return okResult(keys);
     }
     
+    public Result getItems(String namespace, String offsetKey, String pageSizeString) {
+        getAuthenticatedSession(ADMIN);
+        
+        int pageSize = getIntOrDefault(pageSizeString, API_DEFAULT_PAGE_SIZE);
+        ForwardCursorPagedResourceList<String> page = cacheAdminService.listItems(namespace, offsetKey, pageSize);
+        return okResult(page);
+    }
+    
+    public Result getNamespaceStats() {
+        getAuthenticatedSession(ADMIN);
+        
+        List<CacheNamespaceStats> stats = cacheAdminService.getNamespaceStats();
+        return okResult(stats);
+    }
+    
+    public Result getPoolStats() {
+        getAuthenticatedSession(ADMIN);
+        
+        CachePoolStats stats = cacheAdminService.getPoolStats();
+        return okResult(stats);
+    }
+    
     public Result removeItem(String cacheKey) {
         getAuthenticatedSession(ADMIN);
         
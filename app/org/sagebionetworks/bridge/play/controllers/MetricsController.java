@@ -0,0 +1,32 @@
+package org.sagebionetworks.bridge.play.controllers;
+
+import static org.sagebionetworks.bridge.Roles.ADMIN;
+
+import java.util.List;
+
+import org.sagebionetworks.bridge.models.RouteMetrics;
+import org.sagebionetworks.bridge.play.interceptors.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+
+import play.mvc.Result;
+
+@Controller
+public class MetricsController extends BaseController {
+
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    final void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /** Latency and allocation statistics of each route on the server that handles this request. */
+    public Result getRouteMetrics() {
+        getAuthenticatedSession(ADMIN);
+
+        List<RouteMetrics> metrics = metricsRegistry.getRouteMetrics();
+        return okResult(metrics);
+    }
+
+}
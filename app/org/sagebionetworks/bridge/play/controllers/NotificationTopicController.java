@@ -10,6 +10,7 @@ import org.springframework.stereotype.Controller;
 
 import org.sagebionetworks.bridge.models.GuidHolder;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.sagebionetworks.bridge.models.notifications.NotificationDeliveryStatus;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationTopic;
 import org.sagebionetworks.bridge.services.NotificationTopicService;
@@ -78,8 +79,18 @@ public class NotificationTopicController extends BaseController {
         
         NotificationMessage message = parseJson(request(), NotificationMessage.class);
         
-        topicService.sendNotification(session.getStudyIdentifier(), guid, message);
+        NotificationDeliveryStatus status = topicService.sendNotification(session.getStudyIdentifier(), guid,
+                message);
         
-        return acceptedResult("Message has been sent to external notification service.");
+        return acceptedResult(status);
+    }
+    
+    public Result getNotificationDeliveryStatus(String guid, String deliveryId) {
+        UserSession session = getAuthenticatedSession(RESEARCHER);
+        
+        NotificationDeliveryStatus status = topicService.getDeliveryStatus(session.getStudyIdentifier(), guid,
+                deliveryId);
+        
+        return okResult(status);
     }
 }
@@ -33,6 +33,7 @@ import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.accounts.UserSessionInfo;
 import org.sagebionetworks.bridge.models.accounts.Withdrawal;
+import org.sagebionetworks.bridge.models.notifications.NotificationDeliveryStatus;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
@@ -306,8 +307,18 @@ public class ParticipantController extends BaseController {
         
         NotificationMessage message = parseJson(request(), NotificationMessage.class);
         
-        participantService.sendNotification(study, userId, message);
+        NotificationDeliveryStatus status = participantService.sendNotification(study, userId, message);
         
-        return acceptedResult("Message has been sent to external notification service.");
+        return acceptedResult(status);
+    }
+    
+    public Result getNotificationDeliveryStatus(String userId, String deliveryId) {
+        UserSession session = getAuthenticatedSession(RESEARCHER);
+        Study study = studyService.getStudy(session.getStudyIdentifier());
+        
+        NotificationDeliveryStatus status = participantService.getNotificationDeliveryStatus(study, userId,
+                deliveryId);
+        
+        return okResult(status);
     }
 }
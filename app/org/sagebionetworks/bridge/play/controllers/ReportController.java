@@ -6,6 +6,8 @@ import static org.sagebionetworks.bridge.Roles.RESEARCHER;
 import static org.sagebionetworks.bridge.Roles.WORKER;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
+import java.util.List;
+
 import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -18,8 +20,10 @@ import org.sagebionetworks.bridge.models.DateRangeResourceList;
 import org.sagebionetworks.bridge.models.ReportTypeResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.sagebionetworks.bridge.models.reports.ParticipantReportEntry;
 import org.sagebionetworks.bridge.models.reports.ReportData;
 import org.sagebionetworks.bridge.models.reports.ReportDataKey;
+import org.sagebionetworks.bridge.models.reports.ReportEntryStatus;
 import org.sagebionetworks.bridge.models.reports.ReportIndex;
 import org.sagebionetworks.bridge.models.reports.ReportType;
 import org.sagebionetworks.bridge.models.studies.Study;
@@ -27,6 +31,7 @@ import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import org.sagebionetworks.bridge.services.ReportService;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import play.mvc.Result;
@@ -49,6 +54,8 @@ import play.mvc.Result;
  */
 @Controller
 public class ReportController extends BaseController {
+    private static final TypeReference<List<ParticipantReportEntry>> PARTICIPANT_REPORT_ENTRY_TYPE_REF =
+            new TypeReference<List<ParticipantReportEntry>>() {};
     
     @Autowired
     ReportService reportService;
@@ -150,6 +157,23 @@ public class ReportController extends BaseController {
         return createdResult("Report data saved.");
     }
     
+    /**
+     * Workers can save many participants' records for a report in one request. Each entry has the participant's 
+     * health code, a date, and the data. The response has the status of each entry, in the order they were 
+     * submitted, since some entries can be saved when others are not.
+     */
+    public Result saveParticipantReportsForWorker(String identifier) throws Exception {
+        UserSession session = getAuthenticatedSession(WORKER);
+        
+        List<ParticipantReportEntry> entries = MAPPER.convertValue(requestToJSON(request()),
+                PARTICIPANT_REPORT_ENTRY_TYPE_REF);
+        
+        List<ReportEntryStatus> statuses = reportService.saveParticipantReports(session.getStudyIdentifier(),
+                identifier, entries);
+        
+        return okResult(statuses);
+    }
+    
     /**
      * Developers and workers can delete participant report data (though worker accounts are unlikely 
      * to know the user ID for records). This deletes all reports for all users. This is not 
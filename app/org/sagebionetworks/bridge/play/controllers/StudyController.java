@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.play.controllers;
 
+import static org.sagebionetworks.bridge.BridgeConstants.JSON_MIME_TYPE;
 import static org.sagebionetworks.bridge.Roles.ADMIN;
 import static org.sagebionetworks.bridge.Roles.DEVELOPER;
 import static org.sagebionetworks.bridge.Roles.RESEARCHER;
@@ -7,11 +8,9 @@ import static org.sagebionetworks.bridge.Roles.WORKER;
 
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableList;
 import org.joda.time.DateTime;
@@ -34,6 +33,7 @@ import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyAndUsers;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.models.studies.StudySummaryList;
 import org.sagebionetworks.bridge.models.studies.SynapseProjectIdTeamIdHolder;
 import org.sagebionetworks.bridge.models.upload.UploadView;
 import org.sagebionetworks.bridge.services.EmailVerificationService;
@@ -44,11 +44,7 @@ import org.sagebionetworks.bridge.services.UploadService;
 @Controller
 public class StudyController extends BaseController {
 
-    private final Comparator<Study> STUDY_COMPARATOR = new Comparator<Study>() {
-        public int compare(Study study1, Study study2) {
-            return study1.getName().compareToIgnoreCase(study2.getName());
-        }
-    };
+    private static final String GZIP_ENCODING = "gzip";
 
     private final Set<String> studyWhitelist = Collections
             .unmodifiableSet(new HashSet<>(BridgeConfigFactory.getConfig().getPropertyAsList("study.whitelist")));
@@ -118,17 +114,14 @@ public class StudyController extends BaseController {
     // You can get a truncated view of studies with either format=summary or summary=true;
     // the latter allows us to make this a boolean flag in the Java client libraries.
     public Result getAllStudies(String format, String summary) throws Exception {
-        List<Study> studies = studyService.getStudies();
         if ("summary".equals(format) || "true".equals(summary)) {
             // then only return active study as summary
-            List<Study> activeStudiesSummary = studies.stream()
-                    .filter(s -> s.isActive()).collect(Collectors.toList());
-            Collections.sort(activeStudiesSummary, STUDY_COMPARATOR);
-            return ok(Study.STUDY_LIST_WRITER.writeValueAsString(new ResourceList<Study>(activeStudiesSummary)));
+            return getStudySummaries();
         }
         getAuthenticatedSession(ADMIN);
 
         // otherwise, return all studies including deactivated ones
+        List<Study> studies = studyService.getStudies();
         return okResult(new ResourceList<>(studies));
     }
 
@@ -229,4 +222,35 @@ public class StudyController extends BaseController {
 
         return okResult(uploads);
     }
+
+    // The summary list is public and rarely changes, so clients can revalidate it with If-None-Match, and it is sent
+    // already compressed rather than gzipped again on every request.
+    private Result getStudySummaries() {
+        StudySummaryList summaries = studyService.getStudySummaryList();
+        response().setHeader(ETAG, summaries.getETag());
+        response().setHeader(VARY, ACCEPT_ENCODING);
+
+        if (matchesETag(request().getHeader(IF_NONE_MATCH), summaries.getETag())) {
+            return status(NOT_MODIFIED);
+        }
+        String acceptEncoding = request().getHeader(ACCEPT_ENCODING);
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP_ENCODING)) {
+            response().setHeader(CONTENT_ENCODING, GZIP_ENCODING);
+            return ok(summaries.getGzippedJson()).as(JSON_MIME_TYPE);
+        }
+        return ok(summaries.getJson()).as(JSON_MIME_TYPE);
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
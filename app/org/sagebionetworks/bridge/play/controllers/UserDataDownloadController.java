@@ -2,10 +2,11 @@ package org.sagebionetworks.bridge.play.controllers;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import javax.annotation.Resource;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.joda.time.LocalDate;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import play.mvc.Result;
 
@@ -19,8 +20,8 @@ import org.sagebionetworks.bridge.services.UserDataDownloadService;
 public class UserDataDownloadController extends BaseController {
     private UserDataDownloadService userDataDownloadService;
 
-    /** Service handler for User Data Download requests. */
-    @Autowired
+    /** Service handler for User Data Download requests. Which implementation is used is configured by Spring. */
+    @Resource(name = "userDataDownloadService")
     public void setUserDataDownloadService(UserDataDownloadService userDataDownloadService) {
         this.userDataDownloadService = userDataDownloadService;
     }
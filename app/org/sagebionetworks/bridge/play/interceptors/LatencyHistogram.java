@@ -0,0 +1,94 @@
+package org.sagebionetworks.bridge.play.interceptors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A thread-safe histogram of request latencies in milliseconds, in the style of HdrHistogram. Latencies under 8 ms
+ * are counted exactly. Above that, each power of two is split into 8 equal buckets, so a recorded value is known to
+ * within 12.5%. Latencies over about 35 minutes are counted as 35 minutes.
+ * </p>
+ * <p>
+ * Recording is lock-free and never allocates, so it can be done on every request.
+ * </p>
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_TRACKABLE_MILLIS = (1L << 21) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_MILLIS) + 1;
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    void record(long millis) {
+        checkArgument(millis >= 0, "latency cannot be negative");
+        long value = Math.min(millis, MAX_TRACKABLE_MILLIS);
+        bucketCounts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        totalMillis.add(millis);
+        maxMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    double getMeanMillis() {
+        long n = count.sum();
+        return (n == 0) ? 0.0 : totalMillis.sum() / (double)n;
+    }
+
+    long getMaxMillis() {
+        return maxMillis.get();
+    }
+
+    /**
+     * Returns the latency that the given fraction (from 0.0 to 1.0) of requests took no longer than. This is the
+     * upper bound of the bucket the percentile falls in, but never more than the maximum recorded latency.
+     */
+    long getPercentileMillis(double fraction) {
+        checkArgument(fraction >= 0.0 && fraction <= 1.0, "fraction must be from 0.0 to 1.0");
+        // Counts are read one at a time while other threads record, so they may not add up to the total count.
+        long total = 0;
+        for (int i=0; i < BUCKET_COUNT; i++) {
+            total += bucketCounts.get(i);
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long target = Math.max(1L, (long)Math.ceil(fraction * total));
+        long cumulative = 0;
+        for (int i=0; i < BUCKET_COUNT; i++) {
+            cumulative += bucketCounts.get(i);
+            if (cumulative >= target) {
+                return Math.min(bucketUpperBound(i), getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int)value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT * (shift + 1) + (int)((value >> shift) - SUB_BUCKET_COUNT);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        return ((long)(SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+}
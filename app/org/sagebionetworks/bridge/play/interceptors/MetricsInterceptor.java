@@ -1,37 +1,67 @@
 package org.sagebionetworks.bridge.play.interceptors;
 
 import static org.apache.http.HttpHeaders.USER_AGENT;
-import static org.sagebionetworks.bridge.BridgeConstants.METRICS_EXPIRE_SECONDS;
 import static org.sagebionetworks.bridge.BridgeConstants.X_FORWARDED_FOR_HEADER;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.sagebionetworks.bridge.models.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import play.cache.Cache;
 import play.mvc.Http;
 import play.mvc.Http.Request;
 import play.mvc.Result;
 
+/**
+ * Logs the metrics of each request, and records its latency and allocated memory in the {@link MetricsRegistry}.
+ * The metrics are kept in the request's context while the request is handled, so controllers can add to them.
+ */
 @Component("metricsInterceptor")
 public class MetricsInterceptor implements MethodInterceptor {
 
     private static final Logger logger = LoggerFactory.getLogger(MetricsInterceptor.class);
 
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final boolean ALLOCATION_MEASURABLE = isAllocationMeasurable();
+
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    final void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
     @Override
     public Object invoke(MethodInvocation method) throws Throwable {
         final Metrics metrics = initMetrics();
-        Cache.set(metrics.getCacheKey(), metrics, METRICS_EXPIRE_SECONDS);
+        Http.Context.current().args.put(metrics.getCacheKey(), metrics);
+        final long startNanos = System.nanoTime();
+        final long startAllocatedBytes = getCurrentThreadAllocatedBytes();
+        // Exceptions are normally turned into results by the exception interceptor, so this should be overwritten.
+        int status = 500;
         try {
             final Result result = (Result)method.proceed();
-            metrics.setStatus(result.toScala().header().status());
+            status = result.toScala().header().status();
+            metrics.setStatus(status);
             return result;
         } finally {
-            Cache.remove(metrics.getCacheKey());
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            long allocatedBytes = -1L;
+            if (startAllocatedBytes >= 0) {
+                allocatedBytes = getCurrentThreadAllocatedBytes() - startAllocatedBytes;
+                metrics.setAllocatedBytes(allocatedBytes);
+            }
             metrics.end();
+            metricsRegistry.record(getRoute(method.getMethod()), status, latencyMillis, allocatedBytes);
             logger.info(metrics.toJsonString());
         }
     }
@@ -46,4 +76,29 @@ public class MetricsInterceptor implements MethodInterceptor {
         metrics.setUserAgent(RequestUtils.header(request, USER_AGENT, null));
         return metrics;
     }
+
+    /** The controller method, e.g. "SurveyController.getSurvey". Unlike the path, this doesn't include IDs. */
+    static String getRoute(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 if the JVM can't measure it. Only work done on the request
+     * thread is counted.
+     */
+    static long getCurrentThreadAllocatedBytes() {
+        if (!ALLOCATION_MEASURABLE) {
+            return -1L;
+        }
+        return ((com.sun.management.ThreadMXBean)THREAD_MX_BEAN).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+    }
+
+    private static boolean isAllocationMeasurable() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)THREAD_MX_BEAN;
+            return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+        }
+        return false;
+    }
 }
@@ -0,0 +1,121 @@
+package org.sagebionetworks.bridge.play.interceptors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.models.RouteMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Aggregates the latency and memory allocation of requests on this server, by route and class of HTTP status.
+ * Statistics are kept since the server started. They can be read by administrators, and a summary of the busiest
+ * routes is logged periodically.
+ */
+@Component
+public class MetricsRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    static final String CONFIG_KEY_SUMMARY_INTERVAL_MINUTES = "metrics.summary.interval.minutes";
+
+    /** Number of routes in the periodic summary, the ones with the most requests. */
+    static final int SUMMARY_ROUTE_COUNT = 10;
+
+    private static final Comparator<RouteMetrics> BY_ROUTE = Comparator.comparing(RouteMetrics::getRoute)
+            .thenComparing(RouteMetrics::getStatusClass);
+
+    private final ConcurrentMap<String, RouteStats> routeStats = new ConcurrentHashMap<>();
+
+    /** Starts logging a summary at the configured interval. No summary is logged if the interval is zero. */
+    @Autowired
+    final void setConfig(Config config) {
+        int intervalMinutes = config.getInt(CONFIG_KEY_SUMMARY_INTERVAL_MINUTES);
+        if (intervalMinutes > 0) {
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("MetricsSummary-%d").setDaemon(true).build());
+            executor.scheduleAtFixedRate(this::logSummary, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Records a request.
+     * @param route
+     *      the controller method that handled the request
+     * @param status
+     *      HTTP status of the response
+     * @param latencyMillis
+     *      time taken to handle the request
+     * @param allocatedBytes
+     *      bytes allocated by the request thread, or a negative number if this wasn't measured
+     */
+    public void record(String route, int status, long latencyMillis, long allocatedBytes) {
+        checkNotNull(route);
+        String statusClass = (status / 100) + "xx";
+        RouteStats stats = routeStats.computeIfAbsent(route + " " + statusClass,
+                key -> new RouteStats(route, statusClass));
+        stats.latency.record(latencyMillis);
+        if (allocatedBytes >= 0) {
+            stats.allocatedBytes.add(allocatedBytes);
+            stats.allocationCount.increment();
+        }
+    }
+
+    /** Returns statistics for every route and status class that has been recorded, sorted by route. */
+    public List<RouteMetrics> getRouteMetrics() {
+        return routeStats.values().stream().map(RouteStats::toRouteMetrics).sorted(BY_ROUTE)
+                .collect(Collectors.toList());
+    }
+
+    void logSummary() {
+        try {
+            List<RouteMetrics> busiest = routeStats.values().stream().map(RouteStats::toRouteMetrics)
+                    .sorted(Comparator.comparingLong(RouteMetrics::getCount).reversed())
+                    .limit(SUMMARY_ROUTE_COUNT).collect(Collectors.toList());
+            for (RouteMetrics metrics : busiest) {
+                logger.info(String.format("%s %s: count=%d, mean=%.1fms, p50=%dms, p90=%dms, p99=%dms, max=%dms, "
+                        + "allocated=%d bytes", metrics.getRoute(), metrics.getStatusClass(), metrics.getCount(),
+                        metrics.getMeanMillis(), metrics.getP50Millis(), metrics.getP90Millis(),
+                        metrics.getP99Millis(), metrics.getMaxMillis(), metrics.getMeanAllocatedBytes()));
+            }
+        } catch(RuntimeException e) {
+            // An exception would cancel future summaries.
+            logger.error("Could not log metrics summary", e);
+        }
+    }
+
+    private static class RouteStats {
+        private final String route;
+        private final String statusClass;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder allocationCount = new LongAdder();
+
+        private RouteStats(String route, String statusClass) {
+            this.route = route;
+            this.statusClass = statusClass;
+        }
+
+        private RouteMetrics toRouteMetrics() {
+            long allocations = allocationCount.sum();
+            long meanAllocatedBytes = (allocations == 0) ? 0L : allocatedBytes.sum() / allocations;
+            return new RouteMetrics(route, statusClass, latency.getCount(), latency.getMeanMillis(),
+                    latency.getPercentileMillis(0.5), latency.getPercentileMillis(0.9),
+                    latency.getPercentileMillis(0.99), latency.getMaxMillis(), meanAllocatedBytes);
+        }
+    }
+}
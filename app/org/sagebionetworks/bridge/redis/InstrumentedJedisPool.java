@@ -0,0 +1,157 @@
+package org.sagebionetworks.bridge.redis;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * A JedisPool that keeps statistics on borrowing connections, and protects Redis with a circuit breaker. Every use of
+ * Redis borrows a connection from the pool and closes it when done. Closing a connection returns it to the pool, or
+ * destroys it if it failed with an I/O error, and the pool's connection factory is wrapped to see both, so the pool
+ * sees every success and failure. Failing to open a new connection also counts as a failure. Running out of pooled
+ * connections doesn't, since that means Redis is busy rather than down; it's only counted in the pool's statistics.
+ * While the circuit is open, borrowing fails at once.
+ */
+public class InstrumentedJedisPool extends JedisPool {
+
+    private final RedisCircuitBreaker circuitBreaker;
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong borrowFailureCount = new AtomicLong();
+    private final AtomicLong poolExhaustedCount = new AtomicLong();
+    private final AtomicLong brokenConnectionCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /** Password can be null if Redis doesn't require one. */
+    public InstrumentedJedisPool(GenericObjectPoolConfig poolConfig, String host, int port, int timeout,
+            String password, RedisCircuitBreaker circuitBreaker) {
+        super(poolConfig, host, port, timeout, password);
+        this.circuitBreaker = checkNotNull(circuitBreaker);
+        // Replaces the pool JedisPool just created (which hasn't opened any connections yet) with one whose 
+        // factory is instrumented.
+        initPool(poolConfig, new InstrumentedFactory(internalPool.getFactory()));
+    }
+
+    @Override
+    public Jedis getResource() {
+        if (!circuitBreaker.allowRequest()) {
+            rejectedCount.incrementAndGet();
+            throw new JedisConnectionException("Redis circuit breaker is open");
+        }
+        long start = System.nanoTime();
+        try {
+            Jedis jedis = super.getResource();
+            long waitNanos = System.nanoTime() - start;
+            borrowCount.incrementAndGet();
+            borrowWaitNanos.addAndGet(waitNanos);
+            maxBorrowWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            return jedis;
+        } catch(JedisException e) {
+            // Failures to connect were already recorded by the factory. The pool signals that it ran out of
+            // connections (no idle connection within the max wait, or none at all if it doesn't block) with a
+            // NoSuchElementException.
+            borrowFailureCount.incrementAndGet();
+            if (e.getCause() instanceof NoSuchElementException) {
+                poolExhaustedCount.incrementAndGet();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Jedis.close() passivates a connection that is returned to the pool, and destroys a connection that is broken. 
+     * Connections are also destroyed when they are evicted or the pool is closed, but those aren't broken.
+     */
+    private class InstrumentedFactory implements PooledObjectFactory<Jedis> {
+        private final PooledObjectFactory<Jedis> factory;
+
+        InstrumentedFactory(PooledObjectFactory<Jedis> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public PooledObject<Jedis> makeObject() throws Exception {
+            try {
+                return factory.makeObject();
+            } catch(Exception e) {
+                circuitBreaker.recordFailure();
+                throw e;
+            }
+        }
+
+        @Override
+        public void destroyObject(PooledObject<Jedis> pooledJedis) throws Exception {
+            if (pooledJedis.getObject().getClient().isBroken()) {
+                brokenConnectionCount.incrementAndGet();
+                circuitBreaker.recordFailure();
+            }
+            factory.destroyObject(pooledJedis);
+        }
+
+        @Override
+        public boolean validateObject(PooledObject<Jedis> pooledJedis) {
+            return factory.validateObject(pooledJedis);
+        }
+
+        @Override
+        public void activateObject(PooledObject<Jedis> pooledJedis) throws Exception {
+            factory.activateObject(pooledJedis);
+        }
+
+        @Override
+        public void passivateObject(PooledObject<Jedis> pooledJedis) throws Exception {
+            circuitBreaker.recordSuccess();
+            factory.passivateObject(pooledJedis);
+        }
+    }
+
+    public RedisCircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    /** Number of connections borrowed from the pool. */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public double getMeanBorrowWaitMillis() {
+        long count = borrowCount.get();
+        return (count == 0) ? 0.0 : (borrowWaitNanos.get() / (double)count) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxBorrowWaitMillis() {
+        return maxBorrowWaitNanos.get() / (double)TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /** Number of times a connection couldn't be borrowed, because Redis couldn't be reached or the pool ran out. */
+    public long getBorrowFailureCount() {
+        return borrowFailureCount.get();
+    }
+
+    /** Number of times a connection couldn't be borrowed because the pool ran out. These don't trip the circuit. */
+    public long getPoolExhaustedCount() {
+        return poolExhaustedCount.get();
+    }
+
+    /** Number of connections that failed while in use. */
+    public long getBrokenConnectionCount() {
+        return brokenConnectionCount.get();
+    }
+
+    /** Number of times a connection wasn't borrowed because the circuit was open. */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
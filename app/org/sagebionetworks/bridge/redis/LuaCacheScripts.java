@@ -0,0 +1,279 @@
+package org.sagebionetworks.bridge.redis;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.List;
+import java.util.Map;
+
+import org.sagebionetworks.bridge.cache.CacheScripts;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+
+/**
+ * Runs the cache scripts in Redis as Lua scripts. Scripts are called by their SHA-1 digest with EVALSHA, so only the
+ * digest is sent with each call. The scripts are loaded into Redis when this is created. If Redis has since lost them
+ * (e.g. it restarted), the script is sent with EVAL, which also loads it again.
+ */
+public class LuaCacheScripts implements CacheScripts {
+    private static final Logger logger = LoggerFactory.getLogger(LuaCacheScripts.class);
+
+    // KEYS[1] = key, ARGV[1] = expiration in seconds
+    static final String GET_AND_EXPIRE_SCRIPT =
+            "local value = redis.call('GET', KEYS[1])\n" +
+            "if value then\n" +
+            "    redis.call('EXPIRE', KEYS[1], ARGV[1])\n" +
+            "end\n" +
+            "return value";
+
+    // KEYS[1] = user key, KEYS[2] = session key, ARGV[1] = session token, ARGV[2] = session,
+    // ARGV[3] = expiration in seconds if the user key doesn't have one
+    static final String SET_SESSION_SCRIPT =
+            "local ttl = redis.call('TTL', KEYS[1])\n" +
+            "if ttl <= 0 then\n" +
+            "    ttl = tonumber(ARGV[3])\n" +
+            "end\n" +
+            "redis.call('SETEX', KEYS[1], ttl, ARGV[1])\n" +
+            "redis.call('SETEX', KEYS[2], ttl, ARGV[2])\n" +
+            "return ttl";
+
+    // KEYS[1] = key, KEYS[2] = generation key, ARGV[1] = new generation, ARGV[2] = generation expiration in seconds
+    static final String INVALIDATE_SCRIPT =
+            "redis.call('DEL', KEYS[1])\n" +
+            "redis.call('SETEX', KEYS[2], ARGV[2], ARGV[1])\n" +
+            "return 1";
+
+    // KEYS[1] = key, KEYS[2] = generation key, ARGV[1] = generation the value was loaded at, ARGV[2] = value,
+    // ARGV[3] = expiration in seconds
+    static final String SET_IF_GENERATION_SCRIPT =
+            "local generation = redis.call('GET', KEYS[2]) or ''\n" +
+            "if generation ~= ARGV[1] then\n" +
+            "    return 0\n" +
+            "end\n" +
+            "redis.call('SETEX', KEYS[1], ARGV[3], ARGV[2])\n" +
+            "return 1";
+
+    // KEYS[1] = key, ARGV[1] = value the key must hold, ARGV[2] = expiration in milliseconds
+    static final String EXPIRE_IF_VALUE_SCRIPT =
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then\n" +
+            "    return 0\n" +
+            "end\n" +
+            "return redis.call('PEXPIRE', KEYS[1], ARGV[2])";
+
+    // KEYS[1] = hash, KEYS[2] = generation key, ARGV[1] = generation the values were loaded at,
+    // ARGV[2] = expiration in seconds, ARGV[3...] = field, value pairs
+    static final String SET_FIELDS_IF_GENERATION_SCRIPT =
+            "local generation = redis.call('GET', KEYS[2]) or ''\n" +
+            "if generation ~= ARGV[1] then\n" +
+            "    return 0\n" +
+            "end\n" +
+            "local created = redis.call('EXISTS', KEYS[1]) == 0\n" +
+            "for i = 3, #ARGV, 2 do\n" +
+            "    redis.call('HSETNX', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "end\n" +
+            "if created then\n" +
+            "    redis.call('EXPIRE', KEYS[1], ARGV[2])\n" +
+            "end\n" +
+            "return 1";
+
+    // KEYS = hash, generation key, for each hash. ARGV[1] = new generation, ARGV[2] = generation expiration in
+    // seconds, ARGV[3...] = index of the hash in KEYS, field, value triples
+    static final String SET_EXISTING_FIELDS_SCRIPT =
+            "for i = 2, #KEYS, 2 do\n" +
+            "    redis.call('SETEX', KEYS[i], ARGV[2], ARGV[1])\n" +
+            "end\n" +
+            "for i = 3, #ARGV, 3 do\n" +
+            "    local hash = KEYS[tonumber(ARGV[i])]\n" +
+            "    if redis.call('HEXISTS', hash, ARGV[i + 1]) == 1 then\n" +
+            "        redis.call('HSET', hash, ARGV[i + 1], ARGV[i + 2])\n" +
+            "    end\n" +
+            "end\n" +
+            "return 1";
+
+    // KEYS[1] = hash, KEYS[2] = generation key, ARGV[1] = field, ARGV[2] = new generation,
+    // ARGV[3] = generation expiration in seconds
+    static final String INVALIDATE_FIELD_SCRIPT =
+            "redis.call('HDEL', KEYS[1], ARGV[1])\n" +
+            "redis.call('SETEX', KEYS[2], ARGV[3], ARGV[2])\n" +
+            "return 1";
+
+    // KEYS[1] = list. LPOP returns false for an empty list, which Redis returns as a null element.
+    static final String POP_SCRIPT =
+            "local element = redis.call('LPOP', KEYS[1])\n" +
+            "return {element, redis.call('LLEN', KEYS[1])}";
+
+    // KEYS[1] = list, ARGV[1] = expiration in seconds, ARGV[2...] = values
+    static final String REPLACE_LIST_SCRIPT =
+            "redis.call('DEL', KEYS[1])\n" +
+            "for i = 2, #ARGV do\n" +
+            "    redis.call('RPUSH', KEYS[1], ARGV[i])\n" +
+            "end\n" +
+            "if #ARGV > 1 then\n" +
+            "    redis.call('EXPIRE', KEYS[1], ARGV[1])\n" +
+            "end\n" +
+            "return 1";
+
+    private static final String GET_AND_EXPIRE_SHA = sha1(GET_AND_EXPIRE_SCRIPT);
+    private static final String SET_SESSION_SHA = sha1(SET_SESSION_SCRIPT);
+    private static final String INVALIDATE_SHA = sha1(INVALIDATE_SCRIPT);
+    private static final String SET_IF_GENERATION_SHA = sha1(SET_IF_GENERATION_SCRIPT);
+    private static final String EXPIRE_IF_VALUE_SHA = sha1(EXPIRE_IF_VALUE_SCRIPT);
+    private static final String SET_FIELDS_IF_GENERATION_SHA = sha1(SET_FIELDS_IF_GENERATION_SCRIPT);
+    private static final String SET_EXISTING_FIELDS_SHA = sha1(SET_EXISTING_FIELDS_SCRIPT);
+    private static final String INVALIDATE_FIELD_SHA = sha1(INVALIDATE_FIELD_SCRIPT);
+    private static final String POP_SHA = sha1(POP_SCRIPT);
+    private static final String REPLACE_LIST_SHA = sha1(REPLACE_LIST_SCRIPT);
+
+    private final JedisPool jedisPool;
+
+    public LuaCacheScripts(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.scriptLoad(GET_AND_EXPIRE_SCRIPT);
+            jedis.scriptLoad(SET_SESSION_SCRIPT);
+            jedis.scriptLoad(INVALIDATE_SCRIPT);
+            jedis.scriptLoad(SET_IF_GENERATION_SCRIPT);
+            jedis.scriptLoad(EXPIRE_IF_VALUE_SCRIPT);
+            jedis.scriptLoad(SET_FIELDS_IF_GENERATION_SCRIPT);
+            jedis.scriptLoad(SET_EXISTING_FIELDS_SCRIPT);
+            jedis.scriptLoad(INVALIDATE_FIELD_SCRIPT);
+            jedis.scriptLoad(POP_SCRIPT);
+            jedis.scriptLoad(REPLACE_LIST_SCRIPT);
+        } catch(RuntimeException e) {
+            // Not fatal, scripts are loaded on first use.
+            logger.warn("Could not load cache scripts into Redis", e);
+        }
+    }
+
+    @Override
+    public String getAndExpire(String key, int expireInSeconds) {
+        return (String)eval(GET_AND_EXPIRE_SCRIPT, GET_AND_EXPIRE_SHA, ImmutableList.of(key),
+                ImmutableList.of(Integer.toString(expireInSeconds)));
+    }
+
+    @Override
+    public void setSession(String userKey, String sessionToken, String sessionKey, String session,
+            int expireInSeconds) {
+        Object result = eval(SET_SESSION_SCRIPT, SET_SESSION_SHA, ImmutableList.of(userKey, sessionKey),
+                ImmutableList.of(sessionToken, session, Integer.toString(expireInSeconds)));
+        if (result == null) {
+            throw new BridgeServiceException("Session storage error.");
+        }
+    }
+
+    @Override
+    public void invalidate(String key, String generationKey, String newGeneration, int generationExpireInSeconds) {
+        eval(INVALIDATE_SCRIPT, INVALIDATE_SHA, ImmutableList.of(key, generationKey),
+                ImmutableList.of(newGeneration, Integer.toString(generationExpireInSeconds)));
+    }
+
+    @Override
+    public boolean setIfGeneration(String key, String generationKey, String generation, String value,
+            int expireInSeconds) {
+        Object result = eval(SET_IF_GENERATION_SCRIPT, SET_IF_GENERATION_SHA, ImmutableList.of(key, generationKey),
+                ImmutableList.of(generation, value, Integer.toString(expireInSeconds)));
+        return Long.valueOf(1L).equals(result);
+    }
+
+    @Override
+    public boolean expireIfValue(String key, String value, long expireInMillis) {
+        Object result = eval(EXPIRE_IF_VALUE_SCRIPT, EXPIRE_IF_VALUE_SHA, ImmutableList.of(key),
+                ImmutableList.of(value, Long.toString(expireInMillis)));
+        return Long.valueOf(1L).equals(result);
+    }
+
+    @Override
+    public List<String> getFields(String key, List<String> fields) {
+        if (fields.isEmpty()) {
+            return Lists.newArrayList();
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hmget(key, fields.toArray(new String[fields.size()]));
+        }
+    }
+
+    @Override
+    public boolean setFieldsIfGeneration(String key, String generationKey, String generation,
+            Map<String, String> values, int expireInSeconds) {
+        List<String> args = Lists.newArrayList(generation, Integer.toString(expireInSeconds));
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+        Object result = eval(SET_FIELDS_IF_GENERATION_SCRIPT, SET_FIELDS_IF_GENERATION_SHA,
+                ImmutableList.of(key, generationKey), args);
+        return Long.valueOf(1L).equals(result);
+    }
+
+    @Override
+    public void setExistingFields(Map<String, String> generationKeys, Map<String, Map<String, String>> values,
+            String newGeneration, int generationExpireInSeconds) {
+        List<String> keys = Lists.newArrayList();
+        List<String> args = Lists.newArrayList(newGeneration, Integer.toString(generationExpireInSeconds));
+        for (Map.Entry<String, Map<String, String>> hashEntry : values.entrySet()) {
+            keys.add(hashEntry.getKey());
+            keys.add(generationKeys.get(hashEntry.getKey()));
+            // Lua arrays are 1-based.
+            String keyIndex = Integer.toString(keys.size() - 1);
+            for (Map.Entry<String, String> entry : hashEntry.getValue().entrySet()) {
+                args.add(keyIndex);
+                args.add(entry.getKey());
+                args.add(entry.getValue());
+            }
+        }
+        eval(SET_EXISTING_FIELDS_SCRIPT, SET_EXISTING_FIELDS_SHA, keys, args);
+    }
+
+    @Override
+    public void invalidateField(String key, String field, String generationKey, String newGeneration,
+            int generationExpireInSeconds) {
+        eval(INVALIDATE_FIELD_SCRIPT, INVALIDATE_FIELD_SHA, ImmutableList.of(key, generationKey),
+                ImmutableList.of(field, newGeneration, Integer.toString(generationExpireInSeconds)));
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, int expireInSeconds) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return "OK".equals(jedis.set(key, value, "NX", "EX", expireInSeconds));
+        }
+    }
+
+    @Override
+    public PopResult pop(String key) {
+        List<?> result = (List<?>)eval(POP_SCRIPT, POP_SHA, ImmutableList.of(key), ImmutableList.of());
+        return new PopResult((String)result.get(0), (Long)result.get(1));
+    }
+
+    @Override
+    public void replaceList(String key, List<String> values, int expireInSeconds) {
+        List<String> args = Lists.newArrayList(Integer.toString(expireInSeconds));
+        args.addAll(values);
+        eval(REPLACE_LIST_SCRIPT, REPLACE_LIST_SHA, ImmutableList.of(key), args);
+    }
+
+    private Object eval(String script, String sha, List<String> keys, List<String> args) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            try {
+                return jedis.evalsha(sha, keys, args);
+            } catch(JedisDataException e) {
+                if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) {
+                    throw e;
+                }
+                return jedis.eval(script, keys, args);
+            }
+        }
+    }
+
+    // The digest Redis uses to identify a script.
+    static String sha1(String script) {
+        return Hashing.sha1().hashString(script, UTF_8).toString();
+    }
+}
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.sagebionetworks.bridge.cache.Cache;
+import org.sagebionetworks.bridge.cache.CacheCodec;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,8 +22,14 @@ public class RedisCache implements Cache {
     private static final String KEY_PATTERN = "%s:%s";
     private static final String LIST_KEY_PATTERN = "List:%s:%s";
 
+    private CacheCodec cacheCodec;
     private JedisOps jedisOps;
 
+    @Autowired
+    public void setCacheCodec(CacheCodec cacheCodec) {
+        this.cacheCodec = cacheCodec;
+    }
+
     @Autowired
     public void setStringOps(JedisOps jedisOps) {
         this.jedisOps = jedisOps;
@@ -33,7 +40,7 @@ public class RedisCache implements Cache {
         String redisKey = String.format(KEY_PATTERN, clazz.getName(), key);
 
         try {
-            String json = jedisOps.get(redisKey);
+            String json = cacheCodec.decode(jedisOps.get(redisKey));
             if (json != null) {
                 return BridgeObjectMapper.get().readValue(json, clazz);
             } else {
@@ -50,7 +57,7 @@ public class RedisCache implements Cache {
         String redisKey = String.format(LIST_KEY_PATTERN, clazz.getName(), key);
 
         try {
-            String json = jedisOps.get(redisKey);
+            String json = cacheCodec.decode(jedisOps.get(redisKey));
             if (json == null) {
                 return null;
             }
@@ -88,7 +95,7 @@ public class RedisCache implements Cache {
 
     private <T> void putInternal(String internalKey, T value, int ttlSeconds) {
         try {
-            String json = BridgeObjectMapper.get().writeValueAsString(value);
+            String json = cacheCodec.encode(BridgeObjectMapper.get().writeValueAsString(value));
             String result = jedisOps.setex(internalKey, ttlSeconds, json);
             if (!"OK".equals(result)) {
                 logger.error(String.format("Error putting redis object for key %s, result code %s", internalKey, result));
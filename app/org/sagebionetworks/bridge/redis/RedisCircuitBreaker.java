@@ -0,0 +1,82 @@
+package org.sagebionetworks.bridge.redis;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sagebionetworks.bridge.json.DateUtils;
+
+/**
+ * Stops calls to Redis for a while once it has failed several times in a row, so that requests fail at once rather
+ * than each waiting for Redis to time out. When that time is up, a single call is let through to find out whether
+ * Redis is back. If it succeeds, the circuit closes, and if it fails, the circuit opens again right away. If the call
+ * never reports back, another one is let through after the same wait.
+ */
+public class RedisCircuitBreaker {
+
+    public enum State {
+        /** Calls go through. */
+        CLOSED,
+        /** Calls fail without trying Redis. */
+        OPEN,
+        /** One call goes through, to find out whether Redis is back. The others fail without trying Redis. */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // Zero while the circuit is closed. Otherwise, no call is let through until this time.
+    private final AtomicLong openUntil = new AtomicLong();
+    private volatile boolean probing;
+
+    public RedisCircuitBreaker(int failureThreshold, long openMillis) {
+        checkArgument(failureThreshold > 0);
+        checkArgument(openMillis > 0);
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /** True if a call to Redis should be attempted. */
+    public boolean allowRequest() {
+        long until = openUntil.get();
+        if (until == 0L) {
+            return true;
+        }
+        long now = DateUtils.getCurrentMillisFromEpoch();
+        if (now < until) {
+            return false;
+        }
+        // Only the caller that moves the deadline tries Redis.
+        if (openUntil.compareAndSet(until, now + openMillis)) {
+            probing = true;
+            return true;
+        }
+        return false;
+    }
+
+    public void recordSuccess() {
+        // Most calls succeed when the circuit is closed. Don't write to shared state unless we have to.
+        if (consecutiveFailures.get() != 0 || openUntil.get() != 0L) {
+            consecutiveFailures.set(0);
+            openUntil.set(0L);
+            probing = false;
+        }
+    }
+
+    public void recordFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntil.set(DateUtils.getCurrentMillisFromEpoch() + openMillis);
+            probing = false;
+        }
+    }
+
+    public State getState() {
+        long until = openUntil.get();
+        if (until == 0L) {
+            return State.CLOSED;
+        }
+        return (probing || DateUtils.getCurrentMillisFromEpoch() >= until) ? State.HALF_OPEN : State.OPEN;
+    }
+}
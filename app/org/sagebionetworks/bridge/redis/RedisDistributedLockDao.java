@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.redis;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import org.sagebionetworks.bridge.cache.CacheScripts;
 import org.sagebionetworks.bridge.dao.DistributedLockDao;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
@@ -10,14 +11,18 @@ import org.sagebionetworks.bridge.lock.LockNotAvailableException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import redis.clients.jedis.exceptions.JedisException;
+
 @Component
 public class RedisDistributedLockDao implements DistributedLockDao {
 
     private static final int EXPIRATION_IN_SECONDS = 3 * 60;
+    private final CacheScripts cacheScripts;
     private RedisLock redisLock;
 
     @Autowired
-    public RedisDistributedLockDao(JedisOps jedisOps) {
+    public RedisDistributedLockDao(JedisOps jedisOps, CacheScripts cacheScripts) {
+        this.cacheScripts = cacheScripts;
         redisLock = new RedisLock(jedisOps);
     }
 
@@ -52,6 +57,24 @@ public class RedisDistributedLockDao implements DistributedLockDao {
         }
     }
 
+    @Override
+    public boolean renewLock(final Class<?> clazz, final String identifier, final String lock,
+            final int expireInSeconds) {
+        checkNotNull(clazz);
+        checkNotNull(identifier);
+        checkNotNull(lock);
+        checkArgument(expireInSeconds > 0);
+        try {
+            final String redisKey = createRedisKey(clazz, identifier);
+            // Check and expire in one script, so we never extend a lease someone else took after ours expired.
+            return cacheScripts.expireIfValue(redisKey, lock, expireInSeconds * 1000L);
+        } catch (RedisException e) {
+            throw new BridgeServiceException("Lock not renewed.");
+        } catch (JedisException e) {
+            throw new BridgeServiceException("Lock not renewed.");
+        }
+    }
+
     private String createRedisKey(Class<?> clazz, String identifier) {
         String key = identifier + RedisKey.SEPARATOR + clazz.getCanonicalName();
         return RedisKey.LOCK.getRedisKey(key);
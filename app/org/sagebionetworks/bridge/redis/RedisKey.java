@@ -49,7 +49,31 @@ public interface RedisKey {
     /** A cached JSON response. */
     RedisKey VIEW = new SimpleKey("view");
 
+    /** Serialized list of study summaries. */
+    RedisKey STUDY_SUMMARIES = new SimpleKey("study-summaries");
+
     RedisKey STUDY_EMAIL_STATUS = new SimpleKey("study-email-status");
+
+    /** Activity event map, by health code. */
+    RedisKey ACTIVITY_EVENTS = new SimpleKey("activity-events");
+
+    /** Participant options, by health code. */
+    RedisKey PARTICIPANT_OPTIONS = new SimpleKey("participant-options");
+
+    /** Report data records by date, by report data key. */
+    RedisKey REPORT_DATA = new SimpleKey("report-data");
+
+    /** Queue of unassigned external IDs, by study. */
+    RedisKey EXTERNAL_ID_POOL = new SimpleKey("external-id-pool");
+
+    /** Set while a study's queue of unassigned external IDs is being refilled, or after a refill found none. */
+    RedisKey EXTERNAL_ID_POOL_REFILL = new SimpleKey("external-id-pool-refill");
+
+    /** Status of an asynchronous notification delivery. */
+    RedisKey NOTIFICATION_DELIVERY = new SimpleKey("notification-delivery");
+
+    /** Generation of a cached value, by the value's Redis key. Changes every time the value is invalidated. */
+    RedisKey GENERATION = new SimpleKey("generation");
     
     String SEPARATOR = ":";
 
@@ -3,9 +3,11 @@ package org.sagebionetworks.bridge.services;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sagebionetworks.bridge.BridgeUtils.COMMA_JOINER;
 
+import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.ActivityEventDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoActivityEvent;
 import org.sagebionetworks.bridge.models.activities.ActivityEvent;
@@ -17,16 +19,32 @@ import org.sagebionetworks.bridge.models.surveys.SurveyAnswer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * Activity event maps are read every time a participant's activities are scheduled, so they are cached in Redis by 
+ * health code. Every write goes through this service, which drops the cached map once the event is persisted, so the 
+ * next read reloads it from DynamoDB. Dropping the map also changes its generation, so a read that loaded the map 
+ * before the event was persisted doesn't put the old map back in the cache. (Publishing an event doesn't always change
+ * the map, e.g. re-enrollment, so the cached map is invalidated rather than patched.)
+ */
 @Component
 public class ActivityEventService {
 
     private ActivityEventDao activityEventDao;
+    private CacheProvider cacheProvider;
     
     @Autowired
     public void setActivityEventDao(ActivityEventDao activityEventDao) {
         this.activityEventDao = activityEventDao;
     }
     
+    @Autowired
+    public void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+    
     public void publishEnrollmentEvent(String healthCode, ConsentSignature signature) {
         checkNotNull(signature);
         
@@ -34,7 +52,7 @@ public class ActivityEventService {
             .withHealthCode(healthCode)
             .withTimestamp(signature.getSignedOn())
             .withObjectType(ActivityEventObjectType.ENROLLMENT).build();
-        activityEventDao.publishEvent(event);    
+        publishEvent(event);
     }
     
     public void publishQuestionAnsweredEvent(String healthCode, SurveyAnswer answer) {
@@ -48,26 +66,40 @@ public class ActivityEventService {
             .withObjectId(answer.getQuestionGuid())
             .withEventType(ActivityEventType.ANSWERED)
             .withAnswerValue(COMMA_JOINER.join(answer.getAnswers())).build();
-        activityEventDao.publishEvent(event);
+        publishEvent(event);
     }
     
     public void publishActivityFinishedEvent(ScheduledActivity schActivity) {
         checkNotNull(schActivity);
         
-        // If there's no colon, this is an existing activity and it cannot fire an 
-        // activity event. Quietly ignore this until we have migrated activities.
-        if (schActivity.getGuid().contains(":")) {
-            String activityGuid = schActivity.getGuid().split(":")[0];
-            
-            ActivityEvent event = new DynamoActivityEvent.Builder()
-                .withHealthCode(schActivity.getHealthCode())
-                .withObjectType(ActivityEventObjectType.ACTIVITY)
-                .withObjectId(activityGuid)
-                .withEventType(ActivityEventType.FINISHED)
-                .withTimestamp(schActivity.getFinishedOn())
-                .build();
-
-            activityEventDao.publishEvent(event);
+        ActivityEvent event = createActivityFinishedEvent(schActivity);
+        if (event != null) {
+            publishEvent(event);
+        }
+    }
+    
+    /**
+     * Publish the finished events for a batch of a participant's activities. Activities that are instances of the 
+     * same activity produce the same event, so they are coalesced to the latest finishedOn timestamp before the 
+     * events are written in one batch.
+     */
+    public void publishActivityFinishedEvents(String healthCode, List<ScheduledActivity> schActivities) {
+        checkNotNull(healthCode);
+        checkNotNull(schActivities);
+        
+        Map<String,ActivityEvent> eventsById = Maps.newLinkedHashMap();
+        for (ScheduledActivity schActivity : schActivities) {
+            ActivityEvent event = createActivityFinishedEvent(schActivity);
+            if (event != null) {
+                ActivityEvent existing = eventsById.get(event.getEventId());
+                if (existing == null || event.getTimestamp() > existing.getTimestamp()) {
+                    eventsById.put(event.getEventId(), event);
+                }
+            }
+        }
+        if (!eventsById.isEmpty()) {
+            activityEventDao.publishEvents(ImmutableList.copyOf(eventsById.values()));
+            cacheProvider.removeActivityEventMap(healthCode);
         }
     }
     
@@ -81,7 +113,7 @@ public class ActivityEventService {
      */
     public void publishActivityEvent(ActivityEvent event) {
         checkNotNull(event);
-        activityEventDao.publishEvent(event);
+        publishEvent(event);
     }
 
     /**
@@ -91,12 +123,43 @@ public class ActivityEventService {
      */
     public Map<String, DateTime> getActivityEventMap(String healthCode) {
         checkNotNull(healthCode);
-        return activityEventDao.getActivityEventMap(healthCode);
+        
+        Map<String, DateTime> eventMap = cacheProvider.getActivityEventMap(healthCode);
+        if (eventMap == null) {
+            // Read the generation before the events, so a map loaded before an event is published isn't cached.
+            String generation = cacheProvider.getActivityEventMapGeneration(healthCode);
+            eventMap = activityEventDao.getActivityEventMap(healthCode);
+            cacheProvider.setActivityEventMap(healthCode, eventMap, generation);
+        }
+        return eventMap;
     }
 
     public void deleteActivityEvents(String healthCode) {
         checkNotNull(healthCode);
         activityEventDao.deleteActivityEvents(healthCode);
+        cacheProvider.removeActivityEventMap(healthCode);
+    }
+
+    private ActivityEvent createActivityFinishedEvent(ScheduledActivity schActivity) {
+        // If there's no colon, this is an existing activity and it cannot fire an 
+        // activity event. Quietly ignore this until we have migrated activities.
+        if (!schActivity.getGuid().contains(":")) {
+            return null;
+        }
+        String activityGuid = schActivity.getGuid().split(":")[0];
+        
+        return new DynamoActivityEvent.Builder()
+            .withHealthCode(schActivity.getHealthCode())
+            .withObjectType(ActivityEventObjectType.ACTIVITY)
+            .withObjectId(activityGuid)
+            .withEventType(ActivityEventType.FINISHED)
+            .withTimestamp(schActivity.getFinishedOn())
+            .build();
+    }
+
+    private void publishEvent(ActivityEvent event) {
+        activityEventDao.publishEvent(event);
+        cacheProvider.removeActivityEventMap(event.getHealthCode());
     }
 
 }
@@ -2,22 +2,73 @@ package org.sagebionetworks.bridge.services;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.CacheNamespaceStats;
+import org.sagebionetworks.bridge.models.CachePoolStats;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
+import org.sagebionetworks.bridge.redis.InstrumentedJedisPool;
 import org.sagebionetworks.bridge.redis.RedisKey;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+/**
+ * Lets administrators inspect and remove cache entries. The keyspace is walked with SCAN, never KEYS, so these calls
+ * don't block Redis for other requests, however large the cache is.
+ */
 @Component
 public class CacheAdminService {
 
+    static final String PAGE_SIZE_ERROR = "pageSize must be from 1-"+API_MAXIMUM_PAGE_SIZE+" records";
+    static final String OTHER_NAMESPACE = "other";
+
+    /** Number of keys examined per SCAN call when walking the whole keyspace. */
+    static final int SCAN_BATCH_SIZE = 1000;
+
+    /** Number of keys examined per SCAN call when listing a page of keys. */
+    static final int LIST_SCAN_BATCH_SIZE = 100;
+
+    /**
+     * Most SCAN calls made for one page of keys, so a namespace with few keys in a large cache doesn't walk the whole
+     * keyspace in one request.
+     */
+    static final int MAX_SCANS_PER_PAGE = 10;
+
+    /** Number of keys per namespace whose size is measured to estimate the namespace's memory use. */
+    static final int MEMORY_SAMPLE_SIZE = 20;
+
+    /**
+     * Namespaces we report on, by Redis key suffix. Compound keys come before the simple keys they end with, so that
+     * "abc:session:user" is counted as a user session rather than a session.
+     */
+    private static final List<RedisKey> NAMESPACES = ImmutableList.of(RedisKey.USER_SESSION,
+            RedisKey.HEALTH_CODE_LOCK, RedisKey.USER_LOCK, RedisKey.SESSION, RedisKey.REQUEST_INFO, RedisKey.LOCK,
+            RedisKey.STUDY, RedisKey.HEALTH_CODE, RedisKey.USER, RedisKey.NUM_OF_PARTICIPANTS, RedisKey.VIEW,
+            RedisKey.STUDY_SUMMARIES, RedisKey.STUDY_EMAIL_STATUS, RedisKey.ACTIVITY_EVENTS,
+            RedisKey.PARTICIPANT_OPTIONS, RedisKey.REPORT_DATA, RedisKey.EXTERNAL_ID_POOL,
+            RedisKey.EXTERNAL_ID_POOL_REFILL, RedisKey.NOTIFICATION_DELIVERY, RedisKey.GENERATION);
+
+    /** Namespaces of session keys, which are never listed or removed. */
+    private static final Set<RedisKey> SESSION_NAMESPACES = ImmutableSet.of(RedisKey.USER_SESSION, RedisKey.SESSION,
+            RedisKey.REQUEST_INFO);
+
     private final String SESSION_SUFFIX = RedisKey.SEPARATOR + RedisKey.SESSION.getSuffix();
     private final String USER_SESSION_SUFFIX = RedisKey.SEPARATOR + RedisKey.SESSION.getSuffix() + RedisKey.SEPARATOR + RedisKey.USER.getSuffix();
     private final String REQUEST_INFO_SUFFIX = RedisKey.SEPARATOR + RedisKey.REQUEST_INFO.getSuffix();
@@ -34,16 +85,139 @@ public class CacheAdminService {
      * @return
      */
     public Set<String> listItems() {
+        Set<String> set = Sets.newHashSet();
+        try (Jedis jedis = jedisPool.getResource()) {
+            String cursor = ScanParams.SCAN_POINTER_START;
+            ScanParams params = new ScanParams().count(SCAN_BATCH_SIZE);
+            do {
+                ScanResult<String> result = jedis.scan(cursor, params);
+                for (String key : result.getResult()) {
+                    if (notASessionKey(key)) {
+                        set.add(key);
+                    }
+                }
+                cursor = result.getStringCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        }
+        return set;
+    }
+
+    /**
+     * Returns a page of keys that are not user session keys, optionally only those in one namespace (e.g. "view").
+     * Session namespaces can't be listed. The offsetKey is the Redis SCAN cursor: pass the offsetKey of the returned
+     * page to get the next page; there are no more pages when it is null. Each page examines a bounded number of
+     * keys, so a page can hold fewer keys than requested (even none) while there are more pages, and up to a SCAN
+     * batch more. Keys added or removed while paging may or may not be returned.
+     */
+    public ForwardCursorPagedResourceList<String> listItems(String namespace, String offsetKey, int pageSize) {
+        if (pageSize < 1 || pageSize > API_MAXIMUM_PAGE_SIZE) {
+            throw new BadRequestException(PAGE_SIZE_ERROR);
+        }
+        if (isNotBlank(offsetKey) && !offsetKey.matches("[0-9]+")) {
+            throw new BadRequestException("'" + offsetKey + "' is not a valid offsetKey");
+        }
+        String pattern = "*";
+        if (isNotBlank(namespace)) {
+            RedisKey redisKey = getNamespace(namespace);
+            if (SESSION_NAMESPACES.contains(redisKey)) {
+                throw new BadRequestException("'" + namespace + "' keys can't be listed");
+            }
+            pattern = "*" + RedisKey.SEPARATOR + redisKey.getSuffix();
+        }
+        ScanParams params = new ScanParams().match(pattern).count(LIST_SCAN_BATCH_SIZE);
+
+        List<String> keys = Lists.newArrayListWithCapacity(pageSize);
+        String cursor = isNotBlank(offsetKey) ? offsetKey : ScanParams.SCAN_POINTER_START;
+        try (Jedis jedis = jedisPool.getResource()) {
+            // A MATCH pattern is applied after each batch is read, so a batch can come back with few or no keys.
+            // Keep going until we have a page, we've been through the whole keyspace, or we've made enough calls.
+            int scanCount = 0;
+            do {
+                ScanResult<String> result = jedis.scan(cursor, params);
+                for (String key : result.getResult()) {
+                    if (notASessionKey(key)) {
+                        keys.add(key);
+                    }
+                }
+                cursor = result.getStringCursor();
+                scanCount++;
+            } while (keys.size() < pageSize && scanCount < MAX_SCANS_PER_PAGE &&
+                    !ScanParams.SCAN_POINTER_START.equals(cursor));
+        }
+        String nextOffsetKey = ScanParams.SCAN_POINTER_START.equals(cursor) ? null : cursor;
+        return new ForwardCursorPagedResourceList<String>(keys, nextOffsetKey, pageSize)
+                .withFilter("namespace", namespace);
+    }
+
+    /**
+     * Counts the keys in each namespace of the cache, and estimates the memory each namespace uses. Keys that aren't
+     * in a known namespace are reported under "other". This walks the whole keyspace in batches, so it takes a while
+     * on a large cache, but it doesn't block Redis.
+     */
+    public List<CacheNamespaceStats> getNamespaceStats() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        Map<String, List<String>> samples = new LinkedHashMap<>();
+        for (RedisKey namespace : NAMESPACES) {
+            counts.put(namespace.getSuffix(), 0L);
+            samples.put(namespace.getSuffix(), Lists.newArrayList());
+        }
+        counts.put(OTHER_NAMESPACE, 0L);
+        samples.put(OTHER_NAMESPACE, Lists.newArrayList());
+
+        List<CacheNamespaceStats> statsList = Lists.newArrayListWithCapacity(counts.size());
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> allKeys = jedis.keys("*");
-            Set<String> set = Sets.newHashSet();
-            for (String key : allKeys) {
-                if (notASessionKey(key)) {
-                    set.add(key);
+            String cursor = ScanParams.SCAN_POINTER_START;
+            ScanParams params = new ScanParams().count(SCAN_BATCH_SIZE);
+            do {
+                ScanResult<String> result = jedis.scan(cursor, params);
+                for (String key : result.getResult()) {
+                    String namespace = namespaceOf(key);
+                    counts.put(namespace, counts.get(namespace) + 1);
+                    List<String> sample = samples.get(namespace);
+                    if (sample.size() < MEMORY_SAMPLE_SIZE) {
+                        sample.add(key);
+                    }
+                }
+                cursor = result.getStringCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                String namespace = entry.getKey();
+                long keyCount = entry.getValue();
+                List<String> sample = samples.get(namespace);
+
+                // DUMP gives the serialized size of any type of value. It's smaller than the in-memory size, but
+                // close enough to compare namespaces, and unlike MEMORY USAGE it's available on every Redis version.
+                long sampledBytes = 0;
+                int sampledKeyCount = 0;
+                for (String key : sample) {
+                    byte[] value = jedis.dump(key);
+                    if (value != null) {
+                        sampledBytes += key.length() + value.length;
+                        sampledKeyCount++;
+                    }
                 }
+                long estimatedBytes = (sampledKeyCount == 0) ? 0 : (sampledBytes * keyCount / sampledKeyCount);
+                statsList.add(new CacheNamespaceStats(namespace, keyCount, sampledKeyCount, estimatedBytes));
             }
-            return set;
         }
+        return statsList;
+    }
+
+    /**
+     * Returns the state of this server's pool of Redis connections, including whether the circuit breaker has
+     * stopped calls to Redis.
+     */
+    public CachePoolStats getPoolStats() {
+        if (jedisPool instanceof InstrumentedJedisPool) {
+            InstrumentedJedisPool pool = (InstrumentedJedisPool)jedisPool;
+            return new CachePoolStats(pool.getNumActive(), pool.getNumIdle(), pool.getNumWaiters(),
+                    pool.getCircuitState().name(), pool.getBorrowCount(), pool.getMeanBorrowWaitMillis(),
+                    pool.getMaxBorrowWaitMillis(), pool.getBorrowFailureCount(), pool.getPoolExhaustedCount(),
+                    pool.getBrokenConnectionCount(), pool.getRejectedCount());
+        }
+        return new CachePoolStats(jedisPool.getNumActive(), jedisPool.getNumIdle(), jedisPool.getNumWaiters(),
+                null, 0L, 0.0, 0.0, 0L, 0L, 0L, 0L);
     }
 
     /**
@@ -67,4 +241,22 @@ public class CacheAdminService {
     private boolean notASessionKey(String key) {
         return !(key.endsWith(SESSION_SUFFIX) || key.endsWith(USER_SESSION_SUFFIX) || key.endsWith(REQUEST_INFO_SUFFIX));
     }
+
+    private static RedisKey getNamespace(String namespace) {
+        for (RedisKey redisKey : NAMESPACES) {
+            if (redisKey.getSuffix().equals(namespace)) {
+                return redisKey;
+            }
+        }
+        throw new BadRequestException("'" + namespace + "' is not a cache namespace");
+    }
+
+    private static String namespaceOf(String key) {
+        for (RedisKey redisKey : NAMESPACES) {
+            if (key.endsWith(RedisKey.SEPARATOR + redisKey.getSuffix())) {
+                return redisKey.getSuffix();
+            }
+        }
+        return OTHER_NAMESPACE;
+    }
 }
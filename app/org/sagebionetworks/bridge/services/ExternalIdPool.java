@@ -0,0 +1,188 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.cache.CacheScripts;
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
+import org.sagebionetworks.bridge.dao.ExternalIdDao;
+import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
+import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.RedisKey;
+
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * A queue of unassigned external IDs for each study, kept in Redis so that handing out an ID is one atomic pop rather
+ * than a paged search of the external ID table. The queue is only a hint: an ID taken from it must still be reserved
+ * in DynamoDB, and that reservation fails if the ID was assigned or reserved since the queue was filled.
+ * </p>
+ * <p>
+ * When a pop leaves fewer than the refill threshold of IDs, the queue is refilled in the background, on a pool of its
+ * own. Refills are coalesced per study with a flag in Redis: a pop only schedules a refill if it sets the flag, and
+ * the flag is cleared when the refill has put IDs in the queue. A refill that finds no unassigned IDs leaves the
+ * flag set for a cooldown, so a study that has run out of IDs isn't scanned on every sign up; adding IDs ends the
+ * cooldown. If a refill fails, the flag expires on its own.
+ * </p>
+ */
+@Component
+public class ExternalIdPool {
+    private static final Logger LOG = LoggerFactory.getLogger(ExternalIdPool.class);
+
+    static final String CONFIG_KEY_POOL_SIZE = "external.id.pool.size";
+    static final String CONFIG_KEY_REFILL_THRESHOLD = "external.id.pool.refill.threshold";
+
+    /** A queue that isn't drawn from expires, so IDs deleted or assigned elsewhere don't linger. */
+    static final int POOL_EXPIRE_IN_SECONDS = 60*60;
+
+    /** How long a server can hold the lock to refill a study's queue. */
+    static final int REFILL_LOCK_EXPIRE_IN_SECONDS = 60;
+
+    /** How long the refill flag stays set for a refill that doesn't clear it, e.g. because it failed. */
+    static final int REFILL_FLAG_EXPIRE_IN_SECONDS = 60;
+
+    /** How long after a refill that found no unassigned IDs before the queue is refilled again. */
+    static final int EMPTY_REFILL_COOLDOWN_IN_SECONDS = 5*60;
+
+    static final String REFILL_FLAG = "true";
+
+    private int poolSize;
+    private int refillThreshold;
+    private JedisOps jedisOps;
+    private CacheScripts cacheScripts;
+    private ExternalIdDao externalIdDao;
+    private DistributedLockDao lockDao;
+    private ExecutorService refillExecutorService;
+
+    @Autowired
+    final void setConfig(Config config) {
+        this.poolSize = config.getInt(CONFIG_KEY_POOL_SIZE);
+        this.refillThreshold = config.getInt(CONFIG_KEY_REFILL_THRESHOLD);
+    }
+
+    @Autowired
+    final void setJedisOps(JedisOps jedisOps) {
+        this.jedisOps = jedisOps;
+    }
+
+    @Autowired
+    final void setCacheScripts(CacheScripts cacheScripts) {
+        this.cacheScripts = cacheScripts;
+    }
+
+    @Autowired
+    final void setExternalIdDao(ExternalIdDao externalIdDao) {
+        this.externalIdDao = externalIdDao;
+    }
+
+    @Autowired
+    final void setDistributedLockDao(DistributedLockDao lockDao) {
+        this.lockDao = lockDao;
+    }
+
+    @Resource(name = "externalIdPoolExecutorService")
+    final void setRefillExecutorService(ExecutorService refillExecutorService) {
+        this.refillExecutorService = refillExecutorService;
+    }
+
+    /**
+     * Removes and returns the next ID in the study's queue, or null if the queue is empty. Schedules a refill if the
+     * queue is running low, unless one is already scheduled or in its cooldown.
+     */
+    public String pop(StudyIdentifier studyId) {
+        checkNotNull(studyId);
+
+        CacheScripts.PopResult result = cacheScripts.pop(getKey(studyId));
+        if (result.getRemaining() < refillThreshold) {
+            scheduleRefill(studyId);
+        }
+        return result.getElement();
+    }
+
+    private void scheduleRefill(StudyIdentifier studyId) {
+        String refillKey = getRefillKey(studyId);
+        if (!cacheScripts.setIfAbsent(refillKey, REFILL_FLAG, REFILL_FLAG_EXPIRE_IN_SECONDS)) {
+            return;
+        }
+        try {
+            refillExecutorService.execute(() -> refill(studyId));
+        } catch(RejectedExecutionException e) {
+            LOG.warn("Too many external ID pool refills, skipping refill for study " + studyId.getIdentifier());
+            jedisOps.del(refillKey);
+        }
+    }
+
+    /**
+     * Replaces the study's queue with up to the pool size of unassigned IDs, unless another server is already
+     * refilling it. Clears the refill flag if IDs were found, and otherwise starts the cooldown. Returns the number
+     * of IDs in the queue, or -1 if the refill was skipped.
+     */
+    int refill(StudyIdentifier studyId) {
+        String lock = null;
+        try {
+            lock = lockDao.acquireLock(ExternalIdPool.class, studyId.getIdentifier(), REFILL_LOCK_EXPIRE_IN_SECONDS);
+        } catch(ConcurrentModificationException e) {
+            return -1;
+        }
+        try {
+            List<String> ids = Lists.newArrayListWithCapacity(poolSize);
+            String offsetKey = null;
+            do {
+                ForwardCursorPagedResourceList<ExternalIdentifierInfo> page = externalIdDao.getExternalIds(studyId,
+                        offsetKey, poolSize - ids.size(), null, Boolean.FALSE);
+                for (ExternalIdentifierInfo info : page.getItems()) {
+                    ids.add(info.getIdentifier());
+                }
+                offsetKey = page.getOffsetKey();
+            } while (offsetKey != null && ids.size() < poolSize);
+
+            cacheScripts.replaceList(getKey(studyId), ids, POOL_EXPIRE_IN_SECONDS);
+            if (ids.isEmpty()) {
+                jedisOps.setex(getRefillKey(studyId), EMPTY_REFILL_COOLDOWN_IN_SECONDS, REFILL_FLAG);
+            } else {
+                jedisOps.del(getRefillKey(studyId));
+            }
+            return ids.size();
+        } catch(RuntimeException e) {
+            LOG.warn("Could not refill external ID pool for study " + studyId.getIdentifier(), e);
+            return -1;
+        } finally {
+            lockDao.releaseLock(ExternalIdPool.class, studyId.getIdentifier(), lock);
+        }
+    }
+
+    /** Empties the study's queue, e.g. after IDs have been deleted. The next pop refills it. */
+    public void clear(StudyIdentifier studyId) {
+        checkNotNull(studyId);
+        jedisOps.del(getKey(studyId), getRefillKey(studyId));
+    }
+
+    /** Ends the study's refill cooldown, e.g. after IDs have been added. The next pop that runs low refills it. */
+    public void clearRefillCooldown(StudyIdentifier studyId) {
+        checkNotNull(studyId);
+        jedisOps.del(getRefillKey(studyId));
+    }
+
+    private static String getKey(StudyIdentifier studyId) {
+        return RedisKey.EXTERNAL_ID_POOL.getRedisKey(studyId.getIdentifier());
+    }
+
+    private static String getRefillKey(StudyIdentifier studyId) {
+        return RedisKey.EXTERNAL_ID_POOL_REFILL.getRedisKey(studyId.getIdentifier());
+    }
+}
@@ -15,6 +15,8 @@ import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.config.Config;
 import org.sagebionetworks.bridge.dao.ExternalIdDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
 import org.sagebionetworks.bridge.models.accounts.ParticipantOptionsLookup;
@@ -30,8 +32,15 @@ import org.sagebionetworks.bridge.validators.Validate;
 @Component
 public class ExternalIdService {
     
+    static final String NO_UNASSIGNED_IDS_ERROR = "There are no unassigned external IDs left for this study.";
+    
+    /** IDs taken from the pool that can turn out to be taken already, before we give up on the pool. */
+    static final int MAX_POOL_ATTEMPTS = 5;
+    
     private ExternalIdDao externalIdDao;
     
+    private ExternalIdPool externalIdPool;
+    
     private ParticipantOptionsService optionsService;
     
     private ExternalIdsValidator validator;
@@ -41,6 +50,11 @@ public class ExternalIdService {
         this.externalIdDao = externalIdDao;
     }
     
+    @Autowired
+    final void setExternalIdPool(ExternalIdPool externalIdPool) {
+        this.externalIdPool = externalIdPool;
+    }
+    
     @Autowired
     final void setParticipantOptionsService(ParticipantOptionsService optionsService) {
         this.optionsService = optionsService;
@@ -68,6 +82,7 @@ public class ExternalIdService {
         Validate.entityThrowingException(validator, new ExternalIdsValidator.ExternalIdList(externalIdentifiers));
         
         externalIdDao.addExternalIds(study.getStudyIdentifier(), externalIdentifiers);
+        externalIdPool.clearRefillCooldown(study.getStudyIdentifier());
     }
     
     public void reserveExternalId(Study study, String externalIdentifier, String healthCode) {
@@ -79,6 +94,43 @@ public class ExternalIdService {
         }
     }
     
+    /**
+     * Reserve the next unassigned external ID, for studies that assign IDs to participants on sign up. IDs are taken 
+     * from the study's pool; an ID in the pool can have been taken since the pool was filled, in which case we move 
+     * on to the next one. If the pool is empty or keeps handing out taken IDs, we fall back to searching for an 
+     * unassigned ID directly. The ID must still be assigned with assignExternalId(...).
+     */
+    public String reserveAvailableExternalId(Study study) {
+        checkNotNull(study);
+        
+        for (int i=0; i < MAX_POOL_ATTEMPTS; i++) {
+            String externalIdentifier = externalIdPool.pop(study.getStudyIdentifier());
+            if (externalIdentifier == null) {
+                break;
+            }
+            if (tryReserveExternalId(study, externalIdentifier)) {
+                return externalIdentifier;
+            }
+        }
+        ForwardCursorPagedResourceList<ExternalIdentifierInfo> page = externalIdDao.getExternalIds(
+                study.getStudyIdentifier(), null, BridgeConstants.API_DEFAULT_PAGE_SIZE, null, Boolean.FALSE);
+        for (ExternalIdentifierInfo info : page.getItems()) {
+            if (tryReserveExternalId(study, info.getIdentifier())) {
+                return info.getIdentifier();
+            }
+        }
+        throw new BadRequestException(NO_UNASSIGNED_IDS_ERROR);
+    }
+    
+    private boolean tryReserveExternalId(Study study, String externalIdentifier) {
+        try {
+            externalIdDao.reserveExternalId(study.getStudyIdentifier(), externalIdentifier);
+            return true;
+        } catch(EntityAlreadyExistsException | EntityNotFoundException e) {
+            return false;
+        }
+    }
+    
     public void assignExternalId(Study study, String externalIdentifier, String healthCode) {
         checkNotNull(study);
         checkNotNull(healthCode);
@@ -116,5 +168,6 @@ public class ExternalIdService {
             throw new BadRequestException("Cannot delete IDs while externalId validation is enabled for this study.");
         }
         externalIdDao.deleteExternalIds(study.getStudyIdentifier(), externalIdentifiers);    
+        externalIdPool.clear(study.getStudyIdentifier());
     }
 }
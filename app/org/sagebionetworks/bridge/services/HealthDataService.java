@@ -102,6 +102,24 @@ public class HealthDataService {
         return healthDataDao.getRecordById(id);
     }
 
+    /**
+     * Gets what we know about the health data record (schema, createdOn, exporter status, and so on), without reading
+     * its data and metadata. The returned record must not be saved.
+     *
+     * @param id
+     *         record ID
+     * @return health data record without its data and metadata
+     */
+    public HealthDataRecord getRecordInfoById(String id) {
+        // validate ID
+        if (StringUtils.isBlank(id)) {
+            throw new BadRequestException(String.format(Validate.CANNOT_BE_BLANK, "id"));
+        }
+
+        // call through to DAO
+        return healthDataDao.getRecordInfoById(id);
+    }
+
     /**
      * Returns a list of all health data records with the given upload date. THis method is generally called by
      * worker apps as part of data export.
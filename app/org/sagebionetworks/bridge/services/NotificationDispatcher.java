@@ -0,0 +1,342 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.notifications.NotificationDeliveryStatus;
+import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
+import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.redis.RedisKey;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sns.model.EndpointDisabledException;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * Sends push notifications asynchronously. Each endpoint (a participant's device, or a topic) is published to as a
+ * separate task on the notification worker pool, so a participant's devices are sent the notification concurrently
+ * and the caller doesn't wait on SNS.
+ * </p>
+ * <p>
+ * Publishes that fail with a server-side or throttling error are retried with exponential backoff, up to
+ * sns.publish.max.attempts. Endpoints that SNS reports as disabled (usually because the app was uninstalled) have their
+ * registration deleted. Errors caused by the request itself are not retried.
+ * </p>
+ * <p>
+ * The progress of each delivery is kept in Redis for a day, under the participant or topic it was sent to, and can be
+ * polled with getUserDeliveryStatus() or getTopicDeliveryStatus(). If the worker pool's queue is full, the endpoints
+ * that can't be queued are recorded as failed.
+ * </p>
+ */
+@Component
+public class NotificationDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    static final String CONFIG_KEY_MAX_ATTEMPTS = "sns.publish.max.attempts";
+    static final String CONFIG_KEY_RETRY_DELAY_MILLIS = "sns.publish.retry.delay.millis";
+    static final int DELIVERY_STATUS_EXPIRE_IN_SECONDS = 24*60*60;
+    static final String QUEUE_FULL_ERROR = "Too many notifications are being sent, try again later.";
+    private static final String USER_OWNER = "user:";
+    private static final String TOPIC_OWNER = "topic:";
+
+    private CacheProvider cacheProvider;
+    private ExecutorService executorService;
+    private NotificationRegistrationDao notificationRegistrationDao;
+    private AmazonSNSClient snsClient;
+    private int maxAttempts;
+    private long retryDelayMillis;
+
+    @Autowired
+    final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+
+    /** Gets the retry settings from Config. */
+    @Autowired
+    final void setConfig(Config config) {
+        this.maxAttempts = config.getInt(CONFIG_KEY_MAX_ATTEMPTS);
+        this.retryDelayMillis = config.getInt(CONFIG_KEY_RETRY_DELAY_MILLIS);
+    }
+
+    /** Thread pool that publishes are made on. This is configured by Spring. */
+    @Resource(name = "notificationExecutorService")
+    final void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    @Autowired
+    final void setNotificationRegistrationDao(NotificationRegistrationDao notificationRegistrationDao) {
+        this.notificationRegistrationDao = notificationRegistrationDao;
+    }
+
+    @Resource(name = "snsClient")
+    final void setSnsClient(AmazonSNSClient snsClient) {
+        this.snsClient = snsClient;
+    }
+
+    /**
+     * Send the message to each of a participant's registered devices. Returns the initial status of the delivery,
+     * with the delivery ID to poll for.
+     */
+    public NotificationDeliveryStatus dispatchToUser(StudyIdentifier studyId, String healthCode,
+            List<NotificationRegistration> registrations, NotificationMessage message) {
+        checkNotNull(studyId);
+        checkNotNull(healthCode);
+        checkNotNull(registrations);
+        checkNotNull(message);
+
+        List<Endpoint> endpoints = Lists.newArrayListWithCapacity(registrations.size());
+        for (NotificationRegistration registration : registrations) {
+            PublishRequest request = new PublishRequest().withTargetArn(registration.getEndpointARN())
+                    .withSubject(message.getSubject()).withMessage(message.getMessage());
+            endpoints.add(new Endpoint(request, healthCode, registration.getGuid()));
+        }
+        return dispatch(studyId, USER_OWNER + healthCode, endpoints);
+    }
+
+    /**
+     * Send the message to a topic. SNS fans the message out to the topic's subscribers. Returns the initial status of
+     * the delivery, with the delivery ID to poll for.
+     */
+    public NotificationDeliveryStatus dispatchToTopic(StudyIdentifier studyId, String topicGuid, String topicARN,
+            NotificationMessage message) {
+        checkNotNull(studyId);
+        checkNotNull(topicGuid);
+        checkNotNull(topicARN);
+        checkNotNull(message);
+
+        PublishRequest request = new PublishRequest().withTopicArn(topicARN)
+                .withSubject(message.getSubject()).withMessage(message.getMessage());
+        return dispatch(studyId, TOPIC_OWNER + topicGuid, ImmutableList.of(new Endpoint(request, null, null)));
+    }
+
+    /**
+     * Get the current status of a delivery to a participant. Deliveries can only be retrieved for the participant 
+     * they were sent to, and are kept for a day.
+     */
+    public NotificationDeliveryStatus getUserDeliveryStatus(StudyIdentifier studyId, String healthCode,
+            String deliveryId) {
+        checkNotNull(studyId);
+        checkNotNull(healthCode);
+        checkNotNull(deliveryId);
+
+        return getDeliveryStatus(getCacheKey(studyId, USER_OWNER + healthCode, deliveryId));
+    }
+
+    /**
+     * Get the current status of a delivery to a topic. Deliveries can only be retrieved for the topic they were sent 
+     * to, and are kept for a day.
+     */
+    public NotificationDeliveryStatus getTopicDeliveryStatus(StudyIdentifier studyId, String topicGuid,
+            String deliveryId) {
+        checkNotNull(studyId);
+        checkNotNull(topicGuid);
+        checkNotNull(deliveryId);
+
+        return getDeliveryStatus(getCacheKey(studyId, TOPIC_OWNER + topicGuid, deliveryId));
+    }
+
+    private NotificationDeliveryStatus getDeliveryStatus(String cacheKey) {
+        String json = cacheProvider.getString(cacheKey);
+        if (json == null) {
+            throw new EntityNotFoundException(NotificationDeliveryStatus.class);
+        }
+        try {
+            return BridgeObjectMapper.get().readValue(json, NotificationDeliveryStatus.class);
+        } catch (IOException e) {
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    // The owner is the participant or topic the delivery is for. It's part of the delivery's key, so a delivery can 
+    // only be found through its owner.
+    private NotificationDeliveryStatus dispatch(StudyIdentifier studyId, String owner, List<Endpoint> endpoints) {
+        String deliveryId = BridgeUtils.generateGuid();
+        Delivery delivery = new Delivery(getCacheKey(studyId, owner, deliveryId), deliveryId, endpoints.size());
+        // Written before any publish starts, so a publish can never be overwritten by the initial status. If this 
+        // fails, the caller gets the error, rather than a delivery ID that can't be polled.
+        NotificationDeliveryStatus initialStatus = delivery.save();
+
+        for (Endpoint endpoint : endpoints) {
+            try {
+                executorService.submit(() -> publish(delivery, endpoint));
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Notification queue is full, deliveryId=" + deliveryId);
+                delivery.recordFailed(QUEUE_FULL_ERROR);
+            }
+        }
+        return initialStatus;
+    }
+
+    // Publishes to one endpoint, retrying as needed, and records the outcome on the delivery.
+    private void publish(Delivery delivery, Endpoint endpoint) {
+        PublishRequest request = endpoint.request;
+        String target = (request.getTargetArn() != null) ? request.getTargetArn() : request.getTopicArn();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                PublishResult result = snsClient.publish(request);
+                LOG.debug("Sent notification, deliveryId=" + delivery.deliveryId + ", target=" + target +
+                        ", message ID=" + result.getMessageId());
+                delivery.recordSent();
+                return;
+            } catch (EndpointDisabledException e) {
+                LOG.info("Endpoint disabled, deleting registration, target=" + target);
+                deleteRegistration(endpoint);
+                delivery.recordDisabled();
+                return;
+            } catch (AmazonServiceException e) {
+                if (!isRetryable(e) || attempt >= maxAttempts) {
+                    LOG.warn("Error publishing SNS message, deliveryId=" + delivery.deliveryId + ", target=" + target,
+                            e);
+                    delivery.recordFailed(e.getErrorMessage());
+                    return;
+                }
+            } catch (AmazonClientException e) {
+                // Network errors and the like, which never reached SNS.
+                if (attempt >= maxAttempts) {
+                    LOG.warn("Error publishing SNS message, deliveryId=" + delivery.deliveryId + ", target=" + target,
+                            e);
+                    delivery.recordFailed(e.getMessage());
+                    return;
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Unexpected error publishing SNS message, deliveryId=" + delivery.deliveryId, e);
+                delivery.recordFailed(e.getMessage());
+                return;
+            }
+
+            try {
+                Thread.sleep(retryDelayMillis << (attempt - 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                delivery.recordFailed("Interrupted before notification could be sent.");
+                return;
+            }
+        }
+    }
+
+    private void deleteRegistration(Endpoint endpoint) {
+        if (endpoint.healthCode == null) {
+            return;
+        }
+        try {
+            notificationRegistrationDao.deleteRegistration(endpoint.healthCode, endpoint.registrationGuid);
+        } catch (RuntimeException e) {
+            // The registration may already have been deleted by the participant.
+            LOG.warn("Could not delete disabled notification registration " + endpoint.registrationGuid, e);
+        }
+    }
+
+    private static boolean isRetryable(AmazonServiceException e) {
+        return e.getErrorType() == AmazonServiceException.ErrorType.Service || e.getStatusCode() == 429 ||
+                "Throttling".equals(e.getErrorCode());
+    }
+
+    private static String getCacheKey(StudyIdentifier studyId, String owner, String deliveryId) {
+        return RedisKey.NOTIFICATION_DELIVERY.getRedisKey(studyId.getIdentifier() + ":" + owner + ":" + deliveryId);
+    }
+
+    /** One publish request, and the registration it was made for, if any. */
+    private static class Endpoint {
+        private final PublishRequest request;
+        private final String healthCode;
+        private final String registrationGuid;
+
+        Endpoint(PublishRequest request, String healthCode, String registrationGuid) {
+            this.request = request;
+            this.healthCode = healthCode;
+            this.registrationGuid = registrationGuid;
+        }
+    }
+
+    /**
+     * Tracks the outcome of each endpoint of a delivery. The status is saved after every outcome. This is
+     * synchronized so that saves happen in order, and the last save is always the final status.
+     */
+    private class Delivery {
+        private final String cacheKey;
+        private final String deliveryId;
+        private final int endpointCount;
+        private final List<String> errors = Lists.newArrayList();
+        private int sentCount;
+        private int failedCount;
+        private int disabledCount;
+
+        Delivery(String cacheKey, String deliveryId, int endpointCount) {
+            this.cacheKey = cacheKey;
+            this.deliveryId = deliveryId;
+            this.endpointCount = endpointCount;
+        }
+
+        synchronized void recordSent() {
+            sentCount++;
+            saveQuietly();
+        }
+
+        synchronized void recordFailed(String error) {
+            failedCount++;
+            errors.add(error);
+            saveQuietly();
+        }
+
+        synchronized void recordDisabled() {
+            disabledCount++;
+            saveQuietly();
+        }
+
+        private void saveQuietly() {
+            try {
+                save();
+            } catch (RuntimeException e) {
+                // Don't let a status write stop the other endpoints from being sent the notification.
+                LOG.error("Could not save notification delivery status, deliveryId=" + deliveryId, e);
+            }
+        }
+
+        synchronized NotificationDeliveryStatus save() {
+            NotificationDeliveryStatus.State state;
+            if (sentCount + failedCount + disabledCount < endpointCount) {
+                state = NotificationDeliveryStatus.State.IN_PROGRESS;
+            } else if (failedCount > 0) {
+                state = NotificationDeliveryStatus.State.FAILED;
+            } else {
+                state = NotificationDeliveryStatus.State.SENT;
+            }
+            NotificationDeliveryStatus status = new NotificationDeliveryStatus(deliveryId, state, endpointCount,
+                    sentCount, failedCount, disabledCount, errors);
+            try {
+                cacheProvider.setString(cacheKey, BridgeObjectMapper.get().writeValueAsString(status),
+                        DELIVERY_STATUS_EXPIRE_IN_SECONDS);
+            } catch (JsonProcessingException e) {
+                throw new BridgeServiceException(e);
+            }
+            return status;
+        }
+    }
+}
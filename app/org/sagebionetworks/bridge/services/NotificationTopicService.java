@@ -16,6 +16,7 @@ import org.springframework.stereotype.Component;
 import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
 import org.sagebionetworks.bridge.dao.NotificationTopicDao;
 import org.sagebionetworks.bridge.dao.TopicSubscriptionDao;
+import org.sagebionetworks.bridge.models.notifications.NotificationDeliveryStatus;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
 import org.sagebionetworks.bridge.models.notifications.SubscriptionStatus;
@@ -29,7 +30,6 @@ import org.sagebionetworks.bridge.validators.Validate;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sns.model.NotFoundException;
-import com.amazonaws.services.sns.model.PublishRequest;
 import com.google.common.collect.Sets;
 import com.newrelic.agent.deps.com.google.common.collect.Lists;
 
@@ -46,6 +46,8 @@ public class NotificationTopicService {
     
     private AmazonSNSClient snsClient;
     
+    private NotificationDispatcher notificationDispatcher;
+    
     @Autowired
     final void setNotificationRegistrationDao(NotificationRegistrationDao registrationDao) {
         this.registrationDao = registrationDao;
@@ -66,6 +68,11 @@ public class NotificationTopicService {
         this.snsClient = snsClient;
     }
     
+    @Autowired
+    final void setNotificationDispatcher(NotificationDispatcher notificationDispatcher) {
+        this.notificationDispatcher = notificationDispatcher;
+    }
+    
     public List<NotificationTopic> listTopics(StudyIdentifier studyId) {
         checkNotNull(studyId);
         
@@ -108,7 +115,12 @@ public class NotificationTopicService {
         topicDao.deleteAllTopics(studyId);
     }
     
-    public void sendNotification(StudyIdentifier studyId, String guid, NotificationMessage message) {
+    /**
+     * Send a notification to the topic's subscribers. The notification is sent asynchronously, and the returned 
+     * status has the delivery ID that can be used to poll for the outcome.
+     */
+    public NotificationDeliveryStatus sendNotification(StudyIdentifier studyId, String guid,
+            NotificationMessage message) {
         checkNotNull(studyId);
         checkNotNull(guid);
         checkNotNull(message);
@@ -117,10 +129,18 @@ public class NotificationTopicService {
         
         NotificationTopic topic = getTopic(studyId, guid);
         
-        PublishRequest request = new PublishRequest().withTopicArn(topic.getTopicARN())
-                .withSubject(message.getSubject()).withMessage(message.getMessage());
+        return notificationDispatcher.dispatchToTopic(studyId, guid, topic.getTopicARN(), message);
+    }
+    
+    public NotificationDeliveryStatus getDeliveryStatus(StudyIdentifier studyId, String guid, String deliveryId) {
+        checkNotNull(studyId);
+        checkNotNull(guid);
+        checkNotNull(deliveryId);
+        
+        // Verifies the topic exists in this study.
+        getTopic(studyId, guid);
         
-        snsClient.publish(request);
+        return notificationDispatcher.getTopicDeliveryStatus(studyId, guid, deliveryId);
     }
     
     public List<SubscriptionStatus> currentSubscriptionStatuses(StudyIdentifier studyId, String healthCode, String registrationGuid) {
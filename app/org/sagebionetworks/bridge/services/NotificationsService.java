@@ -1,15 +1,10 @@
 package org.sagebionetworks.bridge.services;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static org.sagebionetworks.bridge.BridgeUtils.SEMICOLON_SPACE_JOINER;
 
 import java.util.List;
 
-import javax.annotation.Resource;
-
 import org.apache.commons.lang3.StringUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -17,6 +12,7 @@ import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.NotImplementedException;
 import org.sagebionetworks.bridge.models.OperatingSystem;
+import org.sagebionetworks.bridge.models.notifications.NotificationDeliveryStatus;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
 import org.sagebionetworks.bridge.models.studies.Study;
@@ -25,25 +21,18 @@ import org.sagebionetworks.bridge.validators.NotificationMessageValidator;
 import org.sagebionetworks.bridge.validators.NotificationRegistrationValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 
-import com.amazonaws.AmazonServiceException;
-import com.amazonaws.services.sns.AmazonSNSClient;
-import com.amazonaws.services.sns.model.PublishRequest;
-import com.amazonaws.services.sns.model.PublishResult;
-import com.google.common.collect.Lists;
-
 /**
  * Service for managing client registration to receive push notifications, integrated into the 
  * Bridge platform.
  */
 @Component
 public class NotificationsService {
-    private static Logger LOG = LoggerFactory.getLogger(NotificationsService.class);
     
     private StudyService studyService;
     
     private NotificationRegistrationDao notificationRegistrationDao;
 
-    private AmazonSNSClient snsClient;
+    private NotificationDispatcher notificationDispatcher;
 
     @Autowired
     final void setStudyService(StudyService studyService) {
@@ -55,9 +44,9 @@ public class NotificationsService {
         this.notificationRegistrationDao = notificationRegistrationDao;
     }
     
-    @Resource(name = "snsClient")
-    final void setSnsClient(AmazonSNSClient snsClient) {
-        this.snsClient = snsClient;
+    @Autowired
+    final void setNotificationDispatcher(NotificationDispatcher notificationDispatcher) {
+        this.notificationDispatcher = notificationDispatcher;
     }
     
     /**
@@ -134,8 +123,12 @@ public class NotificationsService {
      * This mechanism is intended to message specific individuals, <i>and should not be used to send out notifications 
      * to many accounts.</i> Create a topic, ask your users to subscribe to that topic in your application, and message 
      * them via that topic.
+     * 
+     * The notification is sent to all the participant's devices asynchronously. The returned status has the delivery 
+     * ID that can be used to poll for the outcome of the delivery with getDeliveryStatus().
      */
-    public void sendNotificationToUser(StudyIdentifier studyId, String healthCode, NotificationMessage message) {
+    public NotificationDeliveryStatus sendNotificationToUser(StudyIdentifier studyId, String healthCode,
+            NotificationMessage message) {
         checkNotNull(studyId);
         checkNotNull(healthCode);
         checkNotNull(message);
@@ -146,27 +139,19 @@ public class NotificationsService {
         if (registrations.isEmpty()) {
             throw new BadRequestException("Participant has not registered to receive push notifications.");
         }
+        return notificationDispatcher.dispatchToUser(studyId, healthCode, registrations, message);
+    }
+    
+    /**
+     * Get the status of a notification sent asynchronously to a participant.
+     */
+    public NotificationDeliveryStatus getDeliveryStatus(StudyIdentifier studyId, String healthCode,
+            String deliveryId) {
+        checkNotNull(studyId);
+        checkNotNull(healthCode);
+        checkNotNull(deliveryId);
         
-        List<String> errorMessages = Lists.newArrayListWithCapacity(registrations.size());
-        for (NotificationRegistration registration : registrations) {
-            String endpointARN = registration.getEndpointARN();
-            
-            PublishRequest request = new PublishRequest().withTargetArn(endpointARN)
-                    .withSubject(message.getSubject()).withMessage(message.getMessage());
-            
-            try {
-                PublishResult result = snsClient.publish(request);
-                LOG.debug("Sent message to participant, study=" + studyId.getIdentifier() + ", endpointARN="
-                        + endpointARN + ", message ID=" + result.getMessageId());
-            } catch(AmazonServiceException e) {
-                LOG.warn("Error publishing SNS message to participant", e);
-                errorMessages.add(e.getErrorMessage());
-            }
-        }
-        if (!errorMessages.isEmpty()) {
-            throw new BadRequestException("Error sending push notification: " + 
-                SEMICOLON_SPACE_JOINER.join(errorMessages) + ".");
-        }
+        return notificationDispatcher.getUserDeliveryStatus(studyId, healthCode, deliveryId);
     }
 
     private String getPlatformARN(Study study, NotificationRegistration registration) {
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -13,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.ParticipantOption;
 import org.sagebionetworks.bridge.dao.ParticipantOptionsDao;
 import org.sagebionetworks.bridge.json.DateUtils;
@@ -20,16 +22,28 @@ import org.sagebionetworks.bridge.models.accounts.AllParticipantOptionsLookup;
 import org.sagebionetworks.bridge.models.accounts.ParticipantOptionsLookup;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 
+/**
+ * Reads and writes participant options. A participant's options are read on most calls they make (to construct the 
+ * session, to get the participant, for every upload), so they are cached by health code, and the cached copy is 
+ * removed whenever an option is changed. Removing the copy also changes its generation, so a read that loaded the 
+ * options before the change doesn't put the old options back in the cache.
+ */
 @Component
 public class ParticipantOptionsService {
     
     private ParticipantOptionsDao optionsDao;
+    private CacheProvider cacheProvider;
     
     @Autowired
     final void setParticipantOptionsDao(ParticipantOptionsDao participantOptionsDao) {
         this.optionsDao = participantOptionsDao;
     }
 
+    @Autowired
+    final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+
     /**
      * Get all options and their values for a participant in a lookup object with type-safe 
      * accessors. If a value is not set, the value will be null in the map. A lookup object 
@@ -38,7 +52,27 @@ public class ParticipantOptionsService {
     public ParticipantOptionsLookup getOptions(String healthCode) {
         checkArgument(isNotBlank(healthCode));
         
-        return optionsDao.getOptions(healthCode);
+        Map<String,String> options = cacheProvider.getParticipantOptions(healthCode);
+        if (options == null) {
+            // Read the generation before the options, so options loaded before they are changed aren't cached.
+            String generation = cacheProvider.getParticipantOptionsGeneration(healthCode);
+            ParticipantOptionsLookup lookup = optionsDao.getOptions(healthCode);
+            cacheProvider.setParticipantOptions(healthCode, lookup.getOptions(), generation);
+            return lookup;
+        }
+        return new ParticipantOptionsLookup(options);
+    }
+    
+    /**
+     * Get the options of a number of participants (e.g. a page of participants), with one batched read from the 
+     * database rather than a read for each participant. Like {@link #getOptionsForAllParticipants}, the lookup 
+     * returns a ParticipantOptionsLookup for every health code, whether it has options saved or not. These reads 
+     * don't go through the cache.
+     */
+    public AllParticipantOptionsLookup getOptions(Collection<String> healthCodes) {
+        checkNotNull(healthCodes);
+        
+        return optionsDao.getOptions(healthCodes);
     }
     
     /**
@@ -59,6 +93,7 @@ public class ParticipantOptionsService {
         checkNotNull(option);
         
         optionsDao.setOption(studyIdentifier, healthCode, option, Boolean.toString(value));
+        cacheProvider.removeParticipantOptions(healthCode);
     }
 
     /**
@@ -70,6 +105,7 @@ public class ParticipantOptionsService {
         checkNotNull(option);
         
         optionsDao.setOption(studyIdentifier, healthCode, option, value);
+        cacheProvider.removeParticipantOptions(healthCode);
     }
 
     /**
@@ -82,6 +118,7 @@ public class ParticipantOptionsService {
 
         String result = (value == null) ? null : value.name();
         optionsDao.setOption(studyIdentifier, healthCode, option, result);
+        cacheProvider.removeParticipantOptions(healthCode);
     }
 
     /**
@@ -94,6 +131,7 @@ public class ParticipantOptionsService {
         checkNotNull(option);
         
         optionsDao.setOption(studyIdentifier, healthCode, option, BridgeUtils.setToCommaList(value));
+        cacheProvider.removeParticipantOptions(healthCode);
     }
 
     /**
@@ -113,6 +151,7 @@ public class ParticipantOptionsService {
         checkNotNull(option);
 
         optionsDao.setOption(studyIdentifier, healthCode, option, DateUtils.timeZoneToOffsetString(zone));
+        cacheProvider.removeParticipantOptions(healthCode);
     }
     
     public void setAllOptions(StudyIdentifier studyIdentifier, String healthCode, Map<ParticipantOption,String> options) {
@@ -121,6 +160,7 @@ public class ParticipantOptionsService {
         checkNotNull(options);
         
         optionsDao.setAllOptions(studyIdentifier, healthCode, options);
+        cacheProvider.removeParticipantOptions(healthCode);
     }
     
     /**
@@ -130,6 +170,7 @@ public class ParticipantOptionsService {
         checkArgument(isNotBlank(healthCode));
         
         optionsDao.deleteAllOptions(healthCode);
+        cacheProvider.removeParticipantOptions(healthCode);
     }
     
     /**
@@ -140,6 +181,7 @@ public class ParticipantOptionsService {
         checkNotNull(option);
         
         optionsDao.deleteOption(healthCode, option);
+        cacheProvider.removeParticipantOptions(healthCode);
     }
     
 }
@@ -2,6 +2,7 @@ package org.sagebionetworks.bridge.services;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
 import static org.sagebionetworks.bridge.BridgeConstants.API_MINIMUM_PAGE_SIZE;
@@ -19,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.joda.time.DateTime;
@@ -50,10 +52,12 @@ import org.sagebionetworks.bridge.models.accounts.ParticipantOptionsLookup;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserConsentHistory;
 import org.sagebionetworks.bridge.models.accounts.Withdrawal;
+import org.sagebionetworks.bridge.models.notifications.NotificationDeliveryStatus;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
 import org.sagebionetworks.bridge.models.studies.Study;
+import org.sagebionetworks.bridge.models.subpopulations.ConsentSignature;
 import org.sagebionetworks.bridge.models.subpopulations.Subpopulation;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 import org.sagebionetworks.bridge.models.upload.UploadView;
@@ -185,11 +189,14 @@ public class ParticipantService {
         builder.withAttributes(attributes);
 
         if (includeHistory) {
+            // The subpopulations are read once, and each history is built from the subpopulation in hand, so the 
+            // number of reads doesn't grow with the number of subpopulations or signatures.
             Map<String,List<UserConsentHistory>> consentHistories = Maps.newHashMap();
             List<Subpopulation> subpopulations = subpopService.getSubpopulations(study.getStudyIdentifier());
             for (Subpopulation subpop : subpopulations) {
                 // always returns a list, even if empty
-                List<UserConsentHistory> history = getUserConsentHistory(account, subpop.getGuid());
+                List<UserConsentHistory> history = getUserConsentHistory(account, subpop,
+                        account.getConsentSignatureHistory(subpop.getGuid()));
                 consentHistories.put(subpop.getGuidString(), history);
             }
             builder.withConsentHistories(consentHistories);
@@ -240,7 +247,13 @@ public class ParticipantService {
         Account account = accountDao.constructAccount(study, participant.getEmail(), participant.getPassword());
         Map<ParticipantOption, String> options = Maps.newHashMap();
         
-        externalIdService.reserveExternalId(study, participant.getExternalId(), account.getHealthCode());
+        if (study.isExternalIdValidationEnabled() && study.isExternalIdAutoAssignmentEnabled()
+                && isBlank(participant.getExternalId())) {
+            String externalId = externalIdService.reserveAvailableExternalId(study);
+            participant = new StudyParticipant.Builder().copyOf(participant).withExternalId(externalId).build();
+        } else {
+            externalIdService.reserveExternalId(study, participant.getExternalId(), account.getHealthCode());
+        }
 
         updateAccountOptionsAndRoles(study, callerRoles, options, account, participant);
         
@@ -390,9 +403,20 @@ public class ParticipantService {
      * @param subpopGuid
      */
     public List<UserConsentHistory> getUserConsentHistory(Account account, SubpopulationGuid subpopGuid) {
-        return account.getConsentSignatureHistory(subpopGuid).stream().map(signature -> {
-            Subpopulation subpop = subpopService.getSubpopulation(account.getStudyIdentifier(), subpopGuid);
-            boolean hasSignedActiveConsent = (signature.getConsentCreatedOn() == subpop.getPublishedConsentCreatedOn());
+        List<ConsentSignature> signatures = account.getConsentSignatureHistory(subpopGuid);
+        if (signatures.isEmpty()) {
+            return ImmutableList.of();
+        }
+        Subpopulation subpop = subpopService.getSubpopulation(account.getStudyIdentifier(), subpopGuid);
+        return getUserConsentHistory(account, subpop, signatures);
+    }
+
+    private List<UserConsentHistory> getUserConsentHistory(Account account, Subpopulation subpop,
+            List<ConsentSignature> signatures) {
+        SubpopulationGuid subpopGuid = subpop.getGuid();
+        long publishedConsentCreatedOn = subpop.getPublishedConsentCreatedOn();
+        return signatures.stream().map(signature -> {
+            boolean hasSignedActiveConsent = (signature.getConsentCreatedOn() == publishedConsentCreatedOn);
 
             return new UserConsentHistory.Builder()
                 .withName(signature.getName())
@@ -427,14 +451,26 @@ public class ParticipantService {
         return notificationsService.listRegistrations(account.getHealthCode());
     }
 
-    public void sendNotification(Study study, String userId, NotificationMessage message) {
+    public NotificationDeliveryStatus sendNotification(Study study, String userId, NotificationMessage message) {
         checkNotNull(study);
         checkNotNull(userId);
         checkNotNull(message);
 
         Account account = getAccountThrowingException(study, userId);
 
-        notificationsService.sendNotificationToUser(study.getStudyIdentifier(), account.getHealthCode(), message);
+        return notificationsService.sendNotificationToUser(study.getStudyIdentifier(), account.getHealthCode(),
+                message);
+    }
+    
+    public NotificationDeliveryStatus getNotificationDeliveryStatus(Study study, String userId, String deliveryId) {
+        checkNotNull(study);
+        checkNotNull(userId);
+        checkNotNull(deliveryId);
+        
+        Account account = getAccountThrowingException(study, userId);
+        
+        return notificationsService.getDeliveryStatus(study.getStudyIdentifier(), account.getHealthCode(),
+                deliveryId);
     }
     
     private CriteriaContext getCriteriaContextForParticipant(Study study, StudyParticipant participant) {
@@ -2,30 +2,45 @@ package org.sagebionetworks.bridge.services;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.joda.time.LocalDate;
 import org.joda.time.Period;
 import org.joda.time.PeriodType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.cache.ReportDataCache;
 import org.sagebionetworks.bridge.dao.ReportDataDao;
 import org.sagebionetworks.bridge.dao.ReportIndexDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.json.DateUtils;
 import org.sagebionetworks.bridge.models.DateRangeResourceList;
 import org.sagebionetworks.bridge.models.ReportTypeResourceList;
+import org.sagebionetworks.bridge.models.reports.ParticipantReportEntry;
 import org.sagebionetworks.bridge.models.reports.ReportData;
 import org.sagebionetworks.bridge.models.reports.ReportDataKey;
+import org.sagebionetworks.bridge.models.reports.ReportEntryStatus;
 import org.sagebionetworks.bridge.models.reports.ReportIndex;
 import org.sagebionetworks.bridge.models.reports.ReportType;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
 @Component
 public class ReportService {
     private static final int MAX_RANGE_DAYS = 45;
+    static final int MAX_BULK_ENTRIES = 1000;
     
     private ReportDataDao reportDataDao;
     private ReportIndexDao reportIndexDao;
+    private ReportDataCache reportDataCache;
     
     @Autowired
     final void setReportDataDao(ReportDataDao reportDataDao) {
@@ -37,6 +52,11 @@ public class ReportService {
         this.reportIndexDao = reportIndexDao;
     }
     
+    @Autowired
+    final void setReportDataCache(ReportDataCache reportDataCache) {
+        this.reportDataCache = reportDataCache;
+    }
+    
     public ReportIndex getReportIndex(ReportDataKey key) {
         checkNotNull(key);
         
@@ -56,7 +76,7 @@ public class ReportService {
                 .withIdentifier(identifier)
                 .withStudyIdentifier(studyId).build();
         
-        return reportDataDao.getReportData(key, startDate, endDate);
+        return getReportData(key, startDate, endDate);
     }
     
     public DateRangeResourceList<? extends ReportData> getParticipantReport(StudyIdentifier studyId, String identifier, String healthCode, LocalDate startDate, LocalDate endDate) {
@@ -71,7 +91,7 @@ public class ReportService {
                 .withReportType(ReportType.PARTICIPANT)
                 .withIdentifier(identifier)
                 .withStudyIdentifier(studyId).build();
-        return reportDataDao.getReportData(key, startDate, endDate);
+        return getReportData(key, startDate, endDate);
     }
 
     public void saveStudyReport(StudyIdentifier studyId, String identifier, ReportData reportData) {
@@ -86,6 +106,7 @@ public class ReportService {
         reportData.setKey(key.getKeyString());
         
         reportDataDao.saveReportData(reportData);
+        reportDataCache.setReportData(key, reportData);
         addToIndex(key);
     }
     
@@ -103,9 +124,80 @@ public class ReportService {
         reportData.setKey(key.getKeyString());
         
         reportDataDao.saveReportData(reportData);
+        reportDataCache.setReportData(key, reportData);
         addToIndex(key);        
     }
     
+    /**
+     * Saves many participants' records for one report. Each entry is validated and saved independently, and its
+     * status is returned in the same position as the entry. Records are written in batches rather than one at a
+     * time, and the report is only added to the index once for the whole request.
+     */
+    public List<ReportEntryStatus> saveParticipantReports(StudyIdentifier studyId, String identifier,
+            List<ParticipantReportEntry> entries) {
+        checkNotNull(entries);
+        if (entries.size() > MAX_BULK_ENTRIES) {
+            throw new BadRequestException("Cannot save more than " + MAX_BULK_ENTRIES + " report entries at once");
+        }
+        ReportEntryStatus[] statuses = new ReportEntryStatus[entries.size()];
+        Map<ReportData, Integer> entryIndices = new IdentityHashMap<>();
+        List<ReportData> reportDataList = Lists.newArrayList();
+        Set<String> recordIds = Sets.newHashSet();
+        ReportDataKey indexKey = null;
+        for (int i=0; i < entries.size(); i++) {
+            ParticipantReportEntry entry = entries.get(i);
+            if (entry == null) {
+                statuses[i] = ReportEntryStatus.failed(i, "Report entry is required");
+                continue;
+            }
+            ReportDataKey key;
+            try {
+                key = new ReportDataKey.Builder()
+                        .withHealthCode(entry.getHealthCode())
+                        .withReportType(ReportType.PARTICIPANT)
+                        .withIdentifier(identifier)
+                        .withStudyIdentifier(studyId)
+                        .validateWithDate(entry.getDate()).build();
+            } catch(InvalidEntityException e) {
+                statuses[i] = ReportEntryStatus.failed(i, e.getMessage());
+                continue;
+            }
+            if (!recordIds.add(key.getKeyString() + ":" + entry.getDate())) {
+                statuses[i] = ReportEntryStatus.failed(i, "Report entry duplicates an earlier entry for the same " +
+                        "participant and date");
+                continue;
+            }
+            ReportData reportData = ReportData.create();
+            reportData.setKey(key.getKeyString());
+            reportData.setDate(entry.getDate());
+            reportData.setData(entry.getData());
+            reportDataList.add(reportData);
+            entryIndices.put(reportData, i);
+            indexKey = key;
+        }
+        if (!reportDataList.isEmpty()) {
+            Set<ReportData> failedRecords = Collections.newSetFromMap(new IdentityHashMap<>());
+            failedRecords.addAll(reportDataDao.batchSaveReportData(reportDataList));
+            
+            List<ReportData> savedRecords = Lists.newArrayList();
+            for (ReportData reportData : reportDataList) {
+                int index = entryIndices.get(reportData);
+                if (failedRecords.contains(reportData)) {
+                    statuses[index] = ReportEntryStatus.failed(index, "Report entry could not be saved, try again");
+                } else {
+                    statuses[index] = ReportEntryStatus.saved(index);
+                    savedRecords.add(reportData);
+                }
+            }
+            reportDataCache.setReportData(savedRecords);
+            if (!savedRecords.isEmpty()) {
+                // All participants' reports share the index entry for this identifier.
+                addToIndex(indexKey);
+            }
+        }
+        return Lists.newArrayList(statuses);
+    }
+    
     public void deleteStudyReport(StudyIdentifier studyId, String identifier) {
         // ReportDataKey validates all parameters to this method
 
@@ -115,6 +207,7 @@ public class ReportService {
                 .withStudyIdentifier(studyId).build();
         
         reportDataDao.deleteReportData(key);
+        reportDataCache.removeReportData(key);
         reportIndexDao.removeIndex(key);
     }
     
@@ -126,6 +219,7 @@ public class ReportService {
                 .validateWithDate(date).build();
         
         reportDataDao.deleteReportDataRecord(key, date);
+        reportDataCache.removeReportData(key, date);
         
         // If this is the last key visible in the window, you can delete the index because this is a study record
         LocalDate startDate = LocalDate.now().minusDays(MAX_RANGE_DAYS);
@@ -153,6 +247,7 @@ public class ReportService {
                 .withStudyIdentifier(studyId).build();
         
         reportDataDao.deleteReportData(key);
+        reportDataCache.removeReportData(key);
     }
     
     public void deleteParticipantReportRecord(StudyIdentifier studyId, String identifier, LocalDate date, String healthCode) {
@@ -164,6 +259,7 @@ public class ReportService {
                 .validateWithDate(date).build();
         
         reportDataDao.deleteReportDataRecord(key, date);
+        reportDataCache.removeReportData(key, date);
     }
     
     public void deleteParticipantReportIndex(StudyIdentifier studyId, String identifier) {
@@ -184,6 +280,13 @@ public class ReportService {
         reportIndexDao.updateIndex(index);
     }
 
+    private DateRangeResourceList<? extends ReportData> getReportData(ReportDataKey key, LocalDate startDate,
+            LocalDate endDate) {
+        List<ReportData> results = reportDataCache.getReportData(key, startDate, endDate,
+                (start, end) -> reportDataDao.getReportData(key, start, end).getItems());
+        return new DateRangeResourceList<ReportData>(results, startDate, endDate);
+    }
+
     private void addToIndex(ReportDataKey key) {
         reportIndexDao.addIndex(key);
     }
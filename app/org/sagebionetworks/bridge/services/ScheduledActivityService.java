@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.services;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
@@ -14,12 +15,15 @@ import static org.sagebionetworks.bridge.validators.ScheduleContextValidator.MAX
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Predicate;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -30,6 +34,7 @@ import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.dao.ScheduledActivityDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.schedules.Activity;
 import org.sagebionetworks.bridge.models.schedules.ActivityType;
@@ -193,7 +198,6 @@ public class ScheduledActivityService {
         checkArgument(isNotBlank(healthCode));
         checkNotNull(scheduledActivities);
 
-        List<ScheduledActivity> activitiesToSave = Lists.newArrayListWithCapacity(scheduledActivities.size());
         for (int i=0; i < scheduledActivities.size(); i++) {
             ScheduledActivity schActivity = scheduledActivities.get(i);
             if (schActivity == null) {
@@ -205,7 +209,24 @@ public class ScheduledActivityService {
             if (byteLength(schActivity.getClientData()) > CLIENT_DATA_MAX_BYTES) {
                 throw new BadRequestException("Client data too large ("+CLIENT_DATA_MAX_BYTES+" bytes limit)");
             }
-            ScheduledActivity dbActivity = activityDao.getActivity(healthCode, schActivity.getGuid());
+        }
+        
+        // Load all the persisted activities in one batch, rather than one get per activity.
+        Set<String> guids = scheduledActivities.stream().map(ScheduledActivity::getGuid)
+                .collect(toCollection(LinkedHashSet::new));
+        Map<String,ScheduledActivity> dbActivities = Maps.newHashMap();
+        for (ScheduledActivity dbActivity : activityDao.getActivitiesByGuid(healthCode, guids)) {
+            dbActivities.put(dbActivity.getGuid(), dbActivity);
+        }
+        
+        // Keyed by GUID so an activity submitted more than once is only saved once.
+        Map<String,ScheduledActivity> activitiesToSave = Maps.newLinkedHashMap();
+        List<ScheduledActivity> finishedActivities = Lists.newArrayList();
+        for (ScheduledActivity schActivity : scheduledActivities) {
+            ScheduledActivity dbActivity = dbActivities.get(schActivity.getGuid());
+            if (dbActivity == null) {
+                throw new EntityNotFoundException(ScheduledActivity.class);
+            }
             boolean addToSaves = false;
             if (hasUpdatedClientData(schActivity, dbActivity)) {
                 dbActivity.setClientData(schActivity.getClientData());
@@ -217,14 +238,17 @@ public class ScheduledActivityService {
             }
             if (schActivity.getFinishedOn() != null) {
                 dbActivity.setFinishedOn(schActivity.getFinishedOn());
-                activityEventService.publishActivityFinishedEvent(dbActivity);
+                finishedActivities.add(dbActivity);
                 addToSaves = true;
             }
             if (addToSaves) {
-                activitiesToSave.add(dbActivity);
+                activitiesToSave.put(dbActivity.getGuid(), dbActivity);
             }
         }
-        activityDao.updateActivities(healthCode, activitiesToSave);
+        // Finished events are coalesced and written in one batch.
+        activityEventService.publishActivityFinishedEvents(healthCode, finishedActivities);
+        
+        activityDao.updateActivities(healthCode, ImmutableList.copyOf(activitiesToSave.values()));
     }
 
     public void deleteActivitiesForUser(String healthCode) {
@@ -3,12 +3,14 @@ package org.sagebionetworks.bridge.services;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sagebionetworks.bridge.BridgeConstants.SHARED_STUDY_ID;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang3.StringUtils;
@@ -26,12 +28,25 @@ import org.sagebionetworks.bridge.models.sharedmodules.SharedModuleType;
 import org.sagebionetworks.bridge.validators.SharedModuleMetadataValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 
-/** Service for Shared Module Metadata. */
+/**
+ * Service for Shared Module Metadata. The published catalog (the most recent published version of each module) is
+ * what study managers browse and import from, so it is cached in memory. The cache is invalidated whenever this
+ * server creates, updates, or deletes metadata, and expires after a few minutes to pick up changes made through other
+ * servers. Callers get copies of the cached metadata, so they can't change the catalog.
+ */
 @Component
 public class SharedModuleMetadataService {
     private static final Logger LOG = LoggerFactory.getLogger(SharedModuleMetadataService.class);
 
+    static final int PUBLISHED_CATALOG_EXPIRE_IN_SECONDS = 5*60;
+    private static final String PUBLISHED_CATALOG_KEY = "published-catalog";
+
     private SharedModuleMetadataDao metadataDao;
+    private final Cache<String, List<SharedModuleMetadata>> publishedCatalogCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(PUBLISHED_CATALOG_EXPIRE_IN_SECONDS, TimeUnit.SECONDS).build();
+    // Incremented on every write, so a catalog loaded before the write isn't put back into the cache after it. Guarded
+    // by publishedCatalogCache.
+    private long publishedCatalogGeneration;
     private UploadSchemaService uploadSchemaService;
     private SurveyService surveyService;
 
@@ -75,7 +90,9 @@ public class SharedModuleMetadataService {
         validateSchemaOrSurveyExists(metadata);
 
         // call through to DAO
-        return metadataDao.createMetadata(metadata);
+        SharedModuleMetadata createdMetadata = metadataDao.createMetadata(metadata);
+        invalidatePublishedCatalog();
+        return createdMetadata;
     }
 
     // helper method to validate existence of schema/survey based on given metadata
@@ -122,6 +139,7 @@ public class SharedModuleMetadataService {
         getMetadataByIdLatestVersion(id);
 
         metadataDao.deleteMetadataByIdAllVersions(id);
+        invalidatePublishedCatalog();
     }
 
     /**
@@ -133,6 +151,7 @@ public class SharedModuleMetadataService {
         getMetadataByIdAndVersion(id, version);
 
         metadataDao.deleteMetadataByIdAndVersion(id, version);
+        invalidatePublishedCatalog();
     }
 
     /** Gets metadata for the specified version of the specified module. */
@@ -188,15 +207,16 @@ public class SharedModuleMetadataService {
      * published modules, a SQL-like WHERE clause, and tags.
      * </p>
      * <p>
-     * Internally, the where clause will be applied first. If published=true, this will add another clause to the
-     * where in the SQL query. Alternatively, if published=false, this will look at both published and unpublished
-     * module versions. If specified, tags will be applied last. If a module has any of these tags (not necessarily all
-     * of them), it will be returned in the result.
+     * The where clause, published flag, and tags are all applied by the database. If published=true, only published
+     * module versions are considered. Alternatively, if published=false, this will look at both published and
+     * unpublished module versions. If tags are specified, a module version that has any of these tags (not
+     * necessarily all of them) will be returned in the result.
      * </p>
      * <p>
      * mostrecent is a special case. If mostrecent=true, then we return the most recent versions. If mostrecent=true
      * and published=true, we return the most recent published versions. Tags can be used on top of this.
-     * mostrecent=true can't be specified at the same time as a where clause.
+     * mostrecent=true can't be specified at the same time as a where clause. The most recent published versions are
+     * served from the in-memory published catalog.
      * </p>
      * <p>
      * Example where clause: "published = true AND os = 'iOS'"
@@ -204,55 +224,7 @@ public class SharedModuleMetadataService {
      */
     public List<SharedModuleMetadata> queryAllMetadata(boolean mostRecent, boolean published, String where,
             Set<String> tags) {
-        boolean hasWhere = StringUtils.isNotBlank(where);
-        String whereInternal = null;
-        if (mostRecent) {
-            if (hasWhere) {
-                // This is disallowed because of the confusion (both from Bridge developers and from Study managers) on
-                // how this would actually work.
-                throw new BadRequestException("mostrecent=true cannot be specified with where clause");
-            }
-
-            if (published) {
-                // Most recent published version is a special case. This is implemented by first querying for published
-                // versions, then filtering for most recent.
-                whereInternal = "published=true";
-            }
-        } else {
-            if (published && hasWhere) {
-                // Published and where both contribute to the query.
-                whereInternal = "published=true AND " + where;
-            } else if (published) {
-                whereInternal = "published=true";
-            } else if (hasWhere) {
-                whereInternal = where;
-            }
-        }
-
-        // Run actual query.
-        List<SharedModuleMetadata> metadataList = metadataDao.queryMetadata(whereInternal);
-
-        // Map to find latest versions for each metadata by ID. This is applied before tags.
-        if (mostRecent) {
-            Map<String, SharedModuleMetadata> latestMetadataById = new HashMap<>();
-            for (SharedModuleMetadata oneMetadata : metadataList) {
-                String metadataId = oneMetadata.getId();
-                SharedModuleMetadata existing = latestMetadataById.get(metadataId);
-                if (existing == null || oneMetadata.getVersion() > existing.getVersion()) {
-                    latestMetadataById.put(metadataId, oneMetadata);
-                }
-            }
-
-            metadataList = ImmutableList.copyOf(latestMetadataById.values());
-        }
-
-        // If tags are specified, we include results that contain any of these tags. (Don't need to match *all* tags.)
-        if (tags != null && !tags.isEmpty()) {
-            return metadataList.stream().filter(metadata -> !Sets.intersection(metadata.getTags(), tags)
-                    .isEmpty()).collect(Collectors.toList());
-        } else {
-            return metadataList;
-        }
+        return query(null, mostRecent, published, where, tags);
     }
 
     /** Similar to queryAllMetadata, except this only queries on module versions of the specified ID. */
@@ -261,11 +233,33 @@ public class SharedModuleMetadataService {
         if (StringUtils.isBlank(id)) {
             throw new BadRequestException("id must be specified");
         }
+        return query(id, mostRecent, published, where, tags);
+    }
+
+    // Helper method for queries. ID is optional.
+    private List<SharedModuleMetadata> query(String id, boolean mostRecent, boolean published, String where,
+            Set<String> tags) {
+        boolean hasWhere = StringUtils.isNotBlank(where);
+        if (mostRecent && hasWhere) {
+            // This is disallowed because of the confusion (both from Bridge developers and from Study managers) on
+            // how this would actually work.
+            throw new BadRequestException("mostrecent=true cannot be specified with where clause");
+        }
 
-        // Query all metadata and just filter by ID.
-        List<SharedModuleMetadata> queryAllMetadataList = queryAllMetadata(mostRecent, published, where, tags);
-        return queryAllMetadataList.stream().filter(metadata -> id.equals(metadata.getId())).collect(Collectors
-                .toList());
+        if (mostRecent && published) {
+            // The published catalog is small, so filtering it in memory is cheaper than a round trip to the database.
+            Stream<SharedModuleMetadata> metadataStream = getPublishedCatalog().stream();
+            if (id != null) {
+                metadataStream = metadataStream.filter(metadata -> id.equals(metadata.getId()));
+            }
+            if (tags != null && !tags.isEmpty()) {
+                metadataStream = metadataStream.filter(metadata -> !Sets.intersection(metadata.getTags(), tags)
+                        .isEmpty());
+            }
+            return metadataStream.map(SharedModuleMetadataService::copyMetadata).collect(Collectors.toList());
+        }
+
+        return metadataDao.queryMetadata(id, mostRecent, published, where, tags);
     }
 
     /**
@@ -287,6 +281,51 @@ public class SharedModuleMetadataService {
         validateSchemaOrSurveyExists(metadata);
 
         // call through to DAO
-        return metadataDao.updateMetadata(metadata);
+        SharedModuleMetadata updatedMetadata = metadataDao.updateMetadata(metadata);
+        invalidatePublishedCatalog();
+        return updatedMetadata;
+    }
+
+    // The cache has a single entry, which is loaded from the DAO on demand.
+    private List<SharedModuleMetadata> getPublishedCatalog() {
+        List<SharedModuleMetadata> catalog = publishedCatalogCache.getIfPresent(PUBLISHED_CATALOG_KEY);
+        if (catalog == null) {
+            long generation;
+            synchronized (publishedCatalogCache) {
+                generation = publishedCatalogGeneration;
+            }
+            catalog = ImmutableList.copyOf(metadataDao.queryMetadata(null, true, true, null, null));
+            synchronized (publishedCatalogCache) {
+                if (generation == publishedCatalogGeneration) {
+                    publishedCatalogCache.put(PUBLISHED_CATALOG_KEY, catalog);
+                }
+            }
+        }
+        return catalog;
+    }
+
+    private void invalidatePublishedCatalog() {
+        synchronized (publishedCatalogCache) {
+            publishedCatalogGeneration++;
+            publishedCatalogCache.invalidateAll();
+        }
+    }
+
+    // Copies a module from the cached catalog. The tags are copied too, since they are a mutable set.
+    private static SharedModuleMetadata copyMetadata(SharedModuleMetadata metadata) {
+        SharedModuleMetadata copy = SharedModuleMetadata.create();
+        copy.setId(metadata.getId());
+        copy.setLicenseRestricted(metadata.isLicenseRestricted());
+        copy.setName(metadata.getName());
+        copy.setNotes(metadata.getNotes());
+        copy.setOs(metadata.getOs());
+        copy.setPublished(metadata.isPublished());
+        copy.setSchemaId(metadata.getSchemaId());
+        copy.setSchemaRevision(metadata.getSchemaRevision());
+        copy.setSurveyCreatedOn(metadata.getSurveyCreatedOn());
+        copy.setSurveyGuid(metadata.getSurveyGuid());
+        copy.setTags(Sets.newHashSet(metadata.getTags()));
+        copy.setVersion(metadata.getVersion());
+        return copy;
     }
 }
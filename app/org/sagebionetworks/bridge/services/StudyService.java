@@ -8,12 +8,15 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
@@ -47,7 +50,9 @@ import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.accounts.IdentifierHolder;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.studies.EmailTemplate;
@@ -56,6 +61,7 @@ import org.sagebionetworks.bridge.models.studies.PasswordPolicy;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyAndUsers;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudySummaryList;
 import org.sagebionetworks.bridge.validators.StudyParticipantValidator;
 import org.sagebionetworks.bridge.validators.StudyValidator;
 import org.sagebionetworks.bridge.validators.Validate;
@@ -70,6 +76,11 @@ public class StudyService {
     private static final String STUDY_PROPERTY = "Study";
     private static final String TYPE_PROPERTY = "type";
     private static final String IDENTIFIER_PROPERTY = "identifier";
+    private static final Comparator<Study> STUDY_COMPARATOR = new Comparator<Study>() {
+        public int compare(Study study1, Study study2) {
+            return study1.getName().compareToIgnoreCase(study2.getName());
+        }
+    };
     private final Set<String> studyWhitelist = Collections.unmodifiableSet(new HashSet<>(
             BridgeConfigFactory.getConfig().getPropertyAsList("study.whitelist")));
 
@@ -83,6 +94,8 @@ public class StudyService {
     private EmailVerificationService emailVerificationService;
     private SynapseClient synapseClient;
     private ParticipantService participantService;
+    // The last summary list this server served, so its compressed form is only rebuilt when the JSON changes.
+    private volatile StudySummaryList studySummaryList;
 
     private String defaultEmailVerificationTemplate;
     private String defaultEmailVerificationTemplateSubject;
@@ -236,6 +249,47 @@ public class StudyService {
         return studyDao.getStudies();
     }
 
+    /**
+     * Returns the summaries of all active studies, sorted by name, ready to send to clients. The list is kept in the
+     * cache until a study is created, updated or deleted, so it is usually served without reading DynamoDB or
+     * serializing any studies. If the cache is unavailable, the list is loaded from DynamoDB.
+     */
+    public StudySummaryList getStudySummaryList() {
+        String json = null;
+        String generation = null;
+        try {
+            json = cacheProvider.getStudySummaries();
+            if (json == null) {
+                // Read before loading, so a study changed while we load stops us from caching a stale list.
+                generation = cacheProvider.getStudySummariesGeneration();
+            }
+        } catch(RuntimeException e) {
+            LOG.warn("Could not read study summaries from the cache, loading them from DynamoDB", e);
+        }
+        if (json == null) {
+            List<Study> activeStudies = getStudies().stream().filter(Study::isActive).sorted(STUDY_COMPARATOR)
+                    .collect(Collectors.toList());
+            try {
+                json = Study.STUDY_LIST_WRITER.writeValueAsString(new ResourceList<Study>(activeStudies));
+            } catch(JsonProcessingException e) {
+                throw new BridgeServiceException(e);
+            }
+            if (generation != null) {
+                try {
+                    cacheProvider.setStudySummaries(json, generation);
+                } catch(RuntimeException e) {
+                    LOG.warn("Could not cache study summaries", e);
+                }
+            }
+        }
+        StudySummaryList summaries = studySummaryList;
+        if (summaries == null || !summaries.getJson().equals(json)) {
+            summaries = new StudySummaryList(json);
+            studySummaryList = summaries;
+        }
+        return summaries;
+    }
+
     public Study createStudyAndUsers(StudyAndUsers studyAndUsers) throws SynapseException {
         checkNotNull(studyAndUsers, Validate.CANNOT_BE_NULL, "study and users");
 
@@ -339,6 +393,7 @@ public class StudyService {
         emailVerificationService.verifyEmailAddress(study.getSupportEmail());
         
         cacheProvider.setStudy(study);
+        removeCachedStudySummaries();
 
         return study;
     }
@@ -439,6 +494,7 @@ public class StudyService {
             study.setEmailVerificationEnabled(originalStudy.isEmailVerificationEnabled());
             study.setExternalIdValidationEnabled(originalStudy.isExternalIdValidationEnabled());
             study.setExternalIdRequiredOnSignup(originalStudy.isExternalIdRequiredOnSignup());
+            study.setExternalIdAutoAssignmentEnabled(originalStudy.isExternalIdAutoAssignmentEnabled());
             study.setEmailSignInEnabled(originalStudy.isEmailSignInEnabled());
             study.setAccountLimit(originalStudy.getAccountLimit());
             study.setStrictUploadValidationEnabled(originalStudy.isStrictUploadValidationEnabled());
@@ -468,6 +524,7 @@ public class StudyService {
         }
         
         cacheProvider.setStudy(updatedStudy);
+        removeCachedStudySummaries();
         
         return updatedStudy;
     }
@@ -504,6 +561,17 @@ public class StudyService {
         }
 
         cacheProvider.removeStudy(identifier);
+        removeCachedStudySummaries();
+    }
+    
+    // The study has already been written, so failing to remove the cached list mustn't fail the request. The stale
+    // list is served until the cached copy expires.
+    private void removeCachedStudySummaries() {
+        try {
+            cacheProvider.removeStudySummaries();
+        } catch(RuntimeException e) {
+            LOG.error("Could not remove study summaries from the cache", e);
+        }
     }
     
     /**
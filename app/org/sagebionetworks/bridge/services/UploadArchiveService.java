@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.services;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.security.cert.CertificateEncodingException;
 import java.util.Map;
@@ -13,6 +14,7 @@ import org.sagebionetworks.bridge.crypto.CmsEncryptor;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.util.DuplicateZipEntryException;
+import org.sagebionetworks.bridge.util.ZipEntryVisitor;
 import org.sagebionetworks.bridge.util.ZipOverflowException;
 import org.sagebionetworks.bridge.util.Zipper;
 import org.sagebionetworks.bridge.validators.Validate;
@@ -177,4 +179,38 @@ public class UploadArchiveService {
             throw new BadRequestException(e);
         }
     }
+
+    /**
+     * <p>
+     * Unzips the given byte array, streaming each zip entry to the given visitor instead of materializing the entries
+     * in memory. This enforces the same limits as {@link #unzip(byte[])}.
+     * </p>
+     * <p>
+     * This method will throw a BadRequestException if the zip file somehow contains duplicate filenames.
+     * </p>
+     *
+     * @param bytes
+     *         byte array containing the raw data to unzip, must be non-null
+     * @param visitor
+     *         callback called once for each zip entry, must be non-null
+     * @throws BridgeServiceException
+     *         if unzipping fails, or if the visitor fails
+     */
+    public void unzip(@Nonnull byte[] bytes, @Nonnull ZipEntryVisitor visitor) throws BridgeServiceException {
+        if (bytes == null) {
+            throw new BadRequestException(String.format(Validate.CANNOT_BE_NULL, "bytes"));
+        }
+        if (visitor == null) {
+            throw new BadRequestException(String.format(Validate.CANNOT_BE_NULL, "visitor"));
+        }
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes)) {
+            ZIPPER.unzip(bais, visitor);
+        } catch (IOException e) {
+            throw new BridgeServiceException(e);
+        } catch (ZipOverflowException e) {
+            throw new BadRequestException(e);
+        } catch (DuplicateZipEntryException e) {
+            throw new BadRequestException(e);
+        }
+    }
 }
@@ -11,7 +11,10 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -45,6 +48,7 @@ import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
 import org.sagebionetworks.bridge.models.upload.UploadFieldType;
 import org.sagebionetworks.bridge.models.upload.UploadSchema;
 import org.sagebionetworks.bridge.models.upload.UploadSchemaType;
+import org.sagebionetworks.bridge.upload.CompiledUploadSchema;
 import org.sagebionetworks.bridge.upload.UploadUtil;
 import org.sagebionetworks.bridge.validators.UploadSchemaValidator;
 import org.sagebionetworks.bridge.validators.Validate;
@@ -85,6 +89,16 @@ public class UploadSchemaService {
         UploadSchemaService.singleChoiceDefaultLength = SINGLE_CHOICE_DEFAULT_LENGTH;
     }
 
+    // Compiled schemas are cached per server. Updating or deleting a schema revision evicts it from this server's
+    // cache. Other servers keep their copy until it expires, so this bounds how long they validate uploads against
+    // an outdated revision.
+    static final int COMPILED_SCHEMA_CACHE_SIZE = 1000;
+    static final int COMPILED_SCHEMA_EXPIRE_IN_MINUTES = 5;
+
+    private final Cache<String, CompiledUploadSchema> compiledSchemaCache = CacheBuilder.newBuilder()
+            .maximumSize(COMPILED_SCHEMA_CACHE_SIZE)
+            .expireAfterWrite(COMPILED_SCHEMA_EXPIRE_IN_MINUTES, TimeUnit.MINUTES).build();
+
     private SharedModuleMetadataService sharedModuleMetadataService;
     private UploadSchemaDao uploadSchemaDao;
 
@@ -550,6 +564,9 @@ public class UploadSchemaService {
         }
 
         uploadSchemaDao.deleteUploadSchemas(schemaList);
+        for (UploadSchema oneSchema : schemaList) {
+            compiledSchemaCache.invalidate(getCompiledSchemaKey(studyId, schemaId, oneSchema.getRevision()));
+        }
     }
 
     /**
@@ -569,6 +586,7 @@ public class UploadSchemaService {
         }
 
         uploadSchemaDao.deleteUploadSchemas(ImmutableList.of(schema));
+        compiledSchemaCache.invalidate(getCompiledSchemaKey(studyId, schemaId, rev));
     }
 
     /** Returns all revisions of all schemas. */
@@ -653,6 +671,26 @@ public class UploadSchemaService {
         return schema;
     }
 
+    /**
+     * Gets the compiled form of the schema for the specified study, schema ID, and revision, for validating uploads.
+     * Compiled schemas are cached, so this usually doesn't read the schema from DynamoDB. If no schema is found, this
+     * API throws an EntityNotFoundException.
+     */
+    public CompiledUploadSchema getCompiledUploadSchema(StudyIdentifier studyId, String schemaId, int revision) {
+        String key = getCompiledSchemaKey(studyId, schemaId, revision);
+        CompiledUploadSchema compiledSchema = compiledSchemaCache.getIfPresent(key);
+        if (compiledSchema == null) {
+            // Validates schema ID and rev and throws if the schema revision doesn't exist.
+            compiledSchema = new CompiledUploadSchema(getUploadSchemaByIdAndRev(studyId, schemaId, revision));
+            compiledSchemaCache.put(key, compiledSchema);
+        }
+        return compiledSchema;
+    }
+
+    private static String getCompiledSchemaKey(StudyIdentifier studyId, String schemaId, int revision) {
+        return studyId.getIdentifier() + ":" + schemaId + ":" + revision;
+    }
+
     /**
      * Gets the latest available revision of the specified schema for the specified client. This API fetches every
      * schema revision for the specified schema ID, then checks the schema's min/maxAppVersion against the clientInfo.
@@ -785,7 +823,9 @@ public class UploadSchemaService {
         }
 
         // Call through to the DAO
-        return uploadSchemaDao.updateSchemaRevision(schemaToUpdate);
+        UploadSchema updatedSchema = uploadSchemaDao.updateSchemaRevision(schemaToUpdate);
+        compiledSchemaCache.invalidate(getCompiledSchemaKey(studyId, schemaId, revision));
+        return updatedSchema;
     }
 
     // Helper method to get a map of fields by name for an Upload Schema. Returns a TreeMap so our error messaging has
@@ -279,7 +279,7 @@ public class UploadService {
             UploadView.Builder builder = new UploadView.Builder();
             builder.withUpload(upload);
             if (upload.getRecordId() != null) {
-                HealthDataRecord record = healthDataService.getRecordById(upload.getRecordId());
+                HealthDataRecord record = healthDataService.getRecordInfoById(upload.getRecordId());
                 if (record != null) {
                     builder.withSchemaId(record.getSchemaId());
                     builder.withSchemaRevision(record.getSchemaRevision());
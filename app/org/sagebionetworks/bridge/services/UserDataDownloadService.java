@@ -8,8 +8,9 @@ import org.sagebionetworks.bridge.models.DateRange;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 
 /**
- * Interface for user data download requests. Current implementation uses SQS (see {@link
- * UserDataDownloadViaSqsService), but this is an interface to allow different implementations.
+ * Interface for user data download requests. The default implementation uses SQS (see {@link
+ * UserDataDownloadViaSqsService}). Self-hosted deployments can export on the server instead (see {@link
+ * org.sagebionetworks.bridge.services.export.UserDataExportService}).
  */
 public interface UserDataDownloadService {
     /**
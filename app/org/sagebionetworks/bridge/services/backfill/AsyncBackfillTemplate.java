@@ -2,14 +2,22 @@ package org.sagebionetworks.bridge.services.backfill;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.sagebionetworks.bridge.dao.BackfillDao;
 import org.sagebionetworks.bridge.dao.DistributedLockDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoCapacityGovernor;
+import org.sagebionetworks.bridge.dynamodb.DynamoCapacityGovernor.Priority;
 import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
 import org.sagebionetworks.bridge.models.backfill.BackfillStatus;
 import org.sagebionetworks.bridge.models.backfill.BackfillTask;
@@ -23,8 +31,28 @@ abstract class AsyncBackfillTemplate implements BackfillService {
 
     private final Logger logger = LoggerFactory.getLogger(AsyncBackfillTemplate.class);
 
+    /** How far back to look for incomplete runs of the same backfill when resuming from checkpoints. */
+    static final long RESUME_LOOKBACK_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Default lock lease. The lock is renewed every third of the lease for as long as the backfill runs, so this only
+     * needs to cover a few missed renewals, not the whole backfill.
+     */
+    static final int DEFAULT_LOCK_EXPIRE_IN_SECONDS = 5 * 60;
+
+    // Renews the locks of all running backfills. Renewals are tiny, so one daemon thread is plenty.
+    private static final ScheduledExecutorService LOCK_RENEWAL_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("backfill-lock-renewal-%d").build());
+
+    // Runs the backfill's lock and task bookkeeping. The lock means there is only ever one run of each backfill at
+    // a time, so one thread is enough. Backfills that need parallelism fan out to a shared worker pool. See
+    // PartitionedBackfillTemplate.
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
 
+    // Set when the running backfill loses its lock, so it stops before another server starts the same backfill.
+    // Only one backfill runs on the executor at a time, so this is reset at the start of each run.
+    private volatile boolean cancelled;
+
     private DistributedLockDao lockDao;
     private BackfillDao backfillDao;
     private BackfillRecordFactory backfillRecordFactory;
@@ -68,19 +96,25 @@ abstract class AsyncBackfillTemplate implements BackfillService {
         final Class<? extends AsyncBackfillTemplate> clazz = getClass();
         final String obj = clazz.getSimpleName();
         String lock = null;
+        cancelled = false;
         try {
             lock = lockDao.acquireLock(clazz, obj, getLockExpireInSeconds());
-            backfillTask(user, name, callback);
+            ScheduledFuture<?> renewal = scheduleLockRenewal(clazz, obj, lock);
+            try {
+                backfillTask(user, name, callback);
+            } finally {
+                renewal.cancel(false);
+            }
         } catch (ConcurrentModificationException e) {
-            long since = DateTime.now(DateTimeZone.UTC).getMillis() - getLockExpireInSeconds() * 1000L;
+            // Since the lock is renewed, the backfill holding it may have started long before the lock's lease. Look
+            // back as far as we would for resuming.
+            long since = DateTime.now(DateTimeZone.UTC).getMillis() - RESUME_LOOKBACK_MILLIS;
             List<? extends BackfillTask> tasks = backfillDao.getTasks(name, since);
             if (tasks.isEmpty()) {
                 throw new RuntimeException("Failed to acquire lock but there is not recent backfill of " + name);
             }
-            // A backfill task may complete well within the lock expiration. If we look back over the
-            // duration of lock expiration, we could get more than one backfill tasks. Only the most
-            // recent one is blocking us; the rest should have finished. Check the most recent one and
-            // report back the progress.
+            // We could get more than one backfill task. Only the most recent one is blocking us; the rest should
+            // have finished. Check the most recent one and report back the progress.
             final BackfillTask recentTask = tasks.get(tasks.size() - 1);
             final int count = backfillDao.getRecordCount(recentTask.getId());
             final String msg = "Found a recent task of " + name
@@ -95,13 +129,37 @@ abstract class AsyncBackfillTemplate implements BackfillService {
         }
     }
 
+    // Periodically renews the lock so that it outlives the backfill, however long the backfill takes. If the lock is
+    // lost, the backfill is cancelled.
+    private ScheduledFuture<?> scheduleLockRenewal(final Class<?> clazz, final String obj, final String lock) {
+        final int expireInSeconds = getLockExpireInSeconds();
+        final long periodInSeconds = Math.max(expireInSeconds / 3, 1);
+        return LOCK_RENEWAL_EXECUTOR.scheduleAtFixedRate(() -> {
+            try {
+                if (!cancelled && !lockDao.renewLock(clazz, obj, lock, expireInSeconds)) {
+                    logger.error("Backfill " + obj + " lost its lock before it finished, cancelling");
+                    cancelled = true;
+                }
+            } catch (RuntimeException ex) {
+                // Don't let one failed renewal cancel the rest. The lease covers a couple of missed renewals.
+                logger.error("Error renewing lock for backfill " + obj + ": " + ex.getMessage(), ex);
+            }
+        }, periodInSeconds, periodInSeconds, TimeUnit.SECONDS);
+    }
+
     private void backfillTask(final String user, final String name, final BackfillCallback callback) {
         BackfillTask task = null;
         try {
             task = backfillDao.createTask(name, user);
             callback.start(task);
             backfillDao.updateTaskStatus(task.getId(), BackfillStatus.IN_PROCESS);
-            doBackfill(task, callback);
+            // Backfill DDB requests yield to participant traffic. See DynamoCapacityGovernor.
+            final BackfillTask runningTask = task;
+            DynamoCapacityGovernor.runWithPriority(Priority.BACKFILL, () -> doBackfill(runningTask, callback));
+            if (cancelled) {
+                // Don't mark it completed, so the next run resumes from the checkpoints.
+                throw new RuntimeException("Backfill task " + name + " was cancelled because it lost its lock.");
+            }
             backfillDao.updateTaskStatus(task.getId(), BackfillStatus.COMPLETED);
         } catch (Throwable t) {
             logger.error("Backfill task " + name + " has failed.", t);
@@ -113,6 +171,14 @@ abstract class AsyncBackfillTemplate implements BackfillService {
         }
     }
 
+    /**
+     * True if the running backfill lost its lock and should stop. Long-running backfills should check this between
+     * units of work. See PartitionedBackfillTemplate.
+     */
+    protected boolean isCancelled() {
+        return cancelled;
+    }
+
     /**
      * Records the specified message. This is a convenience method that wraps calling the BackfillRecordFactory to
      * create a message on a task and calls the callback with the BackfillRecord.
@@ -129,10 +195,44 @@ abstract class AsyncBackfillTemplate implements BackfillService {
     }
 
     /**
-     * How long (in seconds) should the lock expire. This value should be long enough to cover
-     * the duration of the entire backfill.
+     * Marks a unit of work (for example, an upload ID) as done for this task. If this backfill fails or the server
+     * dies, the next run can skip checkpointed work. See {@link #getCheckpointsFromIncompleteRuns}.
      */
-    abstract int getLockExpireInSeconds();
+    protected void checkpoint(BackfillTask task, String checkpoint) {
+        backfillDao.createCheckpoint(task.getId(), checkpoint);
+    }
+
+    /**
+     * Gets the checkpoints from previous runs of this backfill that never completed. This walks back from the most
+     * recent previous run and stops at the first completed run, so a chain of failed runs resumes from the union of
+     * their checkpoints.
+     */
+    protected Set<String> getCheckpointsFromIncompleteRuns(BackfillTask task) {
+        long since = DateTime.now(DateTimeZone.UTC).getMillis() - RESUME_LOOKBACK_MILLIS;
+        List<? extends BackfillTask> previousTasks = backfillDao.getTasks(task.getName(), since);
+
+        // Tasks are in ascending order of timestamp. Walk them backwards.
+        Set<String> checkpointSet = new HashSet<>();
+        for (int i = previousTasks.size() - 1; i >= 0; i--) {
+            BackfillTask previousTask = previousTasks.get(i);
+            if (previousTask.getId().equals(task.getId()) || previousTask.getTimestamp() > task.getTimestamp()) {
+                continue;
+            }
+            if (BackfillStatus.COMPLETED.name().equals(previousTask.getStatus())) {
+                break;
+            }
+            checkpointSet.addAll(backfillDao.getCheckpoints(previousTask.getId()));
+        }
+        return checkpointSet;
+    }
+
+    /**
+     * The lease (in seconds) on the backfill lock. The lock is renewed while the backfill runs, so this doesn't need
+     * to cover the duration of the entire backfill.
+     */
+    int getLockExpireInSeconds() {
+        return DEFAULT_LOCK_EXPIRE_IN_SECONDS;
+    }
 
     /**
      * Does the actual backfill for the task. Reports back progress as the backfill goes.
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.services.backfill;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -14,7 +15,7 @@ import org.sagebionetworks.bridge.services.StudyService;
 import org.sagebionetworks.bridge.services.SubpopulationService;
 
 @Component("consentCreatedOn")
-public class ConsentCreatedOnBackfill extends AsyncBackfillTemplate {
+public class ConsentCreatedOnBackfill extends PartitionedBackfillTemplate {
     private StudyService studyService;
     private SubpopulationService subpopulationService;
     private StudyConsentDao studyConsentDao;
@@ -33,31 +34,25 @@ public class ConsentCreatedOnBackfill extends AsyncBackfillTemplate {
     }
 
     @Override
-    int getLockExpireInSeconds() {
-        return 30 * 60;
-    }
-    
-    private List<Study> getStudies() {
-        return studyService.getStudies();
+    List<String> getPartitions(BackfillTask task, BackfillCallback callback) {
+        return studyService.getStudies().stream().map(Study::getIdentifier).collect(Collectors.toList());
     }
 
     @Override
-    void doBackfill(final BackfillTask task, BackfillCallback callback) {
-        List<Study> studies = getStudies();
-        for (Study study : studies) {
-            callback.newRecords(getBackfillRecordFactory().createOnly(task, "Examining study " + study.getIdentifier() + "..."));
-            
-            List<Subpopulation> subpopulations = subpopulationService.getSubpopulations(study.getStudyIdentifier());
-            for (Subpopulation subpopulation : subpopulations) {
-                StudyConsent consent = studyConsentDao.getConsent(subpopulation.getGuid(),
-                        subpopulation.getPublishedConsentCreatedOn());
-                if (consent != null) {
-                    callback.newRecords(getBackfillRecordFactory().createOnly(task, "Updating subpopulation " + subpopulation.getGuidString() + "..."));
-                    subpopulation.setPublishedConsentCreatedOn(consent.getCreatedOn());
-                    subpopulationService.updateSubpopulation(study, subpopulation);
-                } else {
-                    callback.newRecords(getBackfillRecordFactory().createOnly(task, "Can't update subpopulation " + subpopulation.getGuidString() + "..."));
-                }
+    void backfillPartition(final BackfillTask task, BackfillCallback callback, String studyId) {
+        Study study = studyService.getStudy(studyId);
+        callback.newRecords(getBackfillRecordFactory().createOnly(task, "Examining study " + study.getIdentifier() + "..."));
+
+        List<Subpopulation> subpopulations = subpopulationService.getSubpopulations(study.getStudyIdentifier());
+        for (Subpopulation subpopulation : subpopulations) {
+            StudyConsent consent = studyConsentDao.getConsent(subpopulation.getGuid(),
+                    subpopulation.getPublishedConsentCreatedOn());
+            if (consent != null) {
+                callback.newRecords(getBackfillRecordFactory().createOnly(task, "Updating subpopulation " + subpopulation.getGuidString() + "..."));
+                subpopulation.setPublishedConsentCreatedOn(consent.getCreatedOn());
+                subpopulationService.updateSubpopulation(study, subpopulation);
+            } else {
+                callback.newRecords(getBackfillRecordFactory().createOnly(task, "Can't update subpopulation " + subpopulation.getGuidString() + "..."));
             }
         }
     }
@@ -0,0 +1,45 @@
+package org.sagebionetworks.bridge.services.backfill;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.dao.ExternalIdDao;
+import org.sagebionetworks.bridge.models.backfill.BackfillTask;
+import org.sagebionetworks.bridge.models.studies.Study;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.services.StudyService;
+
+/**
+ * Adds the unassigned external IDs that were created before the unassigned ID index to that index. Partitioned by
+ * study. Once this has run, set external.id.unassigned.index.enabled to read unassigned IDs from the index.
+ */
+@Component("externalIdUnassignedIndexBackfill")
+public class ExternalIdUnassignedIndexBackfill extends PartitionedBackfillTemplate {
+    private StudyService studyService;
+    private ExternalIdDao externalIdDao;
+
+    @Autowired
+    public void setStudyService(StudyService studyService) {
+        this.studyService = studyService;
+    }
+
+    @Autowired
+    public void setExternalIdDao(ExternalIdDao externalIdDao) {
+        this.externalIdDao = externalIdDao;
+    }
+
+    @Override
+    List<String> getPartitions(BackfillTask task, BackfillCallback callback) {
+        return studyService.getStudies().stream().map(Study::getIdentifier).collect(Collectors.toList());
+    }
+
+    @Override
+    void backfillPartition(BackfillTask task, BackfillCallback callback, String studyId) {
+        int count = externalIdDao.backfillUnassignedIndex(new StudyIdentifierImpl(studyId));
+        callback.newRecords(getBackfillRecordFactory().createOnly(task,
+                "Added " + count + " unassigned external IDs to the index for study " + studyId));
+    }
+}
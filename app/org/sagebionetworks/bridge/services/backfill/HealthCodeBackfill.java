@@ -1,6 +1,8 @@
 package org.sagebionetworks.bridge.services.backfill;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
@@ -12,10 +14,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
- * Backfills health ID and health code.
+ * Backfills health ID and health code. Partitioned by study.
  */
 @Component
-public class HealthCodeBackfill extends AsyncBackfillTemplate {
+public class HealthCodeBackfill extends PartitionedBackfillTemplate {
     private AccountDao accountDao;
     private StudyService studyService;
 
@@ -30,16 +32,16 @@ public class HealthCodeBackfill extends AsyncBackfillTemplate {
     }
 
     @Override
-    int getLockExpireInSeconds() {
-        return 30 * 60;
+    List<String> getPartitions(BackfillTask task, BackfillCallback callback) {
+        return studyService.getStudies().stream().map(Study::getIdentifier).collect(Collectors.toList());
     }
 
     @Override
-    void doBackfill(final BackfillTask task, BackfillCallback callback) {
-        for (Iterator<AccountSummary> i = accountDao.getAllAccounts(); i.hasNext();) {
+    void backfillPartition(BackfillTask task, BackfillCallback callback, String studyId) {
+        Study study = studyService.getStudy(studyId);
+        for (Iterator<AccountSummary> i = accountDao.getStudyAccounts(study); i.hasNext();) {
             AccountSummary summary = i.next();
-            Study study = studyService.getStudy(summary.getStudyIdentifier());
-            
+
             // getting the individual account is sufficient to create a mapping if it does not exist.
             accountDao.getAccount(study, summary.getId());
         }
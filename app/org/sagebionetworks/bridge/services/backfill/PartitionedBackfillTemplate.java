@@ -0,0 +1,165 @@
+package org.sagebionetworks.bridge.services.backfill;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.Resource;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.RateLimiter;
+
+import org.sagebionetworks.bridge.dynamodb.DynamoCapacityGovernor;
+import org.sagebionetworks.bridge.dynamodb.DynamoCapacityGovernor.Priority;
+import org.sagebionetworks.bridge.models.backfill.BackfillTask;
+
+/**
+ * <p>
+ * Backfill that splits its work into independent partitions (for example, one per study, or one per upload) and runs
+ * them in parallel on the shared backfill worker pool (backfill.worker.thread.count).
+ * </p>
+ * <p>
+ * Each backfill bounds its own concurrency with {@link #getMaxConcurrentPartitions} and can optionally rate limit how
+ * fast partitions are started with {@link #getPartitionsPerSecond}. Each partition that finishes is checkpointed, so if
+ * a backfill fails or the server dies, the next run of the same backfill skips partitions that were already done.
+ * Errors in one partition are reported but don't fail the other partitions.
+ * </p>
+ * <p>
+ * Partitions run concurrently, so the callback passed to {@link #backfillPartition} is synchronized, and
+ * implementations must otherwise be thread-safe.
+ * </p>
+ */
+abstract class PartitionedBackfillTemplate extends AsyncBackfillTemplate {
+    static final int DEFAULT_MAX_CONCURRENT_PARTITIONS = 4;
+
+    // Report progress and ETA every this many partitions.
+    static final int PROGRESS_INTERVAL = 100;
+
+    private ExecutorService backfillExecutorService;
+
+    /** Worker pool shared by all backfills. This is configured by Spring. */
+    @Resource(name = "backfillExecutorService")
+    public final void setBackfillExecutorService(ExecutorService backfillExecutorService) {
+        this.backfillExecutorService = backfillExecutorService;
+    }
+
+    @Override
+    final void doBackfill(BackfillTask task, BackfillCallback callback) {
+        checkNotNull(backfillExecutorService);
+        BackfillCallback syncCallback = new SynchronizedBackfillCallback(callback);
+        List<String> partitionList = getPartitions(task, syncCallback);
+
+        // Skip partitions that were done by previous runs that didn't complete.
+        Set<String> checkpointSet = getCheckpointsFromIncompleteRuns(task);
+        List<String> remainingPartitionList = partitionList.stream()
+                .filter(partition -> !checkpointSet.contains(partition)).collect(Collectors.toList());
+        if (remainingPartitionList.size() < partitionList.size()) {
+            recordMessage(task, syncCallback, "Resuming backfill, skipping " +
+                    (partitionList.size() - remainingPartitionList.size()) + " partitions done by previous runs");
+        }
+
+        int numPartitions = remainingPartitionList.size();
+        int maxConcurrentPartitions = getMaxConcurrentPartitions();
+        double partitionsPerSecond = getPartitionsPerSecond();
+        RateLimiter rateLimiter = partitionsPerSecond > 0 ? RateLimiter.create(partitionsPerSecond) : null;
+        Semaphore permits = new Semaphore(maxConcurrentPartitions);
+        AtomicInteger numProcessed = new AtomicInteger();
+        AtomicInteger numFailed = new AtomicInteger();
+        int numStarted = 0;
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            for (String onePartition : remainingPartitionList) {
+                // Block until a permit is free, so we never queue up more than we're allowed to run.
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
+                permits.acquireUninterruptibly();
+                if (isCancelled()) {
+                    // Another server may take the lock and run this backfill. Don't start any more partitions.
+                    permits.release();
+                    recordMessage(task, syncCallback, "Backfill lost its lock, stopping after starting " + numStarted +
+                            " of " + numPartitions + " partitions");
+                    break;
+                }
+                numStarted++;
+                try {
+                    backfillExecutorService.execute(() -> {
+                        try {
+                            if (!runPartition(task, syncCallback, onePartition)) {
+                                numFailed.incrementAndGet();
+                            }
+
+                            int processed = numProcessed.incrementAndGet();
+                            if (processed % PROGRESS_INTERVAL == 0) {
+                                reportProgress(task, syncCallback, processed, numPartitions, stopwatch);
+                            }
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    permits.release();
+                    throw ex;
+                }
+            }
+        } finally {
+            // Wait for in-flight partitions to finish.
+            permits.acquireUninterruptibly(maxConcurrentPartitions);
+        }
+
+        recordMessage(task, syncCallback, "Backfilled " + numProcessed.get() + " partitions with " + numFailed.get() +
+                " errors in " + stopwatch.elapsed(TimeUnit.SECONDS) + " seconds");
+    }
+
+    // Runs a single partition and checkpoints it. Returns false if the partition failed.
+    private boolean runPartition(BackfillTask task, BackfillCallback callback, String partition) {
+        try {
+            // Worker threads don't inherit the backfill's DDB priority, so set it here.
+            DynamoCapacityGovernor.runWithPriority(Priority.BACKFILL, () -> backfillPartition(task, callback,
+                    partition));
+            checkpoint(task, partition);
+            return true;
+        } catch (RuntimeException ex) {
+            recordError(task, callback, "Error backfilling partition " + partition + ": " + ex.getMessage(), ex);
+            return false;
+        }
+    }
+
+    // Reports progress, throughput, and estimated time remaining.
+    private void reportProgress(BackfillTask task, BackfillCallback callback, int processed, int total,
+            Stopwatch stopwatch) {
+        long elapsedMillis = Math.max(stopwatch.elapsed(TimeUnit.MILLISECONDS), 1);
+        double partitionsPerSecond = processed * 1000.0 / elapsedMillis;
+        long etaSeconds = (long) ((total - processed) / partitionsPerSecond);
+        recordMessage(task, callback, String.format("Backfilled %d of %d partitions (%.1f/sec), ETA %d seconds",
+                processed, total, partitionsPerSecond, etaSeconds));
+    }
+
+    /** Maximum number of partitions of this backfill that run at the same time. */
+    int getMaxConcurrentPartitions() {
+        return DEFAULT_MAX_CONCURRENT_PARTITIONS;
+    }
+
+    /** Maximum number of partitions started per second, or zero (the default) for no limit. */
+    double getPartitionsPerSecond() {
+        return 0;
+    }
+
+    /**
+     * Returns the keys of the partitions to backfill. Keys are used as checkpoints, so they must be stable across
+     * runs.
+     */
+    abstract List<String> getPartitions(BackfillTask task, BackfillCallback callback);
+
+    /**
+     * Backfills a single partition. Throwing marks the partition as failed, which is reported and means the partition
+     * isn't checkpointed.
+     */
+    abstract void backfillPartition(BackfillTask task, BackfillCallback callback, String partition);
+}
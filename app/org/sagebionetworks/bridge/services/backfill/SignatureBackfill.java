@@ -23,7 +23,7 @@ import org.sagebionetworks.bridge.services.StudyService;
 import org.sagebionetworks.bridge.services.SubpopulationService;
 
 @Component("signatureBackfill")
-public class SignatureBackfill extends AsyncBackfillTemplate {
+public class SignatureBackfill extends PartitionedBackfillTemplate {
     
     private StudyService studyService;
     private AccountDao accountDao;
@@ -48,25 +48,15 @@ public class SignatureBackfill extends AsyncBackfillTemplate {
     }
 
     @Override
-    int getLockExpireInSeconds() {
-        return 30 * 60;
+    List<String> getPartitions(BackfillTask task, BackfillCallback callback) {
+        return studyService.getStudies().stream().map(Study::getIdentifier).collect(Collectors.toList());
     }
-    
+
     @Override
-    void doBackfill(final BackfillTask task, BackfillCallback callback) {
-        List<Study> studies = getStudies()
-                .stream()
-                .map(studyId -> studyService.getStudy(studyId))
-                .collect(Collectors.toList());
-        for (Study study : studies) {
-            backfillStudy(task, callback, study);
-        }
+    void backfillPartition(BackfillTask task, BackfillCallback callback, String studyId) {
+        backfillStudy(task, callback, studyService.getStudy(studyId));
     }
-    
-    private List<Study> getStudies() {
-        return studyService.getStudies();
-    }
-    
+
     private void backfillStudy(BackfillTask task, BackfillCallback callback, Study study) {
         callback.newRecords(getBackfillRecordFactory().createOnly(task, "Examining study " + study.getIdentifier() + "..."));
         
@@ -3,6 +3,8 @@ package org.sagebionetworks.bridge.services.backfill;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.dao.HealthCodeDao;
@@ -18,10 +20,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
- * Backfills study IDs to the health code table.
+ * Backfills study IDs to the health code table. Partitioned by study.
  */
 @Component
-public class StudyIdBackfill extends AsyncBackfillTemplate  {
+public class StudyIdBackfill extends PartitionedBackfillTemplate  {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StudyIdBackfill.class);
 
@@ -43,24 +45,23 @@ public class StudyIdBackfill extends AsyncBackfillTemplate  {
     public void setHealthCodeDao(HealthCodeDao healthCodeDao) {
         this.healthCodeDao = healthCodeDao;
     }
-    
+
     @Override
-    int getLockExpireInSeconds() {
-        return 30 * 60;
+    List<String> getPartitions(BackfillTask task, BackfillCallback callback) {
+        return studyService.getStudies().stream().map(Study::getIdentifier).collect(Collectors.toList());
     }
 
     @Override
-    void doBackfill(final BackfillTask task, final BackfillCallback callback) {
-        
-        for (Iterator<AccountSummary> i = accountDao.getAllAccounts(); i.hasNext();) {
+    void backfillPartition(final BackfillTask task, final BackfillCallback callback, String studyId) {
+        Study study = studyService.getStudy(studyId);
+        for (Iterator<AccountSummary> i = accountDao.getStudyAccounts(study); i.hasNext();) {
             // This ensures the healthCode is created.
             AccountSummary summary = i.next();
-            Study study = studyService.getStudy(summary.getStudyIdentifier());
             Account account = accountDao.getAccount(study, summary.getId());
             try {
                 String healthCode = account.getHealthCode();
-                final String studyId = healthCodeDao.getStudyIdentifier(healthCode);
-                if (isBlank(studyId)) {
+                final String healthCodeStudyId = healthCodeDao.getStudyIdentifier(healthCode);
+                if (isBlank(healthCodeStudyId)) {
                     String msg = "Backfill needed as study ID is blank.";
                     callback.newRecords(getBackfillRecordFactory().createOnly(task, study, account, msg));
                 } else {
@@ -0,0 +1,33 @@
+package org.sagebionetworks.bridge.services.backfill;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.sagebionetworks.bridge.models.backfill.BackfillRecord;
+import org.sagebionetworks.bridge.models.backfill.BackfillTask;
+
+/**
+ * Wraps a callback so that partitions running on different worker threads can report back at the same time. Callbacks
+ * generally write to a single response stream, so they aren't thread-safe on their own.
+ */
+class SynchronizedBackfillCallback implements BackfillCallback {
+    private final BackfillCallback delegate;
+
+    SynchronizedBackfillCallback(BackfillCallback delegate) {
+        this.delegate = checkNotNull(delegate);
+    }
+
+    @Override
+    public synchronized void start(BackfillTask task) {
+        delegate.start(task);
+    }
+
+    @Override
+    public synchronized void newRecords(BackfillRecord... records) {
+        delegate.newRecords(records);
+    }
+
+    @Override
+    public synchronized void done() {
+        delegate.done();
+    }
+}
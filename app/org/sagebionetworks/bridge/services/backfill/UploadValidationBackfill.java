@@ -4,30 +4,51 @@ import java.io.IOException;
 import java.util.List;
 import javax.annotation.Resource;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.google.common.base.Joiner;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import org.sagebionetworks.bridge.config.Config;
 import org.sagebionetworks.bridge.dao.HealthCodeDao;
 import org.sagebionetworks.bridge.dao.UploadDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.models.backfill.BackfillTask;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import org.sagebionetworks.bridge.models.upload.Upload;
 import org.sagebionetworks.bridge.s3.S3Helper;
-import org.sagebionetworks.bridge.services.UploadValidationService;
+import org.sagebionetworks.bridge.upload.UploadValidationContext;
+import org.sagebionetworks.bridge.upload.UploadValidationTask;
+import org.sagebionetworks.bridge.upload.UploadValidationTaskFactory;
 
 /**
+ * <p>
  * Re-drives upload validation. Depending on the sub-class, this can get upload IDs from a variety of sources. See
- * {@link UploadValidationByUploadIdBackfill} and TODO
+ * {@link UploadValidationByUploadIdBackfill} and {@link UploadValidationByRecordIdBackfill}.
+ * </p>
+ * <p>
+ * Each upload is a partition. Uploads are validated on the shared backfill worker pool, at most
+ * upload.validation.backfill.worker.count at a time, and uploads are started at a fixed rate
+ * (upload.validation.backfill.rate, in uploads per second) so we don't brown out DDB. See
+ * {@link PartitionedBackfillTemplate}.
+ * </p>
  */
-public abstract class UploadValidationBackfill extends AsyncBackfillTemplate {
-    private static final Logger logger = LoggerFactory.getLogger(UploadValidationBackfill.class);
+public abstract class UploadValidationBackfill extends PartitionedBackfillTemplate {
+    static final String CONFIG_KEY_RATE = "upload.validation.backfill.rate";
+    static final String CONFIG_KEY_WORKER_COUNT = "upload.validation.backfill.worker.count";
 
     private HealthCodeDao healthCodeDao;
+    private int rate;
     private S3Helper s3Helper;
     private UploadDao uploadDao;
-    private UploadValidationService uploadValidationService;
+    private UploadValidationTaskFactory uploadValidationTaskFactory;
+    private int workerCount;
+
+    /** Gets the backfill rate and worker count from Config. */
+    @Autowired
+    public final void setConfig(Config config) {
+        this.rate = config.getInt(CONFIG_KEY_RATE);
+        this.workerCount = config.getInt(CONFIG_KEY_WORKER_COUNT);
+    }
 
     /** DAO for getting the study ID from a health code. This is configured by Spring. */
     @Autowired
@@ -52,59 +73,57 @@ public abstract class UploadValidationBackfill extends AsyncBackfillTemplate {
         this.uploadDao = uploadDao;
     }
 
-    /** Service handler for upload validation. This is configured by Spring. */
+    /**
+     * Factory for upload validation tasks. We run the tasks directly on backfill workers (instead of going through
+     * UploadValidationService) so that the worker pool bounds concurrency and we know when each upload is done. This
+     * is configured by Spring.
+     */
     @Autowired
-    public final void setUploadValidationService(UploadValidationService uploadValidationService) {
-        this.uploadValidationService = uploadValidationService;
+    public final void setUploadValidationTaskFactory(UploadValidationTaskFactory uploadValidationTaskFactory) {
+        this.uploadValidationTaskFactory = uploadValidationTaskFactory;
+    }
+
+    @Override
+    int getMaxConcurrentPartitions() {
+        return workerCount;
     }
 
     @Override
-    int getLockExpireInSeconds() {
-        // We do roughly one upload per second. One hour should be enough for most cases.
-        return 3600;
+    double getPartitionsPerSecond() {
+        return rate;
     }
 
     @Override
-    void doBackfill(BackfillTask task, BackfillCallback callback) {
-        // get list of upload IDs
-        List<String> uploadIdList;
+    List<String> getPartitions(BackfillTask task, BackfillCallback callback) {
         try {
-            uploadIdList = getUploadIdList(task, callback);
+            return getUploadIdList(task, callback);
         } catch (IOException ex) {
-            // doBackfill() super class doesn't declare exceptions. Wrap this in a RuntimeException.
+            // getPartitions() super class doesn't declare exceptions. Wrap this in a RuntimeException.
             throw new RuntimeException(ex);
         }
+    }
 
-        for (String oneUploadId : uploadIdList) {
-            // rate limit so we down starve threads or brown out DDB
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException ex) {
-                logger.error("Interrupted while sleeping: " + ex.getMessage(), ex);
-            }
-
-            try {
-                // Get upload.
-                Upload oneUpload = uploadDao.getUpload(oneUploadId);
-
-                // Get study ID from health code. Upload validation needs this.
-                String studyId = healthCodeDao.getStudyIdentifier(oneUpload.getHealthCode());
-                StudyIdentifier studyIdentifier = new StudyIdentifierImpl(studyId);
-
-                // Kick off upload validation.
-                uploadValidationService.validateUpload(studyIdentifier, oneUpload);
-
-                recordMessage(task, callback, "Backfilled upload ID " + oneUploadId);
-                logger.info("Backfilled upload ID " + oneUploadId);
-            } catch (RuntimeException ex) {
-                // Ensure that errors won't fail the entire backfill. Log an error and move on.
-                String errMsg = "Error backfilling upload ID " + oneUploadId + ": " + ex.getMessage();
-                logger.error(errMsg, ex);
-                recordMessage(task, callback, errMsg);
-            }
+    // Validates a single upload on the current worker thread.
+    @Override
+    void backfillPartition(BackfillTask task, BackfillCallback callback, String uploadId) {
+        // Get upload.
+        Upload upload = uploadDao.getUpload(uploadId);
+
+        // Get study ID from health code. Upload validation needs this.
+        String studyId = healthCodeDao.getStudyIdentifier(upload.getHealthCode());
+        StudyIdentifier studyIdentifier = new StudyIdentifierImpl(studyId);
+
+        // Run upload validation synchronously. The task catches handler failures and only records them in its
+        // context, so check the result. Throwing marks the partition as failed, so it isn't checkpointed.
+        UploadValidationTask validationTask = uploadValidationTaskFactory.newTask(studyIdentifier, upload);
+        validationTask.run();
+        UploadValidationContext context = validationTask.getContext();
+        if (!context.getSuccess()) {
+            throw new BridgeServiceException("Upload validation failed for upload ID " + uploadId + ": " +
+                    Joiner.on("; ").join(context.getMessageList()));
         }
 
-        logger.info("UploadValidationBackfill complete");
+        recordMessage(task, callback, "Backfilled upload ID " + uploadId);
     }
 
     /** Subclasses should override this to return a list of upload IDs to redrive upload validation for. */
@@ -0,0 +1,13 @@
+package org.sagebionetworks.bridge.services.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream that writes an object to an {@link ExportStore}. Closing the stream creates the object. Aborting it discards
+ * what has been written, and the object is not created.
+ */
+public abstract class ExportOutputStream extends OutputStream {
+    /** Discards what has been written. Does nothing if the stream has already been closed or aborted. */
+    public abstract void abort() throws IOException;
+}
@@ -0,0 +1,59 @@
+package org.sagebionetworks.bridge.services.export;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.Nonnull;
+
+import org.joda.time.DateTime;
+
+/**
+ * Storage used by the user data export: attachments are read from it, and exports are written to it. Deployments on
+ * AWS use {@link S3ExportStore}. {@link LocalExportStore} keeps each bucket in a local directory, so the export can run
+ * without AWS.
+ */
+public interface ExportStore {
+    /**
+     * Opens a stream that reads an object, so large objects don't have to be held in memory. The caller closes the
+     * stream.
+     *
+     * @param bucket
+     *         bucket the object is in
+     * @param key
+     *         key of the object
+     * @return stream of the object's content
+     * @throws IOException
+     *         if the object can't be read
+     */
+    InputStream openForRead(@Nonnull String bucket, @Nonnull String key) throws IOException;
+
+    /**
+     * Opens a stream that writes an object. The object is only created when the stream is closed. If writing fails,
+     * call {@link ExportOutputStream#abort} instead of closing the stream, so a partial object is never created.
+     *
+     * @param bucket
+     *         bucket to write the object to
+     * @param key
+     *         key of the object
+     * @return stream that writes the object
+     * @throws IOException
+     *         if the object can't be created
+     */
+    ExportOutputStream openForWrite(@Nonnull String bucket, @Nonnull String key) throws IOException;
+
+    /**
+     * Returns a URL that the object can be downloaded from without credentials, until the given time.
+     *
+     * @param bucket
+     *         bucket the object is in
+     * @param key
+     *         key of the object
+     * @param expiresOn
+     *         when the URL stops working
+     * @return download URL
+     * @throws IOException
+     *         if the URL can't be created
+     */
+    String getDownloadUrl(@Nonnull String bucket, @Nonnull String key, @Nonnull DateTime expiresOn)
+            throws IOException;
+}
@@ -0,0 +1,96 @@
+package org.sagebionetworks.bridge.services.export;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import javax.annotation.Nonnull;
+
+import org.joda.time.DateTime;
+
+/**
+ * {@link ExportStore} that keeps each bucket in a directory under a root directory, and each object in a file named by
+ * its key. This stands in for S3, so exports can run on a self-hosted server without AWS. Objects are written to a
+ * temporary file, which is moved into place when the stream is closed.
+ */
+public class LocalExportStore implements ExportStore {
+    static final String PARTIAL_FILE_SUFFIX = ".partial";
+
+    private final Path rootDir;
+
+    /** Creates a store whose buckets are directories under the given directory. */
+    public LocalExportStore(Path rootDir) {
+        checkNotNull(rootDir);
+        this.rootDir = rootDir;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream openForRead(@Nonnull String bucket, @Nonnull String key) throws IOException {
+        return Files.newInputStream(getPath(bucket, key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ExportOutputStream openForWrite(@Nonnull String bucket, @Nonnull String key) throws IOException {
+        Path path = getPath(bucket, key);
+        Files.createDirectories(path.getParent());
+        Path partialPath = path.resolveSibling(path.getFileName() + PARTIAL_FILE_SUFFIX);
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(partialPath));
+
+        return new ExportOutputStream() {
+            private boolean finished = false;
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!finished) {
+                    finished = true;
+                    out.close();
+                    Files.move(partialPath, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            @Override
+            public void abort() throws IOException {
+                if (!finished) {
+                    finished = true;
+                    out.close();
+                    Files.deleteIfExists(partialPath);
+                }
+            }
+        };
+    }
+
+    /** Returns a file URL, which doesn't expire. {@inheritDoc} */
+    @Override
+    public String getDownloadUrl(@Nonnull String bucket, @Nonnull String key, @Nonnull DateTime expiresOn)
+            throws IOException {
+        return getPath(bucket, key).toUri().toString();
+    }
+
+    // Keys can contain slashes, which become subdirectories of the bucket's directory. Keys can't leave the bucket.
+    private Path getPath(String bucket, String key) throws IOException {
+        Path bucketDir = rootDir.resolve(bucket).normalize();
+        Path path = bucketDir.resolve(key).normalize();
+        if (!bucketDir.startsWith(rootDir.normalize()) || !path.startsWith(bucketDir) || path.equals(bucketDir)) {
+            throw new IOException("Invalid bucket or key: " + bucket + ", " + key);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,51 @@
+package org.sagebionetworks.bridge.services.export;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.InputStream;
+
+import javax.annotation.Nonnull;
+
+import org.joda.time.DateTime;
+
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.AmazonS3;
+
+/**
+ * {@link ExportStore} backed by S3. Exports are written with a multipart upload, a part at a time, so an export of any
+ * size only needs one part in memory.
+ */
+public class S3ExportStore implements ExportStore {
+    /** S3's minimum size for every part of a multipart upload but the last. */
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final AmazonS3 s3Client;
+    private final int partSize;
+
+    /** Creates a store that writes exports in parts of the given size, which is at least 5MB. */
+    public S3ExportStore(AmazonS3 s3Client, int partSize) {
+        checkNotNull(s3Client);
+        checkArgument(partSize >= MIN_PART_SIZE);
+        this.s3Client = s3Client;
+        this.partSize = partSize;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream openForRead(@Nonnull String bucket, @Nonnull String key) {
+        return s3Client.getObject(bucket, key).getObjectContent();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ExportOutputStream openForWrite(@Nonnull String bucket, @Nonnull String key) {
+        return new S3MultipartOutputStream(s3Client, bucket, key, partSize);
+    }
+
+    /** Returns a pre-signed URL. {@inheritDoc} */
+    @Override
+    public String getDownloadUrl(@Nonnull String bucket, @Nonnull String key, @Nonnull DateTime expiresOn) {
+        return s3Client.generatePresignedUrl(bucket, key, expiresOn.toDate(), HttpMethod.GET).toString();
+    }
+}
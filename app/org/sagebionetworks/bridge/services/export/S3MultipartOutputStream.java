@@ -0,0 +1,98 @@
+package org.sagebionetworks.bridge.services.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * Writes an S3 object with a multipart upload. Bytes are buffered until there's a full part, which is then uploaded,
+ * so only one part is held in memory. Closing the stream uploads the last part and completes the upload. Aborting it
+ * aborts the upload, which deletes the parts that were uploaded.
+ */
+class S3MultipartOutputStream extends ExportOutputStream {
+    private final AmazonS3 s3Client;
+    private final String bucket;
+    private final String key;
+    private final String uploadId;
+    private final byte[] buffer;
+    private final List<PartETag> partETagList = new ArrayList<>();
+    private int bufferedCount = 0;
+    private boolean finished = false;
+
+    S3MultipartOutputStream(AmazonS3 s3Client, String bucket, String key, int partSize) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.buffer = new byte[partSize];
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setSSEAlgorithm(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+        this.uploadId = s3Client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key, metadata))
+                .getUploadId();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        checkNotFinished();
+        while (length > 0) {
+            int count = Math.min(length, buffer.length - bufferedCount);
+            System.arraycopy(bytes, offset, buffer, bufferedCount, count);
+            bufferedCount += count;
+            offset += count;
+            length -= count;
+            if (bufferedCount == buffer.length) {
+                uploadPart();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        // An upload needs at least one part. Only the last part may be smaller than the minimum part size.
+        if (bufferedCount > 0 || partETagList.isEmpty()) {
+            uploadPart();
+        }
+        s3Client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, partETagList));
+        finished = true;
+    }
+
+    @Override
+    public void abort() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+    }
+
+    private void uploadPart() {
+        UploadPartRequest request = new UploadPartRequest().withBucketName(bucket).withKey(key)
+                .withUploadId(uploadId).withPartNumber(partETagList.size() + 1)
+                .withInputStream(new ByteArrayInputStream(buffer, 0, bufferedCount)).withPartSize(bufferedCount);
+        partETagList.add(s3Client.uploadPart(request).getPartETag());
+        bufferedCount = 0;
+    }
+
+    private void checkNotFinished() throws IOException {
+        if (finished) {
+            throw new IOException("Upload of " + key + " has already been closed or aborted");
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package org.sagebionetworks.bridge.services.export;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Resource;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.dao.AccountDao;
+import org.sagebionetworks.bridge.dao.HealthDataAttachmentDao;
+import org.sagebionetworks.bridge.dao.HealthDataDao;
+import org.sagebionetworks.bridge.dao.ScheduledActivityDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoCapacityGovernor;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.models.DateRange;
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.healthdata.HealthDataAttachment;
+import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
+import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
+import org.sagebionetworks.bridge.models.studies.EmailTemplate;
+import org.sagebionetworks.bridge.models.studies.MimeType;
+import org.sagebionetworks.bridge.models.studies.Study;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.services.SendMailService;
+import org.sagebionetworks.bridge.services.StudyService;
+import org.sagebionetworks.bridge.services.UploadArchiveService;
+import org.sagebionetworks.bridge.services.UserDataDownloadService;
+import org.sagebionetworks.bridge.services.email.BasicEmailProvider;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+
+/**
+ * <p>
+ * Implementation of {@link UserDataDownloadService} that exports the user's data on this server, for deployments that
+ * don't run the Bridge User Data Download Service. Exports run in the background on a bounded worker pool. When the
+ * pool's queue is full, requests are rejected rather than queued without limit.
+ * </p>
+ * <p>
+ * An export is a zip file with the user's health data records (from the healthCode index), each record's attachments,
+ * and the user's scheduled activities. Each entry is encrypted with the study's encryption materials by
+ * {@link UploadArchiveService}. The zip is streamed to the {@link ExportStore} as it's written, and attachments are
+ * streamed from the store, so an export only holds one entry and one upload part in memory, however much data the
+ * user has. Encryption works on whole byte arrays, so an attachment larger than {@link #ATTACHMENT_PART_SIZE} is
+ * written as numbered parts ("attachments/[id].part-0.cms", and so on), to be concatenated after decryption. Exports
+ * read from DynamoDB with EXPORT priority, so they yield to participant traffic and backfills.
+ * </p>
+ * <p>
+ * When the export is written, the user is emailed a link to download it, which expires after
+ * {@link #DOWNLOAD_URL_EXPIRE_IN_HOURS} hours.
+ * </p>
+ */
+@Component
+public class UserDataExportService implements UserDataDownloadService {
+    private static final Logger LOG = LoggerFactory.getLogger(UserDataExportService.class);
+
+    static final String CONFIG_KEY_ATTACHMENT_BUCKET = "attachment.bucket";
+    static final String CONFIG_KEY_EXPORT_BUCKET = "udd.export.bucket";
+    static final String TOO_MANY_EXPORTS_ERROR = "Too many data downloads are in progress. Please try again later.";
+
+    /** Scheduled activities are written this many to a zip entry. */
+    static final int ACTIVITY_PAGE_SIZE = 100;
+    static final String ENCRYPTED_SUFFIX = ".cms";
+
+    /** Attachments larger than this are read and encrypted a part of this size at a time. */
+    static final int ATTACHMENT_PART_SIZE = 1024 * 1024;
+
+    static final int DOWNLOAD_URL_EXPIRE_IN_HOURS = 12;
+
+    static final EmailTemplate DOWNLOAD_EMAIL_TEMPLATE = new EmailTemplate("Your ${studyName} data is ready",
+            "<p>The data you requested from ${studyName} is ready. You can download it from <a href=\"${url}\">this " +
+            "link</a> until ${expiresOn}.</p>", MimeType.HTML);
+
+    private BridgeConfig bridgeConfig;
+    private StudyService studyService;
+    private AccountDao accountDao;
+    private HealthDataDao healthDataDao;
+    private HealthDataAttachmentDao healthDataAttachmentDao;
+    private ScheduledActivityDao scheduledActivityDao;
+    private UploadArchiveService uploadArchiveService;
+    private ExportStore exportStore;
+    private ExecutorService exportExecutorService;
+    private SendMailService sendMailService;
+
+    /** Bridge config, used to get the attachment and export buckets. */
+    @Autowired
+    public final void setBridgeConfig(BridgeConfig bridgeConfig) {
+        this.bridgeConfig = bridgeConfig;
+    }
+
+    @Autowired
+    public final void setStudyService(StudyService studyService) {
+        this.studyService = studyService;
+    }
+
+    @Autowired
+    public final void setAccountDao(AccountDao accountDao) {
+        this.accountDao = accountDao;
+    }
+
+    @Autowired
+    public final void setHealthDataDao(HealthDataDao healthDataDao) {
+        this.healthDataDao = healthDataDao;
+    }
+
+    @Autowired
+    public final void setHealthDataAttachmentDao(HealthDataAttachmentDao healthDataAttachmentDao) {
+        this.healthDataAttachmentDao = healthDataAttachmentDao;
+    }
+
+    @Autowired
+    public final void setScheduledActivityDao(ScheduledActivityDao scheduledActivityDao) {
+        this.scheduledActivityDao = scheduledActivityDao;
+    }
+
+    /** Encrypts the entries of the export. */
+    @Autowired
+    public final void setUploadArchiveService(UploadArchiveService uploadArchiveService) {
+        this.uploadArchiveService = uploadArchiveService;
+    }
+
+    /** Where attachments are read from and exports are written to. */
+    @Resource(name = "userDataExportStore")
+    public final void setExportStore(ExportStore exportStore) {
+        this.exportStore = exportStore;
+    }
+
+    /** Bounded worker pool that exports run on. */
+    @Resource(name = "userDataExportExecutorService")
+    public final void setExportExecutorService(ExecutorService exportExecutorService) {
+        this.exportExecutorService = exportExecutorService;
+    }
+
+    /** Sends the user the link to the export. */
+    @Autowired
+    public final void setSendMailService(SendMailService sendMailService) {
+        this.sendMailService = sendMailService;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void requestUserData(@Nonnull StudyIdentifier studyIdentifier, @Nonnull String email,
+            @Nonnull DateRange dateRange) {
+        Study study = studyService.getStudy(studyIdentifier);
+        Account account = accountDao.getAccountWithEmail(study, email);
+        if (account == null) {
+            throw new EntityNotFoundException(Account.class);
+        }
+        String studyId = studyIdentifier.getIdentifier();
+        String healthCode = account.getHealthCode();
+        try {
+            exportExecutorService.execute(() -> {
+                try {
+                    String key = exportUserData(studyId, healthCode, dateRange);
+                    LOG.info("Exported user data for hash[username]=" + email.hashCode() + ", study=" + studyId +
+                            ", startDate=" + dateRange.getStartDate() + ", endDate=" + dateRange.getEndDate() +
+                            " to " + key);
+                    sendDownloadEmail(study, email, key);
+                } catch (IOException | RuntimeException e) {
+                    LOG.error("Could not export user data for hash[username]=" + email.hashCode() + ", study=" +
+                            studyId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException(TOO_MANY_EXPORTS_ERROR);
+        }
+    }
+
+    /**
+     * Exports the user's data from the date range (inclusive) and returns the key of the export in the export bucket.
+     * If the export fails, nothing is written. Package-scoped for unit tests.
+     */
+    String exportUserData(String studyId, String healthCode, DateRange dateRange) {
+        String key = studyId + "/" + BridgeUtils.generateGuid() + ".zip";
+        DynamoCapacityGovernor.runWithPriority(DynamoCapacityGovernor.Priority.EXPORT, () -> {
+            try {
+                writeExport(studyId, healthCode, dateRange, key);
+            } catch (IOException e) {
+                throw new BridgeServiceException(e);
+            }
+        });
+        return key;
+    }
+
+    // Emails the user a link to the export.
+    private void sendDownloadEmail(Study study, String email, String key) throws IOException {
+        DateTime expiresOn = DateTime.now(BridgeConstants.LOCAL_TIME_ZONE).plusHours(DOWNLOAD_URL_EXPIRE_IN_HOURS);
+        String url = exportStore.getDownloadUrl(bridgeConfig.getProperty(CONFIG_KEY_EXPORT_BUCKET), key, expiresOn);
+
+        BasicEmailProvider provider = new BasicEmailProvider.Builder().withStudy(study)
+                .withEmailTemplate(DOWNLOAD_EMAIL_TEMPLATE).withRecipientEmail(email).withToken("url", url)
+                .withToken("expiresOn", expiresOn.toString("MMMM d, yyyy h:mm a z")).build();
+        sendMailService.sendEmail(provider);
+    }
+
+    private void writeExport(String studyId, String healthCode, DateRange dateRange, String key) throws IOException {
+        ExportOutputStream out = exportStore.openForWrite(bridgeConfig.getProperty(CONFIG_KEY_EXPORT_BUCKET), key);
+        ZipOutputStream zip = new ExportZipOutputStream(out);
+        boolean completed = false;
+        try {
+            writeRecords(zip, studyId, healthCode, dateRange);
+            writeActivities(zip, studyId, healthCode, dateRange);
+            zip.close();
+            // Closing the store's stream creates the export.
+            out.close();
+            completed = true;
+        } finally {
+            if (!completed) {
+                // Close the zip first, which releases its Deflater. This doesn't close the store's stream, so the
+                // partial export is discarded.
+                try {
+                    zip.close();
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Could not close failed export " + key, e);
+                }
+                out.abort();
+            }
+        }
+    }
+
+    private void writeRecords(ZipOutputStream zip, String studyId, String healthCode, DateRange dateRange)
+            throws IOException {
+        long createdOnStart = dateRange.getStartDate().toDateTimeAtStartOfDay(BridgeConstants.LOCAL_TIME_ZONE)
+                .getMillis();
+        long createdOnEnd = dateRange.getEndDate().plusDays(1).toDateTimeAtStartOfDay(BridgeConstants.LOCAL_TIME_ZONE)
+                .getMillis() - 1;
+        String attachmentBucket = bridgeConfig.getProperty(CONFIG_KEY_ATTACHMENT_BUCKET);
+
+        Iterator<HealthDataRecord> recordIterator = healthDataDao.getRecordsForHealthCode(healthCode, createdOnStart,
+                createdOnEnd);
+        while (recordIterator.hasNext()) {
+            HealthDataRecord record = recordIterator.next();
+            writeEntry(zip, studyId, "records/" + record.getId() + ".json",
+                    HealthDataRecord.PUBLIC_RECORD_WRITER.writeValueAsBytes(record));
+
+            for (HealthDataAttachment attachment : healthDataAttachmentDao.getAttachmentsForRecord(record.getId())) {
+                writeAttachment(zip, studyId, attachmentBucket, attachment.getId());
+            }
+        }
+    }
+
+    // Streams the attachment from the store. An attachment that fits in one part is a single entry; a larger one is
+    // written as numbered parts. The next part is read before each part is written, to tell if it is the last one.
+    private void writeAttachment(ZipOutputStream zip, String studyId, String bucket, String attachmentId)
+            throws IOException {
+        String name = "attachments/" + attachmentId;
+        try (InputStream in = exportStore.openForRead(bucket, attachmentId)) {
+            byte[] part = readPart(in);
+            byte[] nextPart = readPart(in);
+            if (nextPart.length == 0) {
+                writeEntry(zip, studyId, name, part);
+                return;
+            }
+            int partNumber = 0;
+            while (part.length > 0) {
+                writeEntry(zip, studyId, name + ".part-" + partNumber++, part);
+                part = nextPart;
+                nextPart = readPart(in);
+            }
+        }
+    }
+
+    // Reads up to ATTACHMENT_PART_SIZE bytes. Returns an empty array at the end of the stream.
+    private static byte[] readPart(InputStream in) throws IOException {
+        byte[] buffer = new byte[ATTACHMENT_PART_SIZE];
+        int length = ByteStreams.read(in, buffer, 0, buffer.length);
+        return (length == buffer.length) ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    private void writeActivities(ZipOutputStream zip, String studyId, String healthCode, DateRange dateRange)
+            throws IOException {
+        List<ScheduledActivity> page = Lists.newArrayListWithCapacity(ACTIVITY_PAGE_SIZE);
+        int pageNumber = 0;
+
+        Iterator<? extends ScheduledActivity> activityIterator = scheduledActivityDao.getActivitiesForUser(healthCode);
+        while (activityIterator.hasNext()) {
+            ScheduledActivity activity = activityIterator.next();
+            activity.setTimeZone(DateTimeZone.UTC);
+            if (isInRange(activity.getScheduledOn(), dateRange)) {
+                page.add(activity);
+                if (page.size() == ACTIVITY_PAGE_SIZE) {
+                    writeActivityPage(zip, studyId, page, pageNumber++);
+                }
+            }
+        }
+        if (!page.isEmpty()) {
+            writeActivityPage(zip, studyId, page, pageNumber);
+        }
+    }
+
+    private void writeActivityPage(ZipOutputStream zip, String studyId, List<ScheduledActivity> page, int pageNumber)
+            throws IOException {
+        writeEntry(zip, studyId, "activities/activities-" + pageNumber + ".json",
+                ScheduledActivity.SCHEDULED_ACTIVITY_WRITER.writeValueAsBytes(page));
+        page.clear();
+    }
+
+    // Activities are scheduled in the participant's local time. With UTC as the time zone, the scheduledOn date is
+    // that local date.
+    private static boolean isInRange(DateTime scheduledOn, DateRange dateRange) {
+        if (scheduledOn == null) {
+            return false;
+        }
+        LocalDate scheduledOnDate = scheduledOn.toLocalDate();
+        return !scheduledOnDate.isBefore(dateRange.getStartDate()) && !scheduledOnDate.isAfter(dateRange.getEndDate());
+    }
+
+    private void writeEntry(ZipOutputStream zip, String studyId, String name, byte[] bytes) throws IOException {
+        zip.putNextEntry(new ZipEntry(name + ENCRYPTED_SUFFIX));
+        zip.write(uploadArchiveService.encrypt(studyId, bytes));
+        zip.closeEntry();
+    }
+
+    /**
+     * Zip stream for an export. Closing it doesn't close the store's stream, so a failed export can be closed and then
+     * aborted, without closing the stream creating the export. Closing always ends the zip's Deflater, which holds
+     * native memory, even if writing the end of the zip fails.
+     */
+    private static class ExportZipOutputStream extends ZipOutputStream {
+        ExportZipOutputStream(OutputStream out) {
+            super(new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            });
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.sagebionetworks.bridge.upload;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
+import org.sagebionetworks.bridge.models.upload.UploadFieldType;
+import org.sagebionetworks.bridge.models.upload.UploadSchema;
+
+/**
+ * <p>
+ * An upload schema revision, prepared once for validating any number of uploads. Everything the upload handlers used
+ * to work out from the field definitions on every upload (whether each field is an attachment, the set of valid
+ * multi-choice answers, the attachment field names) is worked out here, when the schema is compiled.
+ * </p>
+ * <p>
+ * Compiled schemas are shared between threads, and must not be modified. Get them from
+ * {@link org.sagebionetworks.bridge.services.UploadSchemaService#getCompiledUploadSchema}, which caches them.
+ * </p>
+ */
+public class CompiledUploadSchema {
+    private final UploadSchema schema;
+    private final CompiledField[] fields;
+    private final List<CompiledField> fieldList;
+    private final Set<String> attachmentFieldNameSet;
+
+    /** Compiles the given schema. */
+    public CompiledUploadSchema(@Nonnull UploadSchema schema) {
+        this.schema = checkNotNull(schema);
+
+        List<UploadFieldDefinition> fieldDefList = schema.getFieldDefinitions();
+        ImmutableSet.Builder<String> attachmentFieldNameSetBuilder = ImmutableSet.builder();
+        this.fields = new CompiledField[fieldDefList.size()];
+        for (int i = 0; i < fields.length; i++) {
+            CompiledField field = new CompiledField(fieldDefList.get(i));
+            if (field.isAttachment()) {
+                attachmentFieldNameSetBuilder.add(field.getName());
+            }
+            fields[i] = field;
+        }
+        this.fieldList = ImmutableList.copyOf(fields);
+        this.attachmentFieldNameSet = attachmentFieldNameSetBuilder.build();
+    }
+
+    /** The schema this was compiled from. */
+    public UploadSchema getSchema() {
+        return schema;
+    }
+
+    /** The compiled fields, in the order of the schema's field definitions. */
+    public List<CompiledField> getFields() {
+        return fieldList;
+    }
+
+    /** Names of the schema's attachment fields. */
+    public Set<String> getAttachmentFieldNameSet() {
+        return attachmentFieldNameSet;
+    }
+
+    /**
+     * Validates the record data against the schema, and canonicalizes the values in the record data. Attachments are
+     * only checked for presence, so all we need are their field names.
+     *
+     * @param recordDataNode
+     *         JSON node of the parsed data to validate, canonicalized values are written back to this node
+     * @param attachmentFieldNameSet
+     *         set of attachment field names that we have attachments for
+     * @return list of error messages, empty if there are no errors
+     */
+    public List<String> validate(@Nonnull JsonNode recordDataNode, @Nonnull Set<String> attachmentFieldNameSet) {
+        List<String> errorList = new ArrayList<>();
+        for (CompiledField oneField : fields) {
+            oneField.validate(recordDataNode, attachmentFieldNameSet, errorList);
+        }
+        return errorList;
+    }
+
+    /** A field definition, with its type checks worked out ahead of time. */
+    public static final class CompiledField {
+        private final UploadFieldDefinition fieldDef;
+        private final String name;
+        private final UploadFieldType type;
+        private final boolean required;
+        private final boolean attachment;
+        // Null unless the answers of this multi-choice field must be checked.
+        private final Set<String> validAnswerSet;
+
+        private CompiledField(UploadFieldDefinition fieldDef) {
+            this.fieldDef = fieldDef;
+            this.name = fieldDef.getName();
+            this.type = fieldDef.getType();
+            this.required = fieldDef.isRequired();
+            this.attachment = UploadFieldType.ATTACHMENT_TYPE_SET.contains(type);
+            if (type == UploadFieldType.MULTI_CHOICE && !Boolean.TRUE.equals(fieldDef.getAllowOtherChoices())) {
+                //noinspection ConstantConditions
+                this.validAnswerSet = new HashSet<>(fieldDef.getMultiChoiceAnswerList());
+            } else {
+                this.validAnswerSet = null;
+            }
+        }
+
+        /** The field definition this was compiled from. */
+        public UploadFieldDefinition getDefinition() {
+            return fieldDef;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public UploadFieldType getType() {
+            return type;
+        }
+
+        /** True if the field is exported as a raw file, rather than as a value in the record data. */
+        public boolean isAttachment() {
+            return attachment;
+        }
+
+        private void validate(JsonNode recordDataNode, Set<String> attachmentFieldNameSet, List<String> errorList) {
+            if (attachment) {
+                // For attachment types, since they just get exported as raw files, we only need to check if it's
+                // required and present. Specifically, if it's required and it's not present, then that's an error.
+                if (required && !attachmentFieldNameSet.contains(name)) {
+                    errorList.add("Required attachment field " + name + " missing");
+                }
+                return;
+            }
+
+            JsonNode fieldValueNode = recordDataNode.get(name);
+            if (fieldValueNode == null || fieldValueNode.isNull()) {
+                if (required) {
+                    errorList.add("Required field " + name + " missing");
+                }
+                return;
+            }
+
+            // Canonicalize the field.
+            CanonicalizationResult canonicalizationResult = UploadUtil.canonicalize(fieldValueNode, type);
+            if (!canonicalizationResult.isValid()) {
+                errorList.add("Canonicalization failed for field " + name + ": " +
+                        canonicalizationResult.getErrorMessage());
+                return;
+            }
+            JsonNode canonicalizedValueNode = canonicalizationResult.getCanonicalizedValueNode();
+
+            // Special case: MULTI_CHOICE value validation (unless it allows other choices)
+            if (validAnswerSet != null) {
+                int numAnswers = canonicalizedValueNode.size();
+                for (int i = 0; i < numAnswers; i++) {
+                    String answer = canonicalizedValueNode.get(i).textValue();
+                    if (!validAnswerSet.contains(answer)) {
+                        errorList.add("Multi-Choice field " + name + " contains invalid answer " + answer);
+                    }
+                }
+            }
+
+            // Write the canonicalization back into the field data map.
+            ((ObjectNode)recordDataNode).set(name, canonicalizedValueNode);
+        }
+    }
+}
@@ -34,7 +34,6 @@ import org.sagebionetworks.bridge.models.healthdata.HealthDataRecordBuilder;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.surveys.Survey;
 import org.sagebionetworks.bridge.models.upload.Upload;
-import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
 import org.sagebionetworks.bridge.models.upload.UploadFieldType;
 import org.sagebionetworks.bridge.models.upload.UploadSchema;
 import org.sagebionetworks.bridge.models.upload.UploadSchemaType;
@@ -165,7 +164,8 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         removeTimestampsFromFilenames(unzippedDataMap);
 
         // schema
-        UploadSchema schema = getUploadSchema(study, infoJson);
+        CompiledUploadSchema compiledSchema = getCompiledUploadSchema(study, infoJson);
+        UploadSchema schema = compiledSchema.getSchema();
         recordBuilder.withSchemaId(schema.getSchemaId());
         recordBuilder.withSchemaRevision(schema.getRevision());
 
@@ -174,20 +174,22 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
             // Convert survey format to JSON data format. This means creating a JSON data map where the "filenames" are
             // just the question names (items) and the file data is the answer JSON node.
             Map<String, JsonNode> convertedSurveyMap = convertSurveyToJsonData(context, uploadId, jsonDataMap);
-            handleData(context, uploadId, convertedSurveyMap, unzippedDataMap, schema, dataMap, attachmentMap);
+            handleData(context, uploadId, convertedSurveyMap, unzippedDataMap, compiledSchema, dataMap,
+                    attachmentMap);
         } else if (schemaType == UploadSchemaType.IOS_DATA) {
-            handleData(context, uploadId, jsonDataMap, unzippedDataMap, schema, dataMap, attachmentMap);
+            handleData(context, uploadId, jsonDataMap, unzippedDataMap, compiledSchema, dataMap, attachmentMap);
         } else {
             throw new UploadValidationException(String.format("Invalid schema type %s", schemaType));
         }
     }
 
-    // Determines the UploadSchema from the info.json. The schema ID is the "item" field and must be specified. The
-    // schema revision is the "schemaRevision" field, which defaults to 1 if not specified.
+    // Determines the compiled UploadSchema from the info.json. The schema ID is the "item" field and must be
+    // specified. The schema revision is the "schemaRevision" field, which defaults to 1 if not specified.
     // Alternatively, surveyGuid and surveyCreatedOn are used to map the upload to a survey.
     //
     // This is package-scoped to facilitate unit tests.
-    UploadSchema getUploadSchema(StudyIdentifier study, JsonNode infoJson) throws UploadValidationException {
+    CompiledUploadSchema getCompiledUploadSchema(StudyIdentifier study, JsonNode infoJson)
+            throws UploadValidationException {
         // get relevant params from info.json
         String item = JsonUtils.asText(infoJson, KEY_ITEM);
         Integer schemaRev = JsonUtils.asInt(infoJson, KEY_SCHEMA_REV);
@@ -214,8 +216,8 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         }
     }
 
-    private UploadSchema getUploadSchemaBySurvey(StudyIdentifier study, String surveyGuid, String surveyCreatedOn)
-            throws UploadValidationException {
+    private CompiledUploadSchema getUploadSchemaBySurvey(StudyIdentifier study, String surveyGuid,
+            String surveyCreatedOn) throws UploadValidationException {
         // surveyCreatedOn is a timestamp. SurveyService takes long epoch millis. Convert.
         long surveyCreatedOnMillis= DateUtils.convertToMillisFromEpoch(surveyCreatedOn);
 
@@ -230,10 +232,10 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         }
 
         // Get the schema with the schema ID and rev.
-        return uploadSchemaService.getUploadSchemaByIdAndRev(study, schemaId, schemaRev);
+        return uploadSchemaService.getCompiledUploadSchema(study, schemaId, schemaRev);
     }
 
-    private UploadSchema getUploadSchemaByItemAndRev(StudyIdentifier study, String item, Integer schemaRev) {
+    private CompiledUploadSchema getUploadSchemaByItemAndRev(StudyIdentifier study, String item, Integer schemaRev) {
         if (schemaRev == null && defaultSchemaRevisionMap != null) {
             // Fall back to the legacy default schema rev map. This map exists because some schemas had their versions
             // bumped before the apps started sending schemaRevision.
@@ -249,7 +251,7 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         }
 
         // get schema
-        return uploadSchemaService.getUploadSchemaByIdAndRev(study, item, schemaRev);
+        return uploadSchemaService.getCompiledUploadSchema(study, item, schemaRev);
     }
 
     private static JsonNode getInfoJsonFile(UploadValidationContext context, String uploadId,
@@ -270,8 +272,8 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
             Map<String, JsonNode> jsonDataMap, Map<String, byte[]> unzippedDataMap, JsonNode infoJson,
             HealthDataRecordBuilder recordBuilder) {
         // Make sure all files specified by info.json are accounted for.
-        // Because ParseJsonHandler moves files from unzippedDataMap to jsonDataMap, there is no overlap between the
-        // two maps.
+        // Because UnzipHandler puts each file in either unzippedDataMap or jsonDataMap, there is no overlap between
+        // the two maps.
         Set<String> fileNameSet = new HashSet<>();
         fileNameSet.addAll(jsonDataMap.keySet());
         fileNameSet.addAll(unzippedDataMap.keySet());
@@ -441,7 +443,7 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
     // Note that handleSurvey() converts the survey format into the data format, treating each answer as its own file
     // with filename equal to the question name and JsonNode equal to the answer.
     private static void handleData(UploadValidationContext context, String uploadId,
-            Map<String, JsonNode> jsonDataMap, Map<String, byte[]> unzippedDataMap, UploadSchema schema,
+            Map<String, JsonNode> jsonDataMap, Map<String, byte[]> unzippedDataMap, CompiledUploadSchema schema,
             ObjectNode dataMap, Map<String, byte[]> attachmentMap) {
         // Get flattened JSON data map (key is filename.fieldname), because schemas can reference fields either by
         // filename.fieldname or wholly by filename.
@@ -452,13 +454,13 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
         Map<String, byte[]> sanitizedUnzippedDataMap = sanitizeFieldNames(unzippedDataMap);
 
         // Using schema, copy fields over to data map. Or if it's an attachment, add it to the attachment map.
-        for (UploadFieldDefinition oneFieldDef : schema.getFieldDefinitions()) {
-            String fieldName = oneFieldDef.getName();
+        for (CompiledUploadSchema.CompiledField oneField : schema.getFields()) {
+            String fieldName = oneField.getName();
 
             if (sanitizedUnzippedDataMap.containsKey(fieldName)) {
                 addAttachment(attachmentMap, fieldName, sanitizedUnzippedDataMap.get(fieldName));
             } else if (sanitizedFlattenedJsonDataMap.containsKey(fieldName)) {
-                copyJsonField(context, uploadId, sanitizedFlattenedJsonDataMap.get(fieldName), oneFieldDef, dataMap,
+                copyJsonField(context, uploadId, sanitizedFlattenedJsonDataMap.get(fieldName), oneField, dataMap,
                         attachmentMap);
             }
         }
@@ -502,14 +504,14 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
     }
 
     private static void copyJsonField(UploadValidationContext context, String uploadId, JsonNode fieldValue,
-            UploadFieldDefinition fieldDef, ObjectNode dataMap, Map<String, byte[]> attachmentMap) {
-        String fieldName = fieldDef.getName();
+            CompiledUploadSchema.CompiledField field, ObjectNode dataMap, Map<String, byte[]> attachmentMap) {
+        String fieldName = field.getName();
         if (fieldValue == null || fieldValue.isNull()) {
             context.addMessage(String.format("Upload ID %s field %s is null", uploadId, fieldName));
             return;
         }
 
-        if (UploadFieldType.ATTACHMENT_TYPE_SET.contains(fieldDef.getType())) {
+        if (field.isAttachment()) {
             try {
                 addAttachment(attachmentMap, fieldName, BridgeObjectMapper.get().writeValueAsBytes(fieldValue));
             } catch (JsonProcessingException ex) {
@@ -517,7 +519,7 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
                         "Upload ID %s field %s could not be converted from JSON: %s", uploadId, fieldName,
                         ex.getMessage()));
             }
-        } else if (fieldDef.getType().equals(UploadFieldType.CALENDAR_DATE)) {
+        } else if (field.getType() == UploadFieldType.CALENDAR_DATE) {
             // Older iOS apps submit a timestamp instead of a calendar date. Use this hack to convert it back.
             String dateStr = fieldValue.textValue();
             LocalDate parsedDate = UploadUtil.parseIosCalendarDate(dateStr);
@@ -529,7 +531,7 @@ public class IosSchemaValidationHandler2 implements UploadValidationHandler {
                 logger.warn(warnMsg);
                 context.addMessage(warnMsg);
             }
-        } else if (fieldDef.getType().equals(UploadFieldType.STRING) && !fieldValue.isTextual()) {
+        } else if (field.getType() == UploadFieldType.STRING && !fieldValue.isTextual()) {
             // Research Kit "helpfully" converts strings that look like ints into actual ints (example: "80" into 80).
             // This breaks Strict Validation later down the line, so we need to un-convert them back strings.
             // Note that we do it here, as this is an iOS-specific behavior, rather than in StrictValidation, which is
@@ -1,17 +1,33 @@
 package org.sagebionetworks.bridge.upload;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.services.UploadArchiveService;
 
 /**
- * Validation handler for unzipping the upload. This handler reads decrypted from
- * {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getDecryptedData}, unzips it, and writes the
- * unzipped data to {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getUnzippedDataMap}.
+ * <p>
+ * Validation handler for unzipping the upload and parsing the upload data into JSON, if applicable. This handler
+ * reads decrypted data from {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getDecryptedData}.
+ * Entries that can be parsed as JSON are written to
+ * {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getJsonDataMap}. All other entries are written as
+ * bytes to {@link org.sagebionetworks.bridge.upload.UploadValidationContext#getUnzippedDataMap}.
+ * </p>
+ * <p>
+ * Each zip entry is streamed straight into the JSON parser, so JSON entries are never materialized as byte arrays.
+ * Entries that fail to parse (for example, audio files) usually fail within the first few bytes. These are collected
+ * and read as bytes in a second pass over the archive.
+ * </p>
  */
 @Component
 public class UnzipHandler implements UploadValidationHandler {
@@ -26,7 +42,40 @@ public class UnzipHandler implements UploadValidationHandler {
     /** {@inheritDoc} */
     @Override
     public void handle(@Nonnull UploadValidationContext context) {
-        Map<String, byte[]> unzippedDataMap = uploadArchiveService.unzip(context.getDecryptedData());
+        byte[] decryptedData = context.getDecryptedData();
+
+        // First pass: try to parse every entry as JSON, directly from the zip stream.
+        Map<String, JsonNode> jsonDataMap = new HashMap<>();
+        Set<String> nonJsonEntryNameSet = new HashSet<>();
+        uploadArchiveService.unzip(decryptedData, (entryName, entryInputStream) -> {
+            try {
+                JsonNode jsonNode = BridgeObjectMapper.get().readTree(entryInputStream);
+                jsonDataMap.put(entryName, jsonNode);
+            } catch (IOException ex) {
+                // Can't parse this as a JSON node. This could be normal (for example, for audio files). Remember it
+                // so we can read it as bytes. Note that Zipper still enforces the max entry size even if we swallow
+                // the exception here.
+                nonJsonEntryNameSet.add(entryName);
+            } catch (RuntimeException ex) {
+                // The parser shouldn't throw anything but IOException, but malformed input sometimes makes it. Record
+                // the error and treat the entry as non-JSON, rather than failing the whole upload.
+                context.addMessage(String.format("Error parsing zip entry %s as JSON: %s", entryName,
+                        ex.getMessage()));
+                nonJsonEntryNameSet.add(entryName);
+            }
+        });
+
+        // Second pass: read non-JSON entries as bytes. Skip the pass entirely if everything was JSON.
+        Map<String, byte[]> unzippedDataMap = new HashMap<>();
+        if (!nonJsonEntryNameSet.isEmpty()) {
+            uploadArchiveService.unzip(decryptedData, (entryName, entryInputStream) -> {
+                if (nonJsonEntryNameSet.contains(entryName)) {
+                    unzippedDataMap.put(entryName, IOUtils.toByteArray(entryInputStream));
+                }
+            });
+        }
+
+        context.setJsonDataMap(jsonDataMap);
         context.setUnzippedDataMap(unzippedDataMap);
     }
 }
@@ -102,9 +102,8 @@ public class UploadValidationContext {
     }
 
     /**
-     * Unzipped data as bytes, keyed by filename. This is initially created by the UnzipHandler. The ParseJsonHandler
-     * will read this and remove entries that can be parsed into JSON. Non-JSON entries will still remain in this map.
-     * This is also read by the IosSchemaValidationHandler.
+     * Unzipped data as bytes, keyed by filename. This is created by the UnzipHandler and only contains entries that
+     * can't be parsed into JSON. This is read by the IosSchemaValidationHandler.
      */
     public Map<String, byte[]> getUnzippedDataMap() {
         return unzippedDataMap;
@@ -116,7 +115,7 @@ public class UploadValidationContext {
     }
 
     /**
-     * Parsed JSON data, keyed by filename. This is created by the ParseJsonHandler and read by the
+     * Parsed JSON data, keyed by filename. This is created by the UnzipHandler and read by the
      * IosSchemaValidationHandler.
      */
     public Map<String, JsonNode> getJsonDataMap() {
@@ -170,9 +169,9 @@ public class UploadValidationContext {
     /**
      * <p>
      * Makes a shallow copy of this object. The fields of the returned copy can be get and set without affecting the
-     * original. However, the field value themselves are shared between the original and the copy. Most notably,
-     * modifying the unzippedDataMap (which is what ParseJsonHandler does) or the healthDataRecordBuilder (which is
-     * what TranscribeConsentHandler does) in the copy will affect the original, and vice versa.
+     * original. However, the field value themselves are shared between the original and the copy. Most notably, the
+     * data maps and the healthDataRecordBuilder are shared, so modifying them in the copy (as TranscribeConsentHandler
+     * does to the healthDataRecordBuilder) will affect the original, and vice versa.
      * </p>
      * <p>
      * The one notable exception is the message list, which will be deep copied. This is because the message list is
@@ -47,8 +47,8 @@ public class UploadValidationTask implements Runnable {
         this.context = context;
     }
 
-    /** This is package-scoped to facilitate unit tests. */
-    /* package-scoped */ UploadValidationContext getContext() {
+    /** Context for this task. After the task has run, this has the validation result and messages. */
+    public UploadValidationContext getContext() {
         return context;
     }
 
@@ -150,7 +150,7 @@ public class UploadValidationTask implements Runnable {
             return; // no record yet, no need to check duplicates
         }
         // get necessary information for query first
-        HealthDataRecord record = healthDataService.getRecordById(healthRecordId);
+        HealthDataRecord record = healthDataService.getRecordInfoById(healthRecordId);
 
         // if there is no record in ddb, we should just finish dedupe logic since no record is a common case
         if (record == null) {
@@ -23,7 +23,6 @@ import org.sagebionetworks.bridge.dynamodb.DynamoHealthCode;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
 import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
 import org.sagebionetworks.bridge.upload.DecryptHandler;
-import org.sagebionetworks.bridge.upload.ParseJsonHandler;
 import org.sagebionetworks.bridge.upload.S3DownloadHandler;
 import org.sagebionetworks.bridge.upload.UnzipHandler;
 import org.sagebionetworks.bridge.upload.UploadValidationContext;
@@ -71,7 +70,6 @@ public class BulkDownloadUtil {
         S3DownloadHandler s3DownloadHandler = springCtx.getBean(S3DownloadHandler.class);
         DecryptHandler decryptHandler = springCtx.getBean(DecryptHandler.class);
         UnzipHandler unzipHandler = springCtx.getBean(UnzipHandler.class);
-        ParseJsonHandler parseJsonHandler = springCtx.getBean(ParseJsonHandler.class);
 
         // DDB mappers
         DynamoDBMapperConfig uploadMapperConfig = new DynamoDBMapperConfig.Builder().withSaveBehavior(
@@ -146,9 +144,6 @@ public class BulkDownloadUtil {
                     uploadObj.metadata.getUploadId());
 
             if (hasUnzipped) {
-                // parseJsonHandler doesn't throw
-                parseJsonHandler.handle(ctx);
-
                 try {
                     Map<String, JsonNode> jsonDataMap = ctx.getJsonDataMap();
                     String jsonBundle = prettyPrinter.writeValueAsString(jsonDataMap);
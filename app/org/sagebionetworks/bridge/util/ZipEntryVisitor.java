@@ -0,0 +1,26 @@
+package org.sagebionetworks.bridge.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Callback for {@link Zipper#unzip(InputStream, ZipEntryVisitor)}. The visitor is called once per zip entry, in
+ * archive order, with a stream over that entry's uncompressed data.
+ */
+@FunctionalInterface
+public interface ZipEntryVisitor {
+    /**
+     * Visits a single zip entry. The entry stream is only valid for the duration of this call. The visitor doesn't
+     * need to read the stream to the end, and closing the stream is a no-op, so the stream can be handed directly to
+     * parsers that auto-close their input. Reading past the max zip entry size throws an IOException, which the Zipper
+     * surfaces as a {@link ZipOverflowException}.
+     *
+     * @param entryName
+     *         name of the zip entry
+     * @param entryInputStream
+     *         stream over the uncompressed entry data
+     * @throws IOException
+     *         if reading the entry fails
+     */
+    void visit(String entryName, InputStream entryInputStream) throws IOException;
+}
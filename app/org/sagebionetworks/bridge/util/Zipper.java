@@ -3,10 +3,13 @@ package org.sagebionetworks.bridge.util;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -62,50 +65,155 @@ public class Zipper {
     public Map<String, byte[]> unzip(@Nonnull byte[] bytes)
             throws IOException, ZipOverflowException, DuplicateZipEntryException {
         final Map<String, byte[]> dataMap = new HashMap<>();
-        try (final ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-                final ZipInputStream zis = new ZipInputStream(bais)) {
-            ZipEntry zipEntry = zis.getNextEntry();
-            while (zipEntry != null) {
-                if (dataMap.size() >= maxNumZipEntries) {
-                    throw new ZipOverflowException("The number of zip entries is over the max allowed");
-                }
-                final String entryName = zipEntry.getName();
-                if (dataMap.containsKey(entryName)) {
-                    throw new DuplicateZipEntryException(String.format("Duplicate filename %s", entryName));
-                }
-                final long entrySize = zipEntry.getSize();
-                if (entrySize > maxZipEntrySize) {
-                    throw new ZipOverflowException("Zip entry size is over the max allowed size. The entry " + entryName +
-                            " has size " + entrySize + ". The max allowed size is" + maxZipEntrySize + ".");
-                }
-                byte[] content = toByteArray(entryName, zis);
-                dataMap.put(entryName, content);
-                zipEntry = zis.getNextEntry();
+        try (final ByteArrayInputStream bais = new ByteArrayInputStream(bytes)) {
+            unzip(bais, (entryName, entryInputStream) -> dataMap.put(entryName, toByteArray(entryInputStream)));
+        }
+        return dataMap;
+    }
+
+    /**
+     * Unzips the given stream, passing each zip entry to the visitor as a stream instead of materializing it in
+     * memory. This enforces the same limits as {@link #unzip(byte[])}: max number of entries, max uncompressed bytes
+     * per entry (both the size declared in the zip entry and the number of bytes actually read), and no duplicate
+     * entry names. The caller owns the source stream and is responsible for closing it.
+     *
+     * @param source
+     *         stream of zipped data
+     * @param visitor
+     *         callback called once for each zip entry
+     * @throws ZipOverflowException
+     *         if the archive has too many entries, or an entry is over the max size
+     * @throws DuplicateZipEntryException
+     *         if the archive contains two entries with the same name
+     */
+    public void unzip(@Nonnull InputStream source, @Nonnull ZipEntryVisitor visitor)
+            throws IOException, ZipOverflowException, DuplicateZipEntryException {
+        // Don't close the ZipInputStream, since that would close the caller's source stream.
+        final ZipInputStream zis = new ZipInputStream(source);
+        final Set<String> entryNameSet = new HashSet<>();
+        ZipEntry zipEntry = zis.getNextEntry();
+        while (zipEntry != null) {
+            if (entryNameSet.size() >= maxNumZipEntries) {
+                throw new ZipOverflowException("The number of zip entries is over the max allowed");
+            }
+            final String entryName = zipEntry.getName();
+            if (!entryNameSet.add(entryName)) {
+                throw new DuplicateZipEntryException(String.format("Duplicate filename %s", entryName));
+            }
+            final long entrySize = zipEntry.getSize();
+            if (entrySize > maxZipEntrySize) {
+                throw new ZipOverflowException("Zip entry size is over the max allowed size. The entry " + entryName +
+                        " has size " + entrySize + ". The max allowed size is" + maxZipEntrySize + ".");
+            }
+
+            // Check the overflow flag even if the visitor returned normally, in case the visitor swallowed the
+            // exception from the entry stream. Whatever the visitor didn't read is drained through the entry stream
+            // too, since getNextEntry() would otherwise inflate the rest of the entry without counting it.
+            BoundedEntryInputStream entryInputStream = new BoundedEntryInputStream(entryName, zis);
+            try {
+                visitor.visit(entryName, entryInputStream);
+                entryInputStream.drain();
+            } catch (EntryOverflowIOException ex) {
+                throw new ZipOverflowException(ex.getMessage());
+            }
+            if (entryInputStream.overflowMessage != null) {
+                throw new ZipOverflowException(entryInputStream.overflowMessage);
             }
-            return dataMap;
+
+            zipEntry = zis.getNextEntry();
         }
     }
 
-    private byte[] toByteArray(final String entryName, final InputStream inputStream)
-            throws IOException, ZipOverflowException {
-        // We want copy data from the stream to a byte array manually, so we can count the bytes and protect against
-        // zip bombs. We use Apache IO's ByteArrayOutputStream, because it's memory optimized, so we don't have to
-        // clean up a bunch of byte arrays.
+    private static byte[] toByteArray(final InputStream inputStream) throws IOException {
+        // We use Apache IO's ByteArrayOutputStream, because it's memory optimized, so we don't have to clean up a
+        // bunch of byte arrays. The entry stream already counts bytes to protect against zip bombs.
         byte[] tempBuffer = new byte[TEMP_BUFFER_SIZE];
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            int totalBytes = 0;
             int bytesRead;
             while ((bytesRead = inputStream.read(tempBuffer, 0, TEMP_BUFFER_SIZE)) >= 0) {
-                totalBytes += bytesRead;
-                if (totalBytes > maxZipEntrySize) {
-                    throw new ZipOverflowException("Zip entry size is over the max allowed size. The entry " + entryName +
-                            " has size more than " + totalBytes + ". The max allowed size is" + maxZipEntrySize + ".");
-                }
-
                 baos.write(tempBuffer, 0, bytesRead);
             }
-
             return baos.toByteArray();
         }
     }
+
+    /**
+     * Stream over a single zip entry. This counts the bytes read to protect against zip bombs (the size in the zip
+     * entry header can't be trusted), and ignores close() so visitors can't close the underlying ZipInputStream.
+     */
+    private class BoundedEntryInputStream extends FilterInputStream {
+        private final String entryName;
+        private long totalBytes = 0;
+        private String overflowMessage;
+
+        BoundedEntryInputStream(String entryName, InputStream zipInputStream) {
+            super(zipInputStream);
+            this.entryName = entryName;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                countBytes(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+            int bytesRead = super.read(b, off, len);
+            if (bytesRead > 0) {
+                countBytes(bytesRead);
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long bytesSkipped = super.skip(n);
+            if (bytesSkipped > 0) {
+                countBytes(bytesSkipped);
+            }
+            return bytesSkipped;
+        }
+
+        /** Reads and discards the rest of the entry, counting the bytes. */
+        void drain() throws IOException {
+            byte[] tempBuffer = new byte[TEMP_BUFFER_SIZE];
+            while (read(tempBuffer, 0, TEMP_BUFFER_SIZE) >= 0) {
+                // discard
+            }
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // no-op, the Zipper owns the underlying stream
+        }
+
+        private void countBytes(long numBytes) throws EntryOverflowIOException {
+            totalBytes += numBytes;
+            if (totalBytes > maxZipEntrySize) {
+                overflowMessage = "Zip entry size is over the max allowed size. The entry " + entryName +
+                        " has size more than " + totalBytes + ". The max allowed size is" + maxZipEntrySize + ".";
+                throw new EntryOverflowIOException(overflowMessage);
+            }
+        }
+    }
+
+    /**
+     * Visitors can only throw IOExceptions, so overflow is signaled through the entry stream with this exception and
+     * converted back into a ZipOverflowException by unzip().
+     */
+    @SuppressWarnings("serial")
+    private static class EntryOverflowIOException extends IOException {
+        EntryOverflowIOException(String message) {
+            super(message);
+        }
+    }
 }
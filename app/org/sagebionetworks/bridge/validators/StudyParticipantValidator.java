@@ -44,7 +44,9 @@ public class StudyParticipantValidator implements Validator {
                 errors.rejectValue("id", "is required");
             }
         }
-        if (isNew && study.isExternalIdRequiredOnSignup() && isBlank(participant.getExternalId())) {
+        // Studies that assign external IDs will give the participant one if it's missing.
+        if (isNew && study.isExternalIdRequiredOnSignup() && !study.isExternalIdAutoAssignmentEnabled()
+                && isBlank(participant.getExternalId())) {
             errors.rejectValue("externalId", "is required");
         }
         // if external ID validation is enabled, it's not covered by the validator.
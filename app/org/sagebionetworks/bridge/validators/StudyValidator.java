@@ -129,6 +129,10 @@ public class StudyValidator implements Validator {
                 errors.rejectValue("externalIdValidationEnabled", "cannot be disabled if email verification has been disabled");
             }
         }
+        // IDs can only be handed out from the study's list of IDs if that list is enforced.
+        if (study.isExternalIdAutoAssignmentEnabled() && !study.isExternalIdValidationEnabled()) {
+            errors.rejectValue("externalIdAutoAssignmentEnabled", "cannot be enabled unless external ID validation is enabled");
+        }
     }
     
     private boolean isInRange(int value, int min) {
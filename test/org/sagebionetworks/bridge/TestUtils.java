@@ -184,6 +184,7 @@ public class TestUtils {
         Http.Context context = mock(Http.Context.class);
         when(context.request()).thenReturn(request);
         when(context.response()).thenReturn(response);
+        context.args = Maps.newHashMap();
 
         Http.Context.current.set(context);
     }
@@ -209,6 +210,7 @@ public class TestUtils {
 
         Http.Response mockResponse = mock(Http.Response.class);
         when(context.response()).thenReturn(mockResponse);
+        context.args = Maps.newHashMap();
         
         Http.Context.current.set(context);
     }
@@ -0,0 +1,82 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+
+import com.google.common.base.Strings;
+
+public class CacheCodecTest {
+
+    private static final String SMALL_JSON = "{\"identifier\":\"api\"}";
+    private static final String LARGE_JSON = "{\"identifier\":\"api\",\"name\":\"" + Strings.repeat("Test Study ", 100)
+            + "\"}";
+
+    private CacheCodec codec;
+
+    @Before
+    public void before() {
+        codec = new CacheCodec();
+        codec.setConfig(mockConfig(true, 100));
+    }
+
+    @Test
+    public void largeValuesAreCompressed() {
+        String encoded = codec.encode(LARGE_JSON);
+        assertEquals(CacheCodec.GZIP_JSON_VERSION, encoded.charAt(0));
+        assertTrue(encoded.length() < LARGE_JSON.length());
+        assertEquals(LARGE_JSON, codec.decode(encoded));
+    }
+
+    @Test
+    public void smallValuesAreNotCompressed() {
+        assertSame(SMALL_JSON, codec.encode(SMALL_JSON));
+        assertSame(SMALL_JSON, codec.decode(SMALL_JSON));
+    }
+
+    @Test
+    public void valuesAreNotCompressedWhenCompressionIsDisabled() {
+        codec.setConfig(mockConfig(false, 100));
+        assertSame(LARGE_JSON, codec.encode(LARGE_JSON));
+    }
+
+    @Test
+    public void codecWithoutConfigDoesNotCompress() {
+        CacheCodec defaultCodec = new CacheCodec();
+        assertSame(LARGE_JSON, defaultCodec.encode(LARGE_JSON));
+    }
+
+    @Test
+    public void compressedValuesAreReadWhenCompressionIsDisabled() {
+        String encoded = codec.encode(LARGE_JSON);
+        codec.setConfig(mockConfig(false, 100));
+        assertEquals(LARGE_JSON, codec.decode(encoded));
+    }
+
+    @Test
+    public void nullValuesPassThrough() {
+        assertNull(codec.encode(null));
+        assertNull(codec.decode(null));
+    }
+
+    @Test(expected = BridgeServiceException.class)
+    public void unknownVersionThrows() {
+        codec.decode("\u0002AAAA");
+    }
+
+    private static Config mockConfig(boolean compressionEnabled, int minLength) {
+        Config config = mock(Config.class);
+        when(config.get(CacheCodec.CONFIG_KEY_COMPRESSION_ENABLED)).thenReturn(Boolean.toString(compressionEnabled));
+        when(config.getInt(CacheCodec.CONFIG_KEY_COMPRESSION_MIN_LENGTH)).thenReturn(minLength);
+        return config;
+    }
+}
@@ -11,6 +11,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -20,6 +21,7 @@ import java.util.Arrays;
 import java.util.Map;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -31,6 +33,7 @@ import org.sagebionetworks.bridge.config.Environment;
 import org.sagebionetworks.bridge.crypto.AesGcmEncryptor;
 import org.sagebionetworks.bridge.crypto.Encryptor;
 import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.accounts.ConsentStatus;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
@@ -38,6 +41,7 @@ import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.JedisOpsCacheScripts;
 import org.sagebionetworks.bridge.redis.JedisTransaction;
 import org.sagebionetworks.bridge.redis.RedisKey;
 
@@ -54,6 +58,7 @@ public class CacheProviderMockTest {
     private static final String ENCRYPTED_SESSION_TOKEN = "TFMkaVFKPD48WissX0bgcD3esBMEshxb3MVgKxHnkXLSEPN4FQMKc01tDbBAVcXx94kMX6ckXVYUZ8wx4iICl08uE+oQr9gorE1hlgAyLAM=";
     private static final String DECRYPTED_SESSION_TOKEN = "ccea2978-f5b9-4377-8194-f887a3e2a19b";
     private JedisTransaction transaction;
+    private CacheScripts cacheScripts;
     private CacheProvider cacheProvider;
 
     @Before
@@ -70,9 +75,14 @@ public class CacheProviderMockTest {
         String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
         when(jedisOps.get(userKey)).thenReturn(SESSION_TOKEN);
         
+        cacheScripts = mock(CacheScripts.class);
+        
         cacheProvider = new CacheProvider();
         cacheProvider.setJedisOps(jedisOps);
+        cacheProvider.setCacheScripts(cacheScripts);
         cacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
+        cacheProvider.setCacheCodec(new CacheCodec());
+        cacheProvider.setSessionExpireInSeconds(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
     }
 
     @Test
@@ -88,9 +98,8 @@ public class CacheProviderMockTest {
 
         String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
         String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        verify(transaction, times(1)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(1)).setex(eq(userKey), anyInt(), eq(SESSION_TOKEN));
-        verify(transaction, times(1)).exec();
+        verify(cacheScripts, times(1)).setSession(eq(userKey), eq(SESSION_TOKEN), eq(sessionKey), anyString(),
+                eq(BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS));
     }
 
     @Test
@@ -108,11 +117,7 @@ public class CacheProviderMockTest {
         } catch(Throwable e) {
             fail(e.getMessage());
         }
-        String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
-        String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        verify(transaction, times(0)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(0)).setex(eq(userKey), anyInt(), eq(SESSION_TOKEN));
-        verify(transaction, times(0)).exec();
+        verify(cacheScripts, never()).setSession(anyString(), anyString(), anyString(), anyString(), anyInt());
     }
 
     @Test
@@ -126,11 +131,7 @@ public class CacheProviderMockTest {
         } catch(Throwable e) {
             fail(e.getMessage());
         }
-        String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
-        String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        verify(transaction, times(0)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(0)).setex(eq(userKey), anyInt(), eq(SESSION_TOKEN));
-        verify(transaction, times(0)).exec();
+        verify(cacheScripts, never()).setSession(anyString(), anyString(), anyString(), anyString(), anyInt());
     }
 
     @Test
@@ -148,11 +149,122 @@ public class CacheProviderMockTest {
         } catch(Throwable e) {
             fail(e.getMessage());
         }
-        String sessionKey = RedisKey.SESSION.getRedisKey(SESSION_TOKEN);
-        String userKey = RedisKey.USER_SESSION.getRedisKey(USER_ID);
-        verify(transaction, times(0)).setex(eq(sessionKey), anyInt(), anyString());
-        verify(transaction, times(0)).setex(eq(userKey), anyInt(), eq(SESSION_TOKEN));
-        verify(transaction, times(0)).exec();
+        verify(cacheScripts, never()).setSession(anyString(), anyString(), anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    public void testGetStudyResetsExpiration() throws Exception {
+        String studyKey = RedisKey.STUDY.getRedisKey("test");
+        when(cacheScripts.getAndExpire(studyKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS))
+                .thenReturn("{\"identifier\":\"test\",\"type\":\"Study\"}");
+        
+        Study study = cacheProvider.getStudy("test");
+        assertEquals("test", study.getIdentifier());
+        verify(cacheScripts).getAndExpire(studyKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS);
+    }
+
+    @Test
+    public void testGetStudyNotCached() throws Exception {
+        assertNull(cacheProvider.getStudy("test"));
+    }
+
+    @Test
+    public void viewIsServedFromLocalCopyWhenRedisIsDown() {
+        JedisOps jedisOps = mock(JedisOps.class);
+        when(jedisOps.get("viewKey")).thenReturn("view").thenThrow(new RuntimeException("Redis is down"));
+        cacheProvider.setJedisOps(jedisOps);
+        
+        assertEquals("view", cacheProvider.getView("viewKey"));
+        assertEquals("view", cacheProvider.getView("viewKey"));
+    }
+
+    @Test
+    public void viewIsCachedLocallyWhenRedisIsDown() {
+        JedisOps jedisOps = mock(JedisOps.class);
+        when(jedisOps.setex(anyString(), anyInt(), anyString())).thenThrow(new RuntimeException("Redis is down"));
+        when(jedisOps.get("viewKey")).thenThrow(new RuntimeException("Redis is down"));
+        cacheProvider.setJedisOps(jedisOps);
+        
+        cacheProvider.setView("viewKey", "view", BridgeConstants.BRIDGE_VIEW_EXPIRE_IN_SECONDS);
+        assertEquals("view", cacheProvider.getView("viewKey"));
+    }
+
+    @Test(expected = BridgeServiceException.class)
+    public void viewWithoutLocalCopyThrowsWhenRedisIsDown() {
+        JedisOps jedisOps = mock(JedisOps.class);
+        when(jedisOps.get("viewKey")).thenThrow(new RuntimeException("Redis is down"));
+        cacheProvider.setJedisOps(jedisOps);
+        
+        cacheProvider.getView("viewKey");
+    }
+
+    @Test(expected = BridgeServiceException.class)
+    public void removedViewIsNotServedFromLocalCopy() {
+        JedisOps jedisOps = mock(JedisOps.class);
+        when(jedisOps.get("viewKey")).thenReturn("view").thenThrow(new RuntimeException("Redis is down"));
+        cacheProvider.setJedisOps(jedisOps);
+        
+        cacheProvider.getView("viewKey");
+        cacheProvider.removeString("viewKey");
+        cacheProvider.getView("viewKey");
+    }
+
+    @Test
+    public void stringIsNotServedFromLocalCopy() {
+        JedisOps jedisOps = mock(JedisOps.class);
+        when(jedisOps.get("key")).thenReturn("value").thenThrow(new RuntimeException("Redis is down"));
+        cacheProvider.setJedisOps(jedisOps);
+        
+        cacheProvider.getString("key");
+        try {
+            cacheProvider.getString("key");
+            fail("Should have thrown exception");
+        } catch(BridgeServiceException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = BridgeServiceException.class)
+    public void setStringThrowsWhenRedisIsDown() {
+        JedisOps jedisOps = mock(JedisOps.class);
+        when(jedisOps.setex(anyString(), anyInt(), anyString())).thenThrow(new RuntimeException("Redis is down"));
+        cacheProvider.setJedisOps(jedisOps);
+        
+        cacheProvider.setString("key", "value", 60);
+    }
+
+    @Test
+    public void failedStudyWriteRemovesCachedStudy() {
+        JedisOps jedisOps = mock(JedisOps.class);
+        when(jedisOps.setex(anyString(), anyInt(), anyString())).thenThrow(new RuntimeException("Write failed"));
+        cacheProvider.setJedisOps(jedisOps);
+        
+        Study study = TestUtils.getValidStudy(CacheProviderMockTest.class);
+        cacheProvider.setStudy(study);
+        
+        verify(jedisOps).del(RedisKey.STUDY.getRedisKey(study.getIdentifier()));
+    }
+
+    @Test(expected = BridgeServiceException.class)
+    public void failedStudyWriteThrowsIfCachedStudyCannotBeRemoved() {
+        JedisOps jedisOps = mock(JedisOps.class);
+        when(jedisOps.setex(anyString(), anyInt(), anyString())).thenThrow(new RuntimeException("Redis is down"));
+        when(jedisOps.del(anyString())).thenThrow(new RuntimeException("Redis is down"));
+        cacheProvider.setJedisOps(jedisOps);
+        
+        cacheProvider.setStudy(TestUtils.getValidStudy(CacheProviderMockTest.class));
+    }
+
+    @Test
+    public void studyIsServedFromLocalCopyWhenRedisIsDown() {
+        String studyKey = RedisKey.STUDY.getRedisKey("test");
+        when(cacheScripts.getAndExpire(studyKey, BridgeConstants.BRIDGE_SESSION_EXPIRE_IN_SECONDS))
+                .thenReturn("{\"identifier\":\"test\",\"type\":\"Study\"}")
+                .thenThrow(new RuntimeException("Redis is down"));
+        
+        cacheProvider.getStudy("test");
+        Study study = cacheProvider.getStudy("test");
+        assertEquals("test", study.getIdentifier());
     }
 
     @Test
@@ -193,6 +305,7 @@ public class CacheProviderMockTest {
         final CacheProvider simpleCacheProvider = new CacheProvider();
         simpleCacheProvider.setJedisOps(getJedisOps());
         simpleCacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
+        simpleCacheProvider.setCacheCodec(new CacheCodec());
 
         final Study study = TestUtils.getValidStudy(CacheProviderMockTest.class);
         study.setIdentifier("test");
@@ -216,6 +329,122 @@ public class CacheProviderMockTest {
         assertNull(cachedString);
     }
 
+    @Test
+    public void addAndRemoveActivityEventMapFromCacheProvider() {
+        final CacheProvider simpleCacheProvider = new CacheProvider();
+        JedisOps jedisOps = getJedisOps();
+        simpleCacheProvider.setJedisOps(jedisOps);
+        simpleCacheProvider.setCacheScripts(new JedisOpsCacheScripts(jedisOps));
+        simpleCacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
+        simpleCacheProvider.setCacheCodec(new CacheCodec());
+        
+        assertNull(simpleCacheProvider.getActivityEventMap("healthCode"));
+        
+        DateTime enrollment = DateTime.parse("2016-04-05T10:00:00.000Z");
+        Map<String,DateTime> eventMap = Maps.newHashMap();
+        eventMap.put("enrollment", enrollment);
+        eventMap.put("two_weeks_before_enrollment", enrollment.minusWeeks(2));
+        String generation = simpleCacheProvider.getActivityEventMapGeneration("healthCode");
+        simpleCacheProvider.setActivityEventMap("healthCode", eventMap, generation);
+        
+        Map<String,DateTime> cachedMap = simpleCacheProvider.getActivityEventMap("healthCode");
+        assertEquals(2, cachedMap.size());
+        assertEquals(enrollment.getMillis(), cachedMap.get("enrollment").getMillis());
+        assertEquals(enrollment.minusWeeks(2).getMillis(), cachedMap.get("two_weeks_before_enrollment").getMillis());
+        assertEquals(DateTimeZone.UTC, cachedMap.get("enrollment").getZone());
+        
+        simpleCacheProvider.removeActivityEventMap("healthCode");
+        assertNull(simpleCacheProvider.getActivityEventMap("healthCode"));
+    }
+
+    @Test
+    public void activityEventMapLoadedBeforeRemovalIsNotCached() {
+        final CacheProvider simpleCacheProvider = new CacheProvider();
+        JedisOps jedisOps = getJedisOps();
+        simpleCacheProvider.setJedisOps(jedisOps);
+        simpleCacheProvider.setCacheScripts(new JedisOpsCacheScripts(jedisOps));
+        simpleCacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
+        simpleCacheProvider.setCacheCodec(new CacheCodec());
+
+        // A reader loads the map, then an event is published before the reader caches it.
+        String generation = simpleCacheProvider.getActivityEventMapGeneration("healthCode");
+        Map<String,DateTime> staleMap = Maps.newHashMap();
+        staleMap.put("enrollment", DateTime.parse("2016-04-05T10:00:00.000Z"));
+        simpleCacheProvider.removeActivityEventMap("healthCode");
+        simpleCacheProvider.setActivityEventMap("healthCode", staleMap, generation);
+        assertNull(simpleCacheProvider.getActivityEventMap("healthCode"));
+
+        // A reader that starts after the event caches the map.
+        String newGeneration = simpleCacheProvider.getActivityEventMapGeneration("healthCode");
+        assertFalse(generation.equals(newGeneration));
+        simpleCacheProvider.setActivityEventMap("healthCode", staleMap, newGeneration);
+        assertEquals(1, simpleCacheProvider.getActivityEventMap("healthCode").size());
+    }
+
+    @Test
+    public void studySummariesLoadedBeforeStudyChangeAreNotCached() {
+        final CacheProvider simpleCacheProvider = new CacheProvider();
+        JedisOps jedisOps = getJedisOps();
+        simpleCacheProvider.setJedisOps(jedisOps);
+        simpleCacheProvider.setCacheScripts(new JedisOpsCacheScripts(jedisOps));
+
+        // A reader loads the studies, then a study is updated before the reader caches the summaries.
+        String generation = simpleCacheProvider.getStudySummariesGeneration();
+        simpleCacheProvider.removeStudySummaries();
+        simpleCacheProvider.setStudySummaries("stale", generation);
+        assertNull(simpleCacheProvider.getStudySummaries());
+
+        // A reader that starts after the update caches the summaries.
+        simpleCacheProvider.setStudySummaries("fresh", simpleCacheProvider.getStudySummariesGeneration());
+        assertEquals("fresh", simpleCacheProvider.getStudySummaries());
+    }
+
+    @Test
+    public void addAndRemoveParticipantOptionsFromCacheProvider() {
+        final CacheProvider simpleCacheProvider = new CacheProvider();
+        JedisOps jedisOps = getJedisOps();
+        simpleCacheProvider.setJedisOps(jedisOps);
+        simpleCacheProvider.setCacheScripts(new JedisOpsCacheScripts(jedisOps));
+        simpleCacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
+        simpleCacheProvider.setCacheCodec(new CacheCodec());
+
+        assertNull(simpleCacheProvider.getParticipantOptions("healthCode"));
+
+        Map<String,String> options = Maps.newHashMap();
+        options.put("EXTERNAL_IDENTIFIER", "externalId");
+        options.put("DATA_GROUPS", "group1,group2");
+        String generation = simpleCacheProvider.getParticipantOptionsGeneration("healthCode");
+        simpleCacheProvider.setParticipantOptions("healthCode", options, generation);
+
+        assertEquals(options, simpleCacheProvider.getParticipantOptions("healthCode"));
+
+        simpleCacheProvider.removeParticipantOptions("healthCode");
+        assertNull(simpleCacheProvider.getParticipantOptions("healthCode"));
+    }
+
+    @Test
+    public void participantOptionsLoadedBeforeRemovalAreNotCached() {
+        final CacheProvider simpleCacheProvider = new CacheProvider();
+        JedisOps jedisOps = getJedisOps();
+        simpleCacheProvider.setJedisOps(jedisOps);
+        simpleCacheProvider.setCacheScripts(new JedisOpsCacheScripts(jedisOps));
+        simpleCacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
+        simpleCacheProvider.setCacheCodec(new CacheCodec());
+
+        // A reader loads the options, then an option is changed before the reader caches them.
+        String generation = simpleCacheProvider.getParticipantOptionsGeneration("healthCode");
+        Map<String,String> staleOptions = Maps.newHashMap();
+        staleOptions.put("SHARING_SCOPE", "NO_SHARING");
+        simpleCacheProvider.removeParticipantOptions("healthCode");
+        simpleCacheProvider.setParticipantOptions("healthCode", staleOptions, generation);
+        assertNull(simpleCacheProvider.getParticipantOptions("healthCode"));
+
+        // A reader that starts after the change caches the options.
+        String newGeneration = simpleCacheProvider.getParticipantOptionsGeneration("healthCode");
+        simpleCacheProvider.setParticipantOptions("healthCode", staleOptions, newGeneration);
+        assertEquals(staleOptions, simpleCacheProvider.getParticipantOptions("healthCode"));
+    }
+
     @Test
     public void newUserSessionDeserializes() {
         String json = TestUtils.createJson("{'authenticated':true,"+
@@ -261,6 +490,7 @@ public class CacheProviderMockTest {
         
         cacheProvider.setJedisOps(jedisOps);
         cacheProvider.setBridgeObjectMapper(BridgeObjectMapper.get());
+        cacheProvider.setCacheCodec(new CacheCodec());
         
         UserSession session = cacheProvider.getUserSession("sessionToken");
 
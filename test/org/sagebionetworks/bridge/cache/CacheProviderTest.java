@@ -35,6 +35,7 @@ import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.LuaCacheScripts;
 
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
@@ -63,6 +64,9 @@ public class CacheProviderTest {
     @Autowired
     private JedisOps testJedisOps;
     
+    @Autowired
+    private CacheScripts testCacheScripts;
+    
     @Resource(name = "redisProviders")
     private List<String> redisProviders;
     
@@ -70,6 +74,7 @@ public class CacheProviderTest {
     public void after() {
         // restore in the in memory redis implementation
         cacheProvider.setJedisOps(testJedisOps);
+        cacheProvider.setCacheScripts(testCacheScripts);
     }
     
     @Before
@@ -77,6 +82,7 @@ public class CacheProviderTest {
         JedisPool jedisPool = constructJedisPool();
         JedisOps jedisOps = new JedisOps(jedisPool);
         cacheProvider.setJedisOps(jedisOps);
+        cacheProvider.setCacheScripts(new LuaCacheScripts(jedisPool));
         cacheProvider.setSessionExpireInSeconds(4);
     }
     
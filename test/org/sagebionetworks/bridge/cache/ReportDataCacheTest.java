@@ -0,0 +1,256 @@
+package org.sagebionetworks.bridge.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import org.sagebionetworks.bridge.models.reports.ReportData;
+import org.sagebionetworks.bridge.models.reports.ReportDataKey;
+import org.sagebionetworks.bridge.models.reports.ReportType;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.redis.InMemoryJedisOps;
+import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.redis.JedisOpsCacheScripts;
+import org.sagebionetworks.bridge.redis.RedisKey;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReportDataCacheTest {
+
+    private static final ReportDataKey KEY = new ReportDataKey.Builder().withReportType(ReportType.STUDY)
+            .withIdentifier("report").withStudyIdentifier(new StudyIdentifierImpl("test-study")).build();
+    private static final String REDIS_KEY = "report:test-study:report-data";
+    private static final String GENERATION_KEY = RedisKey.GENERATION.getRedisKey(REDIS_KEY);
+    private static final List<String> DATES = ImmutableList.of("2017-01-01", "2017-01-02", "2017-01-03");
+    private static final LocalDate DAY1 = LocalDate.parse("2017-01-01");
+    private static final LocalDate DAY2 = LocalDate.parse("2017-01-02");
+    private static final LocalDate DAY3 = LocalDate.parse("2017-01-03");
+
+    @Mock
+    private JedisOps jedisOps;
+
+    @Mock
+    private CacheScripts cacheScripts;
+
+    private ReportDataCache cache;
+
+    @Before
+    public void before() {
+        cache = new ReportDataCache();
+        cache.setJedisOps(jedisOps);
+        cache.setCacheScripts(cacheScripts);
+    }
+
+    @Test
+    public void cachedRangeIsNotLoaded() {
+        when(cacheScripts.getFields(REDIS_KEY, DATES)).thenReturn(
+                Arrays.asList(json(DAY1), ReportDataCache.NO_RECORD, json(DAY3)));
+
+        List<ReportData> results = cache.getReportData(KEY, DAY1, DAY3, (start, end) -> {
+            fail("Should not load cached days");
+            return null;
+        });
+
+        assertEquals(2, results.size());
+        assertEquals(DAY1, results.get(0).getDate());
+        assertEquals(DAY3, results.get(1).getDate());
+        assertEquals(KEY.getKeyString(), results.get(0).getKey());
+        verify(jedisOps, never()).get(anyString());
+        verify(cacheScripts, never()).setFieldsIfGeneration(anyString(), anyString(), anyString(),
+                anyMapOf(String.class, String.class), anyInt());
+    }
+
+    @Test
+    public void onlyMissingDaysAreLoadedAndCached() {
+        when(cacheScripts.getFields(REDIS_KEY, DATES)).thenReturn(Arrays.asList(json(DAY1), null, null));
+        when(jedisOps.get(GENERATION_KEY)).thenReturn("generation");
+
+        List<ReportData> results = cache.getReportData(KEY, DAY1, DAY3, (start, end) -> {
+            assertEquals(DAY2, start);
+            assertEquals(DAY3, end);
+            return ImmutableList.of(report(DAY3));
+        });
+
+        assertEquals(2, results.size());
+        assertEquals(DAY1, results.get(0).getDate());
+        assertEquals(DAY3, results.get(1).getDate());
+
+        verify(cacheScripts).setFieldsIfGeneration(REDIS_KEY, GENERATION_KEY, "generation", ImmutableMap.of(
+                "2017-01-02", ReportDataCache.NO_RECORD, "2017-01-03", json(DAY3)),
+                ReportDataCache.REPORT_DATA_EXPIRE_IN_SECONDS);
+    }
+
+    @Test
+    public void missingGenerationIsEmpty() {
+        when(cacheScripts.getFields(REDIS_KEY, ImmutableList.of("2017-01-01"))).thenReturn(
+                Arrays.asList((String) null));
+
+        cache.getReportData(KEY, DAY1, DAY1, (start, end) -> ImmutableList.of(report(DAY1)));
+
+        verify(cacheScripts).setFieldsIfGeneration(REDIS_KEY, GENERATION_KEY, "", ImmutableMap.of("2017-01-01",
+                json(DAY1)), ReportDataCache.REPORT_DATA_EXPIRE_IN_SECONDS);
+    }
+
+    @Test
+    public void cachedDaysBetweenMissingDaysAreNotOverwritten() {
+        when(cacheScripts.getFields(REDIS_KEY, DATES)).thenReturn(Arrays.asList(null, json(DAY2), null));
+        when(jedisOps.get(GENERATION_KEY)).thenReturn("generation");
+
+        List<ReportData> results = cache.getReportData(KEY, DAY1, DAY3,
+                (start, end) -> ImmutableList.of(report(DAY1), report(DAY2)));
+
+        assertEquals(2, results.size());
+        verify(cacheScripts).setFieldsIfGeneration(REDIS_KEY, GENERATION_KEY, "generation", ImmutableMap.of(
+                "2017-01-01", json(DAY1), "2017-01-03", ReportDataCache.NO_RECORD),
+                ReportDataCache.REPORT_DATA_EXPIRE_IN_SECONDS);
+    }
+
+    @Test
+    public void loadsFromLoaderWhenRedisIsDown() {
+        when(cacheScripts.getFields(anyString(), anyListOf(String.class))).thenThrow(
+                new JedisConnectionException("connection refused"));
+
+        List<ReportData> results = cache.getReportData(KEY, DAY1, DAY3, (start, end) -> {
+            assertEquals(DAY1, start);
+            assertEquals(DAY3, end);
+            return ImmutableList.of(report(DAY1), report(DAY3));
+        });
+
+        assertEquals(2, results.size());
+        assertEquals(DAY1, results.get(0).getDate());
+        assertEquals(DAY3, results.get(1).getDate());
+    }
+
+    @Test
+    public void failureToCacheLoadedDaysIsIgnored() {
+        when(cacheScripts.getFields(REDIS_KEY, ImmutableList.of("2017-01-01"))).thenReturn(
+                Arrays.asList((String) null));
+        when(cacheScripts.setFieldsIfGeneration(anyString(), anyString(), anyString(),
+                anyMapOf(String.class, String.class), anyInt())).thenThrow(
+                        new JedisConnectionException("connection refused"));
+
+        List<ReportData> results = cache.getReportData(KEY, DAY1, DAY1,
+                (start, end) -> ImmutableList.of(report(DAY1)));
+
+        assertEquals(1, results.size());
+    }
+
+    @Test
+    public void savedRecordIsWrittenThroughToCachedDays() {
+        cache.setReportData(KEY, report(DAY1));
+
+        verify(cacheScripts).setExistingFields(eq(ImmutableMap.of(REDIS_KEY, GENERATION_KEY)),
+                eq(ImmutableMap.of(REDIS_KEY, ImmutableMap.of("2017-01-01", json(DAY1)))), anyString(),
+                eq(CacheProvider.GENERATION_EXPIRE_IN_SECONDS));
+    }
+
+    @Test
+    public void savedRecordsAreWrittenThroughInOneCall() {
+        ReportDataKey otherKey = new ReportDataKey.Builder().withReportType(ReportType.STUDY)
+                .withIdentifier("other").withStudyIdentifier(new StudyIdentifierImpl("test-study")).build();
+        String otherRedisKey = RedisKey.REPORT_DATA.getRedisKey(otherKey.getKeyString());
+        ReportData otherReport = report(DAY2);
+        otherReport.setKey(otherKey.getKeyString());
+
+        cache.setReportData(ImmutableList.of(report(DAY1), otherReport, report(DAY2)));
+
+        verify(cacheScripts).setExistingFields(eq(ImmutableMap.of(REDIS_KEY, GENERATION_KEY, otherRedisKey,
+                RedisKey.GENERATION.getRedisKey(otherRedisKey))), eq(ImmutableMap.of(REDIS_KEY,
+                        ImmutableMap.of("2017-01-01", json(DAY1), "2017-01-02", json(DAY2)), otherRedisKey,
+                        ImmutableMap.of("2017-01-02", json(DAY2)))), anyString(),
+                eq(CacheProvider.GENERATION_EXPIRE_IN_SECONDS));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void failureToWriteThroughIsIgnored() {
+        doThrow(new JedisConnectionException("connection refused")).when(cacheScripts).setExistingFields(
+                any(Map.class), any(Map.class), anyString(), anyInt());
+
+        cache.setReportData(KEY, report(DAY1));
+    }
+
+    @Test
+    public void removeOneDay() {
+        cache.removeReportData(KEY, DAY1);
+
+        verify(cacheScripts).invalidateField(eq(REDIS_KEY), eq("2017-01-01"), eq(GENERATION_KEY), anyString(),
+                eq(CacheProvider.GENERATION_EXPIRE_IN_SECONDS));
+        verify(cacheScripts, never()).invalidate(anyString(), anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    public void removeReport() {
+        cache.removeReportData(KEY);
+
+        verify(cacheScripts).invalidate(eq(REDIS_KEY), eq(GENERATION_KEY), anyString(),
+                eq(CacheProvider.GENERATION_EXPIRE_IN_SECONDS));
+    }
+
+    @Test
+    public void cachesThroughJedisOpsCacheScripts() {
+        JedisOps inMemoryJedisOps = new InMemoryJedisOps();
+        cache.setJedisOps(inMemoryJedisOps);
+        cache.setCacheScripts(new JedisOpsCacheScripts(inMemoryJedisOps));
+
+        // Loaded once, then served from the cache.
+        assertEquals(1, cache.getReportData(KEY, DAY1, DAY2, (start, end) -> ImmutableList.of(report(DAY1)))
+                .size());
+        assertEquals(1, cache.getReportData(KEY, DAY1, DAY2, (start, end) -> {
+            fail("Should not load cached days");
+            return null;
+        }).size());
+
+        // A saved record replaces the cached day, and a removed day is loaded again.
+        cache.setReportData(KEY, report(DAY2));
+        assertEquals(2, cache.getReportData(KEY, DAY1, DAY2, (start, end) -> {
+            fail("Should not load cached days");
+            return null;
+        }).size());
+        cache.removeReportData(KEY, DAY1);
+        List<ReportData> results = cache.getReportData(KEY, DAY1, DAY2, (start, end) -> {
+            assertEquals(DAY1, start);
+            assertEquals(DAY1, end);
+            return ImmutableList.of();
+        });
+        assertEquals(1, results.size());
+        assertEquals(DAY2, results.get(0).getDate());
+    }
+
+    private static ReportData report(LocalDate date) {
+        ReportData report = ReportData.create();
+        report.setKey(KEY.getKeyString());
+        report.setDate(date);
+        report.setData(JsonNodeFactory.instance.objectNode().put("day", date.getDayOfMonth()));
+        return report;
+    }
+
+    private String json(LocalDate date) {
+        return "{\"date\":\"" + date + "\",\"data\":{\"day\":" + date.getDayOfMonth() + "},\"type\":\"ReportData\"}";
+    }
+}
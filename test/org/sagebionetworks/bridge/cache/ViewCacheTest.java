@@ -1,22 +1,38 @@
 package org.sagebionetworks.bridge.cache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.cache.ViewCache.ViewCacheKey;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.studies.Study;
 
 import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 public class ViewCacheTest {
@@ -36,8 +52,9 @@ public class ViewCacheTest {
         ViewCache cache = new ViewCache();
         ViewCacheKey<Study> cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
         CacheProvider provider = mock(CacheProvider.class);
-        when(provider.getString(cacheKey.getKey())).thenReturn(null);
+        when(provider.getView(cacheKey.getKey())).thenReturn(null);
         cache.setCacheProvider(provider);
+        cache.setDistributedLockDao(mock(DistributedLockDao.class));
         
         String json = cache.getView(cacheKey, new Supplier<Study>() {
             @Override public Study get() {
@@ -57,8 +74,9 @@ public class ViewCacheTest {
         ViewCacheKey<Study> cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
         
         CacheProvider provider = mock(CacheProvider.class);
-        when(provider.getString(cacheKey.getKey())).thenReturn(null);
+        when(provider.getView(cacheKey.getKey())).thenReturn(null);
         cache.setCacheProvider(provider);
+        cache.setDistributedLockDao(mock(DistributedLockDao.class));
         
         // It doesn't get wrapped or transformed or anything
         try {
@@ -81,8 +99,9 @@ public class ViewCacheTest {
         ViewCache cache = new ViewCache();
         ViewCacheKey<Study> cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
         CacheProvider provider = mock(CacheProvider.class);
-        when(provider.getString(cacheKey.getKey())).thenReturn(originalStudyJson);
+        when(provider.getView(cacheKey.getKey())).thenReturn(originalStudyJson);
         cache.setCacheProvider(provider);
+        cache.setDistributedLockDao(mock(DistributedLockDao.class));
         
         String json = cache.getView(cacheKey, new Supplier<Study>() {
             @Override public Study get() {
@@ -102,6 +121,7 @@ public class ViewCacheTest {
         ViewCache cache = new ViewCache();
         final ViewCacheKey<Study> cacheKey = cache.getCacheKey(Study.class, study.getIdentifier());
         cache.setCacheProvider(getSimpleCacheProvider(cacheKey.getKey(), originalStudyJson));
+        cache.setDistributedLockDao(mock(DistributedLockDao.class));
         
         cache.removeView(cacheKey);
         
@@ -116,6 +136,134 @@ public class ViewCacheTest {
         assertEquals("Test Study 2", foundStudy.getName());
     }
     
+    @Test
+    public void concurrentMissesCallSupplierOnce() throws Exception {
+        ViewCache cache = new ViewCache();
+        final ViewCacheKey<String> cacheKey = cache.getCacheKey(String.class, "popular");
+        cache.setCacheProvider(getSimpleCacheProvider("some-other-key", null));
+        cache.setDistributedLockDao(mock(DistributedLockDao.class));
+        
+        final AtomicInteger supplierCalls = new AtomicInteger();
+        final CountDownLatch supplierEntered = new CountDownLatch(1);
+        final CountDownLatch supplierRelease = new CountDownLatch(1);
+        final Supplier<String> supplier = new Supplier<String>() {
+            @Override public String get() {
+                supplierCalls.incrementAndGet();
+                supplierEntered.countDown();
+                try {
+                    supplierRelease.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return "the view";
+            }
+        };
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = executor.submit(() -> cache.getView(cacheKey, supplier));
+            assertTrue(supplierEntered.await(5, TimeUnit.SECONDS));
+            
+            // These arrive while the first request is still building the view.
+            List<Future<String>> others = Lists.newArrayList();
+            for (int i=0; i < 3; i++) {
+                others.add(executor.submit(() -> cache.getView(cacheKey, supplier)));
+            }
+            supplierRelease.countDown();
+            
+            assertEquals("\"the view\"", first.get(5, TimeUnit.SECONDS));
+            for (Future<String> other : others) {
+                assertEquals("\"the view\"", other.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, supplierCalls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void leaseIsReleasedAfterViewIsCached() {
+        ViewCache cache = new ViewCache();
+        ViewCacheKey<String> cacheKey = cache.getCacheKey(String.class, "popular");
+        CacheProvider provider = getSimpleCacheProvider("some-other-key", null);
+        cache.setCacheProvider(provider);
+        DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(ViewCache.class, cacheKey.getKey(), ViewCache.VIEW_LEASE_EXPIRE_IN_SECONDS))
+                .thenReturn("lock-id");
+        cache.setDistributedLockDao(lockDao);
+        
+        String json = cache.getView(cacheKey, () -> "the view");
+        
+        assertEquals("\"the view\"", json);
+        assertEquals("\"the view\"", provider.getView(cacheKey.getKey()));
+        verify(lockDao).releaseLock(ViewCache.class, cacheKey.getKey(), "lock-id");
+    }
+    
+    @Test
+    public void waitsForServerHoldingLease() {
+        ViewCache cache = new ViewCache();
+        ViewCacheKey<String> cacheKey = cache.getCacheKey(String.class, "popular");
+        
+        // Misses on the first two reads, then the other server has cached the view.
+        CacheProvider provider = mock(CacheProvider.class);
+        when(provider.getView(cacheKey.getKey())).thenReturn(null, null, "\"from another server\"");
+        cache.setCacheProvider(provider);
+        DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(ViewCache.class, cacheKey.getKey(), ViewCache.VIEW_LEASE_EXPIRE_IN_SECONDS))
+                .thenThrow(new ConcurrentModificationException("Lock already set."));
+        cache.setDistributedLockDao(lockDao);
+        
+        String json = cache.getView(cacheKey, new Supplier<String>() {
+            @Override public String get() {
+                fail("This should not be called");
+                return null;
+            }
+        });
+        assertEquals("\"from another server\"", json);
+        verify(provider, never()).setView(anyString(), anyString(), anyInt());
+        verify(lockDao, never()).releaseLock(any(), anyString(), anyString());
+    }
+    
+    @Test
+    public void buildsViewIfServerHoldingLeaseIsSlow() {
+        ViewCache cache = new ViewCache();
+        ViewCacheKey<String> cacheKey = cache.getCacheKey(String.class, "popular");
+        CacheProvider provider = getSimpleCacheProvider("some-other-key", null);
+        cache.setCacheProvider(provider);
+        DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(ViewCache.class, cacheKey.getKey(), ViewCache.VIEW_LEASE_EXPIRE_IN_SECONDS))
+                .thenThrow(new ConcurrentModificationException("Lock already set."));
+        cache.setDistributedLockDao(lockDao);
+        
+        long start = System.currentTimeMillis();
+        String json = cache.getView(cacheKey, () -> "the view");
+        long waitedMillis = System.currentTimeMillis() - start;
+        
+        // Waits briefly for the other server, not for the whole lease.
+        assertEquals("\"the view\"", json);
+        assertTrue(waitedMillis >= ViewCache.VIEW_LEASE_MAX_WAIT_MILLIS);
+        assertTrue(waitedMillis < ViewCache.VIEW_LEASE_EXPIRE_IN_SECONDS*1000L);
+        verify(lockDao, never()).releaseLock(any(), anyString(), anyString());
+    }
+    
+    @Test
+    public void buildsViewWithoutLeaseIfLeaseCannotBeAcquired() {
+        ViewCache cache = new ViewCache();
+        ViewCacheKey<String> cacheKey = cache.getCacheKey(String.class, "popular");
+        CacheProvider provider = getSimpleCacheProvider("some-other-key", null);
+        cache.setCacheProvider(provider);
+        DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(ViewCache.class, cacheKey.getKey(), ViewCache.VIEW_LEASE_EXPIRE_IN_SECONDS))
+                .thenThrow(new BridgeServiceException("Redis is unreachable"));
+        cache.setDistributedLockDao(lockDao);
+        
+        String json = cache.getView(cacheKey, () -> "the view");
+        
+        assertEquals("\"the view\"", json);
+        assertEquals("\"the view\"", provider.getView(cacheKey.getKey()));
+        verify(lockDao, never()).releaseLock(any(), anyString(), anyString());
+    }
+    
     @Test
     public void getCacheKeyWorks() {
         ViewCache cache = new ViewCache();
@@ -126,14 +274,16 @@ public class ViewCacheTest {
     
     private CacheProvider getSimpleCacheProvider(final String cacheKey, final String originalStudyJson) {
         return new CacheProvider() {
-            private Map<String,String> map = Maps.newHashMap();
+            private Map<String,String> map = Maps.newConcurrentMap();
             {
-                map.put(cacheKey, originalStudyJson);
+                if (originalStudyJson != null) {
+                    map.put(cacheKey, originalStudyJson);
+                }
             }
-            public String getString(String cacheKey) {
+            public String getView(String cacheKey) {
                 return map.get(cacheKey);
             }
-            public void setString(String cacheKey, String value, int secondsUntilExpire) {
+            public void setView(String cacheKey, String value, int secondsUntilExpire) {
                 map.put(cacheKey, value);
             }
             public void removeString(String cacheKey) {
@@ -3,7 +3,9 @@ package org.sagebionetworks.bridge.config;
 import static org.mockito.Mockito.mock;
 
 import org.sagebionetworks.bridge.TestUserAdminHelper;
+import org.sagebionetworks.bridge.cache.CacheScripts;
 import org.sagebionetworks.bridge.redis.InMemoryJedisOps;
+import org.sagebionetworks.bridge.redis.JedisOpsCacheScripts;
 import org.sagebionetworks.bridge.redis.JedisOps;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -22,6 +24,12 @@ public class BridgeTestSpringConfig {
         return new InMemoryJedisOps();
     }
 
+    @Bean(name = "cacheScripts")
+    public CacheScripts cacheScripts() {
+        // Lua scripts can't run against the in-memory Redis. Run the same commands one at a time instead.
+        return new JedisOpsCacheScripts(jedisOps());
+    }
+
     @Bean(name = "jedisPool")
     public JedisPool jedisPool() {
         // Since we don't connect to a real host, pass in "localhost" as a dummy hostname
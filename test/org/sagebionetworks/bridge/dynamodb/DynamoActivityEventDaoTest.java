@@ -22,6 +22,8 @@ import org.sagebionetworks.bridge.models.activities.ActivityEventType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import com.google.common.collect.Lists;
+
 @ContextConfiguration("classpath:test-context.xml")
 @RunWith(SpringJUnit4ClassRunner.class)
 public class DynamoActivityEventDaoTest {
@@ -113,6 +115,23 @@ public class DynamoActivityEventDaoTest {
         assertEquals(firstEvent.withZone(DateTimeZone.UTC), eventMap.get("enrollment"));
     }
     
+    @Test
+    public void canPublishEventsInBatch() {
+        final DateTime firstEvent = DateTime.now();
+        activityEventDao.publishEvent(getEnrollmentEvent(firstEvent));
+        activityEventDao.publishEvent(getSurveyFinishedEvent(firstEvent));
+        
+        // Enrollment is never updated, the later survey finished event is.
+        activityEventDao.publishEvents(Lists.newArrayList(getEnrollmentEvent(firstEvent.plusHours(2)),
+                getSurveyFinishedEvent(firstEvent.plusHours(2))));
+        
+        Map<String,DateTime> eventMap = activityEventDao.getActivityEventMap(healthCode);
+        assertEquals(firstEvent.withZone(DateTimeZone.UTC), eventMap.get("enrollment"));
+        assertEquals(firstEvent.plusHours(2).withZone(DateTimeZone.UTC), eventMap.get("survey:AAA-BBB-CCC:finished"));
+        
+        activityEventDao.deleteActivityEvents(healthCode);
+    }
+    
     private DynamoActivityEvent getEnrollmentEvent(DateTime timestamp) {
         return new DynamoActivityEvent.Builder().withHealthCode(healthCode)
             .withObjectType(ActivityEventObjectType.ENROLLMENT).withTimestamp(timestamp).build();
@@ -29,6 +29,7 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.ConsistentReads;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.SaveBehavior;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 @ContextConfiguration("classpath:test-context.xml")
@@ -158,4 +159,19 @@ public class DynamoBackfillDaoTest {
         assertEquals("op3", json.get("operation").asText());
         assertFalse(iterator.hasNext());
     }
+
+    @Test
+    public void testCheckpoint() {
+        assertTrue(backfillDao.getCheckpoints("checkpointTask").isEmpty());
+
+        // Create checkpoints back to back. These may land on the same millisecond, which the DAO should handle.
+        for (int i = 0; i < 3; i++) {
+            recordsToDelete.add(backfillDao.createCheckpoint("checkpointTask", "upload" + i));
+        }
+        // Regular records aren't checkpoints.
+        recordsToDelete.add(backfillDao.createRecord("checkpointTask", "study1", "account1", "op1"));
+
+        assertEquals(4, backfillDao.getRecordCount("checkpointTask"));
+        assertEquals(ImmutableSet.of("upload0", "upload1", "upload2"), backfillDao.getCheckpoints("checkpointTask"));
+    }
 }
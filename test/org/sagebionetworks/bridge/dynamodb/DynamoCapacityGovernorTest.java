@@ -0,0 +1,158 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.dynamodb.DynamoCapacityGovernor.Priority;
+
+@SuppressWarnings("unchecked")
+public class DynamoCapacityGovernorTest {
+    private static final double MAX_CAPACITY = 40.0;
+    private static final long MOCK_NOW_MILLIS = 1000000L;
+    private static final String TABLE_NAME = "test-table";
+
+    private DynamoCapacityGovernor governor;
+
+    @Before
+    public void setup() {
+        DateTimeUtils.setCurrentMillisFixed(MOCK_NOW_MILLIS);
+        governor = new DynamoCapacityGovernor(MAX_CAPACITY);
+    }
+
+    @After
+    public void cleanup() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void backgroundRequestsAskForConsumedCapacity() {
+        GetItemRequest request = new GetItemRequest().withTableName(TABLE_NAME);
+        DynamoCapacityGovernor.runWithPriority(Priority.BACKFILL, () -> governor.beforeMarshalling(request));
+        assertEquals(ReturnConsumedCapacity.TOTAL.toString(), request.getReturnConsumedCapacity());
+    }
+
+    @Test
+    public void interactiveRequestsDontAskForConsumedCapacity() {
+        GetItemRequest request = new GetItemRequest().withTableName(TABLE_NAME);
+        governor.beforeMarshalling(request);
+        assertNull(request.getReturnConsumedCapacity());
+    }
+
+    @Test
+    public void doesNotOverrideConsumedCapacitySetting() {
+        QueryRequest request = new QueryRequest().withTableName(TABLE_NAME).withReturnConsumedCapacity(
+                ReturnConsumedCapacity.INDEXES);
+        DynamoCapacityGovernor.runWithPriority(Priority.BACKFILL, () -> governor.beforeMarshalling(request));
+        assertEquals(ReturnConsumedCapacity.INDEXES.toString(), request.getReturnConsumedCapacity());
+    }
+
+    @Test
+    public void batchRequestTableNames() {
+        BatchWriteItemRequest request = new BatchWriteItemRequest().withRequestItems(ImmutableMap.of(
+                "table-a", ImmutableList.<WriteRequest>of(), "table-b", ImmutableList.<WriteRequest>of()));
+        assertEquals(ImmutableSet.of("table-a", "table-b"), DynamoCapacityGovernor.getTableNames(request));
+    }
+
+    @Test
+    public void throttlingHalvesBackgroundCapacity() {
+        Request<?> request = mockRequest(new GetItemRequest().withTableName(TABLE_NAME));
+        governor.afterError(request, null, new ProvisionedThroughputExceededException("test"));
+        assertEquals(MAX_CAPACITY / 2, governor.getBackgroundCapacity(TABLE_NAME), 0.001);
+
+        governor.afterError(request, null, new ProvisionedThroughputExceededException("test"));
+        assertEquals(MAX_CAPACITY / 4, governor.getBackgroundCapacity(TABLE_NAME), 0.001);
+
+        // Other tables aren't affected.
+        assertEquals(MAX_CAPACITY, governor.getBackgroundCapacity("other-table"), 0.001);
+    }
+
+    @Test
+    public void otherErrorsDontReduceCapacity() {
+        Request<?> request = mockRequest(new GetItemRequest().withTableName(TABLE_NAME));
+        governor.afterError(request, null, new IllegalStateException("test"));
+        assertEquals(MAX_CAPACITY, governor.getBackgroundCapacity(TABLE_NAME), 0.001);
+    }
+
+    @Test
+    public void capacityNeverDropsBelowMinimum() {
+        for (int i = 0; i < 20; i++) {
+            governor.getTableBudget(TABLE_NAME).throttled();
+        }
+        assertEquals(DynamoCapacityGovernor.MIN_CAPACITY, governor.getBackgroundCapacity(TABLE_NAME), 0.001);
+    }
+
+    @Test
+    public void backgroundSuccessGrowsCapacityBack() {
+        governor.getTableBudget(TABLE_NAME).throttled();
+        Response<?> response = new Response<>(new GetItemResult().withConsumedCapacity(new ConsumedCapacity()
+                .withTableName(TABLE_NAME).withCapacityUnits(1.0)), null);
+        Request<?> request = mockRequest(new GetItemRequest().withTableName(TABLE_NAME));
+
+        // Too soon. No change.
+        DynamoCapacityGovernor.runWithPriority(Priority.BACKFILL, () -> governor.afterResponse(request, response));
+        assertEquals(MAX_CAPACITY / 2, governor.getBackgroundCapacity(TABLE_NAME), 0.001);
+
+        // Interactive requests don't grow the background budget.
+        DateTimeUtils.setCurrentMillisFixed(MOCK_NOW_MILLIS + DynamoCapacityGovernor.INCREASE_INTERVAL_MILLIS);
+        governor.afterResponse(request, response);
+        assertEquals(MAX_CAPACITY / 2, governor.getBackgroundCapacity(TABLE_NAME), 0.001);
+
+        // Background request after the interval grows the budget by a step.
+        DynamoCapacityGovernor.runWithPriority(Priority.BACKFILL, () -> governor.afterResponse(request, response));
+        assertEquals(MAX_CAPACITY / 2 + MAX_CAPACITY * DynamoCapacityGovernor.INCREASE_FRACTION,
+                governor.getBackgroundCapacity(TABLE_NAME), 0.001);
+    }
+
+    @Test
+    public void lowerPrioritiesPayMoreFromSharedBudget() {
+        DynamoCapacityGovernor.TableBudget budget = governor.getTableBudget(TABLE_NAME);
+        budget.recordConsumed(Priority.BACKFILL, 3.0);
+        budget.recordConsumed(Priority.EXPORT, 3.0);
+
+        // Backfills and exports draw from the same budget. Exports pay double, so together they never exceed it.
+        assertEquals(3, budget.getPermits(Priority.BACKFILL));
+        assertEquals(6, budget.getPermits(Priority.EXPORT));
+
+        // No estimate yet: 1 capacity unit.
+        assertEquals(2, governor.getTableBudget("other-table").getPermits(Priority.EXPORT));
+    }
+
+    @Test
+    public void priorityIsRestored() {
+        assertEquals(Priority.INTERACTIVE, DynamoCapacityGovernor.getPriority());
+        Priority inner = DynamoCapacityGovernor.callWithPriority(Priority.EXPORT, () -> {
+            DynamoCapacityGovernor.runWithPriority(Priority.BACKFILL, () -> assertEquals(Priority.BACKFILL,
+                    DynamoCapacityGovernor.getPriority()));
+            return DynamoCapacityGovernor.getPriority();
+        });
+        assertEquals(Priority.EXPORT, inner);
+        assertEquals(Priority.INTERACTIVE, DynamoCapacityGovernor.getPriority());
+    }
+
+    private static Request<?> mockRequest(AmazonWebServiceRequest originalRequest) {
+        Request<?> request = mock(Request.class);
+        when(request.getOriginalRequest()).thenReturn(originalRequest);
+        return request;
+    }
+}
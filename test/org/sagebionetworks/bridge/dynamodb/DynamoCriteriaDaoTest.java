@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 import static org.sagebionetworks.bridge.models.OperatingSystem.IOS;
 
 import java.util.HashSet;
+import java.util.Map;
 
 import javax.annotation.Resource;
 
@@ -18,6 +19,7 @@ import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.models.Criteria;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 
 @ContextConfiguration("classpath:test-context.xml")
@@ -82,6 +84,33 @@ public class DynamoCriteriaDaoTest {
         assertNull(retrieved);
     }
     
+    @Test
+    public void canGetCriteriaMap() {
+        String key1 = BridgeUtils.generateGuid();
+        String key2 = BridgeUtils.generateGuid();
+        String missingKey = BridgeUtils.generateGuid();
+        try {
+            Criteria criteria1 = Criteria.create();
+            criteria1.setKey(key1);
+            criteria1.setLanguage("de");
+            criteriaDao.createOrUpdateCriteria(criteria1);
+            
+            Criteria criteria2 = Criteria.create();
+            criteria2.setKey(key2);
+            criteria2.setLanguage("fr");
+            criteriaDao.createOrUpdateCriteria(criteria2);
+            
+            Map<String,Criteria> criteriaMap = criteriaDao.getCriteriaMap(ImmutableList.of(key1, key2, missingKey));
+            assertEquals(2, criteriaMap.size());
+            assertEquals("de", criteriaMap.get(key1).getLanguage());
+            assertEquals("fr", criteriaMap.get(key2).getLanguage());
+            assertNull(criteriaMap.get(missingKey));
+        } finally {
+            criteriaDao.deleteCriteria(key1);
+            criteriaDao.deleteCriteria(key2);
+        }
+    }
+    
     @Test
     public void canCopy() {
         Criteria criteria = Criteria.create();
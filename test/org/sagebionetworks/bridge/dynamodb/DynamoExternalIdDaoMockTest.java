@@ -2,10 +2,15 @@ package org.sagebionetworks.bridge.dynamodb;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,17 +20,25 @@ import java.util.List;
 import java.util.Map;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.RateLimiter;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.dao.ExternalIdDao;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
@@ -45,6 +58,14 @@ public class DynamoExternalIdDaoMockTest {
     private QueryResultPage<DynamoExternalIdentifier> resultPage1;
     @Mock
     private QueryResultPage<DynamoExternalIdentifier> resultPage2;
+    @Captor
+    private ArgumentCaptor<DynamoDBQueryExpression<DynamoExternalIdentifier>> queryCaptor;
+    @Captor
+    private ArgumentCaptor<List<DynamoExternalIdentifier>> idListCaptor;
+    @Captor
+    private ArgumentCaptor<DynamoExternalIdentifier> idCaptor;
+    @Captor
+    private ArgumentCaptor<DynamoDBSaveExpression> saveExpressionCaptor;
 
     private DynamoExternalIdDao dao;
 
@@ -167,6 +188,134 @@ public class DynamoExternalIdDaoMockTest {
         verify(mapper, times(2)).queryPage(eq(DynamoExternalIdentifier.class), any());
     }
 
+    @Test
+    public void getUnassignedExternalIdsFromIndex() {
+        enableUnassignedIndex(true);
+        setupOnePage();
+
+        dao.getExternalIds(new StudyIdentifierImpl("studyId"), "BBB", 10, null, false);
+
+        verify(mapper).queryPage(eq(DynamoExternalIdentifier.class), queryCaptor.capture());
+        DynamoDBQueryExpression<DynamoExternalIdentifier> query = queryCaptor.getValue();
+        assertEquals(DynamoExternalIdentifier.UNASSIGNED_INDEX, query.getIndexName());
+        assertEquals("studyId", query.getHashKeyValues().getUnassignedStudyId());
+        assertNull(query.getHashKeyValues().getStudyId());
+        assertFalse(query.isConsistentRead());
+        // Only reserved IDs need to be filtered out
+        assertEquals(1, query.getQueryFilter().size());
+        assertTrue(query.getQueryFilter().containsKey("reservation"));
+        assertEquals("studyId", query.getExclusiveStartKey().get("unassignedStudyId").getS());
+        assertEquals("BBB", query.getExclusiveStartKey().get(IDENTIFIER).getS());
+    }
+
+    @Test
+    public void getAssignedExternalIdsDoesNotUseIndex() {
+        enableUnassignedIndex(true);
+        setupOnePage();
+
+        dao.getExternalIds(new StudyIdentifierImpl("studyId"), null, 10, null, true);
+
+        verify(mapper).queryPage(eq(DynamoExternalIdentifier.class), queryCaptor.capture());
+        DynamoDBQueryExpression<DynamoExternalIdentifier> query = queryCaptor.getValue();
+        assertNull(query.getIndexName());
+        assertTrue(query.isConsistentRead());
+        assertEquals(2, query.getQueryFilter().size());
+    }
+
+    @Test
+    public void getUnassignedExternalIdsWithoutIndexUsesFilter() {
+        enableUnassignedIndex(false);
+        setupOnePage();
+
+        dao.getExternalIds(new StudyIdentifierImpl("studyId"), null, 10, null, false);
+
+        verify(mapper).queryPage(eq(DynamoExternalIdentifier.class), queryCaptor.capture());
+        DynamoDBQueryExpression<DynamoExternalIdentifier> query = queryCaptor.getValue();
+        assertNull(query.getIndexName());
+        assertEquals(2, query.getQueryFilter().size());
+    }
+
+    @Test
+    public void addExternalIdsAddsThemToUnassignedIndex() {
+        enableUnassignedIndex(false);
+
+        dao.addExternalIds(new StudyIdentifierImpl("studyId"), Lists.newArrayList("AAA"));
+
+        verify(mapper).batchSave(idListCaptor.capture());
+        assertEquals("studyId", idListCaptor.getValue().get(0).getUnassignedStudyId());
+    }
+
+    @Test
+    public void backfillUnassignedIndex() {
+        DynamoExternalIdentifier unindexed = createId("AAA");
+        unindexed.setReservation(1000L);
+        DynamoExternalIdentifier indexed = createId("BBB");
+        indexed.setUnassignedStudyId("studyId");
+        DynamoExternalIdentifier assigned = createId("CCC");
+        assigned.setHealthCode("healthCode");
+        when(resultPage.getResults()).thenReturn(Lists.newArrayList(unindexed, indexed, assigned));
+        when(resultPage.getConsumedCapacity()).thenReturn(mock(ConsumedCapacity.class));
+        when(mapper.queryPage(eq(DynamoExternalIdentifier.class), any())).thenReturn(resultPage);
+
+        assertEquals(1, dao.backfillUnassignedIndex(new StudyIdentifierImpl("studyId")));
+
+        verify(mapper, never()).batchSave(any(List.class));
+        verify(mapper).save(idCaptor.capture(), saveExpressionCaptor.capture());
+        DynamoExternalIdentifier saved = idCaptor.getValue();
+        assertEquals("AAA", saved.getIdentifier());
+        assertEquals("studyId", saved.getUnassignedStudyId());
+        
+        // The write is conditioned on the ID not having been assigned or reserved since it was read.
+        Map<String, ExpectedAttributeValue> expected = saveExpressionCaptor.getValue().getExpected();
+        assertFalse(expected.get("healthCode").getExists());
+        assertFalse(expected.get("unassignedStudyId").getExists());
+        assertEquals("1000", expected.get("reservation").getValue().getN());
+    }
+
+    @Test
+    public void backfillUnassignedIndexSkipsIdsThatChanged() {
+        DynamoExternalIdentifier changed = createId("AAA");
+        DynamoExternalIdentifier unchanged = createId("BBB");
+        when(resultPage.getResults()).thenReturn(Lists.newArrayList(changed, unchanged));
+        when(resultPage.getConsumedCapacity()).thenReturn(mock(ConsumedCapacity.class));
+        when(mapper.queryPage(eq(DynamoExternalIdentifier.class), any())).thenReturn(resultPage);
+        doThrow(new ConditionalCheckFailedException("message")).when(mapper).save(eq(changed),
+                any(DynamoDBSaveExpression.class));
+
+        assertEquals(1, dao.backfillUnassignedIndex(new StudyIdentifierImpl("studyId")));
+
+        verify(mapper).save(eq(unchanged), any(DynamoDBSaveExpression.class));
+    }
+
+    @Test
+    public void backfillUnassignedIndexWithNothingToDo() {
+        DynamoExternalIdentifier indexed = createId("AAA");
+        indexed.setUnassignedStudyId("studyId");
+        when(resultPage.getResults()).thenReturn(Lists.newArrayList(indexed));
+        when(resultPage.getConsumedCapacity()).thenReturn(mock(ConsumedCapacity.class));
+        when(mapper.queryPage(eq(DynamoExternalIdentifier.class), any())).thenReturn(resultPage);
+
+        assertEquals(0, dao.backfillUnassignedIndex(new StudyIdentifierImpl("studyId")));
+
+        verify(mapper, never()).save(any(), any(DynamoDBSaveExpression.class));
+    }
+
+    private void enableUnassignedIndex(boolean enabled) {
+        Config config = mock(Config.class);
+        when(config.getInt(ExternalIdDao.CONFIG_KEY_ADD_LIMIT)).thenReturn(10);
+        when(config.getInt(ExternalIdDao.CONFIG_KEY_LOCK_DURATION)).thenReturn(30000);
+        when(config.getInt(ExternalIdDao.EXTERNAL_ID_GET_RATE)).thenReturn(5);
+        when(config.get(ExternalIdDao.CONFIG_KEY_UNASSIGNED_INDEX_ENABLED)).thenReturn(Boolean.toString(enabled));
+        dao.setConfig(config);
+        dao.setGetExternalIdRateLimiter(rateLimiter);
+    }
+
+    private void setupOnePage() {
+        when(resultPage.getResults()).thenReturn(createIds("CCC"));
+        when(resultPage.getConsumedCapacity()).thenReturn(mock(ConsumedCapacity.class));
+        when(mapper.queryPage(eq(DynamoExternalIdentifier.class), any())).thenReturn(resultPage);
+    }
+
     private void setupTwoPages() {
         List<DynamoExternalIdentifier> ids1 = createIds(
                 "AAA",
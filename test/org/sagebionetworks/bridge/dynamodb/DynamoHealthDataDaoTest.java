@@ -1,22 +1,33 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
 import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
@@ -165,4 +176,101 @@ public class DynamoHealthDataDaoTest {
         assertEquals(1, retVal.size());
         assertSame(record, retVal.get(0));
     }
+
+    @Test
+    public void getRecordInfoById() {
+        DynamoHealthDataRecord record = new DynamoHealthDataRecord();
+        record.setId("test ID");
+
+        QueryResultPage<DynamoHealthDataRecord> resultPage = new QueryResultPage<>();
+        resultPage.setResults(ImmutableList.of(record));
+
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        ArgumentCaptor<DynamoDBQueryExpression> arg = ArgumentCaptor.forClass(DynamoDBQueryExpression.class);
+        when(mockMapper.queryPage(eq(DynamoHealthDataRecord.class), arg.capture())).thenReturn(resultPage);
+
+        DynamoHealthDataDao dao = new DynamoHealthDataDao();
+        dao.setMapper(mockMapper);
+
+        // execute and validate
+        assertSame(record, dao.getRecordInfoById("test ID"));
+
+        DynamoDBQueryExpression<DynamoHealthDataRecord> expression = arg.getValue();
+        assertEquals("test ID", expression.getHashKeyValues().getId());
+
+        // Only the record info is read, never the data or metadata.
+        String projection = expression.getProjectionExpression();
+        for (String attributeName : DynamoHealthDataDao.RECORD_INFO_ATTRIBUTES) {
+            assertTrue(projection.contains("#" + attributeName));
+            assertEquals(attributeName, expression.getExpressionAttributeNames().get("#" + attributeName));
+        }
+        assertFalse(expression.getExpressionAttributeNames().containsValue("data"));
+        assertFalse(expression.getExpressionAttributeNames().containsValue("metadata"));
+    }
+
+    @Test
+    public void getRecordInfoByIdNotFound() {
+        QueryResultPage<DynamoHealthDataRecord> resultPage = new QueryResultPage<>();
+        resultPage.setResults(ImmutableList.of());
+
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        when(mockMapper.queryPage(eq(DynamoHealthDataRecord.class), any())).thenReturn(resultPage);
+
+        DynamoHealthDataDao dao = new DynamoHealthDataDao();
+        dao.setMapper(mockMapper);
+
+        assertNull(dao.getRecordInfoById("test ID"));
+    }
+
+    @Test
+    public void getRecordsForHealthCode() {
+        // The index returns more keys than fit in one batch load.
+        int numRecords = DynamoHealthDataDao.RECORD_LOAD_BATCH_SIZE + 5;
+        List<DynamoHealthDataRecord> keyList = Lists.newArrayList();
+        for (int i = 0; i < numRecords; i++) {
+            DynamoHealthDataRecord key = new DynamoHealthDataRecord();
+            key.setId("record-" + i);
+            keyList.add(key);
+        }
+        PaginatedQueryList<DynamoHealthDataRecord> mockQueryList = mock(PaginatedQueryList.class);
+        when(mockQueryList.iterator()).thenReturn(keyList.iterator());
+
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        ArgumentCaptor<DynamoDBQueryExpression> queryCaptor = ArgumentCaptor.forClass(DynamoDBQueryExpression.class);
+        when(mockMapper.query(eq(DynamoHealthDataRecord.class), queryCaptor.capture(),
+                any(DynamoDBMapperConfig.class))).thenReturn(mockQueryList);
+
+        // Batch loads return records out of order.
+        when(mockMapper.batchLoad(any(List.class))).thenAnswer(invocation -> {
+            List<Object> loadedList = Lists.newArrayList();
+            for (Object key : invocation.getArgumentAt(0, List.class)) {
+                String id = ((DynamoHealthDataRecord) key).getId();
+                DynamoHealthDataRecord record = new DynamoHealthDataRecord();
+                record.setId(id);
+                record.setCreatedOn(Long.parseLong(id.substring("record-".length())));
+                loadedList.add(0, record);
+            }
+            return ImmutableMap.of("HealthDataRecord3", loadedList);
+        });
+
+        DynamoHealthDataDao dao = new DynamoHealthDataDao();
+        dao.setMapper(mockMapper);
+
+        Iterator<HealthDataRecord> recordIterator = dao.getRecordsForHealthCode(TEST_HEALTH_CODE, 1000L, 2000L);
+
+        // Records are only loaded as the iterator advances.
+        verify(mockMapper, never()).batchLoad(any(List.class));
+        for (int i = 0; i < numRecords; i++) {
+            assertEquals("record-" + i, recordIterator.next().getId());
+        }
+        assertFalse(recordIterator.hasNext());
+        verify(mockMapper, times(2)).batchLoad(any(List.class));
+
+        DynamoDBQueryExpression<DynamoHealthDataRecord> query = queryCaptor.getValue();
+        assertEquals(DynamoHealthDataDao.HEALTH_CODE_CREATED_ON_INDEX, query.getIndexName());
+        assertEquals(TEST_HEALTH_CODE, query.getHashKeyValues().getHealthCode());
+        assertFalse(query.isConsistentRead());
+        assertEquals("1000", query.getRangeKeyConditions().get("createdOn").getAttributeValueList().get(0).getN());
+        assertEquals("2000", query.getRangeKeyConditions().get("createdOn").getAttributeValueList().get(1).getN());
+    }
 }
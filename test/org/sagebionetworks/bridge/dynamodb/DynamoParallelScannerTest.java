@@ -0,0 +1,151 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.config.Config;
+
+@SuppressWarnings("unchecked")
+public class DynamoParallelScannerTest {
+    private static final Map<String, AttributeValue> PAGE_KEY = ImmutableMap.of("key", new AttributeValue("page2"));
+
+    private ExecutorService executorService;
+    private DynamoDBMapper mockMapper;
+    private DynamoParallelScanner scanner;
+
+    @Before
+    public void setup() {
+        // 2 segments, and enough capacity that the test doesn't sleep
+        Config config = mock(Config.class);
+        when(config.getInt(DynamoParallelScanner.CONFIG_KEY_SEGMENTS)).thenReturn(2);
+        when(config.getInt(DynamoParallelScanner.CONFIG_KEY_READ_CAPACITY)).thenReturn(1000);
+
+        executorService = Executors.newFixedThreadPool(2);
+        mockMapper = mock(DynamoDBMapper.class);
+
+        scanner = new DynamoParallelScanner();
+        scanner.setConfig(config);
+        scanner.setExecutorService(executorService);
+    }
+
+    @After
+    public void cleanup() {
+        executorService.shutdown();
+    }
+
+    @Test
+    public void scansAllSegmentsAndPages() {
+        // Segment 0 has 2 pages. Segment 1 has 1 page.
+        when(mockMapper.scanPage(eq(String.class), any(DynamoDBScanExpression.class))).thenAnswer(invocation -> {
+            DynamoDBScanExpression scan = invocation.getArgumentAt(1, DynamoDBScanExpression.class);
+            assertEquals(2, scan.getTotalSegments().intValue());
+            assertEquals(ReturnConsumedCapacity.TOTAL.toString(), scan.getReturnConsumedCapacity());
+            assertEquals("test-filter", scan.getFilterExpression());
+
+            if (scan.getSegment() == 0 && scan.getExclusiveStartKey() == null) {
+                return makePage(ImmutableList.of("a", "b"), PAGE_KEY);
+            } else if (scan.getSegment() == 0) {
+                assertEquals(PAGE_KEY, scan.getExclusiveStartKey());
+                return makePage(ImmutableList.of("c"), null);
+            } else {
+                return makePage(ImmutableList.of("d"), null);
+            }
+        });
+
+        DynamoDBScanExpression scan = new DynamoDBScanExpression().withFilterExpression("test-filter");
+        List<String> resultList = scanner.scan(mockMapper, String.class, scan);
+        assertEquals(ImmutableSet.of("a", "b", "c", "d"), ImmutableSet.copyOf(resultList));
+        assertEquals(4, resultList.size());
+
+        // The caller's scan expression isn't modified.
+        assertEquals(null, scan.getSegment());
+        assertEquals(null, scan.getExclusiveStartKey());
+    }
+
+    @Test
+    public void streamsToConsumer() {
+        when(mockMapper.scanPage(eq(String.class), any(DynamoDBScanExpression.class))).thenAnswer(invocation -> {
+            DynamoDBScanExpression scan = invocation.getArgumentAt(1, DynamoDBScanExpression.class);
+            return makePage(ImmutableList.of("seg" + scan.getSegment()), null);
+        });
+
+        // The consumer isn't thread-safe. The scanner serializes calls to it.
+        Set<String> resultSet = Sets.newHashSet();
+        scanner.scan(mockMapper, String.class, new DynamoDBScanExpression(), resultSet::add);
+        assertEquals(ImmutableSet.of("seg0", "seg1"), resultSet);
+    }
+
+    @Test
+    public void segmentErrorThrows() {
+        when(mockMapper.scanPage(eq(String.class), any(DynamoDBScanExpression.class))).thenAnswer(invocation -> {
+            DynamoDBScanExpression scan = invocation.getArgumentAt(1, DynamoDBScanExpression.class);
+            if (scan.getSegment() == 1) {
+                throw new IllegalStateException("test exception");
+            }
+            return makePage(ImmutableList.of("a"), null);
+        });
+
+        try {
+            scanner.scan(mockMapper, String.class, new DynamoDBScanExpression());
+            fail("expected exception");
+        } catch (IllegalStateException ex) {
+            assertEquals("test exception", ex.getMessage());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void interactiveScanIsNotRateLimited() {
+        // 1 unit per second, and each page consumes 100 units. If the scan were rate limited, the third page of each
+        // segment would wait 100 seconds.
+        Config config = mock(Config.class);
+        when(config.getInt(DynamoParallelScanner.CONFIG_KEY_SEGMENTS)).thenReturn(2);
+        when(config.getInt(DynamoParallelScanner.CONFIG_KEY_READ_CAPACITY)).thenReturn(1);
+        scanner.setConfig(config);
+
+        when(mockMapper.scanPage(eq(String.class), any(DynamoDBScanExpression.class))).thenAnswer(invocation -> {
+            DynamoDBScanExpression scan = invocation.getArgumentAt(1, DynamoDBScanExpression.class);
+            Map<String, AttributeValue> startKey = scan.getExclusiveStartKey();
+            int pageNum = startKey == null ? 0 : Integer.parseInt(startKey.get("key").getS());
+            Map<String, AttributeValue> lastKey = pageNum < 2 ? ImmutableMap.of("key",
+                    new AttributeValue(String.valueOf(pageNum + 1))) : null;
+            ScanResultPage<String> page = makePage(ImmutableList.of(scan.getSegment() + "-" + pageNum), lastKey);
+            page.setConsumedCapacity(new ConsumedCapacity().withCapacityUnits(100.0));
+            return page;
+        });
+
+        List<String> resultList = scanner.scan(mockMapper, String.class, new DynamoDBScanExpression());
+        assertEquals(6, resultList.size());
+    }
+
+    private static ScanResultPage<String> makePage(List<String> resultList, Map<String, AttributeValue> lastKey) {
+        ScanResultPage<String> page = new ScanResultPage<>();
+        page.setResults(resultList);
+        page.setLastEvaluatedKey(lastKey);
+        page.setConsumedCapacity(new ConsumedCapacity().withCapacityUnits(2.0));
+        return page;
+    }
+}
@@ -1,16 +1,31 @@
 package org.sagebionetworks.bridge.dynamodb;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.function.Consumer;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.dao.ParticipantOption;
+import org.sagebionetworks.bridge.models.accounts.AllParticipantOptionsLookup;
 
+@SuppressWarnings({ "unchecked", "rawtypes" })
 public class DynamoParticipantOptionsDaoMockTest {
     @Test
     public void updateNoOptions() {
@@ -25,4 +40,74 @@ public class DynamoParticipantOptionsDaoMockTest {
         // No update done, it didn't change.
         verify(mockMapper, never()).save(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getOptionsForAllParticipantsStreamsFromParallelScan() {
+        // mock parallel scanner - stream two options objects to the consumer
+        DynamoParticipantOptions options1 = new DynamoParticipantOptions();
+        options1.setHealthCode("healthCode1");
+        options1.getOptions().put(ParticipantOption.EXTERNAL_IDENTIFIER.name(), "externalId1");
+
+        DynamoParticipantOptions options2 = new DynamoParticipantOptions();
+        options2.setHealthCode("healthCode2");
+        options2.getOptions().put(ParticipantOption.EXTERNAL_IDENTIFIER.name(), "externalId2");
+
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        DynamoParallelScanner mockScanner = mock(DynamoParallelScanner.class);
+        doAnswer(invocation -> {
+            Consumer<DynamoParticipantOptions> consumer = invocation.getArgumentAt(3, Consumer.class);
+            consumer.accept(options1);
+            consumer.accept(options2);
+            return null;
+        }).when(mockScanner).scan(same(mockMapper), eq(DynamoParticipantOptions.class),
+                any(DynamoDBScanExpression.class), any(Consumer.class));
+
+        DynamoParticipantOptionsDao optionsDao = new DynamoParticipantOptionsDao();
+        optionsDao.setDdbMapper(mockMapper);
+        optionsDao.setParallelScanner(mockScanner);
+
+        // execute and validate
+        AllParticipantOptionsLookup allLookup = optionsDao.getOptionsForAllParticipants(TestConstants.TEST_STUDY);
+        assertEquals("externalId1", allLookup.get("healthCode1").getString(ParticipantOption.EXTERNAL_IDENTIFIER));
+        assertEquals("externalId2", allLookup.get("healthCode2").getString(ParticipantOption.EXTERNAL_IDENTIFIER));
+        verify(mockMapper, never()).scan(any(), any());
+    }
+
+    @Test
+    public void getOptionsForHealthCodesBatchLoads() {
+        DynamoParticipantOptions options1 = new DynamoParticipantOptions();
+        options1.setHealthCode("healthCode1");
+        options1.getOptions().put(ParticipantOption.EXTERNAL_IDENTIFIER.name(), "externalId1");
+
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        ArgumentCaptor<List> keysCaptor = ArgumentCaptor.forClass(List.class);
+        when(mockMapper.batchLoad(keysCaptor.capture())).thenReturn(
+                ImmutableMap.of("ParticipantOptions", ImmutableList.of(options1)));
+
+        DynamoParticipantOptionsDao optionsDao = new DynamoParticipantOptionsDao();
+        optionsDao.setDdbMapper(mockMapper);
+
+        // execute and validate
+        AllParticipantOptionsLookup allLookup = optionsDao.getOptions(ImmutableList.of("healthCode1", "healthCode2",
+                "healthCode1"));
+        assertEquals("externalId1", allLookup.get("healthCode1").getString(ParticipantOption.EXTERNAL_IDENTIFIER));
+        assertEquals(null, allLookup.get("healthCode2").getString(ParticipantOption.EXTERNAL_IDENTIFIER));
+
+        // Duplicate health codes are only loaded once.
+        List<Object> keys = keysCaptor.getValue();
+        assertEquals(2, keys.size());
+        assertEquals("healthCode1", ((DynamoParticipantOptions)keys.get(0)).getHealthCode());
+        assertEquals("healthCode2", ((DynamoParticipantOptions)keys.get(1)).getHealthCode());
+    }
+
+    @Test
+    public void getOptionsForNoHealthCodes() {
+        DynamoDBMapper mockMapper = mock(DynamoDBMapper.class);
+        DynamoParticipantOptionsDao optionsDao = new DynamoParticipantOptionsDao();
+        optionsDao.setDdbMapper(mockMapper);
+
+        AllParticipantOptionsLookup allLookup = optionsDao.getOptions(ImmutableList.of());
+        assertTrue(allLookup.get("healthCode1").getOptions().isEmpty());
+        verify(mockMapper, never()).batchLoad(any(List.class));
+    }
+}
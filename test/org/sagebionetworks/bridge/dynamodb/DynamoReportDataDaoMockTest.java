@@ -0,0 +1,126 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import org.sagebionetworks.bridge.models.reports.ReportData;
+
+public class DynamoReportDataDaoMockTest {
+    private static final String KEY = "report:test-study";
+    private static final LocalDate DAY1 = LocalDate.parse("2017-01-01");
+    private static final LocalDate DAY2 = LocalDate.parse("2017-01-02");
+
+    @Mock
+    private DynamoDBMapper mapper;
+
+    private ExecutorService executorService;
+    private DynamoReportDataDao dao;
+
+    @Before
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+        executorService = Executors.newSingleThreadExecutor();
+
+        dao = new DynamoReportDataDao();
+        dao.setReportDataMapper(mapper);
+        dao.setReportDataExecutorService(executorService);
+    }
+
+    @After
+    public void after() {
+        executorService.shutdown();
+    }
+
+    @Test
+    public void batchSaveReturnsNoFailures() {
+        when(mapper.batchSave(anyListOf(ReportData.class))).thenReturn(ImmutableList.of());
+
+        assertTrue(dao.batchSaveReportData(ImmutableList.of(report(DAY1), report(DAY2))).isEmpty());
+    }
+
+    @Test
+    public void unprocessedItemsAreMappedToTheirRecords() {
+        ReportData report1 = report(DAY1);
+        ReportData report2 = report(DAY2);
+        when(mapper.batchSave(anyListOf(ReportData.class))).thenReturn(
+                ImmutableList.of(failedBatch(putRequest(KEY, DAY2.toString()))));
+
+        List<ReportData> failures = dao.batchSaveReportData(ImmutableList.of(report1, report2));
+
+        assertEquals(1, failures.size());
+        assertSame(report2, failures.get(0));
+    }
+
+    @Test
+    public void unmatchedUnprocessedItemFailsWholeBatch() {
+        ReportData report1 = report(DAY1);
+        ReportData report2 = report(DAY2);
+        when(mapper.batchSave(anyListOf(ReportData.class))).thenReturn(ImmutableList.of(failedBatch(
+                putRequest(KEY, DAY2.toString()), putRequest("some-other-key", DAY1.toString()))));
+
+        List<ReportData> failures = dao.batchSaveReportData(ImmutableList.of(report1, report2));
+
+        assertEquals(ImmutableList.of(report1, report2), failures);
+    }
+
+    @Test
+    public void onlyTheBatchWithTheUnmatchedItemFails() {
+        // Two batches. The first has an item that doesn't match, the second is saved.
+        List<ReportData> reports = Lists.newArrayList();
+        for (int i=0; i < DynamoReportDataDao.BATCH_SIZE + 1; i++) {
+            reports.add(report(DAY1.plusDays(i)));
+        }
+        when(mapper.batchSave(anyListOf(ReportData.class))).thenReturn(
+                ImmutableList.of(failedBatch(putRequest(null, null))), ImmutableList.of());
+
+        List<ReportData> failures = dao.batchSaveReportData(reports);
+
+        assertEquals(reports.subList(0, DynamoReportDataDao.BATCH_SIZE), failures);
+    }
+
+    private static ReportData report(LocalDate date) {
+        ReportData report = ReportData.create();
+        report.setKey(KEY);
+        report.setDate(date);
+        return report;
+    }
+
+    private static WriteRequest putRequest(String key, String date) {
+        if (key == null) {
+            return new WriteRequest().withPutRequest(new PutRequest().withItem(ImmutableMap.of()));
+        }
+        Map<String, AttributeValue> item = ImmutableMap.of("key", new AttributeValue().withS(key), "date",
+                new AttributeValue().withS(date));
+        return new WriteRequest().withPutRequest(new PutRequest().withItem(item));
+    }
+
+    private static FailedBatch failedBatch(WriteRequest... requests) {
+        FailedBatch failedBatch = new FailedBatch();
+        failedBatch.setUnprocessedItems(ImmutableMap.of("ReportData", ImmutableList.copyOf(requests)));
+        failedBatch.setException(new RuntimeException("throttled"));
+        return failedBatch;
+    }
+}
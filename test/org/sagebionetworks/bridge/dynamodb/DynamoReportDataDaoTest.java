@@ -1,8 +1,11 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
 
+import java.util.List;
+
 import org.joda.time.LocalDate;
 import org.junit.After;
 import org.junit.Before;
@@ -20,6 +23,7 @@ import org.sagebionetworks.bridge.models.reports.ReportType;
 
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
 
 @ContextConfiguration("classpath:test-context.xml")
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -105,6 +109,24 @@ public class DynamoReportDataDaoTest {
         assertEquals(0, dao.getReportData(reportDataKey, START_DATE, END_DATE).getTotal());
     }
     
+    @Test
+    public void canBatchSave() {
+        // More records than fit in one batch
+        List<ReportData> reports = Lists.newArrayList();
+        for (int i=0; i < DynamoReportDataDao.BATCH_SIZE + 5; i++) {
+            reports.add(createReport(END_DATE.minusDays(i), "a"+i, "b"+i));
+        }
+        
+        List<ReportData> failures = dao.batchSaveReportData(reports);
+        assertTrue(failures.isEmpty());
+        
+        DateRangeResourceList<? extends ReportData> results = dao.getReportData(reportDataKey,
+                END_DATE.minusDays(reports.size()-1), END_DATE);
+        assertEquals(reports.size(), results.getItems().size());
+        assertReportDataEqual(reports.get(reports.size()-1), results.getItems().get(0));
+        assertReportDataEqual(reports.get(0), results.getItems().get(reports.size()-1));
+    }
+    
     private ReportData createReport(LocalDate date, String fieldValue1, String fieldValue2) {
         ObjectNode node = JsonNodeFactory.instance.objectNode();
         node.put("field1", fieldValue1);
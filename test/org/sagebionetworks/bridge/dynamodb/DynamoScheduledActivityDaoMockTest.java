@@ -1,6 +1,8 @@
 package org.sagebionetworks.bridge.dynamodb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
@@ -11,6 +13,7 @@ import static org.sagebionetworks.bridge.TestConstants.ENROLLMENT;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -33,6 +36,8 @@ import org.sagebionetworks.bridge.models.schedules.ScheduleContext;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
 import com.google.common.collect.ImmutableList;
@@ -151,6 +156,38 @@ public class DynamoScheduledActivityDaoMockTest {
         verifyNoMoreInteractions(mapper);
     }
     
+    @SuppressWarnings({"unchecked","rawtypes"})
+    @Test
+    public void getActivitiesByGuidLoadsInOneBatch() throws Exception {
+        DynamoScheduledActivity activity = new DynamoScheduledActivity();
+        activity.setHealthCode(HEALTH_CODE);
+        activity.setGuid("BBB:2015-04-12T10:00:00.000");
+        Map<String,List<Object>> results = Maps.newHashMap();
+        results.put("some-table-name", Lists.newArrayList(activity));
+        when(mapper.batchLoad(any(List.class))).thenReturn(results);
+        
+        List<ScheduledActivity> loaded = activityDao.getActivitiesByGuid(HEALTH_CODE,
+                Lists.newArrayList("BBB:2015-04-12T10:00:00.000", "CCC:2015-04-12T10:00:00.000"));
+        assertEquals(1, loaded.size());
+        assertEquals(activity, loaded.get(0));
+        
+        ArgumentCaptor<List> keyCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mapper).batchLoad(keyCaptor.capture());
+        verifyNoMoreInteractions(mapper);
+        
+        List<DynamoScheduledActivity> keys = (List<DynamoScheduledActivity>)keyCaptor.getValue();
+        assertEquals(2, keys.size());
+        assertEquals(HEALTH_CODE, keys.get(0).getHealthCode());
+        assertEquals("BBB:2015-04-12T10:00:00.000", keys.get(0).getGuid());
+        assertEquals("CCC:2015-04-12T10:00:00.000", keys.get(1).getGuid());
+    }
+    
+    @Test
+    public void getActivitiesByGuidWithNoGuidsDoesNotCallDynamo() {
+        assertTrue(activityDao.getActivitiesByGuid(HEALTH_CODE, Lists.newArrayList()).isEmpty());
+        verifyNoMoreInteractions(mapper);
+    }
+    
     @SuppressWarnings("unchecked")
     public void testOnlyPersistedActivitiesReturned() {
         DateTime endsOn = NOW.plus(Period.parse("P2D"));
@@ -202,6 +239,30 @@ public class DynamoScheduledActivityDaoMockTest {
         assertEquals(2, argument.getValue().size());
     }
 
+    @SuppressWarnings({"unchecked","rawtypes"})
+    @Test
+    public void canGetActivitiesForUser() {
+        DynamoScheduledActivity activity1 = new DynamoScheduledActivity();
+        DynamoScheduledActivity activity2 = new DynamoScheduledActivity();
+        PaginatedQueryList<DynamoScheduledActivity> queryResults = mock(PaginatedQueryList.class);
+        when(queryResults.iterator()).thenReturn(Lists.newArrayList(activity1, activity2).iterator());
+
+        ArgumentCaptor<DynamoDBQueryExpression> queryArg = ArgumentCaptor.forClass(DynamoDBQueryExpression.class);
+        ArgumentCaptor<DynamoDBMapperConfig> configArg = ArgumentCaptor.forClass(DynamoDBMapperConfig.class);
+        when(mapper.query((Class<DynamoScheduledActivity>) any(Class.class), queryArg.capture(), configArg.capture()))
+                .thenReturn(queryResults);
+
+        Iterator<? extends ScheduledActivity> iterator = activityDao.getActivitiesForUser("AAA");
+        assertSame(activity1, iterator.next());
+        assertSame(activity2, iterator.next());
+        assertFalse(iterator.hasNext());
+
+        ScheduledActivity hashKey = (ScheduledActivity)queryArg.getValue().getHashKeyValues();
+        assertEquals("AAA", hashKey.getHealthCode());
+        // Pages aren't kept in memory once they've been iterated over.
+        assertEquals(PaginationLoadingStrategy.ITERATION_ONLY, configArg.getValue().getPaginationLoadingStrategy());
+    }
+
     @SuppressWarnings({"unchecked","rawtypes"})
     @Test
     public void canUpdateActivities() {
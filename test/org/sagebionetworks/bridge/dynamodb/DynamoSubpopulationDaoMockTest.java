@@ -14,6 +14,7 @@ import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY_IDENTIFIER;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.junit.Before;
@@ -37,7 +38,10 @@ import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -76,6 +80,10 @@ public class DynamoSubpopulationDaoMockTest {
         doReturn(page).when(mapper).query(eq(DynamoSubpopulation.class), any());
         
         when(criteriaDao.getCriteria(any())).thenReturn(CRITERIA);
+        when(criteriaDao.getCriteriaMap(any())).thenAnswer(invocation -> {
+            Collection<String> keys = invocation.getArgumentAt(0, Collection.class);
+            return Maps.toMap(keys, key -> CRITERIA);
+        });
         when(criteriaDao.createOrUpdateCriteria(any())).thenAnswer(invocation -> {
             return invocation.getArgumentAt(0, Criteria.class);
         });
@@ -133,13 +141,13 @@ public class DynamoSubpopulationDaoMockTest {
         Criteria criteria = subpop.getCriteria();
         assertEquals(CRITERIA, criteria);
         
-        verify(criteriaDao).getCriteria(criteria.getKey());
+        verify(criteriaDao).getCriteriaMap(ImmutableList.of(criteria.getKey()));
         verifyNoMoreInteractions(criteriaDao);
     }
 
     @Test
     public void getSubpopulationsForUserConstructsCriteriaIfNotSaved() {
-        when(criteriaDao.getCriteria(any())).thenReturn(null);
+        when(criteriaDao.getCriteriaMap(any())).thenReturn(ImmutableMap.of());
         CriteriaContext context = createContext();
         
         List<Subpopulation> subpops = dao.getSubpopulationsForUser(context);
@@ -147,7 +155,7 @@ public class DynamoSubpopulationDaoMockTest {
         Criteria criteria = subpop.getCriteria();
         assertNotNull(criteria);
         
-        verify(criteriaDao).getCriteria(criteria.getKey());
+        verify(criteriaDao).getCriteriaMap(ImmutableList.of(criteria.getKey()));
     }
 
     @Test
@@ -210,9 +218,9 @@ public class DynamoSubpopulationDaoMockTest {
         assertEquals(CRITERIA, list.get(0).getCriteria());
         
         // Making a point of the fact that there is no criteria object
-        doReturn(null).when(criteriaDao).getCriteria(any());
+        doReturn(ImmutableMap.of()).when(criteriaDao).getCriteriaMap(any());
         
-        verify(criteriaDao).getCriteria(list.get(0).getCriteria().getKey());
+        verify(criteriaDao).getCriteriaMap(ImmutableList.of(list.get(0).getCriteria().getKey()));
     }
     
     @Test
@@ -223,7 +231,8 @@ public class DynamoSubpopulationDaoMockTest {
         assertEquals(CRITERIA, list.get(0).getCriteria());
         
         // In this case it actually returns a criteria object.
-        verify(criteriaDao).getCriteria(list.get(0).getCriteria().getKey());
+        verify(criteriaDao).getCriteriaMap(ImmutableList.of(list.get(0).getCriteria().getKey()));
+        verify(criteriaDao, never()).getCriteria(any());
     }
     
     @Test
@@ -247,7 +256,7 @@ public class DynamoSubpopulationDaoMockTest {
     @Test
     public void criteriaTableTakesPrecedenceOnGetList() {
         reset(criteriaDao);
-        doReturn(CRITERIA).when(criteriaDao).getCriteria(any());
+        doReturn(ImmutableMap.of("subpopulation:"+SUBPOP_GUID, CRITERIA)).when(criteriaDao).getCriteriaMap(any());
         
         List<Subpopulation> subpops = dao.getSubpopulations(TEST_STUDY, false, true);
         Criteria retrievedCriteria = subpops.get(0).getCriteria();
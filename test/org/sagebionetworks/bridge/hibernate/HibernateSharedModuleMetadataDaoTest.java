@@ -1,16 +1,21 @@
 package org.sagebionetworks.bridge.hibernate;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.PersistenceException;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
@@ -136,17 +141,18 @@ public class HibernateSharedModuleMetadataDaoTest {
     public void query() {
         // mock query
         Query<SharedModuleMetadata> mockQuery = mock(Query.class);
-        when(mockSession.createQuery("from HibernateSharedModuleMetadata where foo='bar'", SharedModuleMetadata.class))
-                .thenReturn(mockQuery);
+        when(mockSession.createQuery("from HibernateSharedModuleMetadata metadata where (foo='bar')",
+                SharedModuleMetadata.class)).thenReturn(mockQuery);
 
         List<SharedModuleMetadata> hibernateOutputMetadataList = ImmutableList.of(SharedModuleMetadata.create());
         when(mockQuery.list()).thenReturn(hibernateOutputMetadataList);
 
         // execute and validate
-        List<SharedModuleMetadata> daoOutputMetadataList = dao.queryMetadata("foo='bar'");
+        List<SharedModuleMetadata> daoOutputMetadataList = dao.queryMetadata(null, false, false, "foo='bar'", null);
         assertSame(hibernateOutputMetadataList, daoOutputMetadataList);
 
         // validate backends
+        verify(mockQuery, never()).setParameter(anyString(), any());
         verifySessionAndTransaction();
     }
 
@@ -154,32 +160,86 @@ public class HibernateSharedModuleMetadataDaoTest {
     public void nullQuery() {
         // mock query
         Query<SharedModuleMetadata> mockQuery = mock(Query.class);
-        when(mockSession.createQuery("from HibernateSharedModuleMetadata", SharedModuleMetadata.class))
+        when(mockSession.createQuery("from HibernateSharedModuleMetadata metadata", SharedModuleMetadata.class))
                 .thenReturn(mockQuery);
 
         List<SharedModuleMetadata> hibernateOutputMetadataList = ImmutableList.of(SharedModuleMetadata.create());
         when(mockQuery.list()).thenReturn(hibernateOutputMetadataList);
 
         // execute and validate
-        List<SharedModuleMetadata> daoOutputMetadataList = dao.queryMetadata(null);
+        List<SharedModuleMetadata> daoOutputMetadataList = dao.queryMetadata(null, false, false, null, null);
+        assertSame(hibernateOutputMetadataList, daoOutputMetadataList);
+
+        // validate backends
+        verifySessionAndTransaction();
+    }
+
+    @Test
+    public void queryWithAllFilters() {
+        Set<String> tags = ImmutableSet.of("foo", "bar");
+
+        // mock query
+        Query<SharedModuleMetadata> mockQuery = mock(Query.class);
+        when(mockSession.createQuery(HibernateSharedModuleMetadataDao.makeQueryString(MODULE_ID, true, true, null,
+                tags), SharedModuleMetadata.class)).thenReturn(mockQuery);
+
+        List<SharedModuleMetadata> hibernateOutputMetadataList = ImmutableList.of(SharedModuleMetadata.create());
+        when(mockQuery.list()).thenReturn(hibernateOutputMetadataList);
+
+        // execute and validate
+        List<SharedModuleMetadata> daoOutputMetadataList = dao.queryMetadata(MODULE_ID, true, true, null, tags);
         assertSame(hibernateOutputMetadataList, daoOutputMetadataList);
 
         // validate backends
+        verify(mockQuery).setParameter("id", MODULE_ID);
+        verify(mockQuery).setParameterList("tags", tags);
         verifySessionAndTransaction();
     }
 
+    @Test
+    public void makeQueryStringMostRecent() {
+        assertEquals("from HibernateSharedModuleMetadata metadata where metadata.version = (select " +
+                "max(latest.version) from HibernateSharedModuleMetadata latest where latest.id = metadata.id)",
+                HibernateSharedModuleMetadataDao.makeQueryString(null, true, false, null, null));
+    }
+
+    @Test
+    public void makeQueryStringMostRecentPublished() {
+        // The latest published version, not the latest version if it happens to be published.
+        assertEquals("from HibernateSharedModuleMetadata metadata where metadata.id = :id and " +
+                "metadata.published = true and metadata.version = (select max(latest.version) from " +
+                "HibernateSharedModuleMetadata latest where latest.id = metadata.id and latest.published = true)",
+                HibernateSharedModuleMetadataDao.makeQueryString(MODULE_ID, true, true, null, null));
+    }
+
+    @Test
+    public void makeQueryStringPublishedWhereAndTags() {
+        assertEquals("from HibernateSharedModuleMetadata metadata where metadata.published = true and " +
+                "(foo='bar' or baz='qux') and exists (select tagged.id from HibernateSharedModuleMetadata tagged " +
+                "join tagged.tags tag where tagged.id = metadata.id and tagged.version = metadata.version and " +
+                "tag in (:tags))", HibernateSharedModuleMetadataDao.makeQueryString(null, false, true,
+                "foo='bar' or baz='qux'", ImmutableSet.of("foo")));
+    }
+
+    @Test
+    public void makeQueryStringEmptyTags() {
+        assertEquals("from HibernateSharedModuleMetadata metadata",
+                HibernateSharedModuleMetadataDao.makeQueryString(null, false, false, "  ", ImmutableSet.of()));
+    }
+
     @Test(expected = BadRequestException.class)
     public void queryBadQuery() {
-        when(mockSession.createQuery("from HibernateSharedModuleMetadata where blargg", SharedModuleMetadata.class))
-                .thenThrow(new IllegalArgumentException(new QuerySyntaxException("error message")));
-        dao.queryMetadata("blargg");
+        when(mockSession.createQuery("from HibernateSharedModuleMetadata metadata where (blargg)",
+                SharedModuleMetadata.class)).thenThrow(new IllegalArgumentException(new QuerySyntaxException(
+                "error message")));
+        dao.queryMetadata(null, false, false, "blargg", null);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void queryOtherException() {
-        when(mockSession.createQuery("from HibernateSharedModuleMetadata where foo='bar'", SharedModuleMetadata.class))
-                .thenThrow(new IllegalArgumentException());
-        dao.queryMetadata("foo='bar'");
+        when(mockSession.createQuery("from HibernateSharedModuleMetadata metadata where (foo='bar')",
+                SharedModuleMetadata.class)).thenThrow(new IllegalArgumentException());
+        dao.queryMetadata(null, false, false, "foo='bar'", null);
     }
 
     @Test
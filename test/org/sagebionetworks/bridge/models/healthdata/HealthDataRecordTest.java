@@ -11,6 +11,7 @@ import java.util.HashSet;
 import java.util.Map;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -140,6 +141,24 @@ public class HealthDataRecordTest {
         assertNull(record.getUserDataGroups());
     }
 
+    @Test
+    public void storedJsonIsParsedOnFirstAccess() throws Exception {
+        DynamoHealthDataRecord record = new DynamoHealthDataRecord();
+        record.setDataJson("{\"myData\":\"myDataValue\"}");
+        record.setMetadataJson("{\"myMetadata\":\"myMetaValue\"}");
+
+        // Unread JSON goes back to DynamoDB as is.
+        assertEquals("{\"myData\":\"myDataValue\"}", record.getDataJson());
+        assertEquals("{\"myMetadata\":\"myMetaValue\"}", record.getMetadataJson());
+
+        assertEquals("myDataValue", record.getData().get("myData").textValue());
+        assertEquals("myMetaValue", record.getMetadata().get("myMetadata").textValue());
+
+        // Changes to the parsed JSON are saved.
+        ((ObjectNode) record.getData()).put("myData", "newValue");
+        assertEquals("newValue", BridgeObjectMapper.get().readTree(record.getDataJson()).get("myData").textValue());
+    }
+
     @Test(expected = InvalidEntityException.class)
     public void jsonNullData() throws Exception {
         JsonNode data = BridgeObjectMapper.get().readTree("null");
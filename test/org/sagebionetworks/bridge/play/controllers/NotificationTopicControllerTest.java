@@ -27,6 +27,7 @@ import org.sagebionetworks.bridge.exceptions.NotAuthenticatedException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.sagebionetworks.bridge.models.notifications.NotificationDeliveryStatus;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationTopic;
 import org.sagebionetworks.bridge.models.notifications.SubscriptionRequest;
@@ -164,9 +165,15 @@ public class NotificationTopicControllerTest {
 
         NotificationMessage message = TestUtils.getNotificationMessage();
         TestUtils.mockPlayContextWithJson(message);
+        NotificationDeliveryStatus status = new NotificationDeliveryStatus("deliveryId",
+                NotificationDeliveryStatus.State.IN_PROGRESS, 1, 0, 0, 0, null);
+        doReturn(status).when(mockTopicService).sendNotification(eq(TEST_STUDY), eq(GUID), any());
 
         Result result = controller.sendNotification(GUID);
         assertEquals(202, result.status());
+        JsonNode node = getResultNode(result);
+        assertEquals("deliveryId", node.get("deliveryId").asText());
+        assertEquals("IN_PROGRESS", node.get("state").asText());
 
         verify(mockTopicService).sendNotification(eq(TEST_STUDY), eq(GUID), messageCaptor.capture());
         NotificationMessage captured = messageCaptor.getValue();
@@ -174,6 +181,20 @@ public class NotificationTopicControllerTest {
         assertEquals("a message", captured.getMessage());
     }
 
+    @Test
+    public void getNotificationDeliveryStatus() throws Exception {
+        doReturn(mockUserSession).when(controller).getAuthenticatedSession(RESEARCHER);
+        NotificationDeliveryStatus status = new NotificationDeliveryStatus("deliveryId",
+                NotificationDeliveryStatus.State.FAILED, 1, 0, 1, 0, Lists.newArrayList("bad parameter"));
+        doReturn(status).when(mockTopicService).getDeliveryStatus(TEST_STUDY, GUID, "deliveryId");
+
+        Result result = controller.getNotificationDeliveryStatus(GUID, "deliveryId");
+        assertEquals(200, result.status());
+        JsonNode node = getResultNode(result);
+        assertEquals("FAILED", node.get("state").asText());
+        assertEquals("bad parameter", node.get("errors").get(0).asText());
+    }
+
     // Test permissions of all the methods... DEVELOPER or DEVELOPER RESEARCHER. Do
     // something that
 
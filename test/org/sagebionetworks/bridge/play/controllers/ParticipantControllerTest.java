@@ -63,6 +63,7 @@ import org.sagebionetworks.bridge.models.accounts.IdentifierHolder;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.accounts.Withdrawal;
+import org.sagebionetworks.bridge.models.notifications.NotificationDeliveryStatus;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
 import org.sagebionetworks.bridge.models.schedules.ScheduledActivity;
@@ -702,9 +703,17 @@ public class ParticipantControllerTest {
         NotificationMessage message = TestUtils.getNotificationMessage();
         
         TestUtils.mockPlayContextWithJson(message);
+        NotificationDeliveryStatus status = new NotificationDeliveryStatus("deliveryId",
+                NotificationDeliveryStatus.State.IN_PROGRESS, 2, 0, 0, 0, null);
+        when(mockParticipantService.sendNotification(eq(study), eq(ID), any())).thenReturn(status);
+        
         Result result = controller.sendNotification(ID);
         
-        TestUtils.assertResult(result, 202, "Message has been sent to external notification service.");
+        assertEquals(202, result.status());
+        JsonNode node = TestUtils.getJson(result);
+        assertEquals("deliveryId", node.get("deliveryId").asText());
+        assertEquals("IN_PROGRESS", node.get("state").asText());
+        assertEquals(2, node.get("endpointCount").asInt());
         
         verify(mockParticipantService).sendNotification(eq(study), eq(ID), messageCaptor.capture());
         NotificationMessage captured = messageCaptor.getValue();
@@ -713,6 +722,20 @@ public class ParticipantControllerTest {
         assertEquals("a message", captured.getMessage());
     }
 
+    @Test
+    public void getNotificationDeliveryStatus() throws Exception {
+        NotificationDeliveryStatus status = new NotificationDeliveryStatus("deliveryId",
+                NotificationDeliveryStatus.State.SENT, 2, 1, 0, 1, null);
+        when(mockParticipantService.getNotificationDeliveryStatus(study, ID, "deliveryId")).thenReturn(status);
+        
+        Result result = controller.getNotificationDeliveryStatus(ID, "deliveryId");
+        
+        assertEquals(200, result.status());
+        JsonNode node = TestUtils.getJson(result);
+        assertEquals("SENT", node.get("state").asText());
+        assertEquals(1, node.get("disabledCount").asInt());
+    }
+
     @Test(expected = UnauthorizedException.class)
     public void getParticipantsForWorkerOnly() throws Exception {
         DateTime start = DateTime.now();
@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.play.controllers;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
@@ -38,8 +39,10 @@ import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.ConsentStatus;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.sagebionetworks.bridge.models.reports.ParticipantReportEntry;
 import org.sagebionetworks.bridge.models.reports.ReportData;
 import org.sagebionetworks.bridge.models.reports.ReportDataKey;
+import org.sagebionetworks.bridge.models.reports.ReportEntryStatus;
 import org.sagebionetworks.bridge.models.reports.ReportIndex;
 import org.sagebionetworks.bridge.models.reports.ReportType;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
@@ -97,6 +100,9 @@ public class ReportControllerTest {
     @Captor
     ArgumentCaptor<ReportIndex> reportDataIndex;
     
+    @Captor
+    ArgumentCaptor<List<ParticipantReportEntry>> reportEntriesCaptor;
+    
     ReportController controller;
     
     UserSession session;
@@ -333,6 +339,34 @@ public class ReportControllerTest {
         }
     }
     
+    @Test
+    public void saveParticipantReportsForWorker() throws Exception {
+        String json = TestUtils.createJson("[{'healthCode':'"+OTHER_PARTICIPANT_HEALTH_CODE+
+                "','date':'2015-02-12','data':['A','B']},{'healthCode':'"+OTHER_PARTICIPANT_HEALTH_CODE+
+                "','date':'2015-02-13','data':['C']}]");
+        TestUtils.mockPlayContextWithJson(json);
+        doReturn(Lists.newArrayList(ReportEntryStatus.saved(0), ReportEntryStatus.failed(1, "Not saved")))
+                .when(mockReportService).saveParticipantReports(eq(TEST_STUDY), eq(REPORT_ID), any());
+        
+        Result result = controller.saveParticipantReportsForWorker(REPORT_ID);
+        assertEquals(200, result.status());
+        
+        verify(mockReportService).saveParticipantReports(eq(TEST_STUDY), eq(REPORT_ID), reportEntriesCaptor.capture());
+        List<ParticipantReportEntry> entries = reportEntriesCaptor.getValue();
+        assertEquals(2, entries.size());
+        assertEquals(OTHER_PARTICIPANT_HEALTH_CODE, entries.get(0).getHealthCode());
+        assertEquals(LocalDate.parse("2015-02-12"), entries.get(0).getDate());
+        assertEquals("B", entries.get(0).getData().get(1).asText());
+        assertEquals(LocalDate.parse("2015-02-13"), entries.get(1).getDate());
+        
+        JsonNode node = BridgeObjectMapper.get().readTree(Helpers.contentAsString(result));
+        JsonNode items = node.get("items");
+        assertEquals(2, items.size());
+        assertTrue(items.get(0).get("saved").asBoolean());
+        assertEquals(1, items.get(1).get("index").asInt());
+        assertEquals("Not saved", items.get(1).get("message").asText());
+    }
+    
     @Test
     public void saveStudyReportData() throws Exception {
         String json = TestUtils.createJson("{'date':'2015-02-12','data':{'field1':'Last','field2':'Name'}}");
@@ -22,13 +22,20 @@ import static org.sagebionetworks.bridge.Roles.RESEARCHER;
 import static org.sagebionetworks.bridge.Roles.WORKER;
 import static org.sagebionetworks.bridge.TestUtils.mockPlayContext;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.joda.time.DateTime;
 import org.junit.Before;
@@ -38,6 +45,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import play.core.j.JavaResultExtractor;
+import play.mvc.Http;
 import play.mvc.Result;
 import play.test.Helpers;
 
@@ -54,6 +62,7 @@ import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.json.DefaultObjectMapper;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
+import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.VersionHolder;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
@@ -62,6 +71,7 @@ import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyAndUsers;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.models.studies.StudySummaryList;
 import org.sagebionetworks.bridge.models.studies.SynapseProjectIdTeamIdHolder;
 import org.sagebionetworks.bridge.models.upload.Upload;
 import org.sagebionetworks.bridge.services.EmailVerificationService;
@@ -448,8 +458,7 @@ public class StudyControllerTest {
     
     @Test
     public void getSummaryStudiesWithFormatWorks() throws Exception {
-        List<Study> studies = Lists.newArrayList(new DynamoStudy());
-        doReturn(studies).when(mockStudyService).getStudies();
+        doReturn(summaryList(new DynamoStudy())).when(mockStudyService).getStudySummaryList();
         
         Result result = controller.getAllStudies("summary", null);
         assertEquals(200, result.status());
@@ -461,8 +470,7 @@ public class StudyControllerTest {
 
     @Test
     public void getSummaryStudiesWithSummaryWorks() throws Exception {
-        List<Study> studies = Lists.newArrayList(new DynamoStudy());
-        doReturn(studies).when(mockStudyService).getStudies();
+        doReturn(summaryList(new DynamoStudy())).when(mockStudyService).getStudySummaryList();
         
         Result result = controller.getAllStudies(null, "true");
         assertEquals(200, result.status());
@@ -473,20 +481,15 @@ public class StudyControllerTest {
     }
 
     @Test
-    public void getSummaryStudiesWithInactiveOnes() throws Exception {
+    public void getSummaryStudiesReturnsSummaryList() throws Exception {
         DynamoStudy testStudy1 = new DynamoStudy();
         testStudy1.setName("test_study_1");
         testStudy1.setActive(true);
-
-        DynamoStudy testStudy2 = new DynamoStudy();
-        testStudy2.setName("test_study_2");
-
-        List<Study> studies = Lists.newArrayList(testStudy1, testStudy2);
-        doReturn(studies).when(mockStudyService).getStudies();
+        StudySummaryList summaries = summaryList(testStudy1);
+        doReturn(summaries).when(mockStudyService).getStudySummaryList();
 
         Result result = controller.getAllStudies("summary", null);
         assertEquals(200, result.status());
-        // only active studies will be returned
         byte[] body = JavaResultExtractor.getBody(result, 0L);
         JsonNode recordJsonNode = DefaultObjectMapper.INSTANCE.readTree(body);
         JsonNode items = recordJsonNode.get("items");
@@ -495,8 +498,52 @@ public class StudyControllerTest {
         assertEquals("test_study_1", study.get("name").asText());
         assertFalse(Helpers.contentAsString(result).contains("healthCodeExportEnabled"));
 
+        Http.Response response = Http.Context.current().response();
+        verify(response).setHeader("ETag", summaries.getETag());
+        verify(mockStudyService, never()).getStudies();
         verify(controller, never()).getAuthenticatedSession(ADMIN);
     }
+
+    @Test
+    public void getSummaryStudiesWithMatchingETagIsNotModified() throws Exception {
+        StudySummaryList summaries = summaryList(new DynamoStudy());
+        doReturn(summaries).when(mockStudyService).getStudySummaryList();
+        Map<String,String[]> headers = Maps.newHashMap();
+        headers.put("If-None-Match", new String[] {"\"other\", " + summaries.getETag()});
+        TestUtils.mockPlayContextWithJson("{}", headers);
+
+        Result result = controller.getAllStudies("summary", null);
+        assertEquals(304, result.status());
+        assertEquals(0, JavaResultExtractor.getBody(result, 0L).length);
+    }
+
+    @Test
+    public void getSummaryStudiesWithOtherETagIsReturned() throws Exception {
+        doReturn(summaryList(new DynamoStudy())).when(mockStudyService).getStudySummaryList();
+        Map<String,String[]> headers = Maps.newHashMap();
+        headers.put("If-None-Match", new String[] {"\"other\""});
+        TestUtils.mockPlayContextWithJson("{}", headers);
+
+        Result result = controller.getAllStudies("summary", null);
+        assertEquals(200, result.status());
+    }
+
+    @Test
+    public void getSummaryStudiesIsCompressedWhenClientAcceptsGzip() throws Exception {
+        StudySummaryList summaries = summaryList(new DynamoStudy());
+        doReturn(summaries).when(mockStudyService).getStudySummaryList();
+        Map<String,String[]> headers = Maps.newHashMap();
+        headers.put("Accept-Encoding", new String[] {"gzip, deflate"});
+        TestUtils.mockPlayContextWithJson("{}", headers);
+
+        Result result = controller.getAllStudies("summary", null);
+        assertEquals(200, result.status());
+        byte[] body = JavaResultExtractor.getBody(result, 0L);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals(summaries.getJson(), new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8));
+        }
+        verify(Http.Context.current().response()).setHeader("Content-Encoding", "gzip");
+    }
     
     @Test
     public void getFullStudiesWorks() throws Exception {
@@ -510,6 +557,11 @@ public class StudyControllerTest {
         assertTrue(Helpers.contentAsString(result).contains("healthCodeExportEnabled"));
     }
         
+    private static StudySummaryList summaryList(Study... studies) throws Exception {
+        return new StudySummaryList(Study.STUDY_LIST_WRITER.writeValueAsString(
+                new ResourceList<Study>(Lists.newArrayList(studies))));
+    }
+    
     private void testRoleAccessToCurrentStudy(Roles role) throws Exception {
         StudyParticipant participant = new StudyParticipant.Builder().withRoles(Sets.newHashSet(role)).build();
         UserSession session = new UserSession(participant);
@@ -35,6 +35,7 @@ import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.cache.ViewCache;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
 import org.sagebionetworks.bridge.exceptions.ConsentRequiredException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
@@ -105,7 +106,7 @@ public class SurveyControllerTest {
         cacheMap = Maps.newHashMap();
         viewCache = new ViewCache();
         CacheProvider provider = mock(CacheProvider.class);
-        when(provider.getString(anyString())).thenAnswer(new Answer<String>() {
+        when(provider.getView(anyString())).thenAnswer(new Answer<String>() {
             @Override
             public String answer(InvocationOnMock invocation) throws Throwable {
                 String key = invocation.getArgumentAt(0, String.class);
@@ -120,7 +121,7 @@ public class SurveyControllerTest {
                 cacheMap.put(key, value);
                 return null;
             }
-        }).when(provider).setString(anyString(), anyString(), anyInt());
+        }).when(provider).setView(anyString(), anyString(), anyInt());
         doAnswer(new Answer<Void>() {
             @Override
             public Void answer(InvocationOnMock invocation) throws Throwable {
@@ -130,6 +131,7 @@ public class SurveyControllerTest {
             }
         }).when(provider).removeString(anyString());
         viewCache.setCacheProvider(provider);
+        viewCache.setDistributedLockDao(mock(DistributedLockDao.class));
         
         studyService = mock(StudyService.class);
         Study study = Study.create();
@@ -30,6 +30,7 @@ import org.sagebionetworks.bridge.Roles;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.cache.ViewCache;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.models.CriteriaContext;
@@ -74,6 +75,9 @@ public class UserProfileControllerTest {
     @Mock
     private CacheProvider cacheProvider;
     
+    @Mock
+    private DistributedLockDao lockDao;
+    
     @Mock
     private ExternalIdService externalIdService;
     
@@ -114,6 +118,7 @@ public class UserProfileControllerTest {
         
         ViewCache viewCache = new ViewCache();
         viewCache.setCacheProvider(cacheProvider);
+        viewCache.setDistributedLockDao(lockDao);
         
         controller = spy(new UserProfileController());
         controller.setStudyService(studyService);
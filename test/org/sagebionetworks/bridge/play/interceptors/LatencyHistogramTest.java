@@ -0,0 +1,68 @@
+package org.sagebionetworks.bridge.play.interceptors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0.0, histogram.getMeanMillis(), 0.0);
+        assertEquals(0L, histogram.getPercentileMillis(0.99));
+        assertEquals(0L, histogram.getMaxMillis());
+    }
+
+    @Test
+    public void smallLatenciesAreExact() {
+        for (long value=0; value < 8; value++) {
+            assertEquals(value, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value)));
+        }
+    }
+
+    @Test
+    public void bucketsAreWithinAnEighthOfTheValue() {
+        for (long value=8; value < 100000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upperBound = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(upperBound >= value);
+            assertTrue(upperBound - value <= value / 8);
+            // The value is above the previous bucket.
+            assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i=1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100L, histogram.getCount());
+        assertEquals(50.5, histogram.getMeanMillis(), 0.001);
+        assertEquals(100L, histogram.getMaxMillis());
+
+        long p50 = histogram.getPercentileMillis(0.5);
+        assertTrue(p50 >= 50 && p50 <= 50 + 50/8);
+        long p90 = histogram.getPercentileMillis(0.9);
+        assertTrue(p90 >= 90 && p90 <= 90 + 90/8);
+        // Never more than the maximum.
+        assertEquals(100L, histogram.getPercentileMillis(1.0));
+    }
+
+    @Test
+    public void veryLongLatenciesAreCounted() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE / 2);
+        assertEquals(1L, histogram.getCount());
+        assertEquals(Long.MAX_VALUE / 2, histogram.getMaxMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeLatencyRejected() {
+        new LatencyHistogram().record(-1);
+    }
+}
@@ -2,20 +2,27 @@ package org.sagebionetworks.bridge.play.interceptors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.aopalliance.intercept.MethodInvocation;
 import org.junit.Test;
 import org.sagebionetworks.bridge.models.Metrics;
+import org.sagebionetworks.bridge.models.RouteMetrics;
+import org.sagebionetworks.bridge.play.controllers.MetricsController;
 import org.sagebionetworks.bridge.play.interceptors.MetricsInterceptor;
 
 import play.mvc.Http;
 import play.mvc.Http.Context;
 import play.mvc.Http.Request;
+import play.mvc.Result;
+import play.mvc.Results;
 
 public class MetricsInterceptorTest {
 
@@ -56,4 +63,42 @@ public class MetricsInterceptorTest {
         assertTrue(json.contains("\"remote_address\":\"1.2.3.4\""));
         assertTrue(json.contains("\"user_agent\":\"ifeng 6\""));
     }
+
+    @Test
+    public void recordsRequestInRegistry() throws Throwable {
+        final Request mockRequest = mock(Request.class);
+        when(mockRequest.method()).thenReturn("GET");
+        when(mockRequest.path()).thenReturn("/v3/metrics");
+        final Map<String, String[]> headerMap = new HashMap<>();
+        headerMap.put("X-Request-Id", new String[]{"12345"});
+        when(mockRequest.headers()).thenReturn(headerMap);
+        final Context mockContext = mock(Context.class);
+        when(mockContext.request()).thenReturn(mockRequest);
+        mockContext.args = new HashMap<>();
+        Http.Context.current.set(mockContext);
+
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsInterceptor interceptor = new MetricsInterceptor();
+        interceptor.setMetricsRegistry(registry);
+
+        final Result result = Results.ok("{}");
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getMethod()).thenReturn(MetricsController.class.getMethod("getRouteMetrics"));
+        when(invocation.proceed()).thenAnswer(inv -> {
+            // The metrics are available to the controller.
+            assertNotNull(mockContext.args.get("12345:Metrics"));
+            return result;
+        });
+
+        assertSame(result, interceptor.invoke(invocation));
+
+        List<RouteMetrics> routeMetrics = registry.getRouteMetrics();
+        assertEquals(1, routeMetrics.size());
+        assertEquals("MetricsController.getRouteMetrics", routeMetrics.get(0).getRoute());
+        assertEquals("2xx", routeMetrics.get(0).getStatusClass());
+        assertEquals(1, routeMetrics.get(0).getCount());
+        
+        Metrics metrics = (Metrics)mockContext.args.get("12345:Metrics");
+        assertEquals(200, metrics.getJson().get("status").intValue());
+    }
 }
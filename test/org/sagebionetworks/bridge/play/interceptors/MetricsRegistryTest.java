@@ -0,0 +1,48 @@
+package org.sagebionetworks.bridge.play.interceptors;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.models.RouteMetrics;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void aggregatesByRouteAndStatusClass() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.record("SurveyController.getSurvey", 200, 10, 1000);
+        registry.record("SurveyController.getSurvey", 201, 30, 3000);
+        registry.record("SurveyController.getSurvey", 404, 5, -1);
+        registry.record("ApplicationController.loadApp", 200, 2, -1);
+
+        List<RouteMetrics> metrics = registry.getRouteMetrics();
+        assertEquals(3, metrics.size());
+
+        RouteMetrics loadApp = metrics.get(0);
+        assertEquals("ApplicationController.loadApp", loadApp.getRoute());
+        assertEquals("2xx", loadApp.getStatusClass());
+        assertEquals(1, loadApp.getCount());
+        // Allocation wasn't measured.
+        assertEquals(0, loadApp.getMeanAllocatedBytes());
+
+        RouteMetrics survey2xx = metrics.get(1);
+        assertEquals("SurveyController.getSurvey", survey2xx.getRoute());
+        assertEquals("2xx", survey2xx.getStatusClass());
+        assertEquals(2, survey2xx.getCount());
+        assertEquals(20.0, survey2xx.getMeanMillis(), 0.001);
+        assertEquals(30, survey2xx.getMaxMillis());
+        assertEquals(2000, survey2xx.getMeanAllocatedBytes());
+
+        RouteMetrics survey4xx = metrics.get(2);
+        assertEquals("4xx", survey4xx.getStatusClass());
+        assertEquals(1, survey4xx.getCount());
+    }
+
+    @Test
+    public void logSummaryWithNoRequests() {
+        new MetricsRegistry().logSummary();
+    }
+}
@@ -0,0 +1,55 @@
+package org.sagebionetworks.bridge.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.Test;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+public class InstrumentedJedisPoolTest {
+
+    // Nothing listens on this port, so connecting is refused at once.
+    private static final int CLOSED_PORT = 1;
+
+    @Test
+    public void exhaustedPoolDoesNotTripCircuit() {
+        GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
+        poolConfig.setMaxTotal(0);
+        poolConfig.setBlockWhenExhausted(false);
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, 5000);
+        InstrumentedJedisPool pool = new InstrumentedJedisPool(poolConfig, "localhost", CLOSED_PORT, 100, null,
+                breaker);
+
+        borrowAndFail(pool);
+
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1L, pool.getBorrowFailureCount());
+        assertEquals(1L, pool.getPoolExhaustedCount());
+    }
+
+    @Test
+    public void failedConnectionTripsCircuit() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, 5000);
+        InstrumentedJedisPool pool = new InstrumentedJedisPool(new GenericObjectPoolConfig(), "localhost",
+                CLOSED_PORT, 100, null, breaker);
+
+        borrowAndFail(pool);
+
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1L, pool.getBorrowFailureCount());
+        assertEquals(0L, pool.getPoolExhaustedCount());
+    }
+
+    private static void borrowAndFail(InstrumentedJedisPool pool) {
+        try {
+            pool.getResource();
+            fail("expected exception");
+        } catch(JedisConnectionException e) {
+            // expected exception
+        } finally {
+            pool.destroy();
+        }
+    }
+}
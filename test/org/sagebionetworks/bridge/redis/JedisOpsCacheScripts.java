@@ -0,0 +1,195 @@
+package org.sagebionetworks.bridge.redis;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.sagebionetworks.bridge.cache.CacheScripts;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Runs the cache scripts as separate JedisOps commands, for tests that use the in-memory Redis. Unlike the Lua
+ * scripts, these aren't atomic. JedisOps has no hashes or lists, so each is stored as JSON under its key.
+ */
+public class JedisOpsCacheScripts implements CacheScripts {
+    private static final TypeReference<Map<String, String>> HASH_TYPE = new TypeReference<Map<String, String>>() {};
+    private static final TypeReference<List<String>> LIST_TYPE = new TypeReference<List<String>>() {};
+
+    private final JedisOps jedisOps;
+
+    public JedisOpsCacheScripts(JedisOps jedisOps) {
+        this.jedisOps = jedisOps;
+    }
+
+    @Override
+    public String getAndExpire(String key, int expireInSeconds) {
+        String value = jedisOps.get(key);
+        if (value != null) {
+            jedisOps.expire(key, expireInSeconds);
+        }
+        return value;
+    }
+
+    @Override
+    public void setSession(String userKey, String sessionToken, String sessionKey, String session,
+            int expireInSeconds) {
+        Long ttl = jedisOps.ttl(userKey);
+        int expiration = (ttl != null && ttl > 0L) ? ttl.intValue() : expireInSeconds;
+        jedisOps.setex(userKey, expiration, sessionToken);
+        jedisOps.setex(sessionKey, expiration, session);
+    }
+
+    @Override
+    public void invalidate(String key, String generationKey, String newGeneration, int generationExpireInSeconds) {
+        jedisOps.del(key);
+        jedisOps.setex(generationKey, generationExpireInSeconds, newGeneration);
+    }
+
+    @Override
+    public boolean setIfGeneration(String key, String generationKey, String generation, String value,
+            int expireInSeconds) {
+        String currentGeneration = jedisOps.get(generationKey);
+        if (!generation.equals(currentGeneration != null ? currentGeneration : "")) {
+            return false;
+        }
+        jedisOps.setex(key, expireInSeconds, value);
+        return true;
+    }
+
+    @Override
+    public boolean expireIfValue(String key, String value, long expireInMillis) {
+        if (!value.equals(jedisOps.get(key))) {
+            return false;
+        }
+        // JedisOps only expires in whole seconds. Round up, so the key never expires early.
+        jedisOps.expire(key, (int) ((expireInMillis + 999L) / 1000L));
+        return true;
+    }
+
+    @Override
+    public List<String> getFields(String key, List<String> fields) {
+        Map<String, String> hash = toHash(jedisOps.get(key));
+        List<String> values = Lists.newArrayListWithCapacity(fields.size());
+        for (String field : fields) {
+            values.add(hash.get(field));
+        }
+        return values;
+    }
+
+    @Override
+    public boolean setFieldsIfGeneration(String key, String generationKey, String generation,
+            Map<String, String> values, int expireInSeconds) {
+        String currentGeneration = jedisOps.get(generationKey);
+        if (!generation.equals(currentGeneration != null ? currentGeneration : "")) {
+            return false;
+        }
+        String json = jedisOps.get(key);
+        Map<String, String> hash = toHash(json);
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            hash.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        if (json == null) {
+            jedisOps.setex(key, expireInSeconds, toJson(hash));
+        } else {
+            replaceValue(key, hash);
+        }
+        return true;
+    }
+
+    @Override
+    public void setExistingFields(Map<String, String> generationKeys, Map<String, Map<String, String>> values,
+            String newGeneration, int generationExpireInSeconds) {
+        for (Map.Entry<String, Map<String, String>> hashEntry : values.entrySet()) {
+            String key = hashEntry.getKey();
+            jedisOps.setex(generationKeys.get(key), generationExpireInSeconds, newGeneration);
+            String json = jedisOps.get(key);
+            if (json != null) {
+                Map<String, String> hash = toHash(json);
+                for (Map.Entry<String, String> entry : hashEntry.getValue().entrySet()) {
+                    hash.replace(entry.getKey(), entry.getValue());
+                }
+                replaceValue(key, hash);
+            }
+        }
+    }
+
+    @Override
+    public void invalidateField(String key, String field, String generationKey, String newGeneration,
+            int generationExpireInSeconds) {
+        String json = jedisOps.get(key);
+        if (json != null) {
+            Map<String, String> hash = toHash(json);
+            hash.remove(field);
+            replaceValue(key, hash);
+        }
+        jedisOps.setex(generationKey, generationExpireInSeconds, newGeneration);
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, int expireInSeconds) {
+        if (jedisOps.get(key) != null) {
+            return false;
+        }
+        jedisOps.setex(key, expireInSeconds, value);
+        return true;
+    }
+
+    @Override
+    public PopResult pop(String key) {
+        String json = jedisOps.get(key);
+        if (json == null) {
+            return new PopResult(null, 0L);
+        }
+        List<String> list = fromJson(json, LIST_TYPE);
+        String element = list.remove(0);
+        if (list.isEmpty()) {
+            // Like Redis, an empty list doesn't exist.
+            jedisOps.del(key);
+        } else {
+            replaceValue(key, list);
+        }
+        return new PopResult(element, list.size());
+    }
+
+    @Override
+    public void replaceList(String key, List<String> values, int expireInSeconds) {
+        jedisOps.del(key);
+        if (!values.isEmpty()) {
+            jedisOps.setex(key, expireInSeconds, toJson(values));
+        }
+    }
+
+    // Replaces a hash or list, keeping its expiration.
+    private void replaceValue(String key, Object value) {
+        Long ttl = jedisOps.ttl(key);
+        if (ttl != null && ttl > 0L) {
+            jedisOps.setex(key, ttl.intValue(), toJson(value));
+        } else {
+            jedisOps.set(key, toJson(value));
+        }
+    }
+
+    private static Map<String, String> toHash(String json) {
+        return (json == null) ? Maps.newHashMap() : fromJson(json, HASH_TYPE);
+    }
+
+    private static <T> T fromJson(String json, TypeReference<T> type) {
+        try {
+            return BridgeObjectMapper.get().readValue(json, type);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toJson(Object value) {
+        try {
+            return BridgeObjectMapper.get().writeValueAsString(value);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.sagebionetworks.bridge.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.cache.CacheScripts;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class LuaCacheScriptsTest {
+
+    private static final List<String> KEYS = ImmutableList.of("key");
+    private static final List<String> ARGS = ImmutableList.of("60");
+
+    private Jedis jedis;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() {
+        jedis = mock(Jedis.class);
+        jedisPool = mock(JedisPool.class);
+        when(jedisPool.getResource()).thenReturn(jedis);
+    }
+
+    @Test
+    public void scriptsAreLoadedOnCreation() {
+        new LuaCacheScripts(jedisPool);
+        verify(jedis).scriptLoad(LuaCacheScripts.GET_AND_EXPIRE_SCRIPT);
+        verify(jedis).scriptLoad(LuaCacheScripts.SET_SESSION_SCRIPT);
+        verify(jedis).scriptLoad(LuaCacheScripts.INVALIDATE_SCRIPT);
+        verify(jedis).scriptLoad(LuaCacheScripts.SET_IF_GENERATION_SCRIPT);
+        verify(jedis).scriptLoad(LuaCacheScripts.EXPIRE_IF_VALUE_SCRIPT);
+        verify(jedis).scriptLoad(LuaCacheScripts.SET_FIELDS_IF_GENERATION_SCRIPT);
+        verify(jedis).scriptLoad(LuaCacheScripts.SET_EXISTING_FIELDS_SCRIPT);
+        verify(jedis).scriptLoad(LuaCacheScripts.INVALIDATE_FIELD_SCRIPT);
+        verify(jedis).scriptLoad(LuaCacheScripts.POP_SCRIPT);
+        verify(jedis).scriptLoad(LuaCacheScripts.REPLACE_LIST_SCRIPT);
+    }
+
+    @Test
+    public void creationSucceedsWithoutRedis() {
+        when(jedis.scriptLoad(anyString())).thenThrow(new JedisConnectionException("connection refused"));
+        new LuaCacheScripts(jedisPool);
+    }
+
+    @Test
+    public void scriptsAreCalledByDigest() {
+        String sha = LuaCacheScripts.sha1(LuaCacheScripts.GET_AND_EXPIRE_SCRIPT);
+        when(jedis.evalsha(sha, KEYS, ARGS)).thenReturn("value");
+
+        LuaCacheScripts scripts = new LuaCacheScripts(jedisPool);
+        assertEquals("value", scripts.getAndExpire("key", 60));
+        verify(jedis, never()).eval(anyString(), anyListOf(String.class), anyListOf(String.class));
+    }
+
+    @Test
+    public void scriptIsSentWhenRedisDoesNotHaveIt() {
+        String sha = LuaCacheScripts.sha1(LuaCacheScripts.GET_AND_EXPIRE_SCRIPT);
+        when(jedis.evalsha(sha, KEYS, ARGS)).thenThrow(
+                new JedisDataException("NOSCRIPT No matching script. Please use EVAL."));
+
+        LuaCacheScripts scripts = new LuaCacheScripts(jedisPool);
+        assertNull(scripts.getAndExpire("key", 60));
+        verify(jedis).eval(LuaCacheScripts.GET_AND_EXPIRE_SCRIPT, KEYS, ARGS);
+    }
+
+    @Test(expected = JedisDataException.class)
+    public void otherScriptErrorsAreThrown() {
+        String sha = LuaCacheScripts.sha1(LuaCacheScripts.GET_AND_EXPIRE_SCRIPT);
+        when(jedis.evalsha(sha, KEYS, ARGS)).thenThrow(new JedisDataException("ERR wrong number of arguments"));
+
+        new LuaCacheScripts(jedisPool).getAndExpire("key", 60);
+    }
+
+    @Test
+    public void setIfGenerationReportsWhetherValueWasSet() {
+        List<String> keys = ImmutableList.of("key", "key:generation");
+        String sha = LuaCacheScripts.sha1(LuaCacheScripts.SET_IF_GENERATION_SCRIPT);
+        when(jedis.evalsha(sha, keys, ImmutableList.of("gen1", "value", "60"))).thenReturn(1L);
+        when(jedis.evalsha(sha, keys, ImmutableList.of("gen2", "value", "60"))).thenReturn(0L);
+
+        LuaCacheScripts scripts = new LuaCacheScripts(jedisPool);
+        assertTrue(scripts.setIfGeneration("key", "key:generation", "gen1", "value", 60));
+        assertFalse(scripts.setIfGeneration("key", "key:generation", "gen2", "value", 60));
+    }
+
+    @Test
+    public void setFieldsIfGenerationSendsFieldValuePairs() {
+        List<String> keys = ImmutableList.of("key", "key:generation");
+        String sha = LuaCacheScripts.sha1(LuaCacheScripts.SET_FIELDS_IF_GENERATION_SCRIPT);
+        when(jedis.evalsha(sha, keys, ImmutableList.of("gen1", "60", "field1", "value1", "field2", "value2")))
+                .thenReturn(1L);
+
+        LuaCacheScripts scripts = new LuaCacheScripts(jedisPool);
+        assertTrue(scripts.setFieldsIfGeneration("key", "key:generation", "gen1", ImmutableMap.of("field1", "value1",
+                "field2", "value2"), 60));
+    }
+
+    @Test
+    public void setExistingFieldsSendsEachHashOnce() {
+        LuaCacheScripts scripts = new LuaCacheScripts(jedisPool);
+        scripts.setExistingFields(ImmutableMap.of("key1", "key1:generation", "key2", "key2:generation"),
+                ImmutableMap.of("key1", ImmutableMap.of("field1", "value1", "field2", "value2"), "key2",
+                        ImmutableMap.of("field1", "value3")), "gen1", 60);
+
+        // Each field is sent with the (1-based) index of its hash in the keys.
+        verify(jedis).evalsha(LuaCacheScripts.sha1(LuaCacheScripts.SET_EXISTING_FIELDS_SCRIPT),
+                ImmutableList.of("key1", "key1:generation", "key2", "key2:generation"),
+                ImmutableList.of("gen1", "60", "1", "field1", "value1", "1", "field2", "value2", "3", "field1",
+                        "value3"));
+    }
+
+    @Test
+    public void invalidateFieldSendsFieldAndGeneration() {
+        LuaCacheScripts scripts = new LuaCacheScripts(jedisPool);
+        scripts.invalidateField("key", "field", "key:generation", "gen1", 60);
+
+        verify(jedis).evalsha(LuaCacheScripts.sha1(LuaCacheScripts.INVALIDATE_FIELD_SCRIPT),
+                ImmutableList.of("key", "key:generation"), ImmutableList.of("field", "gen1", "60"));
+    }
+
+    @Test
+    public void getFieldsReadsHash() {
+        when(jedis.hmget("key", "field1", "field2")).thenReturn(Arrays.asList("value1", null));
+
+        LuaCacheScripts scripts = new LuaCacheScripts(jedisPool);
+        assertEquals(Arrays.asList("value1", null), scripts.getFields("key", ImmutableList.of("field1", "field2")));
+    }
+
+    @Test
+    public void popReturnsElementAndRemainingCount() {
+        String sha = LuaCacheScripts.sha1(LuaCacheScripts.POP_SCRIPT);
+        when(jedis.evalsha(sha, KEYS, ImmutableList.of())).thenReturn(Arrays.asList("AAA", 4L),
+                Arrays.asList(null, 0L));
+
+        LuaCacheScripts scripts = new LuaCacheScripts(jedisPool);
+        CacheScripts.PopResult result = scripts.pop("key");
+        assertEquals("AAA", result.getElement());
+        assertEquals(4L, result.getRemaining());
+
+        result = scripts.pop("key");
+        assertNull(result.getElement());
+        assertEquals(0L, result.getRemaining());
+    }
+
+    @Test
+    public void replaceListSendsExpirationThenValues() {
+        LuaCacheScripts scripts = new LuaCacheScripts(jedisPool);
+        scripts.replaceList("key", ImmutableList.of("AAA", "BBB"), 60);
+
+        verify(jedis).evalsha(LuaCacheScripts.sha1(LuaCacheScripts.REPLACE_LIST_SCRIPT), KEYS,
+                ImmutableList.of("60", "AAA", "BBB"));
+    }
+
+    @Test
+    public void setIfAbsentReportsWhetherValueWasSet() {
+        when(jedis.set("key", "value", "NX", "EX", 60)).thenReturn("OK", (String) null);
+
+        LuaCacheScripts scripts = new LuaCacheScripts(jedisPool);
+        assertTrue(scripts.setIfAbsent("key", "value", 60));
+        assertFalse(scripts.setIfAbsent("key", "value", 60));
+    }
+
+    @Test
+    public void digestMatchesRedis() {
+        // The SHA-1 Redis returns from SCRIPT LOAD "return 1"
+        assertEquals("e0e1f9fabfc9d4800c877a703b823ac0578ff8db", LuaCacheScripts.sha1("return 1"));
+    }
+}
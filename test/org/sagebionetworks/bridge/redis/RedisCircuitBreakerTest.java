@@ -0,0 +1,100 @@
+package org.sagebionetworks.bridge.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RedisCircuitBreakerTest {
+
+    private static final long NOW = 1475000000000L;
+
+    private RedisCircuitBreaker breaker;
+
+    @Before
+    public void before() {
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+        breaker = new RedisCircuitBreaker(3, 5000);
+    }
+
+    @After
+    public void after() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void staysClosedBelowThreshold() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void opensAtThreshold() {
+        openCircuit();
+        assertFalse(breaker.allowRequest());
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void letsOneRequestThroughAfterOpenPeriod() {
+        openCircuit();
+        DateTimeUtils.setCurrentMillisFixed(NOW + 5000);
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void letsAnotherRequestThroughIfProbeNeverReportsBack() {
+        openCircuit();
+        DateTimeUtils.setCurrentMillisFixed(NOW + 5000);
+        assertTrue(breaker.allowRequest());
+        DateTimeUtils.setCurrentMillisFixed(NOW + 9999);
+        assertFalse(breaker.allowRequest());
+        DateTimeUtils.setCurrentMillisFixed(NOW + 10000);
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void successAfterOpenPeriodClosesCircuit() {
+        openCircuit();
+        DateTimeUtils.setCurrentMillisFixed(NOW + 5000);
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failureAfterOpenPeriodReopensCircuit() {
+        openCircuit();
+        DateTimeUtils.setCurrentMillisFixed(NOW + 5000);
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void openCircuit() {
+        for (int i=0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+    }
+}
@@ -60,6 +60,10 @@ public class RedisDistributedLockDaoTest {
         } catch (Throwable e) {
             fail();
         }
+        // Renew lock
+        assertFalse(lockDao.renewLock(getClass(), id, "incorrect lock id", 120));
+        assertTrue(lockDao.renewLock(getClass(), id, lockId, 120));
+        assertTrue(jedisOps.ttl(redisKey) > 60);
         // Release lock
         boolean released = lockDao.releaseLock(getClass(), id, "incorrect lock id");
         assertFalse(released);
@@ -68,6 +72,8 @@ public class RedisDistributedLockDaoTest {
         // Once released, can be re-acquired
         lockId = lockDao.acquireLock(getClass(), id, 1);
         lockDao.releaseLock(getClass(), id, lockId);
+        // Once released, can't be renewed
+        assertFalse(lockDao.renewLock(getClass(), id, lockId, 60));
     }
 
     private String getRedisKey(String id) {
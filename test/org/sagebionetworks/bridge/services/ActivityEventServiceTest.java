@@ -2,12 +2,17 @@ package org.sagebionetworks.bridge.services;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
@@ -15,7 +20,9 @@ import org.joda.time.LocalDateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.ActivityEventDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoActivityEvent.Builder;
 import org.sagebionetworks.bridge.models.activities.ActivityEvent;
@@ -33,12 +40,17 @@ public class ActivityEventServiceTest {
     
     private ActivityEventDao activityEventDao;
     
+    private CacheProvider cacheProvider;
+    
     @Before
     public void before() {
         service = new ActivityEventService();
         
         activityEventDao = mock(ActivityEventDao.class);
         service.setActivityEventDao(activityEventDao);
+        
+        cacheProvider = mock(CacheProvider.class);
+        service.setCacheProvider(cacheProvider);
     }
     
     @Test
@@ -50,6 +62,7 @@ public class ActivityEventServiceTest {
         
         verify(activityEventDao).publishEvent(eq(event));
         verifyNoMoreInteractions(activityEventDao);
+        verify(cacheProvider).removeActivityEventMap("BBB");
     }
     
     @Test
@@ -59,21 +72,42 @@ public class ActivityEventServiceTest {
         Map<String,DateTime> map = Maps.newHashMap();
         map.put("enrollment", now);
         when(activityEventDao.getActivityEventMap("BBB")).thenReturn(map);
+        when(cacheProvider.getActivityEventMapGeneration("BBB")).thenReturn("gen");
         
         Map<String,DateTime> results = service.getActivityEventMap("BBB");
         assertEquals(now, results.get("enrollment"));
         assertEquals(1, results.size());
         
-        verify(activityEventDao).getActivityEventMap("BBB");
+        // The generation is read before the events are loaded.
+        InOrder inOrder = inOrder(cacheProvider, activityEventDao);
+        inOrder.verify(cacheProvider).getActivityEventMapGeneration("BBB");
+        inOrder.verify(activityEventDao).getActivityEventMap("BBB");
+        inOrder.verify(cacheProvider).setActivityEventMap("BBB", map, "gen");
         verifyNoMoreInteractions(activityEventDao);
     }
     
+    @Test
+    public void getActivityEventMapUsesCache() {
+        DateTime now = DateTime.now();
+        
+        Map<String,DateTime> map = Maps.newHashMap();
+        map.put("enrollment", now);
+        when(cacheProvider.getActivityEventMap("BBB")).thenReturn(map);
+        
+        Map<String,DateTime> results = service.getActivityEventMap("BBB");
+        assertEquals(map, results);
+        
+        verifyNoMoreInteractions(activityEventDao);
+        verify(cacheProvider, never()).setActivityEventMap(anyString(), any(), anyString());
+    }
+    
     @Test
     public void canDeleteActivityEvents() {
         service.deleteActivityEvents("BBB");
         
         verify(activityEventDao).deleteActivityEvents("BBB");
         verifyNoMoreInteractions(activityEventDao);
+        verify(cacheProvider).removeActivityEventMap("BBB");
     }
 
     @Test
@@ -150,6 +184,7 @@ public class ActivityEventServiceTest {
         
         service.publishActivityFinishedEvent(activity);
         verifyNoMoreInteractions(activityEventDao);
+        verifyNoMoreInteractions(cacheProvider);
     }
     
     @Test
@@ -173,5 +208,48 @@ public class ActivityEventServiceTest {
         assertEquals("BBB", event.getHealthCode());
         assertEquals("activity:AAA:finished", event.getEventId());
         assertEquals(finishedOn, event.getTimestamp().longValue());
+        verify(cacheProvider).removeActivityEventMap("BBB");
+    }
+    
+    @SuppressWarnings({"unchecked","rawtypes"})
+    @Test
+    public void canPublishActivityFinishedEventsInOneBatch() {
+        DateTime now = DateTime.now();
+        List<ScheduledActivity> activities = Lists.newArrayList(
+                createFinishedActivity("AAA:"+now.minusDays(1).toLocalDateTime(), now.minusHours(1).getMillis()),
+                createFinishedActivity("AAA:"+now.toLocalDateTime(), now.getMillis()),
+                createFinishedActivity("CCC:"+now.toLocalDateTime(), now.minusHours(2).getMillis()),
+                createFinishedActivity("DDD", now.getMillis()));
+        
+        service.publishActivityFinishedEvents("BBB", activities);
+        
+        ArgumentCaptor<List> argument = ArgumentCaptor.forClass(List.class);
+        verify(activityEventDao).publishEvents(argument.capture());
+        verifyNoMoreInteractions(activityEventDao);
+        verify(cacheProvider).removeActivityEventMap("BBB");
+        
+        // Both AAA activities are coalesced to the latest one; the old-style activity publishes nothing
+        List<ActivityEvent> events = (List<ActivityEvent>)argument.getValue();
+        assertEquals(2, events.size());
+        assertEquals("activity:AAA:finished", events.get(0).getEventId());
+        assertEquals(now.getMillis(), events.get(0).getTimestamp().longValue());
+        assertEquals("activity:CCC:finished", events.get(1).getEventId());
+        assertEquals(now.minusHours(2).getMillis(), events.get(1).getTimestamp().longValue());
+    }
+    
+    @Test
+    public void publishActivityFinishedEventsWithNoEventsDoesNothing() {
+        service.publishActivityFinishedEvents("BBB", Lists.newArrayList(createFinishedActivity("DDD", 1000L)));
+        
+        verifyNoMoreInteractions(activityEventDao);
+        verifyNoMoreInteractions(cacheProvider);
+    }
+    
+    private ScheduledActivity createFinishedActivity(String guid, long finishedOn) {
+        ScheduledActivity schActivity = ScheduledActivity.create();
+        schActivity.setGuid(guid);
+        schActivity.setHealthCode("BBB");
+        schActivity.setFinishedOn(finishedOn);
+        return schActivity;
     }
 }
@@ -1,26 +1,40 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.models.CacheNamespaceStats;
+import org.sagebionetworks.bridge.models.CachePoolStats;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 
 public class CacheAdminServiceTest {
 
     private static final String REQUEST_INFO_KEY = "10E9SFUz9BYrqCrTzfiaNW:request-info";
     
-    private final static Set<String> KEYS = Sets.newHashSet("foo:study", "bar:session", "baz:Survey:view",
+    // Recreated for each test, since tests add and remove keys.
+    private final Set<String> keys = Sets.newHashSet("foo:study", "bar:session", "baz:Survey:view",
             "xh7YDmjGQuTKnfdv9iJb0:session:user", REQUEST_INFO_KEY);
     
     private CacheAdminService adminService;
@@ -81,15 +95,154 @@ public class CacheAdminServiceTest {
         adminService.removeItem(REQUEST_INFO_KEY);
     }
     
+    @Test
+    public void listItemsPage() {
+        Set<String> viewKeys = Sets.newHashSet("baz:Survey:view");
+        for (int i=0; i < CacheAdminService.LIST_SCAN_BATCH_SIZE * 3; i++) {
+            viewKeys.add(String.format("a%04d:Survey:view", i));
+            keys.add(String.format("a%04d:session", i));
+        }
+        keys.addAll(viewKeys);
+        
+        ForwardCursorPagedResourceList<String> page = adminService.listItems("view", null, 50);
+        List<String> pagedKeys = Lists.newArrayList(page.getItems());
+        assertEquals(50, page.getPageSize());
+        assertEquals("view", page.getFilters().get("namespace"));
+        assertNotNull(page.getOffsetKey());
+        
+        while (page.getOffsetKey() != null) {
+            page = adminService.listItems("view", page.getOffsetKey(), 50);
+            pagedKeys.addAll(page.getItems());
+        }
+        assertEquals(viewKeys, Sets.newHashSet(pagedKeys));
+        assertEquals(viewKeys.size(), pagedKeys.size());
+    }
+    
+    @Test
+    public void listItemsPageOfSparseNamespaceStopsAfterMaxScans() {
+        // Enough keys before the only view key that one page can't reach it.
+        int keysBeforeView = CacheAdminService.LIST_SCAN_BATCH_SIZE * CacheAdminService.MAX_SCANS_PER_PAGE;
+        for (int i=0; i < keysBeforeView; i++) {
+            keys.add(String.format("a%05d:study", i));
+        }
+        
+        ForwardCursorPagedResourceList<String> page = adminService.listItems("view", null, 10);
+        assertTrue(page.getItems().isEmpty());
+        assertEquals(Integer.toString(keysBeforeView), page.getOffsetKey());
+        
+        page = adminService.listItems("view", page.getOffsetKey(), 10);
+        assertEquals(Lists.newArrayList("baz:Survey:view"), page.getItems());
+        assertNull(page.getOffsetKey());
+    }
+    
+    @Test(expected = BadRequestException.class)
+    public void listItemsPageRejectsSessionNamespace() {
+        adminService.listItems("session", null, 10);
+    }
+    
+    @Test(expected = BadRequestException.class)
+    public void listItemsPageRejectsInvalidOffsetKey() {
+        adminService.listItems("view", "not-a-cursor", 10);
+    }
+    
+    @Test
+    public void listItemsPageWithoutNamespaceSkipsSessions() {
+        ForwardCursorPagedResourceList<String> page = adminService.listItems(null, null, 100);
+        assertEquals(Sets.newHashSet("foo:study", "baz:Survey:view"), Sets.newHashSet(page.getItems()));
+        assertNull(page.getOffsetKey());
+    }
+    
+    @Test(expected = BadRequestException.class)
+    public void listItemsPageRejectsUnknownNamespace() {
+        adminService.listItems("*", null, 10);
+    }
+    
+    @Test(expected = BadRequestException.class)
+    public void listItemsPageRejectsBadPageSize() {
+        adminService.listItems(null, null, 0);
+    }
+    
+    @Test
+    public void namespaceStats() {
+        keys.add("qux:Study:view");
+        keys.add("something-unknown");
+        keys.add("test-study:external-id-pool");
+        keys.add("test-study:external-id-pool-refill");
+        
+        Map<String,CacheNamespaceStats> statsMap = Maps.newHashMap();
+        for (CacheNamespaceStats stats : adminService.getNamespaceStats()) {
+            statsMap.put(stats.getNamespace(), stats);
+        }
+        
+        CacheNamespaceStats viewStats = statsMap.get("view");
+        assertEquals(2, viewStats.getKeyCount());
+        assertEquals(2, viewStats.getSampledKeyCount());
+        // Each key's size plus its 10-byte value.
+        assertEquals("baz:Survey:view".length() + "qux:Study:view".length() + 20, viewStats.getEstimatedBytes());
+        
+        assertEquals(1, statsMap.get("session").getKeyCount());
+        assertEquals(1, statsMap.get("session:user").getKeyCount());
+        assertEquals(1, statsMap.get("request-info").getKeyCount());
+        assertEquals(1, statsMap.get("study").getKeyCount());
+        assertEquals(1, statsMap.get("other").getKeyCount());
+        assertEquals(1, statsMap.get("external-id-pool").getKeyCount());
+        assertEquals(1, statsMap.get("external-id-pool-refill").getKeyCount());
+        assertEquals(0, statsMap.get("lock").getKeyCount());
+        assertEquals(0, statsMap.get("lock").getEstimatedBytes());
+    }
+    
+    @Test
+    public void poolStatsOfUninstrumentedPool() {
+        JedisPool pool = mock(JedisPool.class);
+        when(pool.getNumActive()).thenReturn(3);
+        when(pool.getNumIdle()).thenReturn(7);
+        when(pool.getNumWaiters()).thenReturn(1);
+        adminService.setJedisPool(pool);
+        
+        CachePoolStats stats = adminService.getPoolStats();
+        assertEquals(3, stats.getActiveCount());
+        assertEquals(7, stats.getIdleCount());
+        assertEquals(1, stats.getWaiterCount());
+        assertNull(stats.getCircuitState());
+        assertEquals(0L, stats.getBorrowCount());
+    }
+    
     private Jedis createStubJedis() {
         return new Jedis("") {
+            // Returns keys in sorted order, "count" keys at a time. The cursor is the index of the next key.
+            @Override
+            public ScanResult<String> scan(String cursor, ScanParams params) {
+                String match = "*";
+                int count = 10;
+                List<byte[]> paramList = Lists.newArrayList(params.getParams());
+                for (int i=0; i < paramList.size(); i+=2) {
+                    String name = new String(paramList.get(i));
+                    String value = new String(paramList.get(i+1));
+                    if ("MATCH".equalsIgnoreCase(name)) {
+                        match = value;
+                    } else if ("COUNT".equalsIgnoreCase(name)) {
+                        count = Integer.parseInt(value);
+                    }
+                }
+                List<String> sortedKeys = Lists.newArrayList(new TreeSet<>(keys));
+                int start = Integer.parseInt(cursor);
+                int end = Math.min(start + count, sortedKeys.size());
+                
+                List<String> result = Lists.newArrayList();
+                for (String key : sortedKeys.subList(start, end)) {
+                    if (match.equals("*") || key.endsWith(match.substring(1))) {
+                        result.add(key);
+                    }
+                }
+                return new ScanResult<String>((end == sortedKeys.size()) ? "0" : Integer.toString(end), result);
+            }
             @Override
-            public Set<String> keys(String pattern) {
-                return KEYS;
+            public byte[] dump(String key) {
+                return keys.contains(key) ? new byte[10] : null;
             }
             @Override
             public Long del(String key) {
-                return (KEYS.remove(key)) ? 1L : 0L;
+                return (keys.remove(key)) ? 1L : 0L;
             }
         };
     }
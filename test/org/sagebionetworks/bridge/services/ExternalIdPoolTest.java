@@ -0,0 +1,188 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import org.sagebionetworks.bridge.cache.CacheScripts;
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.dao.DistributedLockDao;
+import org.sagebionetworks.bridge.dao.ExternalIdDao;
+import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
+import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.redis.JedisOps;
+
+import com.google.common.collect.ImmutableList;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExternalIdPoolTest {
+
+    private static final StudyIdentifier STUDY_ID = new StudyIdentifierImpl("test-study");
+    private static final String KEY = "test-study:external-id-pool";
+    private static final String REFILL_KEY = "test-study:external-id-pool-refill";
+    private static final String LOCK = "lock";
+
+    @Mock
+    private JedisOps jedisOps;
+
+    @Mock
+    private CacheScripts cacheScripts;
+
+    @Mock
+    private ExternalIdDao externalIdDao;
+
+    @Mock
+    private DistributedLockDao lockDao;
+
+    @Mock
+    private ExecutorService executorService;
+
+    private ExternalIdPool pool;
+
+    @Before
+    public void before() {
+        Config config = mock(Config.class);
+        when(config.getInt(ExternalIdPool.CONFIG_KEY_POOL_SIZE)).thenReturn(3);
+        when(config.getInt(ExternalIdPool.CONFIG_KEY_REFILL_THRESHOLD)).thenReturn(2);
+
+        pool = new ExternalIdPool();
+        pool.setConfig(config);
+        pool.setJedisOps(jedisOps);
+        pool.setCacheScripts(cacheScripts);
+        pool.setExternalIdDao(externalIdDao);
+        pool.setDistributedLockDao(lockDao);
+        pool.setRefillExecutorService(executorService);
+    }
+
+    @Test
+    public void popReturnsNextId() {
+        mockPop("AAA", 5L);
+
+        assertEquals("AAA", pool.pop(STUDY_ID));
+
+        verify(cacheScripts, never()).setIfAbsent(anyString(), anyString(), anyInt());
+        verify(executorService, never()).execute(any());
+    }
+
+    @Test
+    public void popSchedulesRefillWhenRunningLow() {
+        mockPop(null, 0L);
+        mockRefillFlag(true);
+
+        assertNull(pool.pop(STUDY_ID));
+
+        verify(executorService).execute(any());
+    }
+
+    @Test
+    public void popDoesNotScheduleRefillWhenFlagIsSet() {
+        mockPop("AAA", 1L);
+        mockRefillFlag(false);
+
+        assertEquals("AAA", pool.pop(STUDY_ID));
+
+        verify(executorService, never()).execute(any());
+    }
+
+    @Test
+    public void rejectedRefillClearsFlag() {
+        mockPop("AAA", 1L);
+        mockRefillFlag(true);
+        doThrow(new RejectedExecutionException()).when(executorService).execute(any());
+
+        assertEquals("AAA", pool.pop(STUDY_ID));
+
+        verify(jedisOps).del(REFILL_KEY);
+    }
+
+    @Test
+    public void refillReplacesQueueWithUnassignedIds() {
+        when(lockDao.acquireLock(ExternalIdPool.class, STUDY_ID.getIdentifier(),
+                ExternalIdPool.REFILL_LOCK_EXPIRE_IN_SECONDS)).thenReturn(LOCK);
+        when(externalIdDao.getExternalIds(STUDY_ID, null, 3, null, Boolean.FALSE)).thenReturn(page("offset", "AAA"));
+        when(externalIdDao.getExternalIds(STUDY_ID, "offset", 2, null, Boolean.FALSE)).thenReturn(page(null, "BBB"));
+
+        assertEquals(2, pool.refill(STUDY_ID));
+
+        verify(cacheScripts).replaceList(KEY, ImmutableList.of("AAA", "BBB"), ExternalIdPool.POOL_EXPIRE_IN_SECONDS);
+        verify(jedisOps).del(REFILL_KEY);
+        verify(lockDao).releaseLock(ExternalIdPool.class, STUDY_ID.getIdentifier(), LOCK);
+    }
+
+    @Test
+    public void refillThatFindsNoIdsStartsCooldown() {
+        when(lockDao.acquireLock(ExternalIdPool.class, STUDY_ID.getIdentifier(),
+                ExternalIdPool.REFILL_LOCK_EXPIRE_IN_SECONDS)).thenReturn(LOCK);
+        when(externalIdDao.getExternalIds(STUDY_ID, null, 3, null, Boolean.FALSE)).thenReturn(page(null));
+
+        assertEquals(0, pool.refill(STUDY_ID));
+
+        verify(cacheScripts).replaceList(KEY, ImmutableList.of(), ExternalIdPool.POOL_EXPIRE_IN_SECONDS);
+        verify(jedisOps).setex(REFILL_KEY, ExternalIdPool.EMPTY_REFILL_COOLDOWN_IN_SECONDS,
+                ExternalIdPool.REFILL_FLAG);
+        verify(jedisOps, never()).del(REFILL_KEY);
+    }
+
+    @Test
+    public void refillSkippedWhenAnotherServerIsRefilling() {
+        when(lockDao.acquireLock(ExternalIdPool.class, STUDY_ID.getIdentifier(),
+                ExternalIdPool.REFILL_LOCK_EXPIRE_IN_SECONDS)).thenThrow(new ConcurrentModificationException("locked"));
+
+        assertEquals(-1, pool.refill(STUDY_ID));
+
+        verify(externalIdDao, never()).getExternalIds(any(), anyString(), anyInt(), anyString(), any());
+        verify(lockDao, never()).releaseLock(any(), anyString(), anyString());
+    }
+
+    @Test
+    public void clearRemovesQueueAndRefillFlag() {
+        pool.clear(STUDY_ID);
+
+        verify(jedisOps).del(KEY, REFILL_KEY);
+    }
+
+    @Test
+    public void clearRefillCooldown() {
+        pool.clearRefillCooldown(STUDY_ID);
+
+        verify(jedisOps).del(REFILL_KEY);
+    }
+
+    private void mockPop(String next, long remaining) {
+        when(cacheScripts.pop(KEY)).thenReturn(new CacheScripts.PopResult(next, remaining));
+    }
+
+    private void mockRefillFlag(boolean set) {
+        when(cacheScripts.setIfAbsent(REFILL_KEY, ExternalIdPool.REFILL_FLAG,
+                ExternalIdPool.REFILL_FLAG_EXPIRE_IN_SECONDS)).thenReturn(set);
+    }
+
+    private static ForwardCursorPagedResourceList<ExternalIdentifierInfo> page(String offsetKey, String... ids) {
+        ImmutableList.Builder<ExternalIdentifierInfo> builder = ImmutableList.builder();
+        for (String id : ids) {
+            builder.add(new ExternalIdentifierInfo(id, false));
+        }
+        List<ExternalIdentifierInfo> items = builder.build();
+        return new ForwardCursorPagedResourceList<>(items, offsetKey, items.size());
+    }
+}
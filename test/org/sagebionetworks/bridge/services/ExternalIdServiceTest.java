@@ -1,6 +1,9 @@
 package org.sagebionetworks.bridge.services;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -23,11 +26,15 @@ import org.sagebionetworks.bridge.config.Config;
 import org.sagebionetworks.bridge.dao.ExternalIdDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifier;
+import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
 import org.sagebionetworks.bridge.models.accounts.ParticipantOptionsLookup;
 import org.sagebionetworks.bridge.models.studies.Study;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -44,6 +51,9 @@ public class ExternalIdServiceTest {
     @Mock
     private ExternalIdDao externalIdDao;
     
+    @Mock
+    private ExternalIdPool externalIdPool;
+    
     @Mock
     private ParticipantOptionsService optionsService;
     
@@ -59,6 +69,7 @@ public class ExternalIdServiceTest {
         
         externalIdService = new ExternalIdService();
         externalIdService.setExternalIdDao(externalIdDao);
+        externalIdService.setExternalIdPool(externalIdPool);
         externalIdService.setParticipantOptionsService(optionsService);
         externalIdService.setConfig(config);
     }
@@ -82,6 +93,7 @@ public class ExternalIdServiceTest {
         externalIdService.addExternalIds(STUDY, EXT_IDS);
         
         verify(externalIdDao).addExternalIds(STUDY.getStudyIdentifier(), EXT_IDS);
+        verify(externalIdPool).clearRefillCooldown(STUDY.getStudyIdentifier());
     }
     
     @Test
@@ -114,6 +126,7 @@ public class ExternalIdServiceTest {
         externalIdService.deleteExternalIds(STUDY, EXT_IDS);
         
         verify(externalIdDao).deleteExternalIds(STUDY.getStudyIdentifier(), EXT_IDS);
+        verify(externalIdPool).clear(STUDY.getStudyIdentifier());
     }
     
     @Test
@@ -192,6 +205,52 @@ public class ExternalIdServiceTest {
         externalIdService.assignExternalId(STUDY, null, HEALTH_CODE);
     }
 
+    @Test
+    public void reserveAvailableExternalIdFromPool() {
+        when(externalIdPool.pop(STUDY.getStudyIdentifier())).thenReturn(EXT_ID);
+        
+        assertEquals(EXT_ID, externalIdService.reserveAvailableExternalId(STUDY));
+        
+        verify(externalIdDao).reserveExternalId(STUDY.getStudyIdentifier(), EXT_ID);
+        verify(externalIdDao, never()).getExternalIds(any(), any(), anyInt(), any(), any());
+    }
+    
+    @Test
+    public void reserveAvailableExternalIdSkipsTakenIds() {
+        when(externalIdPool.pop(STUDY.getStudyIdentifier())).thenReturn("AAA", "BBB");
+        doThrow(new EntityAlreadyExistsException(ExternalIdentifier.class, "identifier", "AAA")).when(externalIdDao)
+                .reserveExternalId(STUDY.getStudyIdentifier(), "AAA");
+        
+        assertEquals("BBB", externalIdService.reserveAvailableExternalId(STUDY));
+        
+        verify(externalIdDao).reserveExternalId(STUDY.getStudyIdentifier(), "BBB");
+    }
+    
+    @Test
+    public void reserveAvailableExternalIdFallsBackWhenPoolIsEmpty() {
+        List<ExternalIdentifierInfo> items = ImmutableList.of(new ExternalIdentifierInfo("CCC", false));
+        when(externalIdDao.getExternalIds(STUDY.getStudyIdentifier(), null, BridgeConstants.API_DEFAULT_PAGE_SIZE,
+                null, Boolean.FALSE)).thenReturn(new ForwardCursorPagedResourceList<>(items, null,
+                        BridgeConstants.API_DEFAULT_PAGE_SIZE));
+        
+        assertEquals("CCC", externalIdService.reserveAvailableExternalId(STUDY));
+        
+        verify(externalIdDao).reserveExternalId(STUDY.getStudyIdentifier(), "CCC");
+    }
+    
+    @Test
+    public void reserveAvailableExternalIdWhenNoneAreLeft() {
+        when(externalIdDao.getExternalIds(STUDY.getStudyIdentifier(), null, BridgeConstants.API_DEFAULT_PAGE_SIZE,
+                null, Boolean.FALSE)).thenReturn(new ForwardCursorPagedResourceList<>(ImmutableList.of(), null,
+                        BridgeConstants.API_DEFAULT_PAGE_SIZE));
+        try {
+            externalIdService.reserveAvailableExternalId(STUDY);
+            fail("Should have thrown exception");
+        } catch(BadRequestException e) {
+            assertEquals(ExternalIdService.NO_UNASSIGNED_IDS_ERROR, e.getMessage());
+        }
+    }
+    
     private void setupExternalIdTest(boolean withValidation, String existingValue) {
         STUDY.setExternalIdValidationEnabled(withValidation);
         when(optionsService.getOptions(HEALTH_CODE)).thenReturn(lookup);
@@ -0,0 +1,66 @@
+package org.sagebionetworks.bridge.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A local stand-in for SNS publishing, for tests. Nothing is sent to AWS; successful publishes are recorded and can be
+ * inspected. Failures can be queued up for a target (an endpoint or topic ARN), and each publish to that target throws
+ * the next queued failure until there are none left. This is thread-safe, so it can be used with real thread pools.
+ */
+public class FakeSnsClient extends AmazonSNSClient {
+
+    private final Map<String,Queue<RuntimeException>> failuresByTarget = new ConcurrentHashMap<>();
+    private final List<PublishRequest> publishedRequests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger publishAttempts = new AtomicInteger();
+
+    public FakeSnsClient() {
+        super(new BasicAWSCredentials("fake-key", "fake-secret"));
+    }
+
+    /** The next publishes to this target will throw these exceptions, in order. */
+    public void failNextPublishes(String targetARN, RuntimeException... exceptions) {
+        Queue<RuntimeException> failures = failuresByTarget.computeIfAbsent(targetARN,
+                key -> new ConcurrentLinkedQueue<>());
+        for (RuntimeException exception : exceptions) {
+            failures.add(exception);
+        }
+    }
+
+    @Override
+    public PublishResult publish(PublishRequest request) {
+        publishAttempts.incrementAndGet();
+
+        String target = (request.getTargetArn() != null) ? request.getTargetArn() : request.getTopicArn();
+        Queue<RuntimeException> failures = failuresByTarget.get(target);
+        if (failures != null) {
+            RuntimeException failure = failures.poll();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        publishedRequests.add(request);
+        return new PublishResult().withMessageId("message-" + publishedRequests.size());
+    }
+
+    /** Requests that were published successfully. */
+    public List<PublishRequest> getPublishedRequests() {
+        return ImmutableList.copyOf(publishedRequests);
+    }
+
+    /** Number of calls to publish, including failed calls. */
+    public int getPublishAttempts() {
+        return publishAttempts.get();
+    }
+}
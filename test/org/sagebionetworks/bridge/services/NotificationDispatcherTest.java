@@ -0,0 +1,295 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sns.model.EndpointDisabledException;
+import com.amazonaws.services.sns.model.InvalidParameterException;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.models.notifications.NotificationDeliveryStatus;
+import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
+import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+
+public class NotificationDispatcherTest {
+    private static final StudyIdentifier STUDY_ID = new StudyIdentifierImpl("test-study");
+    private static final String HEALTH_CODE = "health-code";
+    private static final String TOPIC_GUID = "topic-guid";
+    private static final NotificationMessage MESSAGE = new NotificationMessage.Builder().withSubject("a subject")
+            .withMessage("a message").build();
+
+    private Map<String,String> cache;
+    private CacheProvider mockCacheProvider;
+    private FakeSnsClient snsClient;
+    private NotificationRegistrationDao mockRegistrationDao;
+    private NotificationDispatcher dispatcher;
+
+    @Before
+    public void before() {
+        cache = Maps.newConcurrentMap();
+        mockCacheProvider = mock(CacheProvider.class);
+        doAnswer(invocation -> cache.put(invocation.getArgumentAt(0, String.class),
+                invocation.getArgumentAt(1, String.class))).when(mockCacheProvider).setString(anyString(),
+                anyString(), anyInt());
+        when(mockCacheProvider.getString(anyString())).thenAnswer(invocation -> cache.get(
+                invocation.getArgumentAt(0, String.class)));
+
+        Config mockConfig = mock(Config.class);
+        when(mockConfig.getInt(NotificationDispatcher.CONFIG_KEY_MAX_ATTEMPTS)).thenReturn(3);
+        when(mockConfig.getInt(NotificationDispatcher.CONFIG_KEY_RETRY_DELAY_MILLIS)).thenReturn(0);
+
+        snsClient = new FakeSnsClient();
+        mockRegistrationDao = mock(NotificationRegistrationDao.class);
+
+        dispatcher = new NotificationDispatcher();
+        dispatcher.setCacheProvider(mockCacheProvider);
+        dispatcher.setConfig(mockConfig);
+        dispatcher.setExecutorService(MoreExecutors.newDirectExecutorService());
+        dispatcher.setNotificationRegistrationDao(mockRegistrationDao);
+        dispatcher.setSnsClient(snsClient);
+    }
+
+    @Test
+    public void sendsToEveryEndpoint() {
+        NotificationDeliveryStatus initial = dispatcher.dispatchToUser(STUDY_ID, HEALTH_CODE,
+                ImmutableList.of(registration("reg1", "arn:1"), registration("reg2", "arn:2")), MESSAGE);
+        assertEquals(NotificationDeliveryStatus.State.IN_PROGRESS, initial.getState());
+        assertEquals(2, initial.getEndpointCount());
+
+        List<PublishRequest> requests = snsClient.getPublishedRequests();
+        assertEquals(2, requests.size());
+        assertEquals("arn:1", requests.get(0).getTargetArn());
+        assertEquals(MESSAGE.getSubject(), requests.get(0).getSubject());
+        assertEquals(MESSAGE.getMessage(), requests.get(0).getMessage());
+        assertEquals("arn:2", requests.get(1).getTargetArn());
+
+        NotificationDeliveryStatus status = dispatcher.getUserDeliveryStatus(STUDY_ID, HEALTH_CODE,
+                initial.getDeliveryId());
+        assertEquals(NotificationDeliveryStatus.State.SENT, status.getState());
+        assertEquals(2, status.getSentCount());
+        assertEquals(0, status.getFailedCount());
+    }
+
+    @Test
+    public void retriesServiceErrors() {
+        AmazonServiceException serviceError = new AmazonServiceException("SNS is down");
+        serviceError.setErrorType(AmazonServiceException.ErrorType.Service);
+        snsClient.failNextPublishes("arn:1", serviceError, serviceError);
+
+        NotificationDeliveryStatus initial = dispatcher.dispatchToUser(STUDY_ID, HEALTH_CODE,
+                ImmutableList.of(registration("reg1", "arn:1")), MESSAGE);
+
+        assertEquals(3, snsClient.getPublishAttempts());
+        NotificationDeliveryStatus status = dispatcher.getUserDeliveryStatus(STUDY_ID, HEALTH_CODE,
+                initial.getDeliveryId());
+        assertEquals(NotificationDeliveryStatus.State.SENT, status.getState());
+        assertEquals(1, status.getSentCount());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        AmazonServiceException serviceError = new AmazonServiceException("SNS is down");
+        serviceError.setErrorType(AmazonServiceException.ErrorType.Service);
+        snsClient.failNextPublishes("arn:1", serviceError, serviceError, serviceError);
+
+        NotificationDeliveryStatus initial = dispatcher.dispatchToUser(STUDY_ID, HEALTH_CODE,
+                ImmutableList.of(registration("reg1", "arn:1"), registration("reg2", "arn:2")), MESSAGE);
+
+        assertEquals(4, snsClient.getPublishAttempts());
+        NotificationDeliveryStatus status = dispatcher.getUserDeliveryStatus(STUDY_ID, HEALTH_CODE,
+                initial.getDeliveryId());
+        assertEquals(NotificationDeliveryStatus.State.FAILED, status.getState());
+        assertEquals(1, status.getSentCount());
+        assertEquals(1, status.getFailedCount());
+        assertEquals(ImmutableList.of("SNS is down"), status.getErrors());
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() {
+        snsClient.failNextPublishes("arn:1", new InvalidParameterException("bad parameter"));
+
+        NotificationDeliveryStatus initial = dispatcher.dispatchToUser(STUDY_ID, HEALTH_CODE,
+                ImmutableList.of(registration("reg1", "arn:1")), MESSAGE);
+
+        assertEquals(1, snsClient.getPublishAttempts());
+        NotificationDeliveryStatus status = dispatcher.getUserDeliveryStatus(STUDY_ID, HEALTH_CODE,
+                initial.getDeliveryId());
+        assertEquals(NotificationDeliveryStatus.State.FAILED, status.getState());
+        assertEquals(ImmutableList.of("bad parameter"), status.getErrors());
+    }
+
+    @Test
+    public void disabledEndpointRegistrationIsDeleted() {
+        snsClient.failNextPublishes("arn:1", new EndpointDisabledException("Endpoint is disabled"));
+
+        NotificationDeliveryStatus initial = dispatcher.dispatchToUser(STUDY_ID, HEALTH_CODE,
+                ImmutableList.of(registration("reg1", "arn:1"), registration("reg2", "arn:2")), MESSAGE);
+
+        verify(mockRegistrationDao).deleteRegistration(HEALTH_CODE, "reg1");
+        NotificationDeliveryStatus status = dispatcher.getUserDeliveryStatus(STUDY_ID, HEALTH_CODE,
+                initial.getDeliveryId());
+        assertEquals(NotificationDeliveryStatus.State.SENT, status.getState());
+        assertEquals(1, status.getSentCount());
+        assertEquals(1, status.getDisabledCount());
+    }
+
+    @Test
+    public void sendsToTopic() {
+        NotificationDeliveryStatus initial = dispatcher.dispatchToTopic(STUDY_ID, TOPIC_GUID, "arn:topic", MESSAGE);
+
+        List<PublishRequest> requests = snsClient.getPublishedRequests();
+        assertEquals(1, requests.size());
+        assertEquals("arn:topic", requests.get(0).getTopicArn());
+        verifyZeroInteractions(mockRegistrationDao);
+
+        NotificationDeliveryStatus status = dispatcher.getTopicDeliveryStatus(STUDY_ID, TOPIC_GUID,
+                initial.getDeliveryId());
+        assertEquals(NotificationDeliveryStatus.State.SENT, status.getState());
+    }
+
+    @Test
+    public void sendsToEndpointsConcurrently() throws Exception {
+        // Each publish waits for the other one. This only completes if both are in flight at once.
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        FakeSnsClient barrierSnsClient = new FakeSnsClient() {
+            @Override
+            public PublishResult publish(PublishRequest request) {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                    throw new RuntimeException("Endpoints were not sent concurrently");
+                }
+                return super.publish(request);
+            }
+        };
+        dispatcher.setSnsClient(barrierSnsClient);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        dispatcher.setExecutorService(executorService);
+        try {
+            NotificationDeliveryStatus initial = dispatcher.dispatchToUser(STUDY_ID, HEALTH_CODE,
+                    ImmutableList.of(registration("reg1", "arn:1"), registration("reg2", "arn:2")), MESSAGE);
+
+            executorService.shutdown();
+            assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+
+            NotificationDeliveryStatus status = dispatcher.getUserDeliveryStatus(STUDY_ID, HEALTH_CODE,
+                initial.getDeliveryId());
+            assertEquals(NotificationDeliveryStatus.State.SENT, status.getState());
+            assertEquals(2, status.getSentCount());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void deliveryStatusIsScopedToStudy() {
+        NotificationDeliveryStatus initial = dispatcher.dispatchToTopic(STUDY_ID, TOPIC_GUID, "arn:topic", MESSAGE);
+        try {
+            dispatcher.getTopicDeliveryStatus(new StudyIdentifierImpl("other-study"), TOPIC_GUID,
+                    initial.getDeliveryId());
+            fail("Should have thrown exception");
+        } catch (EntityNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void deliveryStatusIsScopedToParticipant() {
+        NotificationDeliveryStatus initial = dispatcher.dispatchToUser(STUDY_ID, HEALTH_CODE,
+                ImmutableList.of(registration("reg1", "arn:1")), MESSAGE);
+        try {
+            dispatcher.getUserDeliveryStatus(STUDY_ID, "other-health-code", initial.getDeliveryId());
+            fail("Should have thrown exception");
+        } catch (EntityNotFoundException e) {
+            // expected
+        }
+        try {
+            dispatcher.getTopicDeliveryStatus(STUDY_ID, HEALTH_CODE, initial.getDeliveryId());
+            fail("Should have thrown exception");
+        } catch (EntityNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void deliveryStatusIsScopedToTopic() {
+        NotificationDeliveryStatus initial = dispatcher.dispatchToTopic(STUDY_ID, TOPIC_GUID, "arn:topic", MESSAGE);
+        try {
+            dispatcher.getTopicDeliveryStatus(STUDY_ID, "other-topic-guid", initial.getDeliveryId());
+            fail("Should have thrown exception");
+        } catch (EntityNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void endpointsThatCannotBeQueuedAreRecordedAsFailed() {
+        ExecutorService mockExecutorService = mock(ExecutorService.class);
+        when(mockExecutorService.submit(any(Runnable.class))).thenThrow(new RejectedExecutionException());
+        dispatcher.setExecutorService(mockExecutorService);
+
+        NotificationDeliveryStatus initial = dispatcher.dispatchToUser(STUDY_ID, HEALTH_CODE,
+                ImmutableList.of(registration("reg1", "arn:1")), MESSAGE);
+
+        NotificationDeliveryStatus status = dispatcher.getUserDeliveryStatus(STUDY_ID, HEALTH_CODE,
+                initial.getDeliveryId());
+        assertEquals(NotificationDeliveryStatus.State.FAILED, status.getState());
+        assertEquals(ImmutableList.of(NotificationDispatcher.QUEUE_FULL_ERROR), status.getErrors());
+    }
+
+    @Test
+    public void failureToSaveInitialStatusIsThrown() {
+        doThrow(new BridgeServiceException("Redis is down")).when(mockCacheProvider).setString(anyString(),
+                anyString(), anyInt());
+        try {
+            dispatcher.dispatchToUser(STUDY_ID, HEALTH_CODE, ImmutableList.of(registration("reg1", "arn:1")),
+                    MESSAGE);
+            fail("Should have thrown exception");
+        } catch (BridgeServiceException e) {
+            // expected
+        }
+        assertTrue(snsClient.getPublishedRequests().isEmpty());
+    }
+
+    private static NotificationRegistration registration(String guid, String endpointARN) {
+        NotificationRegistration registration = NotificationRegistration.create();
+        registration.setHealthCode(HEALTH_CODE);
+        registration.setGuid(guid);
+        registration.setEndpointARN(endpointARN);
+        return registration;
+    }
+}
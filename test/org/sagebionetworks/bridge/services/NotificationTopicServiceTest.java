@@ -34,7 +34,6 @@ import org.sagebionetworks.bridge.models.notifications.NotificationTopic;
 import org.sagebionetworks.bridge.models.notifications.TopicSubscription;
 
 import com.amazonaws.services.sns.AmazonSNSClient;
-import com.amazonaws.services.sns.model.PublishRequest;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -58,8 +57,8 @@ public class NotificationTopicServiceTest {
     @Mock
     private NotificationRegistration mockNotificationRegistration;
     
-    @Captor
-    private ArgumentCaptor<PublishRequest> publishRequestCaptor;
+    @Mock
+    private NotificationDispatcher mockDispatcher;
     
     @Captor
     private ArgumentCaptor<NotificationTopic> topicCaptor;
@@ -73,6 +72,7 @@ public class NotificationTopicServiceTest {
         service.setSnsClient(mockSnsClient);
         service.setNotificationRegistrationDao(mockRegistrationDao);
         service.setTopicSubscriptionDao(mockSubscriptionDao);
+        service.setNotificationDispatcher(mockDispatcher);
     }
     
     @Test
@@ -166,11 +166,18 @@ public class NotificationTopicServiceTest {
         
         service.sendNotification(TEST_STUDY,  "ABC-DEF", message);
         
-        verify(mockSnsClient).publish(publishRequestCaptor.capture());
-        PublishRequest request = publishRequestCaptor.getValue();
-        assertEquals("a subject", request.getSubject());
-        assertEquals("a message", request.getMessage());
-        assertEquals("topicARN", request.getTopicArn());
+        verify(mockDispatcher).dispatchToTopic(TEST_STUDY, "ABC-DEF", "topicARN", message);
+    }
+    
+    @Test
+    public void getDeliveryStatus() {
+        NotificationTopic topic = getNotificationTopic();
+        doReturn(topic).when(mockTopicDao).getTopic(TEST_STUDY, "ABC-DEF");
+        
+        service.getDeliveryStatus(TEST_STUDY, "ABC-DEF", "deliveryId");
+        
+        verify(mockTopicDao).getTopic(TEST_STUDY, "ABC-DEF");
+        verify(mockDispatcher).getTopicDeliveryStatus(TEST_STUDY, "ABC-DEF", "deliveryId");
     }
     
     private NotificationTopic createTopic(String guid) {
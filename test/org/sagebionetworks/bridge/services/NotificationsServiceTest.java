@@ -5,10 +5,9 @@ import static org.sagebionetworks.bridge.TestUtils.getNotificationRegistration;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
-import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 import java.util.List;
 import java.util.Map;
@@ -16,8 +15,6 @@ import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -25,17 +22,13 @@ import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.NotImplementedException;
 import org.sagebionetworks.bridge.models.OperatingSystem;
+import org.sagebionetworks.bridge.models.notifications.NotificationDeliveryStatus;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
 import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
 
-import com.amazonaws.services.sns.AmazonSNSClient;
-import com.amazonaws.services.sns.model.InvalidParameterException;
-import com.amazonaws.services.sns.model.PublishRequest;
-import com.amazonaws.services.sns.model.PublishResult;
-
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -52,10 +45,7 @@ public class NotificationsServiceTest {
     private StudyService mockStudyService;
     
     @Mock
-    private AmazonSNSClient mockSnsClient;
-    
-    @Mock
-    private PublishResult mockPublishResult;
+    private NotificationDispatcher mockDispatcher;
     
     @Mock
     private NotificationRegistrationDao mockRegistrationDao;
@@ -63,9 +53,6 @@ public class NotificationsServiceTest {
     @Mock
     private Study mockStudy;
     
-    @Captor
-    private ArgumentCaptor<PublishRequest> requestCaptor;
-
     private NotificationsService service;
     
     @Before
@@ -73,7 +60,7 @@ public class NotificationsServiceTest {
         service = new NotificationsService();
         service.setStudyService(mockStudyService);
         service.setNotificationRegistrationDao(mockRegistrationDao);
-        service.setSnsClient(mockSnsClient);
+        service.setNotificationDispatcher(mockDispatcher);
         
         Map<String,String> map = Maps.newHashMap();
         map.put(OS_NAME, PLATFORM_ARN);
@@ -167,18 +154,15 @@ public class NotificationsServiceTest {
         List<NotificationRegistration> list = Lists.newArrayList(registration);
         doReturn(list).when(mockRegistrationDao).listRegistrations(HEALTH_CODE);
         
-        doReturn(mockPublishResult).when(mockSnsClient).publish(any());
-        
+        NotificationDeliveryStatus status = new NotificationDeliveryStatus("deliveryId",
+                NotificationDeliveryStatus.State.IN_PROGRESS, 1, 0, 0, 0, null);
         NotificationMessage message = getNotificationMessage();
+        doReturn(status).when(mockDispatcher).dispatchToUser(STUDY_ID, HEALTH_CODE, list, message);
         
-        service.sendNotificationToUser(STUDY_ID, HEALTH_CODE, message);
-        
-        verify(mockSnsClient).publish(requestCaptor.capture());
+        NotificationDeliveryStatus result = service.sendNotificationToUser(STUDY_ID, HEALTH_CODE, message);
+        assertEquals(status, result);
         
-        PublishRequest request = requestCaptor.getValue();
-        assertEquals(message.getSubject(), request.getSubject());
-        assertEquals(message.getMessage(), request.getMessage());
-        assertEquals("endpointARN", request.getTargetArn());
+        verify(mockDispatcher).dispatchToUser(STUDY_ID, HEALTH_CODE, list, message);
     }
     
     @Test
@@ -192,27 +176,15 @@ public class NotificationsServiceTest {
         } catch(BadRequestException e) {
             assertEquals("Participant has not registered to receive push notifications.", e.getMessage());
         }
+        verifyZeroInteractions(mockDispatcher);
     }
     
-    // In this test, we create no less than two amazon exceptions, and verify that we throw one exception 
-    // that summarizes the sorry situation for the user, while also hiding all the Amazon gobbledy-gook. 
-    // This is thrown as a 400 error because the most common ways you can trigger it are to submit bad 
-    // data, like an invalid device token. 
     @Test
-    public void sendNotificationAmazonExceptionConverted() {
-        NotificationRegistration reg1 = getNotificationRegistration();
-        NotificationRegistration reg2 = getNotificationRegistration();
-        List<NotificationRegistration> list = Lists.newArrayList(reg1, reg2);
-        doReturn(list).when(mockRegistrationDao).listRegistrations(HEALTH_CODE);
+    public void getDeliveryStatus() {
+        NotificationDeliveryStatus status = new NotificationDeliveryStatus("deliveryId",
+                NotificationDeliveryStatus.State.SENT, 1, 1, 0, 0, null);
+        doReturn(status).when(mockDispatcher).getUserDeliveryStatus(STUDY_ID, HEALTH_CODE, "deliveryId");
         
-        doThrow(new InvalidParameterException("bad parameter")).when(mockSnsClient).publish(any());
-        
-        NotificationMessage message = getNotificationMessage();
-        try {
-            service.sendNotificationToUser(STUDY_ID, HEALTH_CODE, message);
-            fail("Should have thrown exception.");
-        } catch(BadRequestException e) {
-            assertEquals("Error sending push notification: bad parameter; bad parameter.", e.getMessage());
-        }
+        assertEquals(status, service.getDeliveryStatus(STUDY_ID, HEALTH_CODE, "deliveryId"));
     }
 }
@@ -15,7 +15,9 @@ import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -26,6 +28,7 @@ import org.junit.Test;
 
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.CacheProvider;
 import org.sagebionetworks.bridge.dao.ParticipantOption;
 import org.sagebionetworks.bridge.dao.ParticipantOption.SharingScope;
 import org.sagebionetworks.bridge.dao.ParticipantOptionsDao;
@@ -35,6 +38,7 @@ import org.sagebionetworks.bridge.models.accounts.ExternalIdentifier;
 import org.sagebionetworks.bridge.models.accounts.ParticipantOptionsLookup;
 import org.sagebionetworks.bridge.models.studies.Study;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -44,12 +48,15 @@ public class ParticipantOptionsServiceTest {
     
     private ParticipantOptionsService service;
     private ParticipantOptionsDao mockDao;
+    private CacheProvider mockCacheProvider;
     
     @Before
     public void before() {
         service = new ParticipantOptionsService();
         mockDao = mock(ParticipantOptionsDao.class);
         service.setParticipantOptionsDao(mockDao);
+        mockCacheProvider = mock(CacheProvider.class);
+        service.setCacheProvider(mockCacheProvider);
         
         Study study = new DynamoStudy();
         study.setDataGroups(Sets.newHashSet("A","B","group1","group2","group3"));
@@ -61,6 +68,7 @@ public class ParticipantOptionsServiceTest {
 
         verify(mockDao).setOption(TEST_STUDY, HEALTH_CODE, EMAIL_NOTIFICATIONS, Boolean.TRUE.toString());
         verifyNoMoreInteractions(mockDao);
+        verify(mockCacheProvider).removeParticipantOptions(HEALTH_CODE);
     }
     
     @Test
@@ -125,6 +133,7 @@ public class ParticipantOptionsServiceTest {
         
         verify(mockDao).setAllOptions(TEST_STUDY, HEALTH_CODE, options);
         verifyNoMoreInteractions(mockDao);
+        verify(mockCacheProvider).removeParticipantOptions(HEALTH_CODE);
     }
     
     @Test
@@ -186,6 +195,7 @@ public class ParticipantOptionsServiceTest {
         
         verify(mockDao).deleteAllOptions(HEALTH_CODE);
         verifyNoMoreInteractions(mockDao);
+        verify(mockCacheProvider).removeParticipantOptions(HEALTH_CODE);
     }
     
     @Test
@@ -194,6 +204,7 @@ public class ParticipantOptionsServiceTest {
         
         verify(mockDao).deleteOption(HEALTH_CODE, DATA_GROUPS);
         verifyNoMoreInteractions(mockDao);
+        verify(mockCacheProvider).removeParticipantOptions(HEALTH_CODE);
     }
 
     @Test
@@ -203,6 +214,7 @@ public class ParticipantOptionsServiceTest {
         
         ParticipantOptionsLookup lookup = new ParticipantOptionsLookup(map);
         
+        when(mockCacheProvider.getParticipantOptionsGeneration(HEALTH_CODE)).thenReturn("generation");
         when(mockDao.getOptions(HEALTH_CODE)).thenReturn(lookup);
         
         ParticipantOptionsLookup result = service.getOptions(HEALTH_CODE);
@@ -210,6 +222,31 @@ public class ParticipantOptionsServiceTest {
         
         verify(mockDao).getOptions(HEALTH_CODE);
         verifyNoMoreInteractions(mockDao);
+        verify(mockCacheProvider).setParticipantOptions(HEALTH_CODE, map, "generation");
+    }
+    
+    @Test
+    public void getOptionsFromCache() {
+        when(mockCacheProvider.getParticipantOptions(HEALTH_CODE)).thenReturn(map(DATA_GROUPS, "a,b,c"));
+        
+        ParticipantOptionsLookup result = service.getOptions(HEALTH_CODE);
+        assertEquals(Sets.newHashSet("a","b","c"), result.getStringSet(DATA_GROUPS));
+        
+        verifyNoMoreInteractions(mockDao);
+        verify(mockCacheProvider, never()).setParticipantOptions(any(), any(), any());
+    }
+    
+    @Test
+    public void getOptionsForHealthCodes() {
+        AllParticipantOptionsLookup allLookup = new AllParticipantOptionsLookup();
+        when(mockDao.getOptions(ImmutableList.of("AAA", "BBB"))).thenReturn(allLookup);
+        
+        AllParticipantOptionsLookup result = service.getOptions(ImmutableList.of("AAA", "BBB"));
+        assertEquals(allLookup, result);
+        
+        verify(mockDao).getOptions(ImmutableList.of("AAA", "BBB"));
+        verifyNoMoreInteractions(mockDao);
+        verifyNoMoreInteractions(mockCacheProvider);
     }
     
     @Test
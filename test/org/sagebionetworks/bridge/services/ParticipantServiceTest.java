@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.any;
@@ -77,6 +78,7 @@ import org.sagebionetworks.bridge.models.subpopulations.ConsentSignature;
 import org.sagebionetworks.bridge.models.subpopulations.Subpopulation;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -204,6 +206,7 @@ public class ParticipantServiceTest {
     public void before() {
         STUDY.setExternalIdValidationEnabled(false);
         STUDY.setExternalIdRequiredOnSignup(false);
+        STUDY.setExternalIdAutoAssignmentEnabled(false);
         STUDY.setAccountLimit(0);
         participantService = new ParticipantService();
         participantService.setAccountDao(accountDao);
@@ -301,6 +304,36 @@ public class ParticipantServiceTest {
         verify(externalIdService).assignExternalId(STUDY, EXTERNAL_ID, HEALTH_CODE);
     }
     
+    @Test
+    public void createParticipantWithAutoAssignedExternalId() {
+        STUDY.setExternalIdValidationEnabled(true);
+        STUDY.setExternalIdRequiredOnSignup(true);
+        STUDY.setExternalIdAutoAssignmentEnabled(true);
+        mockHealthCodeAndAccountRetrieval();
+        when(externalIdService.reserveAvailableExternalId(STUDY)).thenReturn("BBB");
+        
+        StudyParticipant participant = new StudyParticipant.Builder().copyOf(PARTICIPANT).withExternalId(null)
+                .build();
+        participantService.createParticipant(STUDY, CALLER_ROLES, participant, false);
+        
+        verify(externalIdService).reserveAvailableExternalId(STUDY);
+        verify(externalIdService, never()).reserveExternalId(any(), any(), any());
+        verify(externalIdService).assignExternalId(STUDY, "BBB", HEALTH_CODE);
+    }
+    
+    @Test
+    public void createParticipantWithAutoAssignmentKeepsSubmittedExternalId() {
+        STUDY.setExternalIdValidationEnabled(true);
+        STUDY.setExternalIdAutoAssignmentEnabled(true);
+        mockHealthCodeAndAccountRetrieval();
+        
+        participantService.createParticipant(STUDY, CALLER_ROLES, PARTICIPANT, false);
+        
+        verify(externalIdService, never()).reserveAvailableExternalId(any());
+        verify(externalIdService).reserveExternalId(STUDY, EXTERNAL_ID, HEALTH_CODE);
+        verify(externalIdService).assignExternalId(STUDY, EXTERNAL_ID, HEALTH_CODE);
+    }
+    
     @Test
     public void createParticipantWithInvalidParticipant() {
         // It doesn't get more invalid than this...
@@ -432,6 +465,20 @@ public class ParticipantServiceTest {
         
         List<UserConsentHistory> retrievedHistory2 = participant.getConsentHistories().get(subpop2.getGuidString());
         assertTrue(retrievedHistory2.isEmpty());
+        
+        // Histories are built from the list of subpopulations, without loading each one again.
+        verify(subpopService).getSubpopulations(STUDY.getStudyIdentifier());
+        verify(subpopService, never()).getSubpopulation(any(), any());
+    }
+    
+    @Test
+    public void getUserConsentHistoryWithoutSignaturesDoesNotLoadSubpopulation() {
+        when(account.getConsentSignatureHistory(SUBPOP_GUID)).thenReturn(ImmutableList.of());
+        
+        List<UserConsentHistory> history = participantService.getUserConsentHistory(account, SUBPOP_GUID);
+        assertTrue(history.isEmpty());
+        
+        verify(subpopService, never()).getSubpopulation(any(), any());
     }
     
     @Test(expected = EntityNotFoundException.class)
@@ -854,6 +901,15 @@ public class ParticipantServiceTest {
         
         verify(notificationsService).sendNotificationToUser(STUDY.getStudyIdentifier(), HEALTH_CODE, message);
     }
+    
+    @Test
+    public void getNotificationDeliveryStatus() {
+        mockHealthCodeAndAccountRetrieval();
+        
+        participantService.getNotificationDeliveryStatus(STUDY, ID, "deliveryId");
+        
+        verify(notificationsService).getDeliveryStatus(STUDY.getStudyIdentifier(), HEALTH_CODE, "deliveryId");
+    }
 
     // Creating an account and supplying an externalId
     
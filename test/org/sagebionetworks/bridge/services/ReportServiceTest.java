@@ -4,12 +4,16 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import java.util.List;
+import java.util.function.BiFunction;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
@@ -23,14 +27,17 @@ import org.mockito.Mock;
 
 import org.mockito.runners.MockitoJUnitRunner;
 
+import org.sagebionetworks.bridge.cache.ReportDataCache;
 import org.sagebionetworks.bridge.dao.ReportDataDao;
 import org.sagebionetworks.bridge.dao.ReportIndexDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.models.DateRangeResourceList;
 import org.sagebionetworks.bridge.models.ReportTypeResourceList;
+import org.sagebionetworks.bridge.models.reports.ParticipantReportEntry;
 import org.sagebionetworks.bridge.models.reports.ReportData;
 import org.sagebionetworks.bridge.models.reports.ReportDataKey;
+import org.sagebionetworks.bridge.models.reports.ReportEntryStatus;
 import org.sagebionetworks.bridge.models.reports.ReportIndex;
 import org.sagebionetworks.bridge.models.reports.ReportType;
 
@@ -66,6 +73,9 @@ public class ReportServiceTest {
     @Mock
     ReportIndexDao mockReportIndexDao;
     
+    @Mock
+    ReportDataCache mockReportDataCache;
+    
     @Captor
     ArgumentCaptor<ReportData> reportDataCaptor;
     
@@ -75,17 +85,30 @@ public class ReportServiceTest {
     @Captor
     ArgumentCaptor<ReportDataKey> reportDataKeyCaptor;
     
+    @Captor
+    ArgumentCaptor<List<ReportData>> reportListCaptor;
+    
     ReportService service;
     
     DateRangeResourceList<? extends ReportData> results;
     
     ReportTypeResourceList<? extends ReportIndex> indices;
     
+    @SuppressWarnings("unchecked")
     @Before
     public void before() throws Exception {
         service = new ReportService();
         service.setReportDataDao(mockReportDataDao);
         service.setReportIndexDao(mockReportIndexDao);
+        service.setReportDataCache(mockReportDataCache);
+        
+        // Nothing is cached, so the whole range is loaded from the DAO.
+        doAnswer(invocation -> {
+            BiFunction<LocalDate, LocalDate, List<? extends ReportData>> loader = invocation.getArgumentAt(3,
+                    BiFunction.class);
+            return Lists.newArrayList(loader.apply(invocation.getArgumentAt(1, LocalDate.class),
+                    invocation.getArgumentAt(2, LocalDate.class)));
+        }).when(mockReportDataCache).getReportData(any(), any(), any(), any());
 
         List<ReportData> list = Lists.newArrayList();
         list.add(createReport(LocalDate.parse("2015-02-10"), "First", "Name"));
@@ -131,7 +154,7 @@ public class ReportServiceTest {
                 TEST_STUDY, IDENTIFIER, START_DATE, END_DATE);
         
         verify(mockReportDataDao).getReportData(STUDY_REPORT_DATA_KEY, START_DATE, END_DATE);
-        assertEquals(results, retrieved);
+        assertEquals(results.getItems(), retrieved.getItems());
     }
 
     @Captor
@@ -153,7 +176,7 @@ public class ReportServiceTest {
                     localDateCaptor.capture());
             assertEquals(yesterday, localDateCaptor.getAllValues().get(0));
             assertEquals(today, localDateCaptor.getAllValues().get(1));
-            assertEquals(results, retrieved);
+            assertEquals(results.getItems(), retrieved.getItems());
         } finally {
             DateTimeUtils.setCurrentMillisSystem();
         }
@@ -167,7 +190,7 @@ public class ReportServiceTest {
                 TEST_STUDY, IDENTIFIER, HEALTH_CODE, START_DATE, END_DATE);
 
         verify(mockReportDataDao).getReportData(PARTICIPANT_REPORT_DATA_KEY, START_DATE, END_DATE);
-        assertEquals(results, retrieved);
+        assertEquals(results.getItems(), retrieved.getItems());
     }
 
     @Test
@@ -186,7 +209,7 @@ public class ReportServiceTest {
                     localDateCaptor.capture());
             assertEquals(yesterday, localDateCaptor.getAllValues().get(0));
             assertEquals(today, localDateCaptor.getAllValues().get(1));
-            assertEquals(results, retrieved);
+            assertEquals(results.getItems(), retrieved.getItems());
         } finally {
             DateTimeUtils.setCurrentMillisSystem();
         }
@@ -205,6 +228,7 @@ public class ReportServiceTest {
         assertEquals("First", retrieved.getData().get("field1").asText());
         assertEquals("Name", retrieved.getData().get("field2").asText());
         
+        verify(mockReportDataCache).setReportData(STUDY_REPORT_DATA_KEY, someData);
         verify(mockReportIndexDao).addIndex(new ReportDataKey.Builder()
                 .withStudyIdentifier(TEST_STUDY)
                 .withReportType(ReportType.STUDY)
@@ -224,6 +248,7 @@ public class ReportServiceTest {
         assertEquals("First", retrieved.getData().get("field1").asText());
         assertEquals("Name", retrieved.getData().get("field2").asText());
         
+        verify(mockReportDataCache).setReportData(PARTICIPANT_REPORT_DATA_KEY, someData);
         verify(mockReportIndexDao).addIndex(new ReportDataKey.Builder()
                 .withHealthCode(HEALTH_CODE)
                 .withStudyIdentifier(TEST_STUDY)
@@ -236,6 +261,7 @@ public class ReportServiceTest {
         service.deleteStudyReport(TEST_STUDY, IDENTIFIER);
         
         verify(mockReportDataDao).deleteReportData(STUDY_REPORT_DATA_KEY);
+        verify(mockReportDataCache).removeReportData(STUDY_REPORT_DATA_KEY);
         verify(mockReportIndexDao).removeIndex(STUDY_REPORT_DATA_KEY);
     }
     
@@ -244,6 +270,7 @@ public class ReportServiceTest {
         service.deleteParticipantReport(TEST_STUDY, IDENTIFIER, HEALTH_CODE);
         
         verify(mockReportDataDao).deleteReportData(PARTICIPANT_REPORT_DATA_KEY);
+        verify(mockReportDataCache).removeReportData(PARTICIPANT_REPORT_DATA_KEY);
         verifyNoMoreInteractions(mockReportIndexDao);
     }
     
@@ -290,6 +317,7 @@ public class ReportServiceTest {
             service.deleteStudyReportRecord(TEST_STUDY, IDENTIFIER, DATE);
             
             verify(mockReportDataDao).deleteReportDataRecord(STUDY_REPORT_DATA_KEY, DATE);
+            verify(mockReportDataCache).removeReportData(STUDY_REPORT_DATA_KEY, DATE);
             verify(mockReportDataDao).getReportData(STUDY_REPORT_DATA_KEY, startDate, endDate);
             verify(mockReportIndexDao).removeIndex(STUDY_REPORT_DATA_KEY);
         } finally {
@@ -308,6 +336,7 @@ public class ReportServiceTest {
             service.deleteParticipantReportRecord(TEST_STUDY, IDENTIFIER, DATE, HEALTH_CODE);
 
             verify(mockReportDataDao).deleteReportDataRecord(PARTICIPANT_REPORT_DATA_KEY, DATE);
+            verify(mockReportDataCache).removeReportData(PARTICIPANT_REPORT_DATA_KEY, DATE);
         } finally {
             DateTimeUtils.setCurrentMillisSystem();
         }
@@ -320,6 +349,8 @@ public class ReportServiceTest {
     public void defaultStartAndEndDates() {
         // mock now
         DateTimeUtils.setCurrentMillisFixed(DateTime.parse("2016-02-08T09:00-0800").getMillis());
+        doReturn(results).when(mockReportDataDao).getReportData(PARTICIPANT_REPORT_DATA_KEY,
+                LocalDate.parse("2016-02-07"), LocalDate.parse("2016-02-08"));
         try {
             service.getParticipantReport(TEST_STUDY, IDENTIFIER, HEALTH_CODE, null, null);
             
@@ -528,6 +559,85 @@ public class ReportServiceTest {
         assertFalse(captured.isPublic());
     }
     
+    @Test
+    public void saveParticipantReports() {
+        ParticipantReportEntry entry1 = new ParticipantReportEntry(HEALTH_CODE, DATE, CANNED_REPORT.getData());
+        ParticipantReportEntry entry2 = new ParticipantReportEntry("otherHealthCode", DATE, CANNED_REPORT.getData());
+        doReturn(Lists.newArrayList()).when(mockReportDataDao).batchSaveReportData(any());
+        
+        List<ReportEntryStatus> statuses = service.saveParticipantReports(TEST_STUDY, IDENTIFIER,
+                Lists.newArrayList(entry1, entry2));
+        
+        assertEquals(2, statuses.size());
+        assertTrue(statuses.get(0).isSaved());
+        assertTrue(statuses.get(1).isSaved());
+        
+        verify(mockReportDataDao).batchSaveReportData(reportListCaptor.capture());
+        List<ReportData> saved = reportListCaptor.getValue();
+        assertEquals(2, saved.size());
+        assertEquals(PARTICIPANT_REPORT_DATA_KEY.getKeyString(), saved.get(0).getKey());
+        assertEquals(DATE, saved.get(0).getDate());
+        assertEquals(CANNED_REPORT.getData(), saved.get(0).getData());
+        assertEquals("otherHealthCode:" + IDENTIFIER + ":" + TEST_STUDY.getIdentifier(), saved.get(1).getKey());
+        
+        verify(mockReportDataCache).setReportData(saved);
+        // The index is only added once for all the entries.
+        verify(mockReportIndexDao).addIndex(any());
+    }
+    
+    @Test
+    public void saveParticipantReportsReportsEachEntry() {
+        ParticipantReportEntry valid = new ParticipantReportEntry(HEALTH_CODE, DATE, CANNED_REPORT.getData());
+        ParticipantReportEntry noDate = new ParticipantReportEntry(HEALTH_CODE, null, CANNED_REPORT.getData());
+        ParticipantReportEntry duplicate = new ParticipantReportEntry(HEALTH_CODE, DATE, CANNED_REPORT.getData());
+        ParticipantReportEntry unprocessed = new ParticipantReportEntry(HEALTH_CODE, START_DATE,
+                CANNED_REPORT.getData());
+        doAnswer(invocation -> {
+            List<?> list = invocation.getArgumentAt(0, List.class);
+            return Lists.newArrayList(list.get(1));
+        }).when(mockReportDataDao).batchSaveReportData(any());
+        
+        List<ReportEntryStatus> statuses = service.saveParticipantReports(TEST_STUDY, IDENTIFIER,
+                Lists.newArrayList(valid, noDate, duplicate, unprocessed, null));
+        
+        assertEquals(5, statuses.size());
+        for (int i=0; i < statuses.size(); i++) {
+            assertEquals(i, statuses.get(i).getIndex());
+        }
+        assertTrue(statuses.get(0).isSaved());
+        assertFalse(statuses.get(1).isSaved());
+        assertTrue(statuses.get(1).getMessage().contains("date is required"));
+        assertFalse(statuses.get(2).isSaved());
+        assertFalse(statuses.get(3).isSaved());
+        assertFalse(statuses.get(4).isSaved());
+        
+        verify(mockReportDataCache).setReportData(reportListCaptor.capture());
+        assertEquals(1, reportListCaptor.getValue().size());
+        assertEquals(DATE, reportListCaptor.getValue().get(0).getDate());
+        verify(mockReportIndexDao).addIndex(PARTICIPANT_REPORT_DATA_KEY);
+    }
+    
+    @Test
+    public void saveParticipantReportsWithNoValidEntriesDoesNoWork() {
+        ParticipantReportEntry noHealthCode = new ParticipantReportEntry(null, DATE, CANNED_REPORT.getData());
+        
+        List<ReportEntryStatus> statuses = service.saveParticipantReports(TEST_STUDY, IDENTIFIER,
+                Lists.newArrayList(noHealthCode));
+        
+        assertFalse(statuses.get(0).isSaved());
+        verifyNoMoreInteractions(mockReportDataDao);
+        verify(mockReportIndexDao, never()).addIndex(any());
+    }
+    
+    @Test(expected = BadRequestException.class)
+    public void saveParticipantReportsLimitsEntries() {
+        List<ParticipantReportEntry> entries = Lists.newArrayList();
+        for (int i=0; i <= ReportService.MAX_BULK_ENTRIES; i++) {
+            entries.add(new ParticipantReportEntry(HEALTH_CODE, DATE.minusDays(i), CANNED_REPORT.getData()));
+        }
+        service.saveParticipantReports(TEST_STUDY, IDENTIFIER, entries);
+    }
+    
     private void invalid(Runnable runnable, String fieldName, String message) {
         try {
             runnable.run();
@@ -8,6 +8,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -20,6 +21,7 @@ import static org.sagebionetworks.bridge.services.ScheduledActivityService.V3_ME
 import static org.sagebionetworks.bridge.services.ScheduledActivityService.V4_MERGE;
 import static org.sagebionetworks.bridge.validators.ScheduleContextValidator.MAX_DATE_RANGE_IN_DAYS;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,6 +47,7 @@ import org.sagebionetworks.bridge.dynamodb.DynamoSchedulePlan;
 import org.sagebionetworks.bridge.dynamodb.DynamoScheduledActivity;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.json.DateUtils;
 import org.sagebionetworks.bridge.models.ClientInfo;
@@ -65,6 +68,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -140,6 +144,17 @@ public class ScheduledActivityServiceMockTest {
             schActivity.setGuid((String)args[1]);
             return schActivity;
         });
+        when(activityDao.getActivitiesByGuid(anyString(), any())).thenAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            List<ScheduledActivity> dbActivities = Lists.newArrayList();
+            for (Object guid : (Collection<?>)args[1]) {
+                DynamoScheduledActivity schActivity = new DynamoScheduledActivity();
+                schActivity.setHealthCode((String)args[0]);
+                schActivity.setGuid((String)guid);
+                dbActivities.add(schActivity);
+            }
+            return dbActivities;
+        });
         when(activityDao.getActivities(context.getInitialTimeZone(), scheduledActivities))
                 .thenReturn(scheduledActivities);
         
@@ -287,15 +302,17 @@ public class ScheduledActivityServiceMockTest {
         scheduledActivities.get(3).setClientData(TestUtils.getClientData());
         
         ArgumentCaptor<List> updateCapture = ArgumentCaptor.forClass(List.class);
-        ArgumentCaptor<ScheduledActivity> publishCapture = ArgumentCaptor.forClass(ScheduledActivity.class);
+        ArgumentCaptor<List> publishCapture = ArgumentCaptor.forClass(List.class);
         
         service.updateScheduledActivities("BBB", scheduledActivities);
         
         verify(activityDao).updateActivities(anyString(), updateCapture.capture());
-        // Three activities have timestamp updates and need to be persisted
-        verify(activityDao, times(count)).getActivity(anyString(), anyString());
-        // Two activities have been finished and generate activity finished events
-        verify(activityEventService, times(2)).publishActivityFinishedEvent(publishCapture.capture());
+        // All activities are loaded in one batch
+        verify(activityDao).getActivitiesByGuid(eq("BBB"), any());
+        verify(activityDao, never()).getActivity(anyString(), anyString());
+        // Two activities have been finished and generate activity finished events, published in one batch
+        verify(activityEventService).publishActivityFinishedEvents(eq("BBB"), publishCapture.capture());
+        verify(activityEventService, never()).publishActivityFinishedEvent(any());
         
         List<DynamoScheduledActivity> dbActivities = (List<DynamoScheduledActivity>)updateCapture.getValue();
         assertEquals(4, dbActivities.size());
@@ -307,10 +324,44 @@ public class ScheduledActivityServiceMockTest {
         assertEquals(scheduledActivities.get(3).getClientData(), dbActivities.get(3).getClientData());
         
         // Correct published activities
-        ScheduledActivity publishedActivity1 = publishCapture.getAllValues().get(0);
-        assertEquals(scheduledActivities.get(1).getGuid(), publishedActivity1.getGuid());
-        ScheduledActivity publishedActivity2 = publishCapture.getAllValues().get(1);
-        assertEquals(scheduledActivities.get(2).getGuid(), publishedActivity2.getGuid());
+        List<ScheduledActivity> publishedActivities = (List<ScheduledActivity>)publishCapture.getValue();
+        assertEquals(2, publishedActivities.size());
+        assertEquals(scheduledActivities.get(1).getGuid(), publishedActivities.get(0).getGuid());
+        assertEquals(scheduledActivities.get(2).getGuid(), publishedActivities.get(1).getGuid());
+    }
+    
+    @SuppressWarnings({"unchecked","rawtypes"})
+    @Test
+    public void updateActivitiesSavesRepeatedActivityOnce() throws Exception {
+        ScheduleContext context = createScheduleContext(endsOn).build();
+        List<ScheduledActivity> scheduledActivities = TestUtils.runSchedulerForActivities(context);
+        
+        ScheduledActivity started = ScheduledActivity.create();
+        started.setGuid(scheduledActivities.get(0).getGuid());
+        started.setStartedOn(NOW.getMillis());
+        ScheduledActivity finished = ScheduledActivity.create();
+        finished.setGuid(scheduledActivities.get(0).getGuid());
+        finished.setFinishedOn(NOW.plusMinutes(5).getMillis());
+        
+        service.updateScheduledActivities("BBB", Lists.newArrayList(started, finished));
+        
+        ArgumentCaptor<List> updateCapture = ArgumentCaptor.forClass(List.class);
+        verify(activityDao).updateActivities(anyString(), updateCapture.capture());
+        
+        List<ScheduledActivity> dbActivities = (List<ScheduledActivity>)updateCapture.getValue();
+        assertEquals(1, dbActivities.size());
+        assertEquals(NOW.getMillis(), dbActivities.get(0).getStartedOn().longValue());
+        assertEquals(NOW.plusMinutes(5).getMillis(), dbActivities.get(0).getFinishedOn().longValue());
+    }
+    
+    @Test(expected = EntityNotFoundException.class)
+    public void updateActivitiesRejectsMissingActivity() {
+        ScheduleContext context = createScheduleContext(endsOn).build();
+        List<ScheduledActivity> scheduledActivities = TestUtils.runSchedulerForActivities(context);
+        scheduledActivities.get(0).setStartedOn(NOW.getMillis());
+        when(activityDao.getActivitiesByGuid(anyString(), any())).thenReturn(ImmutableList.of());
+        
+        service.updateScheduledActivities("BBB", scheduledActivities);
     }
     
     @Test(expected = BadRequestException.class)
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -12,6 +13,7 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.BridgeConstants.SHARED_STUDY_ID;
@@ -19,6 +21,7 @@ import static org.sagebionetworks.bridge.BridgeConstants.SHARED_STUDY_ID;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -319,129 +322,139 @@ public class SharedModuleMetadataServiceTest {
         svc.queryAllMetadata(true, false, "foo='bar'", null);
     }
 
-    @Test
-    public void queryAllMostRecentPublished() {
-        queryMostRecentHelper("published=true", true);
-    }
-
     @Test
     public void queryAllMostRecent() {
-        queryMostRecentHelper(null, false);
-    }
-
-    private void queryMostRecentHelper(String expectedWhereClause, boolean published) {
-        // set up mock dao - We want 2 different modules with 2 different versions each.
-        SharedModuleMetadata moduleAVersion1 = makeValidMetadata();
-        moduleAVersion1.setId("module-A");
-        moduleAVersion1.setVersion(1);
-
-        SharedModuleMetadata moduleAVersion2 = makeValidMetadata();
-        moduleAVersion2.setId("module-A");
-        moduleAVersion2.setVersion(2);
-
-        SharedModuleMetadata moduleBVersion3 = makeValidMetadata();
-        moduleBVersion3.setId("module-B");
-        moduleBVersion3.setVersion(3);
-
-        SharedModuleMetadata moduleBVersion4 = makeValidMetadata();
-        moduleBVersion4.setId("module-B");
-        moduleBVersion4.setVersion(4);
-
-        when(mockDao.queryMetadata(expectedWhereClause)).thenReturn(ImmutableList.of(moduleAVersion1, moduleAVersion2,
-                moduleBVersion3, moduleBVersion4));
+        List<SharedModuleMetadata> daoOutputMetadataList = ImmutableList.of(makeValidMetadata());
+        when(mockDao.queryMetadata(null, true, false, null, null)).thenReturn(daoOutputMetadataList);
 
-        // execute and validate
-        List<SharedModuleMetadata> svcOutputMetadataList = svc.queryAllMetadata(true, published, null, null);
-        assertEquals(2, svcOutputMetadataList.size());
-        assertTrue(svcOutputMetadataList.contains(moduleAVersion2));
-        assertTrue(svcOutputMetadataList.contains(moduleBVersion4));
+        List<SharedModuleMetadata> svcOutputMetadataList = svc.queryAllMetadata(true, false, null, null);
+        assertSame(daoOutputMetadataList, svcOutputMetadataList);
     }
 
     @Test
     public void queryAllPublishedAndWhere() {
-        queryHelper("published=true AND foo='bar'", true, "foo='bar'");
+        queryHelper(true, "foo='bar'", null);
     }
 
     @Test
     public void queryAllPublishedWithoutWhere() {
-        queryHelper("published=true", true, null);
+        queryHelper(true, null, null);
     }
 
     @Test
     public void queryAllWhereWithoutPublished() {
-        queryHelper("foo='bar'", false, "foo='bar'");
+        queryHelper(false, "foo='bar'", null);
     }
 
     @Test
     public void queryAllGetAll() {
-        queryHelper(null, false, null);
+        queryHelper(false, null, null);
+    }
+
+    @Test
+    public void queryWithTags() {
+        // Tags are passed through to the DAO, which matches any of them.
+        queryHelper(false, "foo='bar'", ImmutableSet.of("foo", "bar"));
     }
 
-    private void queryHelper(String expectedWhereClause, boolean published, String inputWhereClause) {
+    private void queryHelper(boolean published, String where, Set<String> tags) {
         // set up mock dao - Dummy list is fine.
         List<SharedModuleMetadata> daoOutputMetadataList = ImmutableList.of(makeValidMetadata());
-        when(mockDao.queryMetadata(expectedWhereClause)).thenReturn(daoOutputMetadataList);
+        when(mockDao.queryMetadata(null, false, published, where, tags)).thenReturn(daoOutputMetadataList);
 
         // execute and validate
-        List<SharedModuleMetadata> svcOutputMetadataList = svc.queryAllMetadata(false, published, inputWhereClause,
-                null);
+        List<SharedModuleMetadata> svcOutputMetadataList = svc.queryAllMetadata(false, published, where, tags);
         assertSame(daoOutputMetadataList, svcOutputMetadataList);
     }
 
     @Test
-    public void queryWithTags() {
-        // null query with 2 tags
-        Set<String> tags = ImmutableSet.of("foo", "bar");
-
-        // Our test cases:
-        // 1. no tags (out)
-        // 2. one tag (in)
-        // 3. both tags (in)
-        // 4. superset of tags (in)
-        // 5. intersection of tags (in)
-        // 6. disjunction of tags (out)
-
-        // 1. no tags (out)
-        SharedModuleMetadata metadata1 = makeValidMetadata();
-        metadata1.setId("module-1");
-
-        // 2. one tag (in)
-        SharedModuleMetadata metadata2 = makeValidMetadata();
-        metadata2.setId("module-2");
-        metadata2.setTags(ImmutableSet.of("foo"));
-
-        // 3. both tags (in)
-        SharedModuleMetadata metadata3 = makeValidMetadata();
-        metadata3.setId("module-3");
-        metadata3.setTags(ImmutableSet.of("foo", "bar"));
-
-        // 4. superset of tags (in)
-        SharedModuleMetadata metadata4 = makeValidMetadata();
-        metadata4.setId("module-4");
-        metadata4.setTags(ImmutableSet.of("foo", "bar", "baz"));
-
-        // 5. intersection of tags (in)
-        SharedModuleMetadata metadata5 = makeValidMetadata();
-        metadata5.setId("module-5");
-        metadata5.setTags(ImmutableSet.of("foo", "baz"));
-
-        // 6. disjunction of tags (out)
-        SharedModuleMetadata metadata6 = makeValidMetadata();
-        metadata6.setId("module-6");
-        metadata6.setTags(ImmutableSet.of("asdf", "jkl;"));
+    public void queryAllMostRecentPublishedUsesCatalog() {
+        SharedModuleMetadata moduleA = makeValidMetadata();
+        moduleA.setId("module-A");
+        moduleA.setTags(ImmutableSet.of("foo"));
 
-        // set up mock dao
-        List<SharedModuleMetadata> daoOutputMetadataList = ImmutableList.of(metadata1, metadata2, metadata3, metadata4,
-                metadata5, metadata6);
-        when(mockDao.queryMetadata("foo='bar'")).thenReturn(daoOutputMetadataList);
+        SharedModuleMetadata moduleB = makeValidMetadata();
+        moduleB.setId("module-B");
+        moduleB.setTags(ImmutableSet.of("bar", "baz"));
 
-        // execute and validate
-        List<SharedModuleMetadata> svcOutputMetadataList = svc.queryAllMetadata(false, false, "foo='bar'", tags);
-        assertEquals(4, svcOutputMetadataList.size());
-        assertTrue(svcOutputMetadataList.contains(metadata2));
-        assertTrue(svcOutputMetadataList.contains(metadata3));
-        assertTrue(svcOutputMetadataList.contains(metadata4));
-        assertTrue(svcOutputMetadataList.contains(metadata5));
+        SharedModuleMetadata moduleC = makeValidMetadata();
+        moduleC.setId("module-C");
+
+        when(mockDao.queryMetadata(null, true, true, null, null)).thenReturn(ImmutableList.of(moduleA, moduleB,
+                moduleC));
+
+        // The whole catalog, then filtered by tags, then filtered by ID.
+        assertEquals(ImmutableList.of("module-A", "module-B", "module-C"), getIds(svc.queryAllMetadata(true, true,
+                null, null)));
+        assertEquals(ImmutableList.of("module-A", "module-B"), getIds(svc.queryAllMetadata(true, true, null,
+                ImmutableSet.of("foo", "baz"))));
+        assertEquals(ImmutableList.of("module-B"), getIds(svc.queryMetadataById("module-B", true, true, null,
+                null)));
+        assertEquals(ImmutableList.of(), getIds(svc.queryMetadataById("module-B", true, true, null,
+                ImmutableSet.of("foo"))));
+
+        // The catalog was only loaded once.
+        verify(mockDao, times(1)).queryMetadata(null, true, true, null, null);
+    }
+
+    @Test
+    public void catalogReturnsCopies() {
+        SharedModuleMetadata module = makeValidMetadata();
+        module.setTags(ImmutableSet.of("foo"));
+        when(mockDao.queryMetadata(null, true, true, null, null)).thenReturn(ImmutableList.of(module));
+
+        SharedModuleMetadata returned = svc.queryAllMetadata(true, true, null, null).get(0);
+        assertNotSame(module, returned);
+        returned.setName("Changed Name");
+        returned.getTags().add("bar");
+
+        SharedModuleMetadata returnedAgain = svc.queryAllMetadata(true, true, null, null).get(0);
+        assertEquals(MODULE_NAME, returnedAgain.getName());
+        assertEquals(ImmutableSet.of("foo"), returnedAgain.getTags());
+        verify(mockDao, times(1)).queryMetadata(null, true, true, null, null);
+    }
+
+    @Test
+    public void catalogLoadedBeforeWriteIsNotCached() {
+        when(mockDao.getMetadataByIdAndVersion(MODULE_ID, MODULE_VERSION)).thenReturn(makeValidMetadata());
+        // The module is deleted while the catalog is being loaded.
+        when(mockDao.queryMetadata(null, true, true, null, null)).thenAnswer(invocation -> {
+            svc.deleteMetadataByIdAndVersion(MODULE_ID, MODULE_VERSION);
+            return ImmutableList.of(makeValidMetadata());
+        }).thenReturn(ImmutableList.of());
+
+        assertEquals(1, svc.queryAllMetadata(true, true, null, null).size());
+        assertTrue(svc.queryAllMetadata(true, true, null, null).isEmpty());
+        verify(mockDao, times(2)).queryMetadata(null, true, true, null, null);
+    }
+
+    @Test
+    public void catalogInvalidatedOnWrite() {
+        when(mockDao.queryMetadata(null, true, true, null, null)).thenReturn(ImmutableList.of(makeValidMetadata()));
+        when(mockDao.getMetadataByIdAndVersion(MODULE_ID, MODULE_VERSION)).thenReturn(makeValidMetadata());
+
+        // create
+        svc.queryAllMetadata(true, true, null, null);
+        doReturn(ImmutableList.of()).when(svc).queryMetadataById(MODULE_ID, true, false, null, null);
+        svc.createMetadata(makeValidMetadata());
+        svc.queryAllMetadata(true, true, null, null);
+        verify(mockDao, times(2)).queryMetadata(null, true, true, null, null);
+
+        // update
+        svc.updateMetadata(MODULE_ID, MODULE_VERSION, makeValidMetadata());
+        svc.queryAllMetadata(true, true, null, null);
+        verify(mockDao, times(3)).queryMetadata(null, true, true, null, null);
+
+        // delete version
+        svc.deleteMetadataByIdAndVersion(MODULE_ID, MODULE_VERSION);
+        svc.queryAllMetadata(true, true, null, null);
+        verify(mockDao, times(4)).queryMetadata(null, true, true, null, null);
+
+        // delete all versions
+        doReturn(makeValidMetadata()).when(svc).getMetadataByIdLatestVersion(MODULE_ID);
+        svc.deleteMetadataByIdAllVersions(MODULE_ID);
+        svc.queryAllMetadata(true, true, null, null);
+        verify(mockDao, times(5)).queryMetadata(null, true, true, null, null);
     }
 
     @Test(expected = BadRequestException.class)
@@ -459,37 +472,23 @@ public class SharedModuleMetadataServiceTest {
         svc.queryMetadataById("   ", true, true, "foo='bar'", ImmutableSet.of("foo", "bar", "baz"));
     }
 
+    @Test(expected = BadRequestException.class)
+    public void queryByIdMostRecentWithWhere() {
+        svc.queryMetadataById(MODULE_ID, true, false, "foo='bar'", null);
+    }
+
     @Test
     public void queryByIdSuccess() {
         Set<String> tags = ImmutableSet.of("foo", "bar", "baz");
 
-        // We want 2 different modules with 2 different versions each.
-        SharedModuleMetadata moduleAVersion1 = makeValidMetadata();
-        moduleAVersion1.setId("module-A");
-        moduleAVersion1.setVersion(1);
-
-        SharedModuleMetadata moduleAVersion2 = makeValidMetadata();
-        moduleAVersion2.setId("module-A");
-        moduleAVersion2.setVersion(2);
-
-        SharedModuleMetadata moduleBVersion3 = makeValidMetadata();
-        moduleBVersion3.setId("module-B");
-        moduleBVersion3.setVersion(3);
-
-        SharedModuleMetadata moduleBVersion4 = makeValidMetadata();
-        moduleBVersion4.setId("module-B");
-        moduleBVersion4.setVersion(4);
-
-        // Spy query all, so we don't have to depend on that complex logic.
-        doReturn(ImmutableList.of(moduleAVersion1, moduleAVersion2, moduleBVersion3, moduleBVersion4)).when(svc)
-                .queryAllMetadata(true, true, "foo='bar'", tags);
+        // ID is passed through to the DAO.
+        List<SharedModuleMetadata> daoOutputMetadataList = ImmutableList.of(makeValidMetadata());
+        when(mockDao.queryMetadata("module-B", false, true, "foo='bar'", tags)).thenReturn(daoOutputMetadataList);
 
         // execute and validate
-        List<SharedModuleMetadata> svcOutputMetadataList = svc.queryMetadataById("module-B", true, true, "foo='bar'",
+        List<SharedModuleMetadata> svcOutputMetadataList = svc.queryMetadataById("module-B", false, true, "foo='bar'",
                 tags);
-        assertEquals(2, svcOutputMetadataList.size());
-        assertTrue(svcOutputMetadataList.contains(moduleBVersion3));
-        assertTrue(svcOutputMetadataList.contains(moduleBVersion4));
+        assertSame(daoOutputMetadataList, svcOutputMetadataList);
     }
 
     @Test(expected = BadRequestException.class)
@@ -599,4 +598,8 @@ public class SharedModuleMetadataServiceTest {
         metadata.setSchemaRevision(SCHEMA_REV);
         return metadata;
     }
+
+    private static List<String> getIds(List<SharedModuleMetadata> metadataList) {
+        return metadataList.stream().map(SharedModuleMetadata::getId).collect(Collectors.toList());
+    }
 }
@@ -1,7 +1,10 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyBoolean;
@@ -11,6 +14,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -25,6 +29,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
@@ -33,6 +38,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.sagebionetworks.client.SynapseClient;
@@ -55,6 +61,7 @@ import org.sagebionetworks.bridge.dao.StudyDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.accounts.IdentifierHolder;
@@ -64,6 +71,7 @@ import org.sagebionetworks.bridge.models.studies.MimeType;
 import org.sagebionetworks.bridge.models.studies.PasswordPolicy;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.studies.StudyAndUsers;
+import org.sagebionetworks.bridge.models.studies.StudySummaryList;
 import org.sagebionetworks.bridge.validators.StudyValidator;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -256,6 +264,7 @@ public class StudyServiceMockTest {
         verify(subpopService).deleteAllSubpopulations(study.getStudyIdentifier());
         verify(topicService).deleteAllTopics(study.getStudyIdentifier());
         verify(cacheProvider).removeStudy(TEST_STUDY_ID);
+        verify(cacheProvider).removeStudySummaries();
     }
     
     @Test(expected = BadRequestException.class)
@@ -829,4 +838,103 @@ public class StudyServiceMockTest {
         assertEquals("<p>This should remove: </p>", result.getBody());
         assertEquals(MimeType.HTML, result.getMimeType());
     }
+
+    @Test
+    public void getStudySummaryListBuildsListOfActiveStudies() throws Exception {
+        DynamoStudy studyB = new DynamoStudy();
+        studyB.setName("b study");
+        studyB.setActive(true);
+        DynamoStudy studyA = new DynamoStudy();
+        studyA.setName("A study");
+        studyA.setActive(true);
+        DynamoStudy inactiveStudy = new DynamoStudy();
+        inactiveStudy.setName("inactive study");
+        when(studyDao.getStudies()).thenReturn(ImmutableList.of(studyB, inactiveStudy, studyA));
+        when(cacheProvider.getStudySummariesGeneration()).thenReturn("generation");
+
+        StudySummaryList summaries = service.getStudySummaryList();
+
+        JsonNode items = BridgeObjectMapper.get().readTree(summaries.getJson()).get("items");
+        assertEquals(2, items.size());
+        assertEquals("A study", items.get(0).get("name").textValue());
+        assertEquals("b study", items.get(1).get("name").textValue());
+        assertFalse(summaries.getJson().contains("healthCodeExportEnabled"));
+        // Cached only if no study changed since before the studies were loaded.
+        InOrder inOrder = inOrder(cacheProvider, studyDao);
+        inOrder.verify(cacheProvider).getStudySummariesGeneration();
+        inOrder.verify(studyDao).getStudies();
+        inOrder.verify(cacheProvider).setStudySummaries(summaries.getJson(), "generation");
+    }
+
+    @Test
+    public void getStudySummaryListUsesCachedList() {
+        String json = "{\"items\":[],\"type\":\"ResourceList\"}";
+        when(cacheProvider.getStudySummaries()).thenReturn(json);
+
+        StudySummaryList summaries = service.getStudySummaryList();
+        assertEquals(json, summaries.getJson());
+        // The compressed list is reused while the cached list is unchanged.
+        assertSame(summaries, service.getStudySummaryList());
+        verify(studyDao, never()).getStudies();
+
+        String updatedJson = "{\"items\":[{\"name\":\"A study\"}],\"type\":\"ResourceList\"}";
+        when(cacheProvider.getStudySummaries()).thenReturn(updatedJson);
+        StudySummaryList updatedSummaries = service.getStudySummaryList();
+        assertEquals(updatedJson, updatedSummaries.getJson());
+        assertNotEquals(summaries.getETag(), updatedSummaries.getETag());
+    }
+
+    @Test
+    public void getStudySummaryListLoadsStudiesWhenCacheIsUnavailable() {
+        DynamoStudy activeStudy = new DynamoStudy();
+        activeStudy.setName("A study");
+        activeStudy.setActive(true);
+        when(studyDao.getStudies()).thenReturn(ImmutableList.of(activeStudy));
+        when(cacheProvider.getStudySummaries()).thenThrow(new BridgeServiceException("Redis is down"));
+
+        StudySummaryList summaries = service.getStudySummaryList();
+
+        assertTrue(summaries.getJson().contains("A study"));
+        verify(cacheProvider, never()).setStudySummaries(any(), any());
+    }
+
+    @Test
+    public void getStudySummaryListReturnsListWhenItCantBeCached() {
+        when(studyDao.getStudies()).thenReturn(ImmutableList.of());
+        when(cacheProvider.getStudySummariesGeneration()).thenReturn("generation");
+        doThrow(new BridgeServiceException("Redis is down")).when(cacheProvider).setStudySummaries(any(), any());
+
+        StudySummaryList summaries = service.getStudySummaryList();
+
+        assertNotNull(summaries.getJson());
+    }
+
+    @Test
+    public void updateStudySucceedsWhenStudySummaryListCantBeRemoved() {
+        study.setTaskIdentifiers(EMPTY_SET);
+        study.setDataGroups(EMPTY_SET);
+        when(studyDao.getStudy(TEST_STUDY_ID)).thenReturn(study);
+        doThrow(new BridgeServiceException("Redis is down")).when(cacheProvider).removeStudySummaries();
+
+        Study updatedStudy = TestUtils.getValidStudy(StudyServiceMockTest.class);
+        updatedStudy.setIdentifier(TEST_STUDY_ID);
+
+        service.updateStudy(updatedStudy, true);
+
+        verify(studyDao).updateStudy(any());
+    }
+
+    @Test
+    public void updateStudyRemovesStudySummaryList() {
+        study.setTaskIdentifiers(EMPTY_SET);
+        study.setDataGroups(EMPTY_SET);
+        when(studyDao.getStudy(TEST_STUDY_ID)).thenReturn(study);
+
+        Study updatedStudy = TestUtils.getValidStudy(StudyServiceMockTest.class);
+        updatedStudy.setIdentifier(TEST_STUDY_ID);
+
+        service.updateStudy(updatedStudy, true);
+
+        verify(cacheProvider).removeStudySummaries();
+    }
 }
@@ -1,6 +1,7 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -12,6 +13,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.services.SharedModuleMetadataServiceTest.makeValidMetadata;
@@ -36,6 +38,7 @@ import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
 import org.sagebionetworks.bridge.models.upload.UploadFieldType;
 import org.sagebionetworks.bridge.models.upload.UploadSchema;
 import org.sagebionetworks.bridge.models.upload.UploadSchemaType;
+import org.sagebionetworks.bridge.upload.CompiledUploadSchema;
 
 public class UploadSchemaServiceTest {
     private static final UploadFieldDefinition FIELD_DEF = new UploadFieldDefinition.Builder().withName("field")
@@ -491,6 +494,54 @@ public class UploadSchemaServiceTest {
         assertSame(daoOutputSchema, svcOutputSchema);
     }
 
+    @Test(expected = EntityNotFoundException.class)
+    public void getCompiledSchemaNotFound() {
+        // mock dao to return null
+        when(dao.getUploadSchemaByIdAndRevision(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV)).thenReturn(null);
+
+        svc.getCompiledUploadSchema(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV);
+    }
+
+    @Test
+    public void getCompiledSchemaIsCached() {
+        // mock dao
+        UploadSchema daoOutputSchema = makeSimpleSchema();
+        when(dao.getUploadSchemaByIdAndRevision(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV)).thenReturn(
+                daoOutputSchema);
+
+        // execute and validate
+        CompiledUploadSchema compiledSchema = svc.getCompiledUploadSchema(TestConstants.TEST_STUDY, SCHEMA_ID,
+                SCHEMA_REV);
+        assertSame(daoOutputSchema, compiledSchema.getSchema());
+        assertEquals("field", compiledSchema.getFields().get(0).getName());
+
+        assertSame(compiledSchema, svc.getCompiledUploadSchema(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV));
+        verify(dao, times(1)).getUploadSchemaByIdAndRevision(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV);
+    }
+
+    @Test
+    public void updateV4EvictsCompiledSchema() {
+        UploadSchema oldSchema = makeSimpleSchema();
+        when(dao.getUploadSchemaByIdAndRevision(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV)).thenReturn(
+                oldSchema);
+        CompiledUploadSchema oldCompiledSchema = svc.getCompiledUploadSchema(TestConstants.TEST_STUDY, SCHEMA_ID,
+                SCHEMA_REV);
+
+        // Add an optional field.
+        UploadSchema newSchema = makeSimpleSchema();
+        newSchema.setFieldDefinitions(ImmutableList.of(FIELD_DEF, new UploadFieldDefinition.Builder()
+                .withName("added-optional-field").withType(UploadFieldType.BOOLEAN).withRequired(false).build()));
+        when(dao.updateSchemaRevision(any())).thenReturn(newSchema);
+        svc.updateSchemaRevisionV4(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV, newSchema);
+
+        when(dao.getUploadSchemaByIdAndRevision(TestConstants.TEST_STUDY, SCHEMA_ID, SCHEMA_REV)).thenReturn(
+                newSchema);
+        CompiledUploadSchema newCompiledSchema = svc.getCompiledUploadSchema(TestConstants.TEST_STUDY, SCHEMA_ID,
+                SCHEMA_REV);
+        assertNotSame(oldCompiledSchema, newCompiledSchema);
+        assertEquals(2, newCompiledSchema.getFields().size());
+    }
+
     @Test(expected = BadRequestException.class)
     public void getLatestNullId() {
         svc.getLatestUploadSchemaRevisionForAppVersion(TestConstants.TEST_STUDY, null, ClientInfo.UNKNOWN_CLIENT);
@@ -213,7 +213,7 @@ public class UploadServiceMockTest {
         doReturn(10).when(mockRecord).getSchemaRevision();
         doReturn(HealthDataRecord.ExporterStatus.SUCCEEDED).when(mockRecord).getSynapseExporterStatus();
         // Mock UploadValidationStatus from health data record;
-        doReturn(mockRecord).when(mockHealthDataService).getRecordById("record-id");
+        doReturn(mockRecord).when(mockHealthDataService).getRecordInfoById("record-id");
     }
     
     // Mock a successful and unsuccessful upload. The successful upload should call to get information 
@@ -250,8 +250,8 @@ public class UploadServiceMockTest {
     }
 
     private void validateUploadMocks(ForwardCursorPagedResourceList<UploadView> returned, String expectedOffsetKey) {
-        verify(mockHealthDataService).getRecordById("record-id");
-        verify(mockHealthDataService).getRecordById("missing-record-id");
+        verify(mockHealthDataService).getRecordInfoById("record-id");
+        verify(mockHealthDataService).getRecordInfoById("missing-record-id");
         verifyNoMoreInteractions(mockHealthDataService);
 
         List<? extends UploadView> uploadList = returned.getItems();
@@ -1,11 +1,14 @@
 package org.sagebionetworks.bridge.services.backfill;
 
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.longThat;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -13,6 +16,7 @@ import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.hamcrest.Matcher;
 import org.joda.time.DateTime;
@@ -148,11 +152,10 @@ public class AsyncBackfillTemplateTest {
             @Override
             public boolean matches(Object item) {
                 long since = ((Long)item).longValue();
-                long expireInMillis = TestBackfillService.EXPIRE * 1000L;
-                // Make sure the time point after which we look for the list of backfill tasks
-                // goes back for the duration of lock expiration
-                long lower = beforeBackfill - expireInMillis;
-                long upper = afterBackfill - expireInMillis;
+                // Make sure the time point after which we look for the list of backfill tasks goes back for the
+                // resume lookback, since the lock is renewed and may be much older than its lease.
+                long lower = beforeBackfill - AsyncBackfillTemplate.RESUME_LOOKBACK_MILLIS;
+                long upper = afterBackfill - AsyncBackfillTemplate.RESUME_LOOKBACK_MILLIS;
                 if (lower <= since && since <= upper) {
                     return true;
                 } else {
@@ -206,6 +209,108 @@ public class AsyncBackfillTemplateTest {
         verify(backfillDao, times(1)).updateTaskStatus(taskId, BackfillStatus.FAILED);
     }
 
+    @Test
+    public void renewsLockWhileBackfillRuns() throws Exception {
+
+        // Lease of 3 seconds means the lock is renewed every second. The backfill outlasts the lease.
+        final AsyncBackfillTemplate backfillTemplate = new TestBackfillService() {
+            @Override
+            int getLockExpireInSeconds() {
+                return 3;
+            }
+            @Override
+            void doBackfill(final BackfillTask task, final BackfillCallback callback) {
+                try {
+                    Thread.sleep(1500L);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+
+        // Mock lock
+        final Class<? extends AsyncBackfillTemplate> lockClazz = backfillTemplate.getClass();
+        final String lockObject = lockClazz.getSimpleName();
+        final String lock = "lock";
+        final DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(lockClazz, lockObject, 3)).thenReturn(lock);
+        when(lockDao.renewLock(lockClazz, lockObject, lock, 3)).thenReturn(true);
+        backfillTemplate.setDistributedLockDao(lockDao);
+
+        // Mock task and backfill dao
+        final String taskName = "taskName";
+        final String user = "user";
+        final long timestamp = DateTime.now(DateTimeZone.UTC).getMillis();
+        final String taskId = "taskId";
+        final BackfillTask backfillTask = createBackfillTask(taskName, user, timestamp, taskId,
+                BackfillStatus.SUBMITTED);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        when(backfillDao.createTask(taskName, user)).thenReturn(backfillTask);
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        BackfillCallback callback = mock(BackfillCallback.class);
+        backfillTemplate.backfill(user, taskName, callback);
+        Thread.sleep(2000L);
+
+        // Verify lock was renewed and released
+        verify(lockDao, atLeastOnce()).renewLock(lockClazz, lockObject, lock, 3);
+        verify(lockDao, times(1)).releaseLock(lockClazz, lockObject, lock);
+        verify(backfillDao, times(1)).updateTaskStatus(taskId, BackfillStatus.COMPLETED);
+    }
+
+    @Test
+    public void lostLockCancelsBackfill() throws Exception {
+        final AtomicBoolean sawCancel = new AtomicBoolean();
+        final AsyncBackfillTemplate backfillTemplate = new AsyncBackfillTemplate() {
+            @Override
+            int getLockExpireInSeconds() {
+                return 3;
+            }
+            @Override
+            void doBackfill(final BackfillTask task, final BackfillCallback callback) {
+                // Work until cancelled, like a long backfill checking between units of work.
+                for (int i = 0; i < 30 && !isCancelled(); i++) {
+                    try {
+                        Thread.sleep(100L);
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+                sawCancel.set(isCancelled());
+            }
+        };
+
+        // Mock lock. Someone else has taken the lock by the first renewal.
+        final Class<? extends AsyncBackfillTemplate> lockClazz = backfillTemplate.getClass();
+        final String lockObject = lockClazz.getSimpleName();
+        final String lock = "lock";
+        final DistributedLockDao lockDao = mock(DistributedLockDao.class);
+        when(lockDao.acquireLock(lockClazz, lockObject, 3)).thenReturn(lock);
+        when(lockDao.renewLock(lockClazz, lockObject, lock, 3)).thenReturn(false);
+        backfillTemplate.setDistributedLockDao(lockDao);
+
+        // Mock task and backfill dao
+        final String taskName = "taskName";
+        final String user = "user";
+        final long timestamp = DateTime.now(DateTimeZone.UTC).getMillis();
+        final String taskId = "taskId";
+        final BackfillTask backfillTask = createBackfillTask(taskName, user, timestamp, taskId, BackfillStatus.SUBMITTED);
+        BackfillDao backfillDao = mock(BackfillDao.class);
+        when(backfillDao.createTask(taskName, user)).thenReturn(backfillTask);
+        backfillTemplate.setBackfillDao(backfillDao);
+
+        BackfillCallback callback = mock(BackfillCallback.class);
+        backfillTemplate.backfill(user, taskName, callback);
+        Thread.sleep(2000L);
+
+        // The backfill stopped early and was failed, not completed, so the next run resumes it.
+        assertTrue(sawCancel.get());
+        verify(lockDao, times(1)).renewLock(lockClazz, lockObject, lock, 3);
+        verify(backfillDao, times(1)).updateTaskStatus(taskId, BackfillStatus.FAILED);
+        verify(backfillDao, never()).updateTaskStatus(taskId, BackfillStatus.COMPLETED);
+        verify(callback, times(1)).done();
+    }
+
     private BackfillTask createBackfillTask(final String taskName, final String user, final long timestamp,
             final String taskId, final BackfillStatus status) {
         return new BackfillTask() {
@@ -0,0 +1,172 @@
+package org.sagebionetworks.bridge.services.backfill;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.dao.BackfillDao;
+import org.sagebionetworks.bridge.models.backfill.BackfillStatus;
+import org.sagebionetworks.bridge.models.backfill.BackfillTask;
+
+public class PartitionedBackfillTemplateTest {
+    private static final String TASK_NAME = "testPartitionedBackfill";
+    private static final List<String> PARTITION_LIST = ImmutableList.of("p1", "p2", "p3", "p4", "p5", "p6");
+
+    private TestPartitionedBackfill backfill;
+    private BackfillCallback callback;
+    private BackfillDao backfillDao;
+    private ExecutorService executorService;
+    private BackfillTask task;
+
+    @Before
+    public void setup() {
+        backfillDao = mock(BackfillDao.class);
+        executorService = Executors.newFixedThreadPool(8);
+
+        // Mock recordMessage() and recordError() so the superclass doesn't need a record factory.
+        backfill = spy(new TestPartitionedBackfill());
+        doNothing().when(backfill).recordMessage(any(), any(), any());
+        doNothing().when(backfill).recordError(any(), any(), any(), any());
+        backfill.setBackfillDao(backfillDao);
+        backfill.setBackfillExecutorService(executorService);
+
+        task = mockTask("currentTask", 2000, BackfillStatus.IN_PROCESS);
+        callback = mock(BackfillCallback.class);
+    }
+
+    @After
+    public void cleanup() {
+        executorService.shutdown();
+    }
+
+    @Test
+    public void runsAllPartitions() {
+        doReturn(ImmutableList.of(task)).when(backfillDao).getTasks(eq(TASK_NAME), anyLong());
+
+        backfill.doBackfill(task, callback);
+
+        assertEquals(ImmutableSet.copyOf(PARTITION_LIST), backfill.donePartitionSet);
+        for (String onePartition : PARTITION_LIST) {
+            verify(backfillDao).createCheckpoint("currentTask", onePartition);
+        }
+    }
+
+    @Test
+    public void boundsConcurrency() {
+        doReturn(ImmutableList.of(task)).when(backfillDao).getTasks(eq(TASK_NAME), anyLong());
+
+        backfill.doBackfill(task, callback);
+
+        // The pool has 8 threads, but the backfill only allows 2 partitions at a time.
+        assertTrue(backfill.maxConcurrent.get() <= TestPartitionedBackfill.MAX_CONCURRENT);
+        assertEquals(PARTITION_LIST.size(), backfill.donePartitionSet.size());
+    }
+
+    @Test
+    public void skipsPartitionsFromIncompleteRuns() {
+        BackfillTask failedTask = mockTask("failedTask", 1000, BackfillStatus.FAILED);
+        doReturn(ImmutableList.of(failedTask, task)).when(backfillDao).getTasks(eq(TASK_NAME), anyLong());
+        when(backfillDao.getCheckpoints("failedTask")).thenReturn(ImmutableSet.of("p1", "p2"));
+
+        backfill.doBackfill(task, callback);
+
+        assertEquals(ImmutableSet.of("p3", "p4", "p5", "p6"), backfill.donePartitionSet);
+        verify(backfillDao, never()).createCheckpoint("currentTask", "p1");
+        verify(backfillDao, never()).createCheckpoint("currentTask", "p2");
+    }
+
+    @Test
+    public void errorDoesNotCheckpointOrStopOtherPartitions() {
+        doReturn(ImmutableList.of(task)).when(backfillDao).getTasks(eq(TASK_NAME), anyLong());
+        backfill.errorPartition = "p3";
+
+        backfill.doBackfill(task, callback);
+
+        assertEquals(ImmutableSet.of("p1", "p2", "p4", "p5", "p6"), backfill.donePartitionSet);
+        verify(backfillDao, never()).createCheckpoint("currentTask", "p3");
+        verify(backfillDao).createCheckpoint("currentTask", "p4");
+        verify(backfill).recordError(eq(task), any(), any(), any(RuntimeException.class));
+    }
+
+    @Test
+    public void stopsStartingPartitionsWhenCancelled() {
+        doReturn(ImmutableList.of(task)).when(backfillDao).getTasks(eq(TASK_NAME), anyLong());
+        // The lock is lost after the first two partitions are started.
+        doReturn(false, false, true).when(backfill).isCancelled();
+
+        backfill.doBackfill(task, callback);
+
+        // Partitions already started finish and are checkpointed. No others are started.
+        assertEquals(ImmutableSet.of("p1", "p2"), backfill.donePartitionSet);
+        verify(backfillDao).createCheckpoint("currentTask", "p2");
+        verify(backfillDao, never()).createCheckpoint("currentTask", "p3");
+    }
+
+    private static BackfillTask mockTask(String taskId, long timestamp, BackfillStatus status) {
+        BackfillTask mockTask = mock(BackfillTask.class);
+        when(mockTask.getId()).thenReturn(taskId);
+        when(mockTask.getName()).thenReturn(TASK_NAME);
+        when(mockTask.getTimestamp()).thenReturn(timestamp);
+        when(mockTask.getStatus()).thenReturn(status.name());
+        return mockTask;
+    }
+
+    // Records which partitions ran and how many ran at the same time.
+    static class TestPartitionedBackfill extends PartitionedBackfillTemplate {
+        static final int MAX_CONCURRENT = 2;
+
+        final Set<String> donePartitionSet = ConcurrentHashMap.newKeySet();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        private final AtomicInteger numRunning = new AtomicInteger();
+        String errorPartition;
+
+        @Override
+        int getMaxConcurrentPartitions() {
+            return MAX_CONCURRENT;
+        }
+
+        @Override
+        List<String> getPartitions(BackfillTask task, BackfillCallback callback) {
+            return PARTITION_LIST;
+        }
+
+        @Override
+        void backfillPartition(BackfillTask task, BackfillCallback callback, String partition) {
+            int running = numRunning.incrementAndGet();
+            maxConcurrent.accumulateAndGet(running, Math::max);
+            try {
+                if (partition.equals(errorPartition)) {
+                    throw new RuntimeException("test exception");
+                }
+                Thread.sleep(20);
+                donePartitionSet.add(partition);
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                numRunning.decrementAndGet();
+            }
+        }
+    }
+}
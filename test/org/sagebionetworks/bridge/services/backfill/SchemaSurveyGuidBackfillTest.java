@@ -12,11 +12,13 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.dao.BackfillDao;
 import org.sagebionetworks.bridge.dynamodb.DynamoStudy;
 import org.sagebionetworks.bridge.dynamodb.DynamoSurvey;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
@@ -71,6 +73,10 @@ public class SchemaSurveyGuidBackfillTest {
         doNothing().when(backfill).recordError(any(), any(), any(), any());
         doNothing().when(backfill).sleep();
 
+        // Run partitions on the calling thread, and mock the backfill DAO so checkpoints go nowhere.
+        backfill.setBackfillDao(mock(BackfillDao.class));
+        backfill.setBackfillExecutorService(MoreExecutors.newDirectExecutorService());
+
         backfill.setStudyService(studyService);
         backfill.setSurveyService(surveyService);
         backfill.setUploadSchemaService(uploadSchemaService);
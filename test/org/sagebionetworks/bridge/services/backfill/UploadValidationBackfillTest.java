@@ -0,0 +1,174 @@
+package org.sagebionetworks.bridge.services.backfill;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.config.Config;
+import org.sagebionetworks.bridge.dao.BackfillDao;
+import org.sagebionetworks.bridge.dao.HealthCodeDao;
+import org.sagebionetworks.bridge.dao.UploadDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoUpload2;
+import org.sagebionetworks.bridge.models.backfill.BackfillStatus;
+import org.sagebionetworks.bridge.models.backfill.BackfillTask;
+import org.sagebionetworks.bridge.models.upload.Upload;
+import org.sagebionetworks.bridge.upload.UploadValidationContext;
+import org.sagebionetworks.bridge.upload.UploadValidationTask;
+import org.sagebionetworks.bridge.upload.UploadValidationTaskFactory;
+
+public class UploadValidationBackfillTest {
+    private static final String HEALTH_CODE = "test-health-code";
+    private static final String TASK_NAME = "uploadValidationByUploadIdBackfill";
+    private static final List<String> UPLOAD_ID_LIST = ImmutableList.of("upload1", "upload2", "upload3");
+
+    private UploadValidationBackfill backfill;
+    private BackfillCallback callback;
+    private BackfillDao backfillDao;
+    private BackfillTask task;
+    private UploadDao uploadDao;
+    private UploadValidationTaskFactory taskFactory;
+
+    @Before
+    public void setup() {
+        // Mock config. Use a high rate so the test doesn't sleep.
+        Config config = mock(Config.class);
+        when(config.getInt(UploadValidationBackfill.CONFIG_KEY_RATE)).thenReturn(1000);
+        when(config.getInt(UploadValidationBackfill.CONFIG_KEY_WORKER_COUNT)).thenReturn(2);
+
+        // Mock DAOs.
+        backfillDao = mock(BackfillDao.class);
+
+        HealthCodeDao healthCodeDao = mock(HealthCodeDao.class);
+        when(healthCodeDao.getStudyIdentifier(HEALTH_CODE)).thenReturn(TestConstants.TEST_STUDY_IDENTIFIER);
+
+        uploadDao = mock(UploadDao.class);
+        for (String oneUploadId : UPLOAD_ID_LIST) {
+            DynamoUpload2 upload = new DynamoUpload2();
+            upload.setHealthCode(HEALTH_CODE);
+            upload.setUploadId(oneUploadId);
+            when(uploadDao.getUpload(oneUploadId)).thenReturn(upload);
+        }
+
+        taskFactory = mock(UploadValidationTaskFactory.class);
+        when(taskFactory.newTask(eq(TestConstants.TEST_STUDY), any(Upload.class))).thenAnswer(
+                invocation -> mockValidationTask(true));
+
+        // Set up backfill. Mock recordMessage() and recordError() so the superclass doesn't need a record factory.
+        backfill = spy(new UploadValidationBackfill() {
+            @Override
+            protected List<String> getUploadIdList(BackfillTask task, BackfillCallback callback) {
+                return UPLOAD_ID_LIST;
+            }
+        });
+        doNothing().when(backfill).recordMessage(any(), any(), any());
+        doNothing().when(backfill).recordError(any(), any(), any(), any());
+        backfill.setBackfillDao(backfillDao);
+        backfill.setBackfillExecutorService(Executors.newFixedThreadPool(2));
+        backfill.setConfig(config);
+        backfill.setHealthCodeDao(healthCodeDao);
+        backfill.setUploadDao(uploadDao);
+        backfill.setUploadValidationTaskFactory(taskFactory);
+
+        task = mockTask("currentTask", 2000, BackfillStatus.IN_PROCESS);
+        callback = mock(BackfillCallback.class);
+    }
+
+    @Test
+    public void validatesAllUploads() {
+        doReturn(ImmutableList.of(task)).when(backfillDao).getTasks(eq(TASK_NAME), anyLong());
+
+        backfill.doBackfill(task, callback);
+
+        for (String oneUploadId : UPLOAD_ID_LIST) {
+            verify(uploadDao).getUpload(oneUploadId);
+            verify(backfillDao).createCheckpoint("currentTask", oneUploadId);
+        }
+    }
+
+    @Test
+    public void resumesFromIncompleteRuns() {
+        // Tasks are in ascending order. The completed task is older than the failed task, so its checkpoints are
+        // ignored.
+        BackfillTask completedTask = mockTask("completedTask", 500, BackfillStatus.COMPLETED);
+        BackfillTask failedTask = mockTask("failedTask", 1000, BackfillStatus.FAILED);
+        doReturn(ImmutableList.of(completedTask, failedTask, task)).when(backfillDao).getTasks(eq(TASK_NAME),
+                anyLong());
+        when(backfillDao.getCheckpoints("failedTask")).thenReturn(ImmutableSet.of("upload1", "upload2"));
+
+        backfill.doBackfill(task, callback);
+
+        verify(backfillDao, never()).getCheckpoints("completedTask");
+        verify(uploadDao, never()).getUpload("upload1");
+        verify(uploadDao, never()).getUpload("upload2");
+        verify(uploadDao).getUpload("upload3");
+        verify(backfillDao).createCheckpoint("currentTask", "upload3");
+        verify(backfillDao, never()).createCheckpoint("currentTask", "upload1");
+    }
+
+    @Test
+    public void errorDoesNotCheckpoint() {
+        doReturn(ImmutableList.of(task)).when(backfillDao).getTasks(eq(TASK_NAME), anyLong());
+        when(uploadDao.getUpload("upload2")).thenThrow(RuntimeException.class);
+
+        backfill.doBackfill(task, callback);
+
+        verify(backfillDao).createCheckpoint("currentTask", "upload1");
+        verify(backfillDao, never()).createCheckpoint("currentTask", "upload2");
+        verify(backfillDao).createCheckpoint("currentTask", "upload3");
+    }
+
+    @Test
+    public void validationFailureDoesNotCheckpoint() {
+        doReturn(ImmutableList.of(task)).when(backfillDao).getTasks(eq(TASK_NAME), anyLong());
+        Upload upload2 = uploadDao.getUpload("upload2");
+        UploadValidationTask failedValidationTask = mockValidationTask(false);
+        when(taskFactory.newTask(TestConstants.TEST_STUDY, upload2)).thenReturn(failedValidationTask);
+
+        backfill.doBackfill(task, callback);
+
+        verify(failedValidationTask).run();
+        verify(backfillDao).createCheckpoint("currentTask", "upload1");
+        verify(backfillDao, never()).createCheckpoint("currentTask", "upload2");
+        verify(backfillDao).createCheckpoint("currentTask", "upload3");
+        verify(backfill).recordError(eq(task), any(), contains("upload2"), any());
+        verify(backfill, never()).recordMessage(eq(task), any(), eq("Backfilled upload ID upload2"));
+    }
+
+    private static UploadValidationTask mockValidationTask(boolean success) {
+        UploadValidationContext context = new UploadValidationContext();
+        context.setSuccess(success);
+        if (!success) {
+            context.addMessage("test failure");
+        }
+
+        UploadValidationTask mockValidationTask = mock(UploadValidationTask.class);
+        when(mockValidationTask.getContext()).thenReturn(context);
+        return mockValidationTask;
+    }
+
+    private static BackfillTask mockTask(String taskId, long timestamp, BackfillStatus status) {
+        BackfillTask mockTask = mock(BackfillTask.class);
+        when(mockTask.getId()).thenReturn(taskId);
+        when(mockTask.getName()).thenReturn(TASK_NAME);
+        when(mockTask.getTimestamp()).thenReturn(timestamp);
+        when(mockTask.getStatus()).thenReturn(status.name());
+        return mockTask;
+    }
+}
@@ -0,0 +1,79 @@
+package org.sagebionetworks.bridge.services.export;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+
+public class LocalExportStoreTest {
+    private static final byte[] CONTENT = { 1, 2, 3 };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path rootDir;
+    private LocalExportStore store;
+
+    @Before
+    public void before() {
+        rootDir = folder.getRoot().toPath();
+        store = new LocalExportStore(rootDir);
+    }
+
+    @Test
+    public void objectIsCreatedWhenStreamIsClosed() throws Exception {
+        Path path = rootDir.resolve("bucket/study/export.zip");
+
+        ExportOutputStream out = store.openForWrite("bucket", "study/export.zip");
+        out.write(CONTENT);
+        assertFalse(Files.exists(path));
+        out.close();
+
+        assertTrue(Files.exists(path));
+        try (InputStream in = store.openForRead("bucket", "study/export.zip")) {
+            assertArrayEquals(CONTENT, ByteStreams.toByteArray(in));
+        }
+        assertFalse(Files.exists(rootDir.resolve("bucket/study/export.zip" + LocalExportStore.PARTIAL_FILE_SUFFIX)));
+    }
+
+    @Test
+    public void abortedObjectIsNotCreated() throws Exception {
+        ExportOutputStream out = store.openForWrite("bucket", "export.zip");
+        out.write(CONTENT);
+        out.abort();
+        out.close();
+
+        try (Stream<Path> files = Files.list(rootDir.resolve("bucket"))) {
+            assertFalse(files.findAny().isPresent());
+        }
+    }
+
+    @Test
+    public void keyCannotLeaveBucket() throws Exception {
+        try {
+            store.openForRead("bucket", "../other-bucket/key");
+            fail("expected exception");
+        } catch (IOException ex) {
+            // expected exception
+        }
+        try {
+            store.openForWrite("../outside", "key");
+            fail("expected exception");
+        } catch (IOException ex) {
+            // expected exception
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.sagebionetworks.bridge.services.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.google.common.collect.Lists;
+
+public class S3MultipartOutputStreamTest {
+    private static final String BUCKET = "test-bucket";
+    private static final String KEY = "test-key";
+    private static final String UPLOAD_ID = "test-upload-id";
+
+    private AmazonS3 mockS3Client;
+    private List<Integer> partSizeList;
+
+    @Before
+    public void before() {
+        mockS3Client = mock(AmazonS3.class);
+
+        InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+        initiateResult.setUploadId(UPLOAD_ID);
+        when(mockS3Client.initiateMultipartUpload(any())).thenReturn(initiateResult);
+
+        partSizeList = Lists.newArrayList();
+        when(mockS3Client.uploadPart(any())).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgumentAt(0, UploadPartRequest.class);
+            partSizeList.add((int) request.getPartSize());
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        });
+    }
+
+    @Test
+    public void uploadsFullPartsAsTheyAreWritten() throws Exception {
+        S3MultipartOutputStream out = new S3MultipartOutputStream(mockS3Client, BUCKET, KEY, 4);
+        out.write(new byte[] { 1, 2, 3, 4, 5, 6 });
+        out.write(7);
+        out.write(8);
+        // Two full parts have been uploaded. Nothing is left in the buffer.
+        assertEquals(Lists.newArrayList(4, 4), partSizeList);
+        out.write(9);
+        out.close();
+
+        assertEquals(Lists.newArrayList(4, 4, 1), partSizeList);
+
+        ArgumentCaptor<InitiateMultipartUploadRequest> initiateCaptor = ArgumentCaptor.forClass(
+                InitiateMultipartUploadRequest.class);
+        verify(mockS3Client).initiateMultipartUpload(initiateCaptor.capture());
+        assertEquals(BUCKET, initiateCaptor.getValue().getBucketName());
+        assertEquals(KEY, initiateCaptor.getValue().getKey());
+        assertEquals(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION,
+                initiateCaptor.getValue().getObjectMetadata().getSSEAlgorithm());
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor = ArgumentCaptor.forClass(
+                CompleteMultipartUploadRequest.class);
+        verify(mockS3Client).completeMultipartUpload(completeCaptor.capture());
+        assertEquals(UPLOAD_ID, completeCaptor.getValue().getUploadId());
+        assertEquals(3, completeCaptor.getValue().getPartETags().size());
+        assertEquals("etag-3", completeCaptor.getValue().getPartETags().get(2).getETag());
+        verify(mockS3Client, never()).abortMultipartUpload(any());
+
+        // Closing again does nothing.
+        out.close();
+        verify(mockS3Client, times(1)).completeMultipartUpload(any());
+    }
+
+    @Test
+    public void emptyUploadHasOnePart() throws Exception {
+        S3MultipartOutputStream out = new S3MultipartOutputStream(mockS3Client, BUCKET, KEY, 4);
+        out.close();
+
+        assertEquals(Lists.newArrayList(0), partSizeList);
+        verify(mockS3Client).completeMultipartUpload(any());
+    }
+
+    @Test
+    public void abortDoesNotCompleteUpload() throws Exception {
+        S3MultipartOutputStream out = new S3MultipartOutputStream(mockS3Client, BUCKET, KEY, 4);
+        out.write(new byte[] { 1, 2, 3, 4, 5 });
+        out.abort();
+        out.close();
+
+        ArgumentCaptor<AbortMultipartUploadRequest> abortCaptor = ArgumentCaptor.forClass(
+                AbortMultipartUploadRequest.class);
+        verify(mockS3Client).abortMultipartUpload(abortCaptor.capture());
+        assertEquals(UPLOAD_ID, abortCaptor.getValue().getUploadId());
+        verify(mockS3Client, never()).completeMultipartUpload(any());
+
+        try {
+            out.write(6);
+            fail("expected exception");
+        } catch (IOException ex) {
+            // expected exception
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package org.sagebionetworks.bridge.services.export;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.dao.AccountDao;
+import org.sagebionetworks.bridge.dao.HealthDataAttachmentDao;
+import org.sagebionetworks.bridge.dao.HealthDataDao;
+import org.sagebionetworks.bridge.dao.ScheduledActivityDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoCapacityGovernor;
+import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataAttachment;
+import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataRecord;
+import org.sagebionetworks.bridge.dynamodb.DynamoScheduledActivity;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.DateRange;
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.healthdata.HealthDataAttachment;
+import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
+import org.sagebionetworks.bridge.models.studies.Study;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifier;
+import org.sagebionetworks.bridge.models.studies.StudyIdentifierImpl;
+import org.sagebionetworks.bridge.services.SendMailService;
+import org.sagebionetworks.bridge.services.StudyService;
+import org.sagebionetworks.bridge.services.UploadArchiveService;
+import org.sagebionetworks.bridge.services.email.BasicEmailProvider;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.MoreExecutors;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserDataExportServiceTest {
+    private static final String STUDY_ID = "test-study";
+    private static final StudyIdentifier TEST_STUDY = new StudyIdentifierImpl(STUDY_ID);
+    private static final String HEALTH_CODE = "test-health-code";
+    private static final String EMAIL = "test@example.com";
+    private static final String ATTACHMENT_BUCKET = "attachment-bucket";
+    private static final String EXPORT_BUCKET = "export-bucket";
+    private static final String RECORD_ID = "test-record";
+    private static final String ATTACHMENT_ID = "test-attachment";
+    private static final byte[] ATTACHMENT_CONTENT = { 1, 2, 3 };
+    private static final DateRange DATE_RANGE = new DateRange(LocalDate.parse("2017-01-01"),
+            LocalDate.parse("2017-01-02"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private BridgeConfig mockConfig;
+
+    @Mock
+    private StudyService mockStudyService;
+
+    @Mock
+    private AccountDao mockAccountDao;
+
+    @Mock
+    private HealthDataDao mockHealthDataDao;
+
+    @Mock
+    private HealthDataAttachmentDao mockAttachmentDao;
+
+    @Mock
+    private ScheduledActivityDao mockActivityDao;
+
+    @Mock
+    private UploadArchiveService mockUploadArchiveService;
+
+    @Mock
+    private SendMailService mockSendMailService;
+
+    private Path rootDir;
+    private UserDataExportService service;
+
+    @Before
+    public void before() throws Exception {
+        when(mockConfig.getProperty(UserDataExportService.CONFIG_KEY_ATTACHMENT_BUCKET)).thenReturn(ATTACHMENT_BUCKET);
+        when(mockConfig.getProperty(UserDataExportService.CONFIG_KEY_EXPORT_BUCKET)).thenReturn(EXPORT_BUCKET);
+
+        // "Encryption" marks the bytes, so the test can tell they were encrypted.
+        when(mockUploadArchiveService.encrypt(eq(STUDY_ID), any())).thenAnswer(invocation -> {
+            byte[] bytes = invocation.getArgumentAt(1, byte[].class);
+            byte[] encrypted = new byte[bytes.length + 1];
+            encrypted[0] = 'E';
+            System.arraycopy(bytes, 0, encrypted, 1, bytes.length);
+            return encrypted;
+        });
+
+        // The local store stands in for S3.
+        rootDir = folder.getRoot().toPath();
+        LocalExportStore store = new LocalExportStore(rootDir);
+        Files.createDirectories(rootDir.resolve(ATTACHMENT_BUCKET));
+        Files.write(rootDir.resolve(ATTACHMENT_BUCKET).resolve(ATTACHMENT_ID), ATTACHMENT_CONTENT);
+
+        service = new UserDataExportService();
+        service.setBridgeConfig(mockConfig);
+        service.setStudyService(mockStudyService);
+        service.setAccountDao(mockAccountDao);
+        service.setHealthDataDao(mockHealthDataDao);
+        service.setHealthDataAttachmentDao(mockAttachmentDao);
+        service.setScheduledActivityDao(mockActivityDao);
+        service.setUploadArchiveService(mockUploadArchiveService);
+        service.setExportStore(store);
+        service.setExportExecutorService(MoreExecutors.newDirectExecutorService());
+        service.setSendMailService(mockSendMailService);
+    }
+
+    @Test
+    public void exportUserData() throws Exception {
+        mockUserData();
+
+        String key = service.exportUserData(STUDY_ID, HEALTH_CODE, DATE_RANGE);
+        assertTrue(key.startsWith(STUDY_ID + "/"));
+
+        // Records are read for the whole date range, in local time.
+        long createdOnStart = DateTime.parse("2017-01-01T00:00:00.000-08:00").getMillis();
+        long createdOnEnd = DateTime.parse("2017-01-03T00:00:00.000-08:00").getMillis() - 1;
+        verify(mockHealthDataDao).getRecordsForHealthCode(HEALTH_CODE, createdOnStart, createdOnEnd);
+
+        Map<String, byte[]> entryMap = readExport(key);
+        assertEquals(3, entryMap.size());
+
+        JsonNode recordNode = decrypt(entryMap.get("records/" + RECORD_ID + ".json.cms"));
+        assertEquals(RECORD_ID, recordNode.get("id").textValue());
+        assertFalse(recordNode.has("healthCode"));
+
+        byte[] attachment = entryMap.get("attachments/" + ATTACHMENT_ID + ".cms");
+        assertEquals('E', attachment[0]);
+        assertEquals(ATTACHMENT_CONTENT.length + 1, attachment.length);
+
+        // Only the activity in the date range is exported.
+        JsonNode activitiesNode = decrypt(entryMap.get("activities/activities-0.json.cms"));
+        assertEquals(1, activitiesNode.size());
+        assertEquals("in-range", activitiesNode.get(0).get("guid").textValue());
+        assertFalse(activitiesNode.get(0).has("healthCode"));
+    }
+
+    @Test
+    public void largeAttachmentIsWrittenInParts() throws Exception {
+        mockUserData();
+        byte[] content = new byte[UserDataExportService.ATTACHMENT_PART_SIZE * 2 + 10];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(rootDir.resolve(ATTACHMENT_BUCKET).resolve(ATTACHMENT_ID), content);
+
+        String key = service.exportUserData(STUDY_ID, HEALTH_CODE, DATE_RANGE);
+
+        Map<String, byte[]> entryMap = readExport(key);
+        assertFalse(entryMap.containsKey("attachments/" + ATTACHMENT_ID + ".cms"));
+        byte[] part0 = entryMap.get("attachments/" + ATTACHMENT_ID + ".part-0.cms");
+        byte[] part1 = entryMap.get("attachments/" + ATTACHMENT_ID + ".part-1.cms");
+        byte[] part2 = entryMap.get("attachments/" + ATTACHMENT_ID + ".part-2.cms");
+        assertFalse(entryMap.containsKey("attachments/" + ATTACHMENT_ID + ".part-3.cms"));
+        assertEquals(UserDataExportService.ATTACHMENT_PART_SIZE + 1, part0.length);
+        assertEquals(UserDataExportService.ATTACHMENT_PART_SIZE + 1, part1.length);
+        assertEquals(11, part2.length);
+
+        // Decrypted and concatenated, the parts are the attachment.
+        byte[] joined = new byte[content.length];
+        int offset = 0;
+        for (byte[] part : ImmutableList.of(part0, part1, part2)) {
+            assertEquals('E', part[0]);
+            System.arraycopy(part, 1, joined, offset, part.length - 1);
+            offset += part.length - 1;
+        }
+        assertArrayEquals(content, joined);
+    }
+
+    @Test
+    public void exportRunsWithExportPriority() throws Exception {
+        when(mockHealthDataDao.getRecordsForHealthCode(eq(HEALTH_CODE), anyLong(), anyLong())).thenAnswer(
+                invocation -> {
+                    assertEquals(DynamoCapacityGovernor.Priority.EXPORT, DynamoCapacityGovernor.getPriority());
+                    return ImmutableList.<HealthDataRecord>of().iterator();
+                });
+        doReturn(ImmutableList.of().iterator()).when(mockActivityDao).getActivitiesForUser(HEALTH_CODE);
+
+        String key = service.exportUserData(STUDY_ID, HEALTH_CODE, DATE_RANGE);
+
+        assertTrue(readExport(key).isEmpty());
+        assertEquals(DynamoCapacityGovernor.Priority.INTERACTIVE, DynamoCapacityGovernor.getPriority());
+    }
+
+    @Test
+    public void failedExportIsNotWritten() throws Exception {
+        mockUserData();
+        when(mockAttachmentDao.getAttachmentsForRecord(RECORD_ID)).thenThrow(new BridgeServiceException("test"));
+
+        try {
+            service.exportUserData(STUDY_ID, HEALTH_CODE, DATE_RANGE);
+            fail("expected exception");
+        } catch (BridgeServiceException ex) {
+            // expected exception
+        }
+        try (Stream<Path> files = Files.walk(rootDir.resolve(EXPORT_BUCKET))) {
+            assertFalse(files.anyMatch(Files::isRegularFile));
+        }
+    }
+
+    @Test
+    public void requestUserData() throws Exception {
+        mockUserData();
+        Study study = mock(Study.class);
+        when(mockStudyService.getStudy(TEST_STUDY)).thenReturn(study);
+        Account account = mock(Account.class);
+        when(account.getHealthCode()).thenReturn(HEALTH_CODE);
+        when(mockAccountDao.getAccountWithEmail(study, EMAIL)).thenReturn(account);
+
+        service.requestUserData(TEST_STUDY, EMAIL, DATE_RANGE);
+
+        Path exportPath;
+        try (Stream<Path> files = Files.walk(rootDir.resolve(EXPORT_BUCKET).resolve(STUDY_ID))) {
+            List<Path> exportPaths = files.filter(Files::isRegularFile).collect(Collectors.toList());
+            assertEquals(1, exportPaths.size());
+            exportPath = exportPaths.get(0);
+        }
+
+        // The user is emailed a link to the export.
+        ArgumentCaptor<BasicEmailProvider> providerCaptor = ArgumentCaptor.forClass(BasicEmailProvider.class);
+        verify(mockSendMailService).sendEmail(providerCaptor.capture());
+        BasicEmailProvider provider = providerCaptor.getValue();
+        assertSame(study, provider.getStudy());
+        assertEquals(ImmutableSet.of(EMAIL), provider.getRecipientEmails());
+        assertSame(UserDataExportService.DOWNLOAD_EMAIL_TEMPLATE, provider.getTemplate());
+        assertEquals(exportPath.toUri().toString(), provider.getTokenMap().get("url"));
+        assertTrue(provider.getTokenMap().containsKey("expiresOn"));
+    }
+
+    @Test
+    public void noEmailIsSentWhenExportFails() throws Exception {
+        mockUserData();
+        when(mockAttachmentDao.getAttachmentsForRecord(RECORD_ID)).thenThrow(new BridgeServiceException("test"));
+        Study study = mock(Study.class);
+        when(mockStudyService.getStudy(TEST_STUDY)).thenReturn(study);
+        Account account = mock(Account.class);
+        when(account.getHealthCode()).thenReturn(HEALTH_CODE);
+        when(mockAccountDao.getAccountWithEmail(study, EMAIL)).thenReturn(account);
+
+        service.requestUserData(TEST_STUDY, EMAIL, DATE_RANGE);
+
+        verify(mockSendMailService, never()).sendEmail(any());
+    }
+
+    @Test
+    public void requestUserDataWhenPoolIsFull() throws Exception {
+        Study study = mock(Study.class);
+        when(mockStudyService.getStudy(TEST_STUDY)).thenReturn(study);
+        Account account = mock(Account.class);
+        when(account.getHealthCode()).thenReturn(HEALTH_CODE);
+        when(mockAccountDao.getAccountWithEmail(study, EMAIL)).thenReturn(account);
+
+        ExecutorService mockExecutor = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(mockExecutor).execute(any());
+        service.setExportExecutorService(mockExecutor);
+
+        try {
+            service.requestUserData(TEST_STUDY, EMAIL, DATE_RANGE);
+            fail("expected exception");
+        } catch (ServiceUnavailableException ex) {
+            assertEquals(UserDataExportService.TOO_MANY_EXPORTS_ERROR, ex.getMessage());
+        }
+    }
+
+    private void mockUserData() {
+        DynamoHealthDataRecord record = new DynamoHealthDataRecord();
+        record.setId(RECORD_ID);
+        record.setHealthCode(HEALTH_CODE);
+        record.setCreatedOn(DateTime.parse("2017-01-01T12:00:00.000-08:00").getMillis());
+        when(mockHealthDataDao.getRecordsForHealthCode(eq(HEALTH_CODE), anyLong(), anyLong()))
+                .thenReturn(ImmutableList.<HealthDataRecord>of(record).iterator());
+
+        DynamoHealthDataAttachment attachment = new DynamoHealthDataAttachment();
+        attachment.setId(ATTACHMENT_ID);
+        attachment.setRecordId(RECORD_ID);
+        when(mockAttachmentDao.getAttachmentsForRecord(RECORD_ID))
+                .thenReturn(ImmutableList.<HealthDataAttachment>of(attachment));
+
+        DynamoScheduledActivity inRange = new DynamoScheduledActivity();
+        inRange.setHealthCode(HEALTH_CODE);
+        inRange.setGuid("in-range");
+        inRange.setLocalScheduledOn(LocalDateTime.parse("2017-01-02T23:00:00"));
+        DynamoScheduledActivity outOfRange = new DynamoScheduledActivity();
+        outOfRange.setHealthCode(HEALTH_CODE);
+        outOfRange.setGuid("out-of-range");
+        outOfRange.setLocalScheduledOn(LocalDateTime.parse("2017-01-03T01:00:00"));
+        doReturn(ImmutableList.of(inRange, outOfRange).iterator()).when(mockActivityDao)
+                .getActivitiesForUser(HEALTH_CODE);
+    }
+
+    private Map<String, byte[]> readExport(String key) throws Exception {
+        byte[] zipBytes = Files.readAllBytes(rootDir.resolve(EXPORT_BUCKET).resolve(key));
+        Map<String, byte[]> entryMap = Maps.newHashMap();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entryMap.put(entry.getName(), ByteStreams.toByteArray(zip));
+            }
+        }
+        return entryMap;
+    }
+
+    private static JsonNode decrypt(byte[] encrypted) throws Exception {
+        assertEquals('E', encrypted[0]);
+        return BridgeObjectMapper.get().readTree(new String(encrypted, 1, encrypted.length - 1,
+                StandardCharsets.UTF_8));
+    }
+}
@@ -44,8 +44,8 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         // mock upload schema service
         UploadSchema dummySchema = UploadSchema.create();
         UploadSchemaService mockSchemaSvc = mock(UploadSchemaService.class);
-        when(mockSchemaSvc.getUploadSchemaByIdAndRev(TEST_STUDY, "test-survey", 4)).thenReturn(
-                dummySchema);
+        when(mockSchemaSvc.getCompiledUploadSchema(TEST_STUDY, "test-survey", 4)).thenReturn(
+                new CompiledUploadSchema(dummySchema));
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
@@ -59,7 +59,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         infoJson.put("surveyCreatedOn", TEST_SURVEY_CREATED_ON_STRING);
 
         // execute and validate
-        UploadSchema retVal = handler.getUploadSchema(TEST_STUDY, infoJson);
+        UploadSchema retVal = handler.getCompiledUploadSchema(TEST_STUDY, infoJson).getSchema();
         assertSame(dummySchema, retVal);
     }
 
@@ -86,7 +86,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         infoJson.put("surveyCreatedOn", TEST_SURVEY_CREATED_ON_STRING);
 
         // execute, expected exception
-        handler.getUploadSchema(TEST_STUDY, infoJson);
+        handler.getCompiledUploadSchema(TEST_STUDY, infoJson);
     }
 
     // branch coverage: survey with no schema rev
@@ -112,7 +112,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         infoJson.put("surveyCreatedOn", TEST_SURVEY_CREATED_ON_STRING);
 
         // execute, expected exception
-        handler.getUploadSchema(TEST_STUDY, infoJson);
+        handler.getCompiledUploadSchema(TEST_STUDY, infoJson);
     }
 
     @Test
@@ -120,8 +120,8 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         // mock upload schema service
         UploadSchema dummySchema = UploadSchema.create();
         UploadSchemaService mockSchemaSvc = mock(UploadSchemaService.class);
-        when(mockSchemaSvc.getUploadSchemaByIdAndRev(TEST_STUDY, "test-schema", 1)).thenReturn(
-                dummySchema);
+        when(mockSchemaSvc.getCompiledUploadSchema(TEST_STUDY, "test-schema", 1)).thenReturn(
+                new CompiledUploadSchema(dummySchema));
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
@@ -133,7 +133,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         infoJson.put("item", "test-schema");
 
         // execute and validate
-        UploadSchema retVal = handler.getUploadSchema(TEST_STUDY, infoJson);
+        UploadSchema retVal = handler.getCompiledUploadSchema(TEST_STUDY, infoJson).getSchema();
         assertSame(dummySchema, retVal);
     }
 
@@ -142,8 +142,8 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         // mock upload schema service
         UploadSchema dummySchema = UploadSchema.create();
         UploadSchemaService mockSchemaSvc = mock(UploadSchemaService.class);
-        when(mockSchemaSvc.getUploadSchemaByIdAndRev(TEST_STUDY, "schema-rev-test", 2)).thenReturn(
-                dummySchema);
+        when(mockSchemaSvc.getCompiledUploadSchema(TEST_STUDY, "schema-rev-test", 2)).thenReturn(
+                new CompiledUploadSchema(dummySchema));
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
@@ -155,7 +155,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         infoJson.put("item", "schema-rev-test");
 
         // execute and validate
-        UploadSchema retVal = handler.getUploadSchema(TEST_STUDY, infoJson);
+        UploadSchema retVal = handler.getCompiledUploadSchema(TEST_STUDY, infoJson).getSchema();
         assertSame(dummySchema, retVal);
     }
 
@@ -164,8 +164,8 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         // mock upload schema service
         UploadSchema dummySchema = UploadSchema.create();
         UploadSchemaService mockSchemaSvc = mock(UploadSchemaService.class);
-        when(mockSchemaSvc.getUploadSchemaByIdAndRev(TEST_STUDY, "schema-rev-test", 3)).thenReturn(
-                dummySchema);
+        when(mockSchemaSvc.getCompiledUploadSchema(TEST_STUDY, "schema-rev-test", 3)).thenReturn(
+                new CompiledUploadSchema(dummySchema));
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
@@ -178,7 +178,7 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         infoJson.put("schemaRevision", 3);
 
         // execute and validate
-        UploadSchema retVal = handler.getUploadSchema(TEST_STUDY, infoJson);
+        UploadSchema retVal = handler.getCompiledUploadSchema(TEST_STUDY, infoJson).getSchema();
         assertSame(dummySchema, retVal);
     }
 
@@ -187,8 +187,8 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         // mock upload schema service
         UploadSchema dummySchema = UploadSchema.create();
         UploadSchemaService mockSchemaSvc = mock(UploadSchemaService.class);
-        when(mockSchemaSvc.getUploadSchemaByIdAndRev(TEST_STUDY, "test-schema", 1)).thenReturn(
-                dummySchema);
+        when(mockSchemaSvc.getCompiledUploadSchema(TEST_STUDY, "test-schema", 1)).thenReturn(
+                new CompiledUploadSchema(dummySchema));
 
         // set up test handler
         IosSchemaValidationHandler2 handler = new IosSchemaValidationHandler2();
@@ -200,14 +200,14 @@ public class IosSchemaValidationHandler2GetSchemaTest {
         infoJson.put("identifier", "test-schema");
 
         // execute and validate
-        UploadSchema retVal = handler.getUploadSchema(TEST_STUDY, infoJson);
+        UploadSchema retVal = handler.getCompiledUploadSchema(TEST_STUDY, infoJson).getSchema();
         assertSame(dummySchema, retVal);
     }
 
     // branch coverage: no item or survey
     @Test(expected = UploadValidationException.class)
     public void missingItemOrSurvey() throws Exception {
-        new IosSchemaValidationHandler2().getUploadSchema(TEST_STUDY,
+        new IosSchemaValidationHandler2().getCompiledUploadSchema(TEST_STUDY,
                 BridgeObjectMapper.get().createObjectNode());
     }
 }
@@ -189,14 +189,20 @@ public class IosSchemaValidationHandler2Test {
 
         // mock upload schema service
         UploadSchemaService mockSchemaService = mock(UploadSchemaService.class);
-        when(mockSchemaService.getUploadSchemaByIdAndRev(study, "test-survey", 1)).thenReturn(surveySchema);
-        when(mockSchemaService.getUploadSchemaByIdAndRev(study, "json-data", 1)).thenReturn(jsonDataSchema);
-        when(mockSchemaService.getUploadSchemaByIdAndRev(study, "non-json-data", 1)).thenReturn(nonJsonDataSchema);
-        when(mockSchemaService.getUploadSchemaByIdAndRev(study, "mixed-data", 1)).thenReturn(mixedSchema);
-        when(mockSchemaService.getUploadSchemaByIdAndRev(study, "schema-rev-test", 2)).thenReturn(schemaRevTest2);
-        when(mockSchemaService.getUploadSchemaByIdAndRev(study, "schema-rev-test", 3)).thenReturn(schemaRevTest3);
-        when(mockSchemaService.getUploadSchemaByIdAndRev(study, "simple-attachment-schema", 1)).thenReturn(
-                simpleAttachmentSchema);
+        when(mockSchemaService.getCompiledUploadSchema(study, "test-survey", 1)).thenReturn(
+                new CompiledUploadSchema(surveySchema));
+        when(mockSchemaService.getCompiledUploadSchema(study, "json-data", 1)).thenReturn(
+                new CompiledUploadSchema(jsonDataSchema));
+        when(mockSchemaService.getCompiledUploadSchema(study, "non-json-data", 1)).thenReturn(
+                new CompiledUploadSchema(nonJsonDataSchema));
+        when(mockSchemaService.getCompiledUploadSchema(study, "mixed-data", 1)).thenReturn(
+                new CompiledUploadSchema(mixedSchema));
+        when(mockSchemaService.getCompiledUploadSchema(study, "schema-rev-test", 2)).thenReturn(
+                new CompiledUploadSchema(schemaRevTest2));
+        when(mockSchemaService.getCompiledUploadSchema(study, "schema-rev-test", 3)).thenReturn(
+                new CompiledUploadSchema(schemaRevTest3));
+        when(mockSchemaService.getCompiledUploadSchema(study, "simple-attachment-schema", 1)).thenReturn(
+                new CompiledUploadSchema(simpleAttachmentSchema));
 
         // set up handler
         handler = new IosSchemaValidationHandler2();
@@ -68,8 +68,8 @@ public class StrictValidationHandlerTest {
 
         // mock schema service
         UploadSchemaService mockSchemaService = mock(UploadSchemaService.class);
-        when(mockSchemaService.getUploadSchemaByIdAndRev(TEST_STUDY, "test-schema", 1)).thenReturn(
-                testSchema);
+        when(mockSchemaService.getCompiledUploadSchema(TEST_STUDY, "test-schema", 1)).thenReturn(
+                new CompiledUploadSchema(testSchema));
         handler.setUploadSchemaService(mockSchemaService);
 
         // mock study service - this is to get the shouldThrow (strictUploadValidationEnabled) flag
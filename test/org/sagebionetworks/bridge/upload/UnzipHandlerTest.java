@@ -2,46 +2,104 @@ package org.sagebionetworks.bridge.upload;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.Map;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Charsets;
-import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 
 import org.sagebionetworks.bridge.services.UploadArchiveService;
+import org.sagebionetworks.bridge.util.ZipEntryVisitor;
 
 public class UnzipHandlerTest {
     @Test
     public void test() {
-        // The handler is a simple pass-through to the UploadArchiveService, so just test that execution flows through
-        // to the service as expected.
+        // Use a real UploadArchiveService, since the handler streams entries through the service's visitor API.
+        UploadArchiveService svc = new UploadArchiveService();
 
         // inputs
+        Map<String, byte[]> inputMap = new HashMap<>();
+        inputMap.put("foo", "{\"isJson\":true}".getBytes(Charsets.UTF_8));
+        inputMap.put("bar", "This is not JSON".getBytes(Charsets.UTF_8));
+        inputMap.put("baz", "[1, 2, 3]".getBytes(Charsets.UTF_8));
+
+        UploadValidationContext ctx = new UploadValidationContext();
+        ctx.setDecryptedData(svc.zip(inputMap));
+
+        // set up test handler
+        UnzipHandler handler = new UnzipHandler();
+        handler.setUploadArchiveService(svc);
+
+        // execute and validate
+        handler.handle(ctx);
+
+        Map<String, byte[]> byteMap = ctx.getUnzippedDataMap();
+        assertEquals(1, byteMap.size());
+        assertArrayEquals(inputMap.get("bar"), byteMap.get("bar"));
+
+        Map<String, JsonNode> jsonDataMap = ctx.getJsonDataMap();
+        assertEquals(2, jsonDataMap.size());
+        assertTrue(jsonDataMap.get("foo").get("isJson").booleanValue());
+        assertEquals(3, jsonDataMap.get("baz").size());
+    }
+
+    @Test
+    public void allJson() {
+        UploadArchiveService svc = new UploadArchiveService();
+
+        Map<String, byte[]> inputMap = new HashMap<>();
+        inputMap.put("info.json", "{\"files\":[]}".getBytes(Charsets.UTF_8));
+
         UploadValidationContext ctx = new UploadValidationContext();
-        ctx.setDecryptedData("zipped test data".getBytes(Charsets.UTF_8));
+        ctx.setDecryptedData(svc.zip(inputMap));
 
-        // mock UploadArchiveService
-        Map<String, byte[]> mockUnzippedDataMap = ImmutableMap.of(
-                "foo", "foo data".getBytes(Charsets.UTF_8),
-                "bar", "bar data".getBytes(Charsets.UTF_8),
-                "baz", "baz data".getBytes(Charsets.UTF_8));
+        UnzipHandler handler = new UnzipHandler();
+        handler.setUploadArchiveService(svc);
+        handler.handle(ctx);
 
+        assertTrue(ctx.getUnzippedDataMap().isEmpty());
+        assertEquals(1, ctx.getJsonDataMap().size());
+        assertTrue(ctx.getJsonDataMap().get("info.json").has("files"));
+    }
+
+    @Test
+    public void runtimeErrorWhileParsingIsRecorded() {
+        // The first pass hands the handler a stream that fails with a runtime error, the second pass the entry's bytes.
+        byte[] content = "not parseable".getBytes(Charsets.UTF_8);
         UploadArchiveService mockSvc = mock(UploadArchiveService.class);
-        when(mockSvc.unzip(ctx.getDecryptedData())).thenReturn(mockUnzippedDataMap);
+        doAnswer(invocation -> {
+            ZipEntryVisitor visitor = invocation.getArgumentAt(1, ZipEntryVisitor.class);
+            visitor.visit("bad", new InputStream() {
+                @Override
+                public int read() {
+                    throw new IllegalStateException("test");
+                }
+            });
+            return null;
+        }).doAnswer(invocation -> {
+            ZipEntryVisitor visitor = invocation.getArgumentAt(1, ZipEntryVisitor.class);
+            visitor.visit("bad", new ByteArrayInputStream(content));
+            return null;
+        }).when(mockSvc).unzip(any(byte[].class), any(ZipEntryVisitor.class));
+
+        UploadValidationContext ctx = new UploadValidationContext();
+        ctx.setDecryptedData(new byte[0]);
 
-        // set up test handler
         UnzipHandler handler = new UnzipHandler();
         handler.setUploadArchiveService(mockSvc);
-
-        // execute and validate
         handler.handle(ctx);
-        Map<String, byte[]> retVal = ctx.getUnzippedDataMap();
-        assertEquals(3, retVal.size());
-        assertArrayEquals(mockUnzippedDataMap.get("foo"), retVal.get("foo"));
-        assertArrayEquals(mockUnzippedDataMap.get("bar"), retVal.get("bar"));
-        assertArrayEquals(mockUnzippedDataMap.get("baz"), retVal.get("baz"));
+
+        assertTrue(ctx.getJsonDataMap().isEmpty());
+        assertArrayEquals(content, ctx.getUnzippedDataMap().get("bad"));
+        assertEquals(1, ctx.getMessageList().size());
+        assertTrue(ctx.getMessageList().get(0).contains("bad"));
     }
 }
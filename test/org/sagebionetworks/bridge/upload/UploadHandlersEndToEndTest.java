@@ -103,8 +103,6 @@ public class UploadHandlersEndToEndTest {
         UNZIP_HANDLER.setUploadArchiveService(new UploadArchiveService());
     }
 
-    private static final ParseJsonHandler PARSE_JSON_HANDLER = new ParseJsonHandler();
-
     private int numAttachments;
     private HealthDataService mockHealthDataService;
     private UploadDao mockUploadDao;
@@ -160,8 +158,9 @@ public class UploadHandlersEndToEndTest {
 
         // mock schema service
         UploadSchemaService mockUploadSchemaService = mock(UploadSchemaService.class);
-        when(mockUploadSchemaService.getUploadSchemaByIdAndRev(TestConstants.TEST_STUDY, schema.getSchemaId(),
-                schema.getRevision())).thenReturn(schema);
+        when(mockUploadSchemaService.getCompiledUploadSchema(TestConstants.TEST_STUDY, schema.getSchemaId(),
+                schema.getRevision())).thenReturn(
+                new CompiledUploadSchema(schema));
 
         // set up IosSchemaValidationHandler
         IosSchemaValidationHandler2 iosSchemaValidationHandler = new IosSchemaValidationHandler2();
@@ -222,7 +221,7 @@ public class UploadHandlersEndToEndTest {
 
         // set up task factory
         List<UploadValidationHandler> handlerList = ImmutableList.of(s3DownloadHandler, decryptHandler, UNZIP_HANDLER,
-                PARSE_JSON_HANDLER, iosSchemaValidationHandler, strictValidationHandler, transcribeConsentHandler,
+                iosSchemaValidationHandler, strictValidationHandler, transcribeConsentHandler,
                 uploadArtifactsHandler);
 
         UploadValidationTaskFactory taskFactory = new UploadValidationTaskFactory();
@@ -126,7 +126,7 @@ public class UploadValidationTaskTest {
         testRecordDupeListMulti = ImmutableList.of(testRecord, testRecordDupe, testRecordDupe2);
 
         healthDataService = mock(HealthDataService.class);
-        when(healthDataService.getRecordById(eq(RECORD_ID))).thenReturn(testRecord);
+        when(healthDataService.getRecordInfoById(eq(RECORD_ID))).thenReturn(testRecord);
         when(healthDataService.getRecordsByHealthcodeCreatedOnSchemaId(any(), any(), any())).thenReturn(
                 testRecordDupeListNormal);
     }
@@ -325,7 +325,7 @@ public class UploadValidationTaskTest {
 
         // only return one test record
         healthDataService = mock(HealthDataService.class);
-        when(healthDataService.getRecordById(any())).thenReturn(testRecord);
+        when(healthDataService.getRecordInfoById(any())).thenReturn(testRecord);
         when(healthDataService.getRecordsByHealthcodeCreatedOnSchemaId(any(), any(), any())).thenReturn(
                 ImmutableList.of(testRecord));
         task.setHealthDataService(healthDataService);
@@ -356,7 +356,7 @@ public class UploadValidationTaskTest {
 
         // return a null record
         healthDataService = mock(HealthDataService.class);
-        when(healthDataService.getRecordById(any())).thenReturn(null);
+        when(healthDataService.getRecordInfoById(any())).thenReturn(null);
         task.setHealthDataService(healthDataService);
         task.run();
         verify(task, times(0)).logDuplicateUploadRecords(any(), any());
@@ -381,7 +381,7 @@ public class UploadValidationTaskTest {
 
         // return an empty list
         healthDataService = mock(HealthDataService.class);
-        when(healthDataService.getRecordById(any())).thenReturn(testRecord);
+        when(healthDataService.getRecordInfoById(any())).thenReturn(testRecord);
         when(healthDataService.getRecordsByHealthcodeCreatedOnSchemaId(any(), any(), any())).thenReturn(
                 ImmutableList.of());
         task.setHealthDataService(healthDataService);
@@ -407,7 +407,7 @@ public class UploadValidationTaskTest {
         task.setUploadDao(mock(UploadDao.class));
 
         healthDataService = mock(HealthDataService.class);
-        when(healthDataService.getRecordById(any())).thenReturn(testRecord);
+        when(healthDataService.getRecordInfoById(any())).thenReturn(testRecord);
         when(healthDataService.getRecordsByHealthcodeCreatedOnSchemaId(eq(HEALTH_CODE), eq(CREATED_ON), eq(SCHEMA_ID))).thenReturn(testRecordDupeListMulti);
         task.setHealthDataService(healthDataService);
 
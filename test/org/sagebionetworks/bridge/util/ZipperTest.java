@@ -3,8 +3,14 @@ package org.sagebionetworks.bridge.util;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.IOUtils;
 
 import org.junit.Test;
 
@@ -31,6 +37,102 @@ public class ZipperTest {
         zipper.unzip(zipped);
     }
 
+    @Test
+    public void testUnzipWithVisitor() throws Exception {
+        Zipper zipper = new Zipper(10, 20);
+        Map<String, byte[]> dataMap = new HashMap<>();
+        dataMap.put("foo", "foo data".getBytes(Charsets.UTF_8));
+        dataMap.put("bar", "bar data".getBytes(Charsets.UTF_8));
+        byte[] zipped = zipper.zip(dataMap);
+
+        Map<String, String> visitedMap = new TreeMap<>();
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(zipped)) {
+            zipper.unzip(bais, (entryName, entryInputStream) -> {
+                visitedMap.put(entryName, IOUtils.toString(entryInputStream, Charsets.UTF_8));
+
+                // Closing the entry stream must not close the underlying zip stream.
+                entryInputStream.close();
+            });
+        }
+
+        assertEquals(2, visitedMap.size());
+        assertEquals("foo data", visitedMap.get("foo"));
+        assertEquals("bar data", visitedMap.get("bar"));
+    }
+
+    @Test
+    public void testVisitorPartialRead() throws Exception {
+        // Visitors don't have to read each entry to the end.
+        Zipper zipper = new Zipper(10, 20);
+        Map<String, byte[]> dataMap = new HashMap<>();
+        dataMap.put("foo", "foo data".getBytes(Charsets.UTF_8));
+        dataMap.put("bar", "bar data".getBytes(Charsets.UTF_8));
+        byte[] zipped = zipper.zip(dataMap);
+
+        Map<String, Integer> firstByteMap = new HashMap<>();
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(zipped)) {
+            zipper.unzip(bais, (entryName, entryInputStream) -> firstByteMap.put(entryName,
+                    entryInputStream.read()));
+        }
+
+        assertEquals(2, firstByteMap.size());
+        assertEquals((int) 'f', firstByteMap.get("foo").intValue());
+        assertEquals((int) 'b', firstByteMap.get("bar").intValue());
+    }
+
+    @Test(expected=ZipOverflowException.class)
+    public void testVisitorZipEntryTooBig() throws Exception {
+        Zipper zipper = new Zipper(2, 20);
+        Map<String, byte[]> dataMap = new HashMap<>();
+        dataMap.put("testVisitorZipEntryTooBig", "aaa".getBytes());
+        byte[] zipped = zipper.zip(dataMap);
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(zipped)) {
+            zipper.unzip(bais, (entryName, entryInputStream) -> IOUtils.toByteArray(entryInputStream));
+        }
+    }
+
+    @Test(expected=ZipOverflowException.class)
+    public void testVisitorSwallowsOverflow() throws Exception {
+        Zipper zipper = new Zipper(2, 20);
+        Map<String, byte[]> dataMap = new HashMap<>();
+        dataMap.put("testVisitorSwallowsOverflow", "aaa".getBytes());
+        byte[] zipped = zipper.zip(dataMap);
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(zipped)) {
+            zipper.unzip(bais, (entryName, entryInputStream) -> {
+                try {
+                    IOUtils.toByteArray(entryInputStream);
+                } catch (IOException ex) {
+                    // swallow
+                }
+            });
+        }
+    }
+
+    @Test(expected=ZipOverflowException.class)
+    public void testVisitorSkipsZipEntryTooBig() throws Exception {
+        // The unread part of an entry still counts against the max size.
+        Zipper zipper = new Zipper(2, 20);
+        Map<String, byte[]> dataMap = new HashMap<>();
+        dataMap.put("testVisitorSkipsZipEntryTooBig", "aaa".getBytes());
+        byte[] zipped = zipper.zip(dataMap);
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(zipped)) {
+            zipper.unzip(bais, (entryName, entryInputStream) -> {});
+        }
+    }
+
+    @Test(expected=ZipOverflowException.class)
+    public void testVisitorTooManyZipEntries() throws Exception {
+        Zipper zipper = new Zipper(10, 2);
+        Map<String, byte[]> dataMap = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            dataMap.put(Integer.toString(i), Integer.toString(i).getBytes());
+        }
+        byte[] zipped = zipper.zip(dataMap);
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(zipped)) {
+            zipper.unzip(bais, (entryName, entryInputStream) -> {});
+        }
+    }
+
     private void zipUnzip(final Zipper zipper, final int numEntries) throws Exception {
         Map<String, byte[]> dataMap = new HashMap<>();
         for (int i = 0; i < numEntries; i++) {
@@ -111,6 +111,15 @@ public class StudyParticipantValidatorTest {
         Validate.entityThrowingException(validator, withEmail("email@email.com"));
     }
     
+    @Test
+    public void externalIdNotRequiredWhenAutoAssigned() {
+        study.setExternalIdValidationEnabled(true);
+        study.setExternalIdRequiredOnSignup(true);
+        study.setExternalIdAutoAssignmentEnabled(true);
+        validator = new StudyParticipantValidator(study, true);
+        Validate.entityThrowingException(validator, withEmail("email@email.com"));
+    }
+    
     @Test
     public void validPasses() {
         validator = new StudyParticipantValidator(study, true);
@@ -329,4 +329,11 @@ public class StudyValidatorTest {
         study.setExternalIdRequiredOnSignup(false);
         assertCorrectMessage(study, "externalIdRequiredOnSignup", "externalIdRequiredOnSignup cannot be disabled if email verification has been disabled");
     }    
+    
+    @Test
+    public void externalIdAutoAssignmentRequiresExternalIdValidation() {
+        study.setExternalIdValidationEnabled(false);
+        study.setExternalIdAutoAssignmentEnabled(true);
+        assertCorrectMessage(study, "externalIdAutoAssignmentEnabled", "externalIdAutoAssignmentEnabled cannot be enabled unless external ID validation is enabled");
+    }
 }